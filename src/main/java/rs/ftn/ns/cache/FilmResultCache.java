@@ -0,0 +1,62 @@
+package rs.ftn.ns.cache;
+
+import rs.ftn.ns.model.Film;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Cache for film query results, keyed by query shape and parameters.
+ * Implementations must return results that callers cannot use to
+ * modify the cached data.
+ */
+public interface FilmResultCache {
+    
+    /**
+     * Gets cached results, or loads and caches them on a miss.
+     * The results are dropped on any change to any film.
+     * 
+     * @param shape Name of the query shape (e.g. "genre")
+     * @param parameters Query parameters, in order
+     * @param loader Runs the query on a miss
+     * @return Unmodifiable list of films
+     */
+    default List<Film> getOrLoad(String shape, List<?> parameters, Supplier<List<Film>> loader) {
+        return getOrLoad(shape, parameters, loader, filmId -> true);
+    }
+    
+    /**
+     * Gets cached results, or loads and caches them on a miss.
+     * After a change the results are only dropped if they contain a
+     * changed film, or if the query may return one of them now.
+     * 
+     * @param shape Name of the query shape (e.g. "genre")
+     * @param parameters Query parameters, in order
+     * @param loader Runs the query on a miss
+     * @param mayMatch Tells, once a film has changed, whether the query may return it
+     * @return Unmodifiable list of films
+     */
+    List<Film> getOrLoad(String shape, List<?> parameters, Supplier<List<Film>> loader,
+                         Predicate<String> mayMatch);
+    
+    /**
+     * Drops the cached results that a change to the given films may
+     * have affected, see {@link #getOrLoad(String, List, Supplier, Predicate)}
+     * 
+     * @param filmIds Films that were added, changed or removed
+     */
+    void invalidate(Collection<String> filmIds);
+    
+    /**
+     * Drops every cached result. Called whenever the model is reloaded
+     * or changed other than through OntologyManager.update().
+     */
+    void invalidateAll();
+    
+    /**
+     * @return Current hit/miss/eviction counters
+     */
+    CacheStats getStats();
+}
@@ -0,0 +1,155 @@
+package rs.ftn.ns.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe cache bounded by size and time-to-live.
+ * When full, the least recently used entry is evicted.
+ * 
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class LruCache<K, V> {
+    
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+    
+    private long hits;
+    private long misses;
+    private long evictions;
+    
+    /**
+     * Creates a cache without expiry
+     * 
+     * @param maxSize Maximum number of entries
+     */
+    public LruCache(int maxSize) {
+        this(maxSize, 0, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * @param maxSize Maximum number of entries
+     * @param ttl Time an entry stays valid after it was put (0 = forever)
+     * @param unit Unit of the ttl
+     */
+    public LruCache(int maxSize, long ttl, TimeUnit unit) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        // Access order, so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * Gets a value
+     * 
+     * @param key The key
+     * @return The cached value, or null if absent or expired
+     */
+    public synchronized V get(K key) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry != null && isExpired(entry)) {
+            entries.remove(key);
+            evictions++;
+            entry = null;
+        }
+        
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+    
+    /**
+     * Puts a value, evicting the least recently used entry if the cache is full
+     * 
+     * @param key The key
+     * @param value The value
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new CacheEntry<>(value, System.nanoTime()));
+    }
+    
+    /**
+     * Removes a single entry
+     * 
+     * @param key The key
+     */
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+    
+    /**
+     * Removes an entry if it still holds the given value
+     * 
+     * @param key The key
+     * @param value The value expected
+     */
+    public synchronized void remove(K key, V value) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry != null && entry.value == value) {
+            entries.remove(key);
+        }
+    }
+    
+    /**
+     * Copies the entries that have not expired, without counting hits
+     * or changing their order
+     * 
+     * @return Keys and values, least recently used first
+     */
+    public synchronized Map<K, V> snapshot() {
+        Map<K, V> copy = new LinkedHashMap<>();
+        for (Map.Entry<K, CacheEntry<V>> entry : entries.entrySet()) {
+            if (!isExpired(entry.getValue())) {
+                copy.put(entry.getKey(), entry.getValue().value);
+            }
+        }
+        return copy;
+    }
+    
+    /**
+     * Removes all entries. Counters are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, entries.size());
+    }
+    
+    private boolean isExpired(CacheEntry<V> entry) {
+        return ttlNanos > 0 && System.nanoTime() - entry.createdAt > ttlNanos;
+    }
+    
+    private static class CacheEntry<V> {
+        final V value;
+        final long createdAt;
+        
+        CacheEntry(V value, long createdAt) {
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package rs.ftn.ns.cache;
+
+import rs.ftn.ns.model.Film;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Size- and TTL-bounded LRU implementation of {@link FilmResultCache}.
+ * Every hit returns a view of the cached films that copies a film the
+ * first time it is read, so callers can modify what they get without
+ * affecting other callers, and a hit costs nothing for the films a
+ * caller never looks at. A targeted
+ * invalidation checks every entry, which is cheap next to the lookups
+ * it saves at the default size.
+ */
+public class LruFilmResultCache implements FilmResultCache {
+    
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final long DEFAULT_TTL_MINUTES = 10;
+    
+    private final LruCache<List<Object>, Entry> cache;
+    
+    // Bumped on every invalidation, so a query that raced with a model
+    // change does not put its (possibly stale) result back into the cache
+    private volatile long generation;
+    
+    public LruFilmResultCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL_MINUTES, TimeUnit.MINUTES);
+    }
+    
+    /**
+     * @param maxSize Maximum number of cached results
+     * @param ttl Time a result stays valid (0 = until invalidated)
+     * @param unit Unit of the ttl
+     */
+    public LruFilmResultCache(int maxSize, long ttl, TimeUnit unit) {
+        this.cache = new LruCache<>(maxSize, ttl, unit);
+    }
+    
+    @Override
+    public List<Film> getOrLoad(String shape, List<?> parameters, Supplier<List<Film>> loader,
+                                Predicate<String> mayMatch) {
+        List<Object> key = new ArrayList<>(parameters.size() + 1);
+        key.add(shape);
+        key.addAll(parameters);
+        
+        Entry cached = cache.get(key);
+        if (cached != null) {
+            return new DetachedView(cached.films);
+        }
+        
+        long loadGeneration = generation;
+        Entry loaded = new Entry(copyOf(loader.get()), mayMatch);
+        
+        synchronized (this) {
+            if (loadGeneration == generation) {
+                cache.put(key, loaded);
+            }
+        }
+        return new DetachedView(loaded.films);
+    }
+    
+    @Override
+    public void invalidate(Collection<String> filmIds) {
+        if (filmIds.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            generation++;
+        }
+        // Checked outside the lock, since a check may look up an index
+        for (Map.Entry<List<Object>, Entry> entry : cache.snapshot().entrySet()) {
+            if (entry.getValue().isAffectedBy(filmIds)) {
+                cache.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+    
+    @Override
+    public synchronized void invalidateAll() {
+        generation++;
+        cache.clear();
+    }
+    
+    @Override
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+    
+    private static List<Film> copyOf(List<Film> films) {
+        List<Film> copy = new ArrayList<>(films.size());
+        for (Film film : films) {
+            copy.add(new Film(film));
+        }
+        return copy;
+    }
+    
+    /**
+     * Read-only view of cached films, copying each film when it is first
+     * read; the copy is kept, so reading a film again gives the same one
+     */
+    private static final class DetachedView extends AbstractList<Film> implements RandomAccess {
+        
+        private final List<Film> films;
+        private Film[] copies;
+        
+        DetachedView(List<Film> films) {
+            this.films = films;
+        }
+        
+        @Override
+        public Film get(int index) {
+            if (copies == null) {
+                copies = new Film[films.size()];
+            }
+            Film copy = copies[index];
+            if (copy == null) {
+                copy = new Film(films.get(index));
+                copies[index] = copy;
+            }
+            return copy;
+        }
+        
+        @Override
+        public int size() {
+            return films.size();
+        }
+        
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    /**
+     * Cached films, with the ids they are checked against on a change
+     */
+    private static final class Entry {
+        
+        final List<Film> films;
+        final Set<String> ids;
+        final Predicate<String> mayMatch;
+        
+        Entry(List<Film> films, Predicate<String> mayMatch) {
+            this.films = films;
+            this.ids = new HashSet<>();
+            for (Film film : films) {
+                ids.add(film.getId());
+            }
+            this.mayMatch = mayMatch;
+        }
+        
+        boolean isAffectedBy(Collection<String> filmIds) {
+            for (String filmId : filmIds) {
+                if (ids.contains(filmId) || mayMatch.test(filmId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,710 @@
+package rs.ftn.ns.fuzzy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fuzzy inference engine compiled from an FCL function block.
+ * The FCL is parsed once; membership functions, rules and the COG
+ * integration are turned into flat primitive arrays, so evaluating a
+ * film does no allocation, no map lookups and no virtual calls.
+ *
+ * Supported FCL: piecewise linear terms, rules whose conditions are
+ * joined only by AND or only by OR (with optional IS NOT and WITH),
+ * AND MIN/PROD, ACT MIN/PROD, ACCU MAX and COG defuzzification -
+ * everything film_quality.fcl uses. COG samples the output universe
+ * the way jFuzzyLogic does (1000 points).
+ *
+ * An engine keeps its working arrays in fields, so one instance must
+ * not be used by two threads at once. {@link #copy()} is cheap: copies
+ * share the compiled arrays and only get their own working arrays.
+ */
+public class CompiledFuzzyEngine {
+
+    /** Points used to sample the output universe, as in jFuzzyLogic */
+    public static final int COG_POINTS = 1000;
+
+    private static final int OP_MIN = 0;
+    private static final int OP_PROD = 1;
+
+    private final Compiled compiled;
+
+    // Working arrays, one set per engine
+    private final double[] inputs;
+    private final double[] membership;
+    private final double[] activation;
+    private final double[] aggregated;
+    private boolean fired;
+
+    private CompiledFuzzyEngine(Compiled compiled) {
+        this.compiled = compiled;
+        this.inputs = new double[compiled.inputNames.length];
+        this.membership = new double[compiled.termInput.length];
+        this.activation = new double[compiled.outputTermCount];
+        this.aggregated = new double[COG_POINTS];
+    }
+
+    /**
+     * Compiles the first function block of an FCL file
+     *
+     * @param fclPath Path to the FCL file
+     * @return The compiled engine
+     * @throws IOException If the file cannot be read
+     */
+    public static CompiledFuzzyEngine load(String fclPath) throws IOException {
+        return fromFcl(new String(Files.readAllBytes(Paths.get(fclPath)), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Compiles the first function block of FCL source
+     *
+     * @param fcl FCL source
+     * @return The compiled engine
+     * @throws IllegalArgumentException If the FCL is malformed or uses unsupported features
+     */
+    public static CompiledFuzzyEngine fromFcl(String fcl) {
+        return new CompiledFuzzyEngine(new Parser(fcl).parse());
+    }
+
+    /**
+     * @return A new engine sharing this engine's compiled rule base
+     */
+    public CompiledFuzzyEngine copy() {
+        return new CompiledFuzzyEngine(compiled);
+    }
+
+    /**
+     * @return Name of the function block
+     */
+    public String getName() {
+        return compiled.name;
+    }
+
+    /**
+     * @return Input variable names, in the order evaluate() expects them
+     */
+    public List<String> getInputNames() {
+        return Arrays.asList(compiled.inputNames.clone());
+    }
+
+    /**
+     * @param name Input variable name
+     * @return Position of the input in evaluate(), or -1 if there is no such input
+     */
+    public int inputIndex(String name) {
+        for (int i = 0; i < compiled.inputNames.length; i++) {
+            if (compiled.inputNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Corner points of the membership functions of one input: where a
+     * term starts or stops rising or falling, so where rules can start
+     * or stop firing. The output is only smooth between them.
+     *
+     * @param index Position of the input (see {@link #inputIndex(String)})
+     * @return Distinct x values of the input's term points, ascending
+     */
+    public double[] getBreakpoints(int index) {
+        Compiled c = compiled;
+        double[] points = new double[c.pointX.length];
+        int count = 0;
+        for (int t = 0; t < c.termInput.length; t++) {
+            if (c.termInput[t] == index) {
+                for (int i = c.termPointStart[t]; i < c.termPointEnd[t]; i++) {
+                    points[count++] = c.pointX[i];
+                }
+            }
+        }
+        return Arrays.stream(points, 0, count).sorted().distinct().toArray();
+    }
+
+    /**
+     * @return true if a rule fired in the last evaluation; if none did,
+     *         it returned the DEFAULT value
+     */
+    public boolean anyRuleFired() {
+        return fired;
+    }
+
+    /**
+     * Sets one input for the next {@link #evaluate()}
+     *
+     * @param index Position of the input (see {@link #inputIndex(String)})
+     * @param value Input value
+     */
+    public void setInput(int index, double value) {
+        inputs[index] = value;
+    }
+
+    /**
+     * Evaluates the rule base for the given inputs
+     *
+     * @param values Input values in the order of {@link #getInputNames()}
+     * @return Defuzzified output
+     */
+    public double evaluate(double[] values) {
+        System.arraycopy(values, 0, inputs, 0, inputs.length);
+        return evaluate();
+    }
+
+    /**
+     * Evaluates a range of films stored column by column
+     *
+     * @param columns One array per input, in the order of {@link #getInputNames()}
+     * @param out Receives the output of film i at out[i]
+     * @param from First film (inclusive)
+     * @param to Last film (exclusive)
+     */
+    public void evaluateBatch(double[][] columns, double[] out, int from, int to) {
+        int inputCount = inputs.length;
+        for (int i = from; i < to; i++) {
+            for (int k = 0; k < inputCount; k++) {
+                inputs[k] = columns[k][i];
+            }
+            out[i] = evaluate();
+        }
+    }
+    
+    /**
+     * Evaluates the rule base for the inputs set with {@link #setInput(int, double)}
+     *
+     * @return Defuzzified output, or the DEFAULT value when no rule fires
+     */
+    public double evaluate() {
+        Compiled c = compiled;
+
+        // Fuzzify
+        for (int t = 0; t < membership.length; t++) {
+            membership[t] = piecewise(c.pointX, c.pointY, c.termPointStart[t], c.termPointEnd[t],
+                                      inputs[c.termInput[t]]);
+        }
+
+        // Rules: degree of each rule, accumulated per output term (ACCU MAX)
+        Arrays.fill(activation, 0.0);
+        for (int r = 0; r < c.ruleOutputTerm.length; r++) {
+            boolean or = c.ruleIsOr[r];
+            double degree = or ? 0.0 : 1.0;
+            for (int i = c.ruleTermStart[r]; i < c.ruleTermEnd[r]; i++) {
+                double mu = membership[c.ruleTerm[i]];
+                if (c.ruleTermNot[i]) {
+                    mu = 1.0 - mu;
+                }
+                if (or) {
+                    degree = c.andOp == OP_MIN ? Math.max(degree, mu) : degree + mu - degree * mu;
+                } else {
+                    degree = c.andOp == OP_MIN ? Math.min(degree, mu) : degree * mu;
+                }
+            }
+            degree *= c.ruleWeight[r];
+            int out = c.ruleOutputTerm[r];
+            if (degree > activation[out]) {
+                activation[out] = degree;
+            }
+        }
+
+        // Aggregate the implied output terms over the pre-sampled universe.
+        // Straight element-wise loops over one term's samples, so the JIT
+        // can vectorize them; terms that did not fire are skipped.
+        double[] samples = c.outputSamples;
+        double[] mu = aggregated;
+        Arrays.fill(mu, 0.0);
+        for (int t = 0; t < activation.length; t++) {
+            double a = activation[t];
+            if (a <= 0.0) {
+                continue;
+            }
+            int offset = t * COG_POINTS;
+            if (c.actOp == OP_MIN) {
+                for (int i = 0; i < COG_POINTS; i++) {
+                    mu[i] = Math.max(mu[i], Math.min(a, samples[offset + i]));
+                }
+            } else {
+                for (int i = 0; i < COG_POINTS; i++) {
+                    mu[i] = Math.max(mu[i], a * samples[offset + i]);
+                }
+            }
+        }
+        
+        // COG
+        double sum = 0.0;
+        double weightedSum = 0.0;
+        double[] x = c.sampleX;
+        for (int i = 0; i < COG_POINTS; i++) {
+            sum += mu[i];
+            weightedSum += mu[i] * x[i];
+        }
+
+        fired = sum > 0.0;
+        if (!fired) {
+            return c.defaultValue;
+        }
+        return weightedSum / sum;
+    }
+
+    /**
+     * Piecewise linear membership, flat outside the first and last point
+     */
+    private static double piecewise(double[] px, double[] py, int start, int end, double value) {
+        if (value <= px[start]) {
+            return py[start];
+        }
+        for (int i = start + 1; i < end; i++) {
+            if (value <= px[i]) {
+                double x0 = px[i - 1];
+                double x1 = px[i];
+                if (x1 == x0) {
+                    return py[i];
+                }
+                return py[i - 1] + (py[i] - py[i - 1]) * (value - x0) / (x1 - x0);
+            }
+        }
+        return py[end - 1];
+    }
+
+    /**
+     * The compiled rule base. Never modified after parsing,
+     * so it is shared by every copy of an engine.
+     */
+    private static final class Compiled {
+        String name;
+        String[] inputNames;
+
+        // Input terms, all variables together
+        int[] termInput;
+        int[] termPointStart;
+        int[] termPointEnd;
+        double[] pointX;
+        double[] pointY;
+
+        // Rules; conditions of rule r are ruleTerm[ruleTermStart[r] .. ruleTermEnd[r])
+        int[] ruleTermStart;
+        int[] ruleTermEnd;
+        int[] ruleTerm;
+        boolean[] ruleTermNot;
+        boolean[] ruleIsOr;
+        int[] ruleOutputTerm;
+        double[] ruleWeight;
+
+        // Output term memberships, sampled: outputSamples[term * COG_POINTS + i]
+        int outputTermCount;
+        double[] sampleX;
+        double[] outputSamples;
+        double defaultValue;
+
+        int andOp = OP_MIN;
+        int actOp = OP_MIN;
+    }
+
+    /**
+     * Small recursive descent parser for the supported FCL subset
+     */
+    private static final class Parser {
+
+        private final List<String> tokens;
+        private int position;
+
+        private final List<String> inputNames = new ArrayList<>();
+        private String outputName;
+
+        // Terms as parsed: variable name, term name, points
+        private final List<String> termVariables = new ArrayList<>();
+        private final List<String> termNames = new ArrayList<>();
+        private final List<double[]> termPoints = new ArrayList<>();
+        private final List<String> outputTermNames = new ArrayList<>();
+        private final List<double[]> outputTermPoints = new ArrayList<>();
+
+        private final List<int[]> ruleTerms = new ArrayList<>();
+        private final List<boolean[]> ruleNots = new ArrayList<>();
+        private final List<Boolean> ruleOr = new ArrayList<>();
+        private final List<Integer> ruleOutputs = new ArrayList<>();
+        private final List<Double> ruleWeights = new ArrayList<>();
+
+        private final Compiled compiled = new Compiled();
+        private boolean defaultSet;
+
+        Parser(String fcl) {
+            this.tokens = tokenize(fcl);
+        }
+
+        Compiled parse() {
+            expect("FUNCTION_BLOCK");
+            compiled.name = next();
+
+            while (!peekIs("END_FUNCTION_BLOCK")) {
+                String section = next();
+                switch (section) {
+                    case "VAR_INPUT":
+                        parseVariables(true);
+                        break;
+                    case "VAR_OUTPUT":
+                        parseVariables(false);
+                        break;
+                    case "FUZZIFY":
+                        parseFuzzify();
+                        break;
+                    case "DEFUZZIFY":
+                        parseDefuzzify();
+                        break;
+                    case "RULEBLOCK":
+                        parseRuleBlock();
+                        break;
+                    default:
+                        throw error("Unexpected '" + section + "'");
+                }
+            }
+            return build();
+        }
+
+        private void parseVariables(boolean input) {
+            while (!peekIs("END_VAR")) {
+                String name = next();
+                expect(":");
+                next(); // type, always REAL
+                expect(";");
+                if (input) {
+                    inputNames.add(name);
+                } else if (outputName == null) {
+                    outputName = name;
+                } else {
+                    throw error("Only one output variable is supported");
+                }
+            }
+            expect("END_VAR");
+        }
+
+        private void parseFuzzify() {
+            String variable = next();
+            if (!inputNames.contains(variable)) {
+                throw error("Unknown input variable '" + variable + "'");
+            }
+            while (!peekIs("END_FUZZIFY")) {
+                expect("TERM");
+                termVariables.add(variable);
+                termNames.add(next());
+                expect(":=");
+                termPoints.add(parsePoints());
+            }
+            expect("END_FUZZIFY");
+        }
+
+        private void parseDefuzzify() {
+            String variable = next();
+            if (!variable.equals(outputName)) {
+                throw error("Unknown output variable '" + variable + "'");
+            }
+            while (!peekIs("END_DEFUZZIFY")) {
+                String keyword = next();
+                if (keyword.equals("TERM")) {
+                    outputTermNames.add(next());
+                    expect(":=");
+                    outputTermPoints.add(parsePoints());
+                } else if (keyword.equals("METHOD")) {
+                    expect(":");
+                    String method = next();
+                    if (!method.equals("COG")) {
+                        throw error("Unsupported defuzzification method " + method);
+                    }
+                    expect(";");
+                } else if (keyword.equals("DEFAULT")) {
+                    expect(":=");
+                    compiled.defaultValue = number(next());
+                    defaultSet = true;
+                    expect(";");
+                } else {
+                    throw error("Unsupported DEFUZZIFY setting " + keyword);
+                }
+            }
+            expect("END_DEFUZZIFY");
+        }
+
+        private void parseRuleBlock() {
+            next(); // rule block name
+            while (!peekIs("END_RULEBLOCK")) {
+                String keyword = next();
+                if (keyword.equals("AND") || keyword.equals("ACT") || keyword.equals("ACCU") || keyword.equals("OR")) {
+                    expect(":");
+                    String method = next();
+                    expect(";");
+                    setOperator(keyword, method);
+                } else if (keyword.equals("RULE")) {
+                    parseRule();
+                } else {
+                    throw error("Unexpected '" + keyword + "' in rule block");
+                }
+            }
+            expect("END_RULEBLOCK");
+        }
+
+        private void setOperator(String keyword, String method) {
+            switch (keyword + " " + method) {
+                case "AND MIN":
+                case "OR MAX":
+                    compiled.andOp = OP_MIN;
+                    break;
+                case "AND PROD":
+                case "OR ASUM":
+                    compiled.andOp = OP_PROD;
+                    break;
+                case "ACT MIN":
+                    compiled.actOp = OP_MIN;
+                    break;
+                case "ACT PROD":
+                    compiled.actOp = OP_PROD;
+                    break;
+                case "ACCU MAX":
+                    break;
+                default:
+                    throw error("Unsupported operator " + keyword + " : " + method);
+            }
+        }
+
+        private void parseRule() {
+            next(); // rule number
+            expect(":");
+            expect("IF");
+
+            List<Integer> terms = new ArrayList<>();
+            List<Boolean> nots = new ArrayList<>();
+            String connector = null;
+            while (true) {
+                String variable = next();
+                expect("IS");
+                boolean not = false;
+                if (peekIs("NOT")) {
+                    next();
+                    not = true;
+                }
+                terms.add(inputTerm(variable, next()));
+                nots.add(not);
+
+                if (peekIs("THEN")) {
+                    break;
+                }
+                String join = next();
+                if (!join.equals("AND") && !join.equals("OR")) {
+                    throw error("Expected AND, OR or THEN but found '" + join + "'");
+                }
+                if (connector != null && !connector.equals(join)) {
+                    throw error("Rules mixing AND and OR are not supported");
+                }
+                connector = join;
+            }
+
+            expect("THEN");
+            String variable = next();
+            if (!variable.equals(outputName)) {
+                throw error("Unknown output variable '" + variable + "'");
+            }
+            expect("IS");
+            int output = outputTermNames.indexOf(next());
+            if (output < 0) {
+                throw error("Unknown output term in rule");
+            }
+            double weight = 1.0;
+            if (peekIs("WITH")) {
+                next();
+                weight = number(next());
+            }
+            expect(";");
+
+            int[] termArray = new int[terms.size()];
+            boolean[] notArray = new boolean[nots.size()];
+            for (int i = 0; i < termArray.length; i++) {
+                termArray[i] = terms.get(i);
+                notArray[i] = nots.get(i);
+            }
+            ruleTerms.add(termArray);
+            ruleNots.add(notArray);
+            ruleOr.add("OR".equals(connector));
+            ruleOutputs.add(output);
+            ruleWeights.add(weight);
+        }
+
+        private int inputTerm(String variable, String term) {
+            for (int t = 0; t < termNames.size(); t++) {
+                if (termVariables.get(t).equals(variable) && termNames.get(t).equals(term)) {
+                    return t;
+                }
+            }
+            throw error("Unknown term '" + variable + " IS " + term + "'");
+        }
+
+        private double[] parsePoints() {
+            List<Double> values = new ArrayList<>();
+            while (peekIs("(")) {
+                next();
+                values.add(number(next()));
+                expect(",");
+                values.add(number(next()));
+                expect(")");
+            }
+            expect(";");
+            if (values.isEmpty()) {
+                throw error("Only piecewise linear terms are supported");
+            }
+            double[] points = new double[values.size()];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = values.get(i);
+            }
+            return points;
+        }
+
+        private Compiled build() {
+            if (outputName == null || outputTermNames.isEmpty()) {
+                throw error("No output variable");
+            }
+            if (!defaultSet) {
+                compiled.defaultValue = Double.NaN;
+            }
+            compiled.inputNames = inputNames.toArray(new String[0]);
+
+            // Input terms -> flat point arrays
+            int termCount = termNames.size();
+            compiled.termInput = new int[termCount];
+            compiled.termPointStart = new int[termCount];
+            compiled.termPointEnd = new int[termCount];
+            int pointCount = 0;
+            for (double[] points : termPoints) {
+                pointCount += points.length / 2;
+            }
+            compiled.pointX = new double[pointCount];
+            compiled.pointY = new double[pointCount];
+            int p = 0;
+            for (int t = 0; t < termCount; t++) {
+                compiled.termInput[t] = inputNames.indexOf(termVariables.get(t));
+                compiled.termPointStart[t] = p;
+                double[] points = termPoints.get(t);
+                for (int i = 0; i < points.length; i += 2) {
+                    compiled.pointX[p] = points[i];
+                    compiled.pointY[p] = points[i + 1];
+                    p++;
+                }
+                compiled.termPointEnd[t] = p;
+            }
+
+            // Rules -> flat condition arrays
+            int ruleCount = ruleTerms.size();
+            compiled.ruleTermStart = new int[ruleCount];
+            compiled.ruleTermEnd = new int[ruleCount];
+            compiled.ruleIsOr = new boolean[ruleCount];
+            compiled.ruleOutputTerm = new int[ruleCount];
+            compiled.ruleWeight = new double[ruleCount];
+            int conditionCount = 0;
+            for (int[] terms : ruleTerms) {
+                conditionCount += terms.length;
+            }
+            compiled.ruleTerm = new int[conditionCount];
+            compiled.ruleTermNot = new boolean[conditionCount];
+            int c = 0;
+            for (int r = 0; r < ruleCount; r++) {
+                compiled.ruleTermStart[r] = c;
+                int[] terms = ruleTerms.get(r);
+                boolean[] nots = ruleNots.get(r);
+                for (int i = 0; i < terms.length; i++) {
+                    compiled.ruleTerm[c] = terms[i];
+                    compiled.ruleTermNot[c] = nots[i];
+                    c++;
+                }
+                compiled.ruleTermEnd[r] = c;
+                compiled.ruleIsOr[r] = ruleOr.get(r);
+                compiled.ruleOutputTerm[r] = ruleOutputs.get(r);
+                compiled.ruleWeight[r] = ruleWeights.get(r);
+            }
+
+            // Output universe spans the output terms; sample every term once here
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (double[] points : outputTermPoints) {
+                min = Math.min(min, points[0]);
+                max = Math.max(max, points[points.length - 2]);
+            }
+            int terms = outputTermNames.size();
+            double step = (max - min) / COG_POINTS;
+            compiled.outputTermCount = terms;
+            compiled.sampleX = new double[COG_POINTS];
+            compiled.outputSamples = new double[COG_POINTS * terms];
+            for (int t = 0; t < terms; t++) {
+                double[] points = outputTermPoints.get(t);
+                double[] px = new double[points.length / 2];
+                double[] py = new double[points.length / 2];
+                for (int k = 0; k < px.length; k++) {
+                    px[k] = points[2 * k];
+                    py[k] = points[2 * k + 1];
+                }
+                for (int i = 0; i < COG_POINTS; i++) {
+                    double x = min + i * step;
+                    compiled.sampleX[i] = x;
+                    compiled.outputSamples[t * COG_POINTS + i] = piecewise(px, py, 0, px.length, x);
+                }
+            }
+            return compiled;
+        }
+
+        // Tokens
+
+        private static List<String> tokenize(String fcl) {
+            String source = fcl.replaceAll("//[^\\n]*", " ").replaceAll("(?s)\\(\\*.*?\\*\\)", " ");
+            List<String> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < source.length()) {
+                char ch = source.charAt(i);
+                if (Character.isWhitespace(ch)) {
+                    i++;
+                } else if (ch == ':' && i + 1 < source.length() && source.charAt(i + 1) == '=') {
+                    tokens.add(":=");
+                    i += 2;
+                } else if (ch == ':' || ch == ';' || ch == '(' || ch == ')' || ch == ',') {
+                    tokens.add(String.valueOf(ch));
+                    i++;
+                } else {
+                    int start = i;
+                    while (i < source.length() && !Character.isWhitespace(source.charAt(i))
+                           && ":;(),".indexOf(source.charAt(i)) < 0) {
+                        i++;
+                    }
+                    tokens.add(source.substring(start, i));
+                }
+            }
+            return tokens;
+        }
+
+        private String next() {
+            if (position >= tokens.size()) {
+                throw error("Unexpected end of FCL");
+            }
+            return tokens.get(position++);
+        }
+
+        private boolean peekIs(String token) {
+            return position < tokens.size() && tokens.get(position).equals(token);
+        }
+
+        private void expect(String token) {
+            String actual = next();
+            if (!actual.equals(token)) {
+                throw error("Expected '" + token + "' but found '" + actual + "'");
+            }
+        }
+
+        private double number(String token) {
+            try {
+                return Double.parseDouble(token);
+            } catch (NumberFormatException e) {
+                throw error("Expected a number but found '" + token + "'");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("FCL: " + message + " (token " + position + ")");
+        }
+    }
+}
@@ -4,50 +4,305 @@ import net.sourceforge.jFuzzyLogic.FIS;
 import net.sourceforge.jFuzzyLogic.FunctionBlock;
 import rs.ftn.ns.model.Film;
 
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Evaluates film quality using fuzzy logic system.
- * Uses jFuzzyLogic library with FCL rules.
+ * Uses jFuzzyLogic library with FCL rules, or {@link CompiledFuzzyEngine}
+ * in COMPILED mode; single films and batches always go through the same
+ * engine, so they get the same score.
+ * 
+ * An evaluator can be shared by any number of threads: each thread
+ * scores with its own engine or function block (see {@link FuzzyRuleBase}),
+ * so there is no locking and no shared mutable state.
+ * 
+ * The rules can be replaced while the evaluator is in use, with
+ * {@link #reload()} or by watching the FCL file ({@link #watchRuleFile()}).
+ * The new rules are compiled first and then swapped in as a whole, so
+ * a call that already started finishes on the old rules and a file
+ * that does not compile leaves the old rules in place.
+ * 
+ * In LOOKUP_GRID mode the grid for new rules is read or computed on a
+ * background thread; until it is ready films are scored by full inference.
  */
-public class FilmQualityEvaluator {
+public class FilmQualityEvaluator implements AutoCloseable {
     
-    private FIS fis;
-    private FunctionBlock functionBlock;
     private static final String FCL_FILE_PATH = "src/main/resources/fuzzy/film_quality.fcl";
+    private static final String GRID_DIRECTORY = "target/fuzzy-grids";
+    private static final double DEFAULT_GRID_STEP = 0.5;
+    
+    // The FCL inputs, in the order scores are passed in
+    private static final String[] INPUT_NAMES = {
+        "direction", "acting", "screenplay", "visualEffects", "culturalSignificance"
+    };
+    
+    // Grid lookup inputs, per thread
+    private static final ThreadLocal<double[]> LOOKUP_INPUT =
+            ThreadLocal.withInitial(() -> new double[INPUT_NAMES.length]);
+    
+    // Batches up to this size are scored on the calling thread
+    private static final int BATCH_SPLIT_SIZE = 1024;
+    
+    // Editors often save a file in several writes; wait this long for the last one
+    private static final long WATCH_SETTLE_MS = 200;
+    
+    private final Path fclFile;
+    private final ScoringMode scoringMode;
+    private final double gridStep;
+    
+    // Current rules, replaced as a whole on reload
+    private final AtomicReference<ActiveRules> activeRules = new AtomicReference<>();
+    private final Object reloadLock = new Object();
+    private volatile Exception lastReloadError;
+    
+    private WatchService watchService;
+    private Thread watcherThread;
     
     /**
      * Constructor - loads the fuzzy system
      */
     public FilmQualityEvaluator() {
-        loadFuzzySystem();
+        this(ScoringMode.INFERENCE);
+    }
+    
+    /**
+     * Constructor - loads the fuzzy system for the given scoring mode
+     * 
+     * @param scoringMode jFuzzyLogic or compiled inference, or precomputed lookup grid
+     */
+    public FilmQualityEvaluator(ScoringMode scoringMode) {
+        this(scoringMode, DEFAULT_GRID_STEP);
+    }
+    
+    /**
+     * Constructor - loads the fuzzy system with a custom lookup grid step
+     * 
+     * @param scoringMode jFuzzyLogic or compiled inference, or precomputed lookup grid
+     * @param gridStep Distance between grid points (only used in LOOKUP_GRID mode)
+     */
+    public FilmQualityEvaluator(ScoringMode scoringMode, double gridStep) {
+        this(Paths.get(FCL_FILE_PATH), scoringMode, gridStep);
+    }
+    
+    /**
+     * Constructor - loads the fuzzy system from a custom FCL file
+     * 
+     * @param fclFile FCL file with the film_quality function block
+     * @param scoringMode jFuzzyLogic or compiled inference, or precomputed lookup grid
+     * @param gridStep Distance between grid points (only used in LOOKUP_GRID mode)
+     * @throws IllegalStateException If the rules cannot be loaded
+     */
+    public FilmQualityEvaluator(Path fclFile, ScoringMode scoringMode, double gridStep) {
+        this.fclFile = fclFile;
+        this.scoringMode = scoringMode;
+        this.gridStep = gridStep;
+        ActiveRules loaded = loadFuzzySystem();
+        activeRules.set(loaded);
+        startLookupGrid(loaded);
+        System.out.println("Fuzzy system loaded successfully!");
     }
     
     /**
-     * Loads the fuzzy inference system from FCL file
+     * Loads the fuzzy inference system from FCL file. Nothing is
+     * changed here, the caller decides whether to use the result.
      */
-    private void loadFuzzySystem() {
+    private ActiveRules loadFuzzySystem() {
         try {
-            // Load FCL file
-            fis = FIS.load(FCL_FILE_PATH, true);
-            
-            if (fis == null) {
-                throw new RuntimeException("Could not load fuzzy system from: " + FCL_FILE_PATH);
-            }
+            // Load FCL file; shared with every evaluator using the same rules
+            FuzzyRuleBase ruleBase = FuzzyRuleBase.load(fclFile.toString());
             
-            // Get the function block
-            functionBlock = fis.getFunctionBlock("film_quality_assessment");
+            // Parse it for this thread right away, so errors show up here
+            ruleBase.functionBlock();
             
-            if (functionBlock == null) {
-                throw new RuntimeException("Function block 'film_quality_assessment' not found");
+            // Rules the compiled engine does not support are scored by jFuzzyLogic
+            // alone; the lookup grid cannot be sampled without it
+            int[] inputOrder = null;
+            if (ruleBase.isCompilable()) {
+                inputOrder = inputOrder(ruleBase);
+            } else {
+                System.out.println("Fuzzy rules outside the compiled subset, scoring with jFuzzyLogic");
             }
             
-            System.out.println("Fuzzy system loaded successfully!");
+            // Filled in by startLookupGrid once the rules are in use
+            CompletableFuture<QualityLookupGrid> lookupGrid = null;
+            if (scoringMode == ScoringMode.LOOKUP_GRID && inputOrder != null) {
+                lookupGrid = new CompletableFuture<>();
+            }
+            return new ActiveRules(ruleBase, inputOrder, lookupGrid);
             
         } catch (Exception e) {
-            System.err.println("Error loading fuzzy system: " + e.getMessage());
-            e.printStackTrace();
+            throw new IllegalStateException("Error loading fuzzy system from " + fclFile + ": " + e.getMessage(), e);
         }
     }
     
+    /**
+     * Reads the FCL file again and switches to its rules. Calls that are
+     * already running finish on the previous rules.
+     * 
+     * @return The rules now in use
+     * @throws IllegalStateException If the file cannot be loaded; the
+     *         previous rules stay active
+     */
+    public FuzzyRuleBase reload() {
+        synchronized (reloadLock) {
+            ActiveRules current = activeRules.get();
+            ActiveRules loaded;
+            try {
+                loaded = loadFuzzySystem();
+            } catch (IllegalStateException e) {
+                lastReloadError = e;
+                throw e;
+            }
+            lastReloadError = null;
+            if (loaded.ruleBase != current.ruleBase) {
+                activeRules.set(loaded);
+                startLookupGrid(loaded);
+                System.out.println("Fuzzy rules reloaded (" + loaded.ruleBase.getHash().substring(0, 12) + ")");
+            }
+            return loaded.ruleBase;
+        }
+    }
+    
+    /**
+     * Starts reloading the rules whenever the FCL file changes. Reloads
+     * run on a background thread; a failed one is printed and kept in
+     * {@link #getLastReloadError()}. Does nothing if already watching.
+     * 
+     * @throws IOException If the file's directory cannot be watched
+     */
+    public synchronized void watchRuleFile() throws IOException {
+        if (watcherThread != null) {
+            return;
+        }
+        Path directory = fclFile.toAbsolutePath().getParent();
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        
+        watcherThread = new Thread(() -> watch(watchService), "fcl-watcher-" + fclFile.getFileName());
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+    
+    private void watch(WatchService watcher) {
+        Path fileName = fclFile.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = touches(key, fileName);
+                
+                // Collect the rest of the writes before reading the file
+                while ((key = watcher.poll(WATCH_SETTLE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= touches(key, fileName);
+                }
+                
+                if (changed) {
+                    try {
+                        reload();
+                    } catch (IllegalStateException e) {
+                        System.err.println("Keeping previous fuzzy rules: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+    
+    private static boolean touches(WatchKey key, Path fileName) {
+        boolean touched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            touched |= fileName.equals(event.context());
+        }
+        key.reset();
+        return touched;
+    }
+    
+    /**
+     * Stops watching the FCL file. The evaluator can still be used.
+     */
+    @Override
+    public synchronized void close() {
+        if (watcherThread == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Error closing FCL watcher: " + e.getMessage());
+        }
+        watcherThread.interrupt();
+        watcherThread = null;
+        watchService = null;
+    }
+    
+    /**
+     * Reads or computes the lookup grid of newly active rules on a
+     * background thread. Building one takes up to a minute, so neither
+     * the constructor nor a reload waits for it.
+     */
+    private void startLookupGrid(ActiveRules rules) {
+        if (rules.lookupGrid == null) {
+            return;
+        }
+        Thread builder = new Thread(() -> {
+            try {
+                rules.lookupGrid.complete(loadLookupGrid(rules.ruleBase));
+            } catch (Exception e) {
+                System.err.println("Error loading quality grid, scoring by inference: " + e.getMessage());
+                rules.lookupGrid.completeExceptionally(e);
+            }
+        }, "quality-grid-" + rules.ruleBase.getHash().substring(0, 12));
+        builder.setDaemon(true);
+        builder.start();
+    }
+    
+    /**
+     * Reads the lookup grid for the given rules, or computes it
+     */
+    private QualityLookupGrid loadLookupGrid(FuzzyRuleBase ruleBase) throws IOException {
+        long start = System.nanoTime();
+        QualityLookupGrid lookupGrid = QualityLookupGrid.loadOrBuild(ruleBase, gridStep, Paths.get(GRID_DIRECTORY));
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        
+        System.out.println("Quality grid " + (lookupGrid.isLoadedFromDisk() ? "loaded" : "computed") +
+                           " in " + ms + " ms (step " + gridStep + ", " +
+                           lookupGrid.getSizeInBytes() / 1024 + " KB)");
+        System.out.printf("Quality grid error vs full inference: mean %.4f, max %.4f%n",
+                          lookupGrid.measureMeanError(ruleBase, 2000, 42),
+                          lookupGrid.measureMaxError(ruleBase, 2000, 42));
+        return lookupGrid;
+    }
+    
+    private static int[] inputOrder(FuzzyRuleBase ruleBase) {
+        CompiledFuzzyEngine engine = ruleBase.newCompiledEngine();
+        if (engine.getInputNames().size() != INPUT_NAMES.length) {
+            throw new IllegalArgumentException("Expected inputs " + String.join(", ", INPUT_NAMES) +
+                                               " but found " + engine.getInputNames());
+        }
+        int[] order = new int[INPUT_NAMES.length];
+        for (int i = 0; i < INPUT_NAMES.length; i++) {
+            order[i] = engine.inputIndex(INPUT_NAMES[i]);
+            if (order[i] < 0) {
+                throw new IllegalArgumentException("Missing input variable " + INPUT_NAMES[i]);
+            }
+        }
+        return order;
+    }
+    
     /**
      * Evaluates the quality of a film using fuzzy logic
      * 
@@ -55,20 +310,8 @@ public class FilmQualityEvaluator {
      * @return Quality score (0-10)
      */
     public double evaluateFilm(Film film) {
-        // Set input variables
-        functionBlock.setVariable("direction", film.getDirectionScore());
-        functionBlock.setVariable("acting", film.getActingScore());
-        functionBlock.setVariable("screenplay", film.getScreenplayScore());
-        functionBlock.setVariable("visualEffects", film.getVisualEffectsScore());
-        functionBlock.setVariable("culturalSignificance", film.getCulturalSignificanceScore());
-        
-        // Evaluate the fuzzy system
-        functionBlock.evaluate();
-        
-        // Get output
-        double quality = functionBlock.getVariable("quality").getValue();
-        
-        return quality;
+        return evaluateFilm(film.getDirectionScore(), film.getActingScore(), film.getScreenplayScore(),
+                            film.getVisualEffectsScore(), film.getCulturalSignificanceScore());
     }
     
     /**
@@ -83,6 +326,39 @@ public class FilmQualityEvaluator {
      */
     public double evaluateFilm(double direction, double acting, double screenplay, 
                                double visualEffects, double culturalSignificance) {
+        ActiveRules rules = activeRules.get();
+        int[] inputOrder = rules.inputOrder;
+        QualityLookupGrid lookupGrid = rules.readyGrid();
+        if (lookupGrid != null) {
+            double[] input = LOOKUP_INPUT.get();
+            input[inputOrder[0]] = direction;
+            input[inputOrder[1]] = acting;
+            input[inputOrder[2]] = screenplay;
+            input[inputOrder[3]] = visualEffects;
+            input[inputOrder[4]] = culturalSignificance;
+            return lookupGrid.lookup(input);
+        }
+        if (scoringMode == ScoringMode.COMPILED && inputOrder != null) {
+            // This thread's own engine
+            CompiledFuzzyEngine engine = rules.ruleBase.compiledEngine();
+            engine.setInput(inputOrder[0], direction);
+            engine.setInput(inputOrder[1], acting);
+            engine.setInput(inputOrder[2], screenplay);
+            engine.setInput(inputOrder[3], visualEffects);
+            engine.setInput(inputOrder[4], culturalSignificance);
+            return engine.evaluate();
+        }
+        return infer(rules.ruleBase, direction, acting, screenplay, visualEffects, culturalSignificance);
+    }
+    
+    /**
+     * Scores one film with jFuzzyLogic
+     */
+    private static double infer(FuzzyRuleBase ruleBase, double direction, double acting, double screenplay,
+                                double visualEffects, double culturalSignificance) {
+        // This thread's own function block
+        FunctionBlock functionBlock = ruleBase.functionBlock();
+        
         // Set input variables
         functionBlock.setVariable("direction", direction);
         functionBlock.setVariable("acting", acting);
@@ -99,6 +375,100 @@ public class FilmQualityEvaluator {
         return quality;
     }
     
+    /**
+     * Scores many films at once from parallel score arrays, with the same
+     * engine as {@link #evaluateFilm(Film)}: jFuzzyLogic, the compiled
+     * engine in COMPILED mode, or the lookup grid once it is ready.
+     * Large batches are split across cores with fork-join.
+     * 
+     * @param direction Direction scores
+     * @param acting Acting scores
+     * @param screenplay Screenplay scores
+     * @param visualEffects Visual effects scores
+     * @param culturalSignificance Cultural significance scores
+     * @param quality Receives the quality score of film i at quality[i]
+     */
+    public void evaluateBatch(double[] direction, double[] acting, double[] screenplay,
+                              double[] visualEffects, double[] culturalSignificance, double[] quality) {
+        int size = quality.length;
+        if (direction.length != size || acting.length != size || screenplay.length != size
+                || visualEffects.length != size || culturalSignificance.length != size) {
+            throw new IllegalArgumentException("All score arrays must have the same length");
+        }
+        
+        ActiveRules rules = activeRules.get();
+        int[] inputOrder = rules.inputOrder;
+        double[][] columns = null;
+        if (inputOrder != null) {
+            columns = new double[inputOrder.length][];
+            columns[inputOrder[0]] = direction;
+            columns[inputOrder[1]] = acting;
+            columns[inputOrder[2]] = screenplay;
+            columns[inputOrder[3]] = visualEffects;
+            columns[inputOrder[4]] = culturalSignificance;
+        }
+        
+        QualityLookupGrid lookupGrid = rules.readyGrid();
+        if (lookupGrid != null) {
+            double[] input = LOOKUP_INPUT.get();
+            for (int i = 0; i < size; i++) {
+                for (int k = 0; k < columns.length; k++) {
+                    input[k] = columns[k][i];
+                }
+                quality[i] = lookupGrid.lookup(input);
+            }
+            return;
+        }
+        
+        BatchSlice slice;
+        if (scoringMode == ScoringMode.COMPILED && columns != null) {
+            // Every slice gets its own copy of the engine
+            CompiledFuzzyEngine engine = rules.ruleBase.newCompiledEngine();
+            double[][] inputs = columns;
+            slice = (from, to) -> engine.copy().evaluateBatch(inputs, quality, from, to);
+        } else {
+            slice = (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    quality[i] = infer(rules.ruleBase, direction[i], acting[i], screenplay[i], visualEffects[i],
+                                       culturalSignificance[i]);
+                }
+            };
+        }
+        if (size <= BATCH_SPLIT_SIZE) {
+            slice.score(0, size);
+        } else {
+            ForkJoinPool.commonPool().invoke(new BatchTask(slice, 0, size));
+        }
+    }
+    
+    /**
+     * Scores a list of films at once, see
+     * {@link #evaluateBatch(double[], double[], double[], double[], double[], double[])}
+     * 
+     * @param films The films to evaluate
+     * @return Quality score of each film, in list order
+     */
+    public double[] evaluateBatch(List<Film> films) {
+        int size = films.size();
+        double[] direction = new double[size];
+        double[] acting = new double[size];
+        double[] screenplay = new double[size];
+        double[] visualEffects = new double[size];
+        double[] culturalSignificance = new double[size];
+        for (int i = 0; i < size; i++) {
+            Film film = films.get(i);
+            direction[i] = film.getDirectionScore();
+            acting[i] = film.getActingScore();
+            screenplay[i] = film.getScreenplayScore();
+            visualEffects[i] = film.getVisualEffectsScore();
+            culturalSignificance[i] = film.getCulturalSignificanceScore();
+        }
+        
+        double[] quality = new double[size];
+        evaluateBatch(direction, acting, screenplay, visualEffects, culturalSignificance, quality);
+        return quality;
+    }
+    
     /**
      * Evaluates film and returns quality category
      * 
@@ -157,12 +527,68 @@ public class FilmQualityEvaluator {
     }
     
     /**
-     * Gets the fuzzy inference system
+     * Gets the fuzzy inference system of the calling thread
      * 
      * @return FIS object
      */
     public FIS getFIS() {
-        return fis;
+        return activeRules.get().ruleBase.getFIS();
+    }
+    
+    /**
+     * Gets the scoring mode
+     * 
+     * @return INFERENCE or LOOKUP_GRID
+     */
+    public ScoringMode getScoringMode() {
+        return scoringMode;
+    }
+    
+    /**
+     * Gets the precomputed quality grid
+     * 
+     * @return The grid, or null outside LOOKUP_GRID mode and while it is
+     *         still being read or computed
+     */
+    public QualityLookupGrid getLookupGrid() {
+        return activeRules.get().readyGrid();
+    }
+    
+    /**
+     * Waits for the quality grid of the current rules
+     * 
+     * @return The grid, or null outside LOOKUP_GRID mode
+     * @throws InterruptedException If interrupted while waiting
+     * @throws IllegalStateException If the grid could not be read or computed
+     */
+    public QualityLookupGrid awaitLookupGrid() throws InterruptedException {
+        CompletableFuture<QualityLookupGrid> lookupGrid = activeRules.get().lookupGrid;
+        if (lookupGrid == null) {
+            return null;
+        }
+        try {
+            return lookupGrid.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Quality grid not available: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+    
+    /**
+     * Gets the rules this evaluator scores with
+     * 
+     * @return The rule base
+     */
+    public FuzzyRuleBase getRuleBase() {
+        return activeRules.get().ruleBase;
+    }
+    
+    /**
+     * Gets the error of the last failed reload
+     * 
+     * @return The error, or null if the last reload worked
+     */
+    public Exception getLastReloadError() {
+        return lastReloadError;
     }
     
 //    /**
@@ -173,4 +599,71 @@ public class FilmQualityEvaluator {
 //            fis.chart();
 //        }
 //    }
-}
\ No newline at end of file
+    
+    /**
+     * Everything scoring needs from one version of the rules
+     */
+    private static final class ActiveRules {
+        
+        final FuzzyRuleBase ruleBase;
+        
+        // Position of direction, acting, screenplay, visualEffects and
+        // culturalSignificance among the FCL inputs; null if the rules
+        // cannot be compiled
+        final int[] inputOrder;
+        
+        // Only set in LOOKUP_GRID mode, completed by the grid's builder thread
+        final CompletableFuture<QualityLookupGrid> lookupGrid;
+        
+        ActiveRules(FuzzyRuleBase ruleBase, int[] inputOrder, CompletableFuture<QualityLookupGrid> lookupGrid) {
+            this.ruleBase = ruleBase;
+            this.inputOrder = inputOrder;
+            this.lookupGrid = lookupGrid;
+        }
+        
+        /**
+         * @return The lookup grid if it is ready, otherwise null
+         */
+        QualityLookupGrid readyGrid() {
+            if (lookupGrid == null || !lookupGrid.isDone() || lookupGrid.isCompletedExceptionally()) {
+                return null;
+            }
+            return lookupGrid.join();
+        }
+    }
+    
+    /**
+     * Scores the films from (inclusive) to (exclusive) of a batch
+     */
+    private interface BatchSlice {
+        void score(int from, int to);
+    }
+    
+    /**
+     * Scores one slice of a batch, halving it until it is small enough.
+     */
+    private static class BatchTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final BatchSlice slice;
+        private final int from;
+        private final int to;
+        
+        BatchTask(BatchSlice slice, int from, int to) {
+            this.slice = slice;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SPLIT_SIZE) {
+                slice.score(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(slice, from, middle), new BatchTask(slice, middle, to));
+        }
+    }
+}
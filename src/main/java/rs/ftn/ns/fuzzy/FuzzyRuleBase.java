@@ -0,0 +1,185 @@
+package rs.ftn.ns.fuzzy;
+
+import net.sourceforge.jFuzzyLogic.FIS;
+import net.sourceforge.jFuzzyLogic.FunctionBlock;
+import rs.ftn.ns.util.Checksums;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One version of the fuzzy rules: the FCL text, its hash and the
+ * engines built from it.
+ *
+ * jFuzzyLogic's FunctionBlock keeps its inputs and outputs in mutable
+ * variables, so it cannot be shared between threads. Every thread gets
+ * its own FIS, parsed once per thread from the FCL text kept here; the
+ * file itself is read and hashed only once. Rule bases are shared by
+ * FCL content, so evaluators over the same rules share the per-thread
+ * function blocks as well.
+ *
+ * The rules are compiled for {@link CompiledFuzzyEngine} on first use.
+ * FCL outside the subset it supports is still loaded and scored by
+ * jFuzzyLogic, see {@link #isCompilable()}.
+ *
+ * The shared rule bases are only weakly held: once no evaluator scores
+ * with a version any more (e.g. after a reload), it is garbage collected
+ * together with its engines and the per-thread function blocks.
+ */
+public final class FuzzyRuleBase {
+
+    private static final Map<String, WeakReference<FuzzyRuleBase>> BY_HASH = new ConcurrentHashMap<>();
+
+    private final String fcl;
+    private final String hash;
+    private final ThreadLocal<FIS> threadFis;
+    private final ThreadLocal<CompiledFuzzyEngine> threadEngine;
+
+    // Set by compile(): the engine, or why the rules cannot be compiled
+    private volatile boolean compiled;
+    private CompiledFuzzyEngine compiledEngine;
+    private String notCompilable;
+
+    private FuzzyRuleBase(String fcl, String hash) {
+        this.fcl = fcl;
+        this.hash = hash;
+        this.threadFis = ThreadLocal.withInitial(this::parse);
+        this.threadEngine = ThreadLocal.withInitial(this::newCompiledEngine);
+    }
+
+    /**
+     * Loads the rules from an FCL file
+     *
+     * @param fclPath Path to the FCL file
+     * @return The rule base for the file's current content
+     * @throws IOException If the file cannot be read
+     */
+    public static FuzzyRuleBase load(String fclPath) throws IOException {
+        return fromFcl(new String(Files.readAllBytes(Paths.get(fclPath)), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Gets the rule base for FCL text. The same text always gives the
+     * same rule base.
+     *
+     * @param fcl FCL source
+     * @return The rule base
+     */
+    public static FuzzyRuleBase fromFcl(String fcl) {
+        String hash = Checksums.sha256(fcl);
+        FuzzyRuleBase ruleBase = get(hash);
+        if (ruleBase == null) {
+            // Compiling outside the map keeps a bad FCL from blocking it
+            FuzzyRuleBase created = new FuzzyRuleBase(fcl, hash);
+            synchronized (BY_HASH) {
+                ruleBase = get(hash);
+                if (ruleBase == null) {
+                    BY_HASH.values().removeIf(collected -> collected.get() == null);
+                    BY_HASH.put(hash, new WeakReference<>(created));
+                    ruleBase = created;
+                }
+            }
+        }
+        return ruleBase;
+    }
+
+    private static FuzzyRuleBase get(String hash) {
+        WeakReference<FuzzyRuleBase> shared = BY_HASH.get(hash);
+        return shared != null ? shared.get() : null;
+    }
+
+    /**
+     * @return The FCL source of these rules
+     */
+    public String getFcl() {
+        return fcl;
+    }
+
+    /**
+     * @return SHA-256 of the FCL source, identifies the rule version
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return Name of the function block
+     */
+    public String getFunctionBlockName() {
+        return functionBlock().getName();
+    }
+
+    /**
+     * @return The calling thread's FIS for these rules
+     */
+    public FIS getFIS() {
+        return threadFis.get();
+    }
+
+    /**
+     * @return The calling thread's function block; never share it with another thread
+     */
+    public FunctionBlock functionBlock() {
+        return threadFis.get().getFunctionBlock(null);
+    }
+
+    /**
+     * Tells whether the rules stay within what {@link CompiledFuzzyEngine}
+     * supports (piecewise linear terms, COG, rules joined by only AND or
+     * only OR). Compiles them on the first call.
+     *
+     * @return false if only jFuzzyLogic can score these rules
+     */
+    public boolean isCompilable() {
+        return compile() != null;
+    }
+
+    /**
+     * @return A new compiled engine for these rules, for use by one thread
+     * @throws IllegalStateException If the rules cannot be compiled, see {@link #isCompilable()}
+     */
+    public CompiledFuzzyEngine newCompiledEngine() {
+        CompiledFuzzyEngine engine = compile();
+        if (engine == null) {
+            throw new IllegalStateException("Rules " + hash.substring(0, 12) + " cannot be compiled: " + notCompilable);
+        }
+        return engine.copy();
+    }
+
+    /**
+     * @return The calling thread's compiled engine; never share it with another thread
+     * @throws IllegalStateException If the rules cannot be compiled, see {@link #isCompilable()}
+     */
+    public CompiledFuzzyEngine compiledEngine() {
+        return threadEngine.get();
+    }
+
+    private CompiledFuzzyEngine compile() {
+        if (!compiled) {
+            synchronized (this) {
+                if (!compiled) {
+                    try {
+                        compiledEngine = CompiledFuzzyEngine.fromFcl(fcl);
+                    } catch (IllegalArgumentException e) {
+                        notCompilable = e.getMessage();
+                    }
+                    compiled = true;
+                }
+            }
+        }
+        return compiledEngine;
+    }
+
+    private FIS parse() {
+        FIS fis = FIS.createFromString(fcl, true);
+        if (fis == null || fis.getFunctionBlock(null) == null) {
+            throw new IllegalStateException("Rules " + hash.substring(0, 12) + " could not be loaded");
+        }
+        return fis;
+    }
+}
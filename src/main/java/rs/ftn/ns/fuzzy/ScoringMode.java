@@ -0,0 +1,29 @@
+package rs.ftn.ns.fuzzy;
+
+/**
+ * How {@link FilmQualityEvaluator} computes quality scores.
+ */
+public enum ScoringMode {
+    
+    /**
+     * Runs the full fuzzy inference for every film, with jFuzzyLogic.
+     */
+    INFERENCE,
+    
+    /**
+     * Runs the full fuzzy inference for every film, with
+     * {@link CompiledFuzzyEngine}: no allocation and no lookups by name.
+     * Opt-in, as its scores have not yet been measured against jFuzzyLogic
+     * 3.0 (see CompiledFuzzyEngineTest). Rules it cannot compile are
+     * scored by jFuzzyLogic.
+     */
+    COMPILED,
+    
+    /**
+     * Looks the score up in a precomputed {@link QualityLookupGrid},
+     * interpolating between grid points where the rules are smooth.
+     * Faster, within about 0.35 points of full inference. Scores are
+     * inferred until the grid has been read or computed.
+     */
+    LOOKUP_GRID
+}
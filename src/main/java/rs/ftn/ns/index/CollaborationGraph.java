@@ -0,0 +1,578 @@
+package rs.ftn.ns.index;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+import rs.ftn.ns.cache.CacheStats;
+import rs.ftn.ns.cache.LruCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * Films and people as one undirected graph, over the person-film links
+ * (directedBy, hasActor, writtenBy, ...) and person-person workedWith.
+ *
+ * Nodes are dictionary-encoded to ordinals (sorted by IRI) and edges are
+ * kept in CSR form: the neighbours of node i are
+ * neighbours[offsets[i] .. offsets[i + 1]), with the relation of each
+ * edge alongside. Traversals are plain array walks, and their results are
+ * kept in an LRU cache, so hot lookups ("films near Nolan") are answered
+ * without walking the graph again.
+ *
+ * A graph is immutable. When the model changes a new one is built, or
+ * derived from this one when only a few nodes changed, with an empty
+ * cache, see OntologyManager.getCollaborationGraph().
+ */
+public final class CollaborationGraph {
+
+    /**
+     * Relations the graph is built from
+     */
+    public enum Relation {
+        DIRECTED_BY("directedBy", true),
+        HAS_ACTOR("hasActor", true),
+        WRITTEN_BY("writtenBy", true),
+        CINEMATOGRAPHY_BY("cinematographyBy", true),
+        PRODUCED_BY("producedBy", true),
+        WORKED_WITH("workedWith", false);
+
+        private final String property;
+        private final boolean filmToPerson;
+
+        Relation(String property, boolean filmToPerson) {
+            this.property = property;
+            this.filmToPerson = filmToPerson;
+        }
+
+        /**
+         * @return Local name of the ontology property
+         */
+        public String getProperty() {
+            return property;
+        }
+
+        /**
+         * @return true for film-to-person links, false for person-to-person
+         */
+        public boolean isFilmToPerson() {
+            return filmToPerson;
+        }
+    }
+
+    private static final Relation[] RELATIONS = Relation.values();
+    private static final int CACHE_SIZE = 1024;
+
+    private final long modelVersion;
+
+    // Per node, by ordinal
+    private final String[] iris;
+    private final String[] ids;
+    private final String[] names;
+    private final boolean[] films;
+    private final Map<String, Integer> ordinals;
+
+    // CSR adjacency, both directions of every edge
+    private final int[] offsets;
+    private final int[] neighbours;
+    private final byte[] relations;
+
+    private final LruCache<List<Object>, List<?>> traversals = new LruCache<>(CACHE_SIZE);
+
+    private CollaborationGraph(long modelVersion, String[] iris, String[] ids, String[] names, boolean[] films,
+                               int[] offsets, int[] neighbours, byte[] relations) {
+        this.modelVersion = modelVersion;
+        this.iris = iris;
+        this.ids = ids;
+        this.names = names;
+        this.films = films;
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.relations = relations;
+        this.ordinals = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            ordinals.put(ids[i], i);
+        }
+    }
+
+    /**
+     * Builds the graph with one scan per relation.
+     * The caller must hold a read lock (or transaction) on the graph.
+     *
+     * @param graph Graph to read
+     * @param dataNs Namespace of the individuals
+     * @param schemaNs Namespace of the ontology properties
+     * @param modelVersion Model version the graph is at
+     * @return The new collaboration graph
+     */
+    public static CollaborationGraph build(Graph graph, String dataNs, String schemaNs, long modelVersion) {
+        // Edges as IRI pairs first, so nodes can be numbered in IRI order
+        List<String[]> edges = new ArrayList<>();
+        List<Relation> edgeRelations = new ArrayList<>();
+        TreeSet<String> iris = new TreeSet<>();
+        for (Relation relation : RELATIONS) {
+            Node property = NodeFactory.createURI(schemaNs + relation.property);
+            readEdges(graph.find(Node.ANY, property, Node.ANY), relation, null, edges, edgeRelations, iris);
+        }
+
+        String[] nodeIris = iris.toArray(new String[0]);
+        Map<String, Integer> ordinals = new HashMap<>(nodeIris.length * 2);
+        for (int ordinal = 0; ordinal < nodeIris.length; ordinal++) {
+            ordinals.put(nodeIris[ordinal], ordinal);
+        }
+        int[] from = new int[edges.size()];
+        int[] to = new int[edges.size()];
+        byte[] relations = new byte[edges.size()];
+        for (int e = 0; e < edges.size(); e++) {
+            from[e] = ordinals.get(edges.get(e)[0]);
+            to[e] = ordinals.get(edges.get(e)[1]);
+            relations[e] = (byte) edgeRelations.get(e).ordinal();
+        }
+        return assemble(graph, dataNs, schemaNs, modelVersion, nodeIris, from, to, relations, edges.size(), null, null);
+    }
+
+    /**
+     * Builds the graph for the model after some films and people changed.
+     * Only the links of those are read from the graph; every other link,
+     * name and node is taken from this graph. Gives the same graph as
+     * {@link #build}, up to the order of each node's neighbours.
+     * The caller must hold a read lock (or transaction) on the graph.
+     *
+     * @param graph Graph after the change
+     * @param dataNs Namespace of the individuals
+     * @param schemaNs Namespace of the ontology properties
+     * @param subjects IRIs of the films and people that were added, changed or removed
+     * @param modelVersion Model version the graph is at
+     * @return The new collaboration graph
+     */
+    public CollaborationGraph update(Graph graph, String dataNs, String schemaNs,
+                                     Collection<String> subjects, long modelVersion) {
+        Set<String> changed = new HashSet<>(subjects);
+        boolean[] changedNodes = new boolean[iris.length];
+        for (String iri : changed) {
+            int node = Arrays.binarySearch(iris, iri);
+            if (node >= 0) {
+                changedNodes[node] = true;
+            }
+        }
+
+        // Links of the changed nodes, from the graph
+        List<String[]> readEdges = new ArrayList<>();
+        List<Relation> readRelations = new ArrayList<>();
+        TreeSet<String> readNodes = new TreeSet<>();
+        for (Relation relation : RELATIONS) {
+            Node property = NodeFactory.createURI(schemaNs + relation.property);
+            for (String iri : changed) {
+                Node node = NodeFactory.createURI(iri);
+                readEdges(graph.find(node, property, Node.ANY), relation, null, readEdges, readRelations, readNodes);
+                readEdges(graph.find(Node.ANY, property, node), relation, changed, readEdges, readRelations, readNodes);
+            }
+        }
+
+        // Nodes of this graph merged with the new ones, in IRI order
+        List<String> added = new ArrayList<>();
+        for (String iri : readNodes) {
+            if (Arrays.binarySearch(iris, iri) < 0) {
+                added.add(iri);
+            }
+        }
+        String[] nodeIris = new String[iris.length + added.size()];
+        int[] oldOrdinals = new int[nodeIris.length];
+        int[] newOrdinals = new int[iris.length];
+        int next = 0;
+        int size = 0;
+        for (int old = 0; old < iris.length; old++) {
+            while (next < added.size() && added.get(next).compareTo(iris[old]) < 0) {
+                oldOrdinals[size] = -1;
+                nodeIris[size++] = added.get(next++);
+            }
+            oldOrdinals[size] = changedNodes[old] ? -1 : old;
+            newOrdinals[old] = size;
+            nodeIris[size++] = iris[old];
+        }
+        while (next < added.size()) {
+            oldOrdinals[size] = -1;
+            nodeIris[size++] = added.get(next++);
+        }
+
+        // Links between unchanged nodes, each once (a self-link is in the list twice),
+        // then the links read
+        int capacity = neighbours.length / 2 + readEdges.size();
+        int[] from = new int[capacity];
+        int[] to = new int[capacity];
+        byte[] edgeRelations = new byte[capacity];
+        int edges = 0;
+        for (int a = 0; a < iris.length; a++) {
+            if (changedNodes[a]) {
+                continue;
+            }
+            boolean secondHalf = false;
+            for (int e = offsets[a]; e < offsets[a + 1]; e++) {
+                int b = neighbours[e];
+                if (b == a) {
+                    secondHalf = !secondHalf;
+                    if (!secondHalf) {
+                        continue;
+                    }
+                } else if (b < a || changedNodes[b]) {
+                    continue;
+                }
+                from[edges] = newOrdinals[a];
+                to[edges] = newOrdinals[b];
+                edgeRelations[edges++] = relations[e];
+            }
+        }
+        for (int e = 0; e < readEdges.size(); e++) {
+            from[edges] = Arrays.binarySearch(nodeIris, readEdges.get(e)[0]);
+            to[edges] = Arrays.binarySearch(nodeIris, readEdges.get(e)[1]);
+            edgeRelations[edges++] = (byte) readRelations.get(e).ordinal();
+        }
+
+        // Nodes left without links are dropped, as build() would not see them
+        boolean[] linked = new boolean[nodeIris.length];
+        for (int e = 0; e < edges; e++) {
+            linked[from[e]] = true;
+            linked[to[e]] = true;
+        }
+        int[] kept = new int[nodeIris.length];
+        int keptCount = 0;
+        for (int node = 0; node < nodeIris.length; node++) {
+            if (linked[node]) {
+                nodeIris[keptCount] = nodeIris[node];
+                oldOrdinals[keptCount] = oldOrdinals[node];
+                kept[node] = keptCount++;
+            }
+        }
+        for (int e = 0; e < edges; e++) {
+            from[e] = kept[from[e]];
+            to[e] = kept[to[e]];
+        }
+        return assemble(graph, dataNs, schemaNs, modelVersion, Arrays.copyOf(nodeIris, keptCount),
+                        from, to, edgeRelations, edges, this, oldOrdinals);
+    }
+
+    /**
+     * Adds the links found, skipping those whose subject is in skipSubjects
+     */
+    private static void readEdges(ExtendedIterator<Triple> triples, Relation relation, Set<String> skipSubjects,
+                                  List<String[]> edges, List<Relation> edgeRelations, TreeSet<String> nodes) {
+        try {
+            while (triples.hasNext()) {
+                Triple triple = triples.next();
+                if (triple.getSubject().isURI() && triple.getObject().isURI() &&
+                    (skipSubjects == null || !skipSubjects.contains(triple.getSubject().getURI()))) {
+                    String[] edge = {triple.getSubject().getURI(), triple.getObject().getURI()};
+                    edges.add(edge);
+                    edgeRelations.add(relation);
+                    nodes.add(edge[0]);
+                    nodes.add(edge[1]);
+                }
+            }
+        } finally {
+            triples.close();
+        }
+    }
+
+    /**
+     * Lays the edges out in CSR form, with the names of the nodes
+     *
+     * @param nodeIris IRIs of the nodes, by ordinal (sorted)
+     * @param from First node of each edge
+     * @param to Second node of each edge
+     * @param old Graph to copy names from, or null to read every name
+     * @param oldOrdinals By ordinal: ordinal in the old graph of a node whose name can be copied, or -1
+     */
+    private static CollaborationGraph assemble(Graph graph, String dataNs, String schemaNs, long modelVersion,
+                                               String[] nodeIris, int[] from, int[] to, byte[] edgeRelations,
+                                               int edges, CollaborationGraph old, int[] oldOrdinals) {
+        Node filmType = NodeFactory.createURI(schemaNs + "Film");
+        Node hasTitle = NodeFactory.createURI(schemaNs + "hasTitle");
+        Node hasName = NodeFactory.createURI(schemaNs + "hasName");
+
+        int size = nodeIris.length;
+        String[] ids = new String[size];
+        String[] names = new String[size];
+        boolean[] films = new boolean[size];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            int oldOrdinal = old != null ? oldOrdinals[ordinal] : -1;
+            if (oldOrdinal >= 0) {
+                ids[ordinal] = old.ids[oldOrdinal];
+                names[ordinal] = old.names[oldOrdinal];
+                films[ordinal] = old.films[oldOrdinal];
+            } else {
+                String iri = nodeIris[ordinal];
+                Node node = NodeFactory.createURI(iri);
+                ids[ordinal] = localName(iri, dataNs);
+                films[ordinal] = graph.contains(node, RDF.type.asNode(), filmType);
+                String name = literal(graph, node, films[ordinal] ? hasTitle : hasName);
+                names[ordinal] = name != null ? name : ids[ordinal];
+            }
+        }
+
+        // Counting sort of both directions into CSR
+        int[] offsets = new int[size + 1];
+        for (int e = 0; e < edges; e++) {
+            offsets[from[e] + 1]++;
+            offsets[to[e] + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] neighbours = new int[offsets[size]];
+        byte[] relations = new byte[offsets[size]];
+        int[] next = Arrays.copyOf(offsets, size);
+        for (int e = 0; e < edges; e++) {
+            neighbours[next[from[e]]] = to[e];
+            relations[next[from[e]]++] = edgeRelations[e];
+            neighbours[next[to[e]]] = from[e];
+            relations[next[to[e]]++] = edgeRelations[e];
+        }
+
+        return new CollaborationGraph(modelVersion, nodeIris, ids, names, films, offsets, neighbours, relations);
+    }
+
+    /**
+     * @return The model version this graph was built from
+     */
+    public long getModelVersion() {
+        return modelVersion;
+    }
+
+    /**
+     * @return Number of films and people in the graph
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return Number of edges (each counted once)
+     */
+    public int getEdgeCount() {
+        return neighbours.length / 2;
+    }
+
+    /**
+     * @param id Film or person id (local name)
+     * @return Title or name, or null if the graph does not have the node
+     */
+    public String getName(String id) {
+        Integer node = ordinals.get(id);
+        return node != null ? names[node] : null;
+    }
+
+    /**
+     * Every film and person reachable in at most the given number of
+     * hops, over any relation
+     *
+     * @param id Film or person to start from
+     * @param hops Maximum number of edges to follow
+     * @return Ids ordered by distance, then by IRI; the start is not included
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> withinHops(String id, int hops) {
+        return (List<String>) cached("withinHops", id, hops, () -> reach(id, hops, false));
+    }
+
+    /**
+     * Films reachable in at most the given number of hops, e.g. the films
+     * of a director (one hop) and of the people the director worked with
+     * (two hops)
+     *
+     * @param id Film or person to start from
+     * @param hops Maximum number of edges to follow
+     * @return Film ids ordered by distance, then by IRI; the start is not included
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> filmsWithinHops(String id, int hops) {
+        return (List<String>) cached("filmsWithinHops", id, hops, () -> reach(id, hops, true));
+    }
+
+    /**
+     * The people who share the most films with a person, in a given role
+     * on those films, e.g. the actors who most often appear in films
+     * directed by (or starring) X
+     *
+     * @param personId Person to start from
+     * @param role How the collaborators are linked to the shared films
+     * @param n Number of collaborators to return
+     * @return Collaborators, most shared films first (ties by IRI)
+     */
+    @SuppressWarnings("unchecked")
+    public List<Collaborator> topCollaborators(String personId, Relation role, int n) {
+        if (!role.filmToPerson) {
+            throw new IllegalArgumentException(role + " does not link people to films");
+        }
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be at least 1, was " + n);
+        }
+        return (List<Collaborator>) cached("topCollaborators:" + role, personId, n,
+                                           () -> countCollaborators(personId, role, n));
+    }
+
+    /**
+     * @return Hits and misses of the traversal cache
+     */
+    public CacheStats getCacheStats() {
+        return traversals.getStats();
+    }
+
+    private List<?> cached(String kind, String id, int parameter, Supplier<List<?>> traversal) {
+        if (parameter < 0) {
+            throw new IllegalArgumentException("Must not be negative: " + parameter);
+        }
+        List<Object> key = Arrays.asList(kind, id, parameter);
+        List<?> result = traversals.get(key);
+        if (result == null) {
+            result = Collections.unmodifiableList(traversal.get());
+            traversals.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Breadth-first search; nodes of one level are found in CSR order and
+     * sorted, so the result does not depend on edge order
+     */
+    private List<String> reach(String id, int hops, boolean filmsOnly) {
+        Integer start = ordinals.get(id);
+        if (start == null) {
+            return Collections.emptyList();
+        }
+
+        boolean[] seen = new boolean[ids.length];
+        seen[start] = true;
+        int[] level = {start};
+        List<String> result = new ArrayList<>();
+        for (int hop = 0; hop < hops && level.length > 0; hop++) {
+            int[] nextLevel = new int[16];
+            int size = 0;
+            for (int node : level) {
+                for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                    int neighbour = neighbours[e];
+                    if (!seen[neighbour]) {
+                        seen[neighbour] = true;
+                        if (size == nextLevel.length) {
+                            nextLevel = Arrays.copyOf(nextLevel, size * 2);
+                        }
+                        nextLevel[size++] = neighbour;
+                    }
+                }
+            }
+            level = Arrays.copyOf(nextLevel, size);
+            Arrays.sort(level);
+            for (int node : level) {
+                if (!filmsOnly || films[node]) {
+                    result.add(ids[node]);
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<Collaborator> countCollaborators(String personId, Relation role, int n) {
+        Integer person = ordinals.get(personId);
+        if (person == null) {
+            return Collections.emptyList();
+        }
+
+        int[] shared = new int[ids.length];
+        // Film a person was last counted for, so two roles on one film count once
+        int[] countedFor = new int[ids.length];
+        Arrays.fill(countedFor, -1);
+        List<Integer> touched = new ArrayList<>();
+
+        for (int e = offsets[person]; e < offsets[person + 1]; e++) {
+            int film = neighbours[e];
+            if (!films[film] || !RELATIONS[relations[e]].filmToPerson) {
+                continue;
+            }
+            for (int f = offsets[film]; f < offsets[film + 1]; f++) {
+                int other = neighbours[f];
+                if (other == person || relations[f] != role.ordinal() || countedFor[other] == film) {
+                    continue;
+                }
+                countedFor[other] = film;
+                if (shared[other]++ == 0) {
+                    touched.add(other);
+                }
+            }
+        }
+
+        touched.sort((a, b) -> shared[a] != shared[b] ? Integer.compare(shared[b], shared[a]) : Integer.compare(a, b));
+        List<Collaborator> result = new ArrayList<>(Math.min(n, touched.size()));
+        for (int i = 0; i < touched.size() && i < n; i++) {
+            int other = touched.get(i);
+            result.add(new Collaborator(ids[other], names[other], shared[other]));
+        }
+        return result;
+    }
+
+    private static String literal(Graph graph, Node subject, Node predicate) {
+        ExtendedIterator<Triple> triples = graph.find(subject, predicate, Node.ANY);
+        try {
+            if (triples.hasNext()) {
+                Node value = triples.next().getObject();
+                return value.isLiteral() ? value.getLiteralLexicalForm() : null;
+            }
+            return null;
+        } finally {
+            triples.close();
+        }
+    }
+
+    private static String localName(String iri, String dataNs) {
+        if (iri.startsWith(dataNs)) {
+            return iri.substring(dataNs.length());
+        }
+        if (iri.contains("#")) {
+            return iri.substring(iri.indexOf("#") + 1);
+        }
+        return iri.substring(iri.lastIndexOf("/") + 1);
+    }
+
+    /**
+     * A person and the number of films shared with the person searched for
+     */
+    public static final class Collaborator {
+
+        private final String personId;
+        private final String name;
+        private final int sharedFilms;
+
+        Collaborator(String personId, String name, int sharedFilms) {
+            this.personId = personId;
+            this.name = name;
+            this.sharedFilms = sharedFilms;
+        }
+
+        public String getPersonId() {
+            return personId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getSharedFilms() {
+            return sharedFilms;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + sharedFilms + ")";
+        }
+    }
+}
@@ -0,0 +1,906 @@
+package rs.ftn.ns.index;
+
+import org.apache.jena.datatypes.DatatypeFormatException;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+import rs.ftn.ns.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Autocomplete for a search box: film titles, people's names and genres,
+ * most popular first, found from the first few letters typed.
+ *
+ * Names are folded (see TextNormalizer) and stored in a radix trie, once
+ * from each word, so "nol" completes "Christopher Nolan" and "godf"
+ * completes "The Godfather". The trie is flattened into arrays: a node is
+ * a slice of a shared label array, its children are contiguous and sorted
+ * by their first letter, and it knows the highest weight in its subtree.
+ * A lookup walks down to the node of the prefix and then takes the
+ * heaviest subtrees first, so it stops after N completions instead of
+ * visiting every name with that prefix.
+ *
+ * Weights are IMDb votes: a film's own, the sum over a person's films,
+ * and the sum over a genre's films.
+ *
+ * Typos are found by walking the trie with one row of an edit distance
+ * table per letter, and giving up on a branch once every cell of the row
+ * is over the limit. Completions with fewer typos come first.
+ *
+ * Films are kept in IRI order, people and genres in id order, so an
+ * index derived from another after a change has its names in the same
+ * order as one built from scratch, and breaks ties the same way.
+ *
+ * An index is immutable. When the model changes a new one is built in the
+ * background, see OntologyManager.getCompletionIndex(), reading only the
+ * changed names if it follows OntologyManager.update(). Only reading the
+ * names holds the model's lock, not building the trie.
+ */
+public final class CompletionIndex {
+
+    /**
+     * What a completion names
+     */
+    public enum Kind {
+        FILM, PERSON, GENRE
+    }
+
+    /** Relations of the people whose names are completed */
+    private static final String[] PERSON_PROPERTIES = { "directedBy", "writtenBy", "hasActor" };
+
+    /** Shortest prefixes allowed one and two typos by default */
+    private static final int MIN_ONE_EDIT_LENGTH = 4;
+    private static final int MIN_TWO_EDITS_LENGTH = 8;
+
+    private final long modelVersion;
+
+    // Per entry
+    private final String[] texts;
+    private final String[] ids;
+    private final Kind[] kinds;
+    private final long[] weights;
+
+    // Per node; node 0 is the root, with an empty label
+    private final char[] labels;
+    private final int[] labelStart;
+    private final int[] labelEnd;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final long[] maxWeight;
+
+    // Entries whose key ends at node n are nodeEntries[entryStart[n] .. entryStart[n + 1]), heaviest first
+    private final int[] entryStart;
+    private final int[] nodeEntries;
+
+    private CompletionIndex(long modelVersion, String[] texts, String[] ids, Kind[] kinds, long[] weights,
+                            char[] labels, int[] labelStart, int[] labelEnd, int[] firstChild, int[] childCount,
+                            long[] maxWeight, int[] entryStart, int[] nodeEntries) {
+        this.modelVersion = modelVersion;
+        this.texts = texts;
+        this.ids = ids;
+        this.kinds = kinds;
+        this.weights = weights;
+        this.labels = labels;
+        this.labelStart = labelStart;
+        this.labelEnd = labelEnd;
+        this.firstChild = firstChild;
+        this.childCount = childCount;
+        this.maxWeight = maxWeight;
+        this.entryStart = entryStart;
+        this.nodeEntries = nodeEntries;
+    }
+
+    /**
+     * Builds the index with one scan over the films in the graph.
+     * The caller must hold a read lock (or transaction) on the graph.
+     *
+     * @param graph Graph to index
+     * @param dataNs Namespace of the film individuals
+     * @param schemaNs Namespace of the ontology properties
+     * @param modelVersion Model version the graph is at
+     * @return The new index
+     */
+    public static CompletionIndex build(Graph graph, String dataNs, String schemaNs, long modelVersion) {
+        return read(graph, dataNs, schemaNs).build(modelVersion);
+    }
+
+    /**
+     * Reads the names to complete, and their weights, from the graph.
+     * Only this needs the read lock (or transaction); the trie is built
+     * by the returned builder, which no longer reads the graph.
+     *
+     * @param graph Graph to index
+     * @param dataNs Namespace of the film individuals
+     * @param schemaNs Namespace of the ontology properties
+     * @return Builder holding every name
+     */
+    public static Builder read(Graph graph, String dataNs, String schemaNs) {
+        Reader reader = new Reader(graph, dataNs, schemaNs);
+
+        // Same films, in the same order, as FilmIndex
+        TreeSet<String> filmIris = new TreeSet<>();
+        ExtendedIterator<Triple> films = graph.find(Node.ANY, RDF.type.asNode(), reader.filmType);
+        try {
+            while (films.hasNext()) {
+                Node film = films.next().getSubject();
+                if (film.isURI() && graph.contains(film, reader.hasTitle, Node.ANY)) {
+                    filmIris.add(film.getURI());
+                }
+            }
+        } finally {
+            films.close();
+        }
+
+        Builder builder = new Builder();
+        // People and genres get the votes of their films
+        Map<Node, Long> personVotes = new HashMap<>();
+        Map<Node, Long> genreVotes = new HashMap<>();
+        for (String iri : filmIris) {
+            Node film = NodeFactory.createURI(iri);
+            long votes = reader.addFilm(builder, film);
+            for (Node person : reader.people(film)) {
+                personVotes.merge(person, votes, Long::sum);
+            }
+            for (Node genre : objects(graph, film, reader.hasGenre)) {
+                genreVotes.merge(genre, votes, Long::sum);
+            }
+        }
+        reader.addLinked(builder, Kind.PERSON, personVotes);
+        reader.addLinked(builder, Kind.GENRE, genreVotes);
+        return builder;
+    }
+
+    /**
+     * Reads the names again for the model after some films, people or
+     * genres changed: the names of those, and of the people and genres
+     * of the changed films, whose votes may have changed. Every other
+     * name is taken from this index. Gives the same names as {@link #read}.
+     * The caller must hold a read lock (or transaction) on the graph.
+     *
+     * @param graph Graph after the change
+     * @param dataNs Namespace of the film individuals
+     * @param schemaNs Namespace of the ontology properties
+     * @param changed IRIs of the individuals that were added, changed or removed,
+     *                and of those they were linked to before the change
+     * @return Builder holding every name
+     */
+    public Builder update(Graph graph, String dataNs, String schemaNs, Collection<String> changed) {
+        Reader reader = new Reader(graph, dataNs, schemaNs);
+        Set<Node> nodes = new HashSet<>();
+        // Films that did not change have the votes they had
+        reader.changed = nodes;
+        reader.knownVotes = new HashMap<>();
+        for (int e = 0; e < texts.length; e++) {
+            if (kinds[e] == Kind.FILM) {
+                reader.knownVotes.put(ids[e], weights[e]);
+            }
+        }
+        for (String iri : changed) {
+            Node node = NodeFactory.createURI(iri);
+            nodes.add(node);
+            if (reader.isFilm(node)) {
+                nodes.addAll(reader.people(node));
+                nodes.addAll(objects(graph, node, reader.hasGenre));
+            }
+        }
+
+        // Their names, read again; people and genres get the votes of all their films
+        Set<String> readIds = new HashSet<>();
+        List<Node> films = new ArrayList<>();
+        Map<Node, Long> personVotes = new HashMap<>();
+        Map<Node, Long> genreVotes = new HashMap<>();
+        for (Node node : nodes) {
+            if (!node.isURI()) {
+                continue;
+            }
+            readIds.add(localName(node.getURI(), dataNs));
+            if (reader.isFilm(node)) {
+                films.add(node);
+            }
+            reader.linkedVotes(node, reader.personProperties, personVotes);
+            reader.linkedVotes(node, new Node[] { reader.hasGenre }, genreVotes);
+        }
+        films.sort(Comparator.comparing(film -> localName(film.getURI(), dataNs)));
+        Builder read = new Builder();
+        for (Node film : films) {
+            reader.addFilm(read, film);
+        }
+        reader.addLinked(read, Kind.PERSON, personVotes);
+        reader.addLinked(read, Kind.GENRE, genreVotes);
+
+        // Merged with the names kept; both are by kind, then by id
+        Builder builder = new Builder();
+        int r = 0;
+        for (int e = 0; e < texts.length; e++) {
+            if (readIds.contains(ids[e])) {
+                continue;
+            }
+            while (r < read.texts.size() && (read.kinds.get(r).compareTo(kinds[e]) < 0 ||
+                   read.kinds.get(r) == kinds[e] && read.ids.get(r).compareTo(ids[e]) < 0)) {
+                builder.copy(read, r++);
+            }
+            builder.append(kinds[e], ids[e], texts[e], weights[e]);
+        }
+        while (r < read.texts.size()) {
+            builder.copy(read, r++);
+        }
+        return builder;
+    }
+
+    /**
+     * @return Builder for an index over names of your own, e.g. for tests
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The model version this index was built from
+     */
+    public long getModelVersion() {
+        return modelVersion;
+    }
+
+    /**
+     * @return Number of completable names
+     */
+    public int size() {
+        return texts.length;
+    }
+
+    /**
+     * @return Number of trie nodes
+     */
+    public int getNodeCount() {
+        return labelStart.length;
+    }
+
+    /**
+     * Completes a prefix, allowing one typo from 4 letters and two from 8
+     *
+     * @param prefix What has been typed so far
+     * @param n Number of completions to return
+     * @return Fewest typos first, then most popular first
+     */
+    public List<Completion> complete(String prefix, int n) {
+        int length = key(prefix).length();
+        int maxEdits = length >= MIN_TWO_EDITS_LENGTH ? 2 : length >= MIN_ONE_EDIT_LENGTH ? 1 : 0;
+        return complete(prefix, n, maxEdits);
+    }
+
+    /**
+     * Completes a prefix with up to the given number of typos (inserted,
+     * missing, wrong or swapped letters)
+     *
+     * @param prefix What has been typed so far
+     * @param n Number of completions to return
+     * @param maxEdits Typos to allow; at most one less than the prefix length
+     * @return Fewest typos first, then most popular first
+     */
+    public List<Completion> complete(String prefix, int n, int maxEdits) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be at least 1, was " + n);
+        }
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("maxEdits must not be negative, was " + maxEdits);
+        }
+        String key = key(prefix);
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // Otherwise every name would be within maxEdits of the prefix
+        maxEdits = Math.min(maxEdits, key.length() - 1);
+
+        // Subtrees whose names all start within d typos of the prefix, by d
+        List<List<Integer>> subtrees = new ArrayList<>(maxEdits + 1);
+        for (int d = 0; d <= maxEdits; d++) {
+            subtrees.add(new ArrayList<>());
+        }
+        if (maxEdits == 0) {
+            int node = find(key);
+            if (node >= 0) {
+                subtrees.get(0).add(node);
+            }
+        } else {
+            int[] row = new int[key.length() + 1];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = i;
+            }
+            walk(key, maxEdits, 0, row, null, (char) 0, key.length() + 1, subtrees);
+        }
+
+        List<Completion> completions = new ArrayList<>(n);
+        BitSet seen = new BitSet(texts.length);
+        for (int d = 0; d <= maxEdits && completions.size() < n; d++) {
+            heaviest(subtrees.get(d), d, n, seen, completions);
+        }
+        return completions;
+    }
+
+    /**
+     * @return The node whose subtree holds every key starting with the prefix, or -1
+     */
+    private int find(String key) {
+        int node = 0;
+        int at = 0;
+        while (at < key.length()) {
+            int child = child(node, key.charAt(at));
+            if (child < 0) {
+                return -1;
+            }
+            for (int i = labelStart[child]; i < labelEnd[child] && at < key.length(); i++, at++) {
+                if (labels[i] != key.charAt(at)) {
+                    return -1;
+                }
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * Child of a node whose label starts with the letter, by binary search
+     */
+    private int child(int node, char letter) {
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char first = labels[labelStart[middle]];
+            if (first < letter) {
+                low = middle + 1;
+            } else if (first > letter) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Walks the children of a node, extending the edit distance table of
+     * the prefix against the key so far by one row per letter (optimal
+     * string alignment, so a swap of two letters is one typo)
+     *
+     * @param row Distances of each prefix of the key to the key so far
+     * @param previousRow The row before that, for swaps; null at the root
+     * @param previousLetter Last letter of the key so far
+     * @param best Fewest typos already found on this path
+     */
+    private void walk(String key, int maxEdits, int node, int[] row, int[] previousRow, char previousLetter,
+                      int best, List<List<Integer>> subtrees) {
+        int first = firstChild[node];
+        for (int child = first; child < first + childCount[node]; child++) {
+            int[] before = previousRow;
+            int[] current = row;
+            char letterBefore = previousLetter;
+            int childBest = best;
+            for (int i = labelStart[child]; i < labelEnd[child]; i++) {
+                char letter = labels[i];
+                int[] next = new int[current.length];
+                next[0] = current[0] + 1;
+                int rowMin = next[0];
+                for (int j = 1; j < next.length; j++) {
+                    int cost = key.charAt(j - 1) == letter ? 0 : 1;
+                    int d = Math.min(current[j - 1] + cost, Math.min(current[j], next[j - 1]) + 1);
+                    if (before != null && j > 1 && key.charAt(j - 1) == letterBefore && key.charAt(j - 2) == letter) {
+                        d = Math.min(d, before[j - 2] + 1);
+                    }
+                    next[j] = d;
+                    rowMin = Math.min(rowMin, d);
+                }
+                before = current;
+                current = next;
+                letterBefore = letter;
+
+                int distance = current[key.length()];
+                if (distance <= maxEdits && distance < childBest) {
+                    // The whole subtree matches. A deeper match can only have
+                    // fewer typos; it is recorded too, and found first
+                    subtrees.get(distance).add(child);
+                    childBest = distance;
+                }
+                if (rowMin > maxEdits || rowMin >= childBest) {
+                    break;
+                }
+                if (i == labelEnd[child] - 1) {
+                    walk(key, maxEdits, child, current, before, letterBefore, childBest, subtrees);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the heaviest unseen entries of the subtrees until there are n
+     * completions, taking nodes in order of the heaviest weight below them
+     */
+    private void heaviest(List<Integer> roots, int distance, int n, BitSet seen, List<Completion> completions) {
+        if (roots.isEmpty()) {
+            return;
+        }
+        // Nodes are pushed as ~node, entries as themselves; heaviest first, then by name
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> a[0] != b[0]
+            ? Long.compare(b[0], a[0])
+            : Long.compare(a[1], b[1]));
+        for (int root : roots) {
+            queue.add(new long[] { maxWeight[root], ~root });
+        }
+        while (!queue.isEmpty() && completions.size() < n) {
+            long[] top = queue.poll();
+            int item = (int) top[1];
+            if (item >= 0) {
+                if (!seen.get(item)) {
+                    seen.set(item);
+                    completions.add(new Completion(texts[item], ids[item], kinds[item], weights[item], distance));
+                }
+                continue;
+            }
+            int node = ~item;
+            for (int e = entryStart[node]; e < entryStart[node + 1]; e++) {
+                int entry = nodeEntries[e];
+                if (!seen.get(entry)) {
+                    queue.add(new long[] { weights[entry], entry });
+                }
+            }
+            for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+                queue.add(new long[] { maxWeight[child], ~child });
+            }
+        }
+    }
+
+    /**
+     * Folded words, joined by single spaces
+     */
+    private static String key(String text) {
+        return String.join(" ", TextNormalizer.tokens(text));
+    }
+
+    private static long votes(Graph graph, Node film, Node imdbVotes) {
+        Node votes = first(graph, film, imdbVotes);
+        if (votes == null || !votes.isLiteral()) {
+            return 0;
+        }
+        try {
+            Object value = votes.getLiteralValue();
+            return value instanceof Number ? ((Number) value).longValue()
+                                           : (long) Double.parseDouble(votes.getLiteralLexicalForm());
+        } catch (DatatypeFormatException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static List<Node> objects(Graph graph, Node subject, Node predicate) {
+        ExtendedIterator<Triple> triples = graph.find(subject, predicate, Node.ANY);
+        try {
+            List<Node> objects = new ArrayList<>();
+            while (triples.hasNext()) {
+                Node object = triples.next().getObject();
+                if (!objects.contains(object)) {
+                    objects.add(object);
+                }
+            }
+            return objects;
+        } finally {
+            triples.close();
+        }
+    }
+
+    private static Node first(Graph graph, Node subject, Node predicate) {
+        ExtendedIterator<Triple> triples = graph.find(subject, predicate, Node.ANY);
+        try {
+            return triples.hasNext() ? triples.next().getObject() : null;
+        } finally {
+            triples.close();
+        }
+    }
+
+    private static String literal(Graph graph, Node subject, Node predicate) {
+        Node value = first(graph, subject, predicate);
+        return value != null && value.isLiteral() ? value.getLiteralLexicalForm() : null;
+    }
+
+    private static String localName(String iri, String dataNs) {
+        if (iri.startsWith(dataNs)) {
+            return iri.substring(dataNs.length());
+        }
+        if (iri.contains("#")) {
+            return iri.substring(iri.indexOf("#") + 1);
+        }
+        return iri.substring(iri.lastIndexOf("/") + 1);
+    }
+
+    /**
+     * Reads names and votes from the graph
+     */
+    private static final class Reader {
+
+        final Graph graph;
+        final String dataNs;
+        final Node filmType;
+        final Node hasTitle;
+        final Node imdbVotes;
+        final Node hasName;
+        final Node hasGenre;
+        final Node genreName;
+        final Node[] personProperties = new Node[PERSON_PROPERTIES.length];
+
+        // When updating: votes of the films of the old index, by id, good for those that did not change
+        Map<String, Long> knownVotes;
+        Set<Node> changed;
+
+        Reader(Graph graph, String dataNs, String schemaNs) {
+            this.graph = graph;
+            this.dataNs = dataNs;
+            this.filmType = NodeFactory.createURI(schemaNs + "Film");
+            this.hasTitle = NodeFactory.createURI(schemaNs + "hasTitle");
+            this.imdbVotes = NodeFactory.createURI(schemaNs + "imdbVotes");
+            this.hasName = NodeFactory.createURI(schemaNs + "hasName");
+            this.hasGenre = NodeFactory.createURI(schemaNs + "hasGenre");
+            this.genreName = NodeFactory.createURI(schemaNs + "genreName");
+            for (int i = 0; i < personProperties.length; i++) {
+                personProperties[i] = NodeFactory.createURI(schemaNs + PERSON_PROPERTIES[i]);
+            }
+        }
+
+        /**
+         * @return true for a film with a title, the films that are completed
+         */
+        boolean isFilm(Node node) {
+            return node.isURI() && graph.contains(node, RDF.type.asNode(), filmType) &&
+                   graph.contains(node, hasTitle, Node.ANY);
+        }
+
+        /**
+         * @return Votes of the film
+         */
+        long addFilm(Builder builder, Node film) {
+            long votes = votes(graph, film, imdbVotes);
+            builder.add(Kind.FILM, localName(film.getURI(), dataNs), literal(graph, film, hasTitle), votes);
+            return votes;
+        }
+
+        /**
+         * Someone who directed and acted in a film gets its votes once
+         */
+        Set<Node> people(Node film) {
+            Set<Node> people = new HashSet<>();
+            for (Node property : personProperties) {
+                people.addAll(objects(graph, film, property));
+            }
+            return people;
+        }
+
+        /**
+         * Adds up the votes of the films linking to a node through any of the properties, each film once
+         */
+        void linkedVotes(Node node, Node[] properties, Map<Node, Long> votes) {
+            Map<Node, Long> films = new HashMap<>();
+            for (Node property : properties) {
+                ExtendedIterator<Triple> links = graph.find(Node.ANY, property, node);
+                try {
+                    while (links.hasNext()) {
+                        Node film = links.next().getSubject();
+                        if (!films.containsKey(film)) {
+                            films.put(film, filmVotes(film));
+                        }
+                    }
+                } finally {
+                    links.close();
+                }
+            }
+            for (Long filmVotes : films.values()) {
+                if (filmVotes != null) {
+                    votes.merge(node, filmVotes, Long::sum);
+                }
+            }
+        }
+
+        /**
+         * @return Votes of a film with a title, or null for anything else
+         */
+        Long filmVotes(Node film) {
+            if (knownVotes != null && film.isURI() && !changed.contains(film)) {
+                Long votes = knownVotes.get(localName(film.getURI(), dataNs));
+                if (votes != null) {
+                    return votes;
+                }
+            }
+            return isFilm(film) ? votes(graph, film, imdbVotes) : null;
+        }
+
+        /**
+         * Adds people or genres with their votes, in id order
+         */
+        void addLinked(Builder builder, Kind kind, Map<Node, Long> votes) {
+            List<Node> nodes = new ArrayList<>();
+            for (Node node : votes.keySet()) {
+                if (node.isURI()) {
+                    nodes.add(node);
+                }
+            }
+            nodes.sort(Comparator.comparing(node -> localName(node.getURI(), dataNs)));
+            Node nameProperty = kind == Kind.PERSON ? hasName : genreName;
+            for (Node node : nodes) {
+                String name = literal(graph, node, nameProperty);
+                builder.add(kind, localName(node.getURI(), dataNs), name != null ? name : node.getLocalName(),
+                            votes.get(node));
+            }
+        }
+    }
+
+    /**
+     * One completion of a prefix
+     */
+    public static final class Completion {
+
+        private final String text;
+        private final String id;
+        private final Kind kind;
+        private final long weight;
+        private final int distance;
+
+        Completion(String text, String id, Kind kind, long weight, int distance) {
+            this.text = text;
+            this.id = id;
+            this.kind = kind;
+            this.weight = weight;
+            this.distance = distance;
+        }
+
+        /**
+         * @return The title or name, as written in the ontology
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return Local name of the film, person or genre
+         */
+        public String getId() {
+            return id;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return IMDb votes of the film, or of all films of the person or genre
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        /**
+         * @return Typos between the prefix and the start of the name (or of one of its words)
+         */
+        public int getDistance() {
+            return distance;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s [%s, %d]", text, kind, weight);
+        }
+    }
+
+    /**
+     * Collects the names to complete
+     */
+    public static final class Builder {
+
+        private final List<String> texts = new ArrayList<>();
+        private final List<String> ids = new ArrayList<>();
+        private final List<Kind> kinds = new ArrayList<>();
+        private final List<Long> weights = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param kind What the name names
+         * @param id Local name of the film, person or genre
+         * @param text The name; it completes from the start of each of its words
+         * @param weight Popularity, higher first
+         * @return This builder
+         */
+        public Builder add(Kind kind, String id, String text, long weight) {
+            if (text == null || key(text).isEmpty()) {
+                return this;
+            }
+            append(kind, id, text, weight);
+            return this;
+        }
+
+        /**
+         * Adds a name already known to have a key
+         */
+        private void append(Kind kind, String id, String text, long weight) {
+            texts.add(text);
+            ids.add(id);
+            kinds.add(kind);
+            weights.add(weight);
+        }
+
+        private void copy(Builder from, int entry) {
+            append(from.kinds.get(entry), from.ids.get(entry), from.texts.get(entry), from.weights.get(entry));
+        }
+
+        /**
+         * @param modelVersion Version to tag the index with
+         * @return The index
+         */
+        public CompletionIndex build(long modelVersion) {
+            int size = texts.size();
+            long[] entryWeights = new long[size];
+            for (int e = 0; e < size; e++) {
+                entryWeights[e] = weights.get(e);
+            }
+
+            // One key per word of each name: "the godfather", "godfather"
+            List<String> keys = new ArrayList<>();
+            List<Integer> owners = new ArrayList<>();
+            for (int e = 0; e < size; e++) {
+                List<String> words = TextNormalizer.tokens(texts.get(e));
+                for (int w = 0; w < words.size(); w++) {
+                    keys.add(String.join(" ", words.subList(w, words.size())));
+                    owners.add(e);
+                }
+            }
+            Integer[] order = new Integer[keys.size()];
+            for (int k = 0; k < order.length; k++) {
+                order[k] = k;
+            }
+            Arrays.sort(order, (a, b) -> {
+                int byKey = keys.get(a).compareTo(keys.get(b));
+                return byKey != 0 ? byKey : Long.compare(entryWeights[owners.get(b)], entryWeights[owners.get(a)]);
+            });
+            String[] sortedKeys = new String[order.length];
+            int[] sortedOwners = new int[order.length];
+            for (int k = 0; k < order.length; k++) {
+                sortedKeys[k] = keys.get(order[k]);
+                sortedOwners[k] = owners.get(order[k]);
+            }
+
+            return new TrieBuilder(sortedKeys, sortedOwners, entryWeights).build(modelVersion, texts, ids, kinds);
+        }
+    }
+
+    /**
+     * Lays out the radix trie of sorted keys breadth first, so the
+     * children of every node are contiguous
+     */
+    private static final class TrieBuilder {
+
+        private final String[] keys;
+        private final int[] owners;
+        private final long[] entryWeights;
+
+        private final StringBuilder labels = new StringBuilder();
+        private int[] labelStart = new int[16];
+        private int[] labelEnd = new int[16];
+        private int[] firstChild = new int[16];
+        private int[] childCount = new int[16];
+        private int[] entryCount = new int[16];
+        private final List<Integer> nodeEntries = new ArrayList<>();
+        private int nodes;
+
+        TrieBuilder(String[] keys, int[] owners, long[] entryWeights) {
+            this.keys = keys;
+            this.owners = owners;
+            this.entryWeights = entryWeights;
+        }
+
+        CompletionIndex build(long modelVersion, List<String> texts, List<String> ids, List<Kind> kinds) {
+            // Pending nodes: node, first key, last key + 1, depth the label starts at
+            List<int[]> queue = new ArrayList<>();
+            int root = allocate();
+            queue.add(new int[] { root, 0, keys.length, 0 });
+
+            for (int head = 0; head < queue.size(); head++) {
+                int[] pending = queue.get(head);
+                int node = pending[0];
+                int from = pending[1];
+                int to = pending[2];
+                int depth = pending[3];
+
+                // The label runs to the longest prefix shared by every key below
+                int end = depth;
+                if (node != root) {
+                    end = commonPrefix(keys[from], keys[to - 1]);
+                }
+                labelStart[node] = labels.length();
+                labels.append(keys[from], depth, end);
+                labelEnd[node] = labels.length();
+
+                // Keys ending here come first in sorted order, heaviest first
+                int k = from;
+                for (; k < to && keys[k].length() == end; k++) {
+                    nodeEntries.add(owners[k]);
+                }
+                entryCount[node] = k - from;
+
+                firstChild[node] = nodes;
+                while (k < to) {
+                    char letter = keys[k].charAt(end);
+                    int groupEnd = k + 1;
+                    while (groupEnd < to && keys[groupEnd].charAt(end) == letter) {
+                        groupEnd++;
+                    }
+                    queue.add(new int[] { allocate(), k, groupEnd, end });
+                    childCount[node]++;
+                    k = groupEnd;
+                }
+            }
+
+            // Entries were added in queue order, which is node order
+            int[] entryStart = new int[nodes + 1];
+            for (int n = 0; n < nodes; n++) {
+                entryStart[n + 1] = entryStart[n] + entryCount[n];
+            }
+            int[] entries = new int[nodeEntries.size()];
+            for (int e = 0; e < entries.length; e++) {
+                entries[e] = nodeEntries.get(e);
+            }
+
+            // Children come after their parents, so one backwards pass finds the subtree maxima
+            long[] maxWeight = new long[nodes];
+            Arrays.fill(maxWeight, Long.MIN_VALUE);
+            for (int n = nodes - 1; n >= 0; n--) {
+                for (int e = entryStart[n]; e < entryStart[n + 1]; e++) {
+                    maxWeight[n] = Math.max(maxWeight[n], entryWeights[entries[e]]);
+                }
+                for (int c = firstChild[n]; c < firstChild[n] + childCount[n]; c++) {
+                    maxWeight[n] = Math.max(maxWeight[n], maxWeight[c]);
+                }
+            }
+
+            char[] labelArray = new char[labels.length()];
+            labels.getChars(0, labels.length(), labelArray, 0);
+            return new CompletionIndex(modelVersion, texts.toArray(new String[0]), ids.toArray(new String[0]),
+                                       kinds.toArray(new Kind[0]), entryWeights, labelArray,
+                                       Arrays.copyOf(labelStart, nodes), Arrays.copyOf(labelEnd, nodes),
+                                       Arrays.copyOf(firstChild, nodes), Arrays.copyOf(childCount, nodes),
+                                       maxWeight, entryStart, entries);
+        }
+
+        private int allocate() {
+            if (nodes == labelStart.length) {
+                int capacity = nodes * 2;
+                labelStart = Arrays.copyOf(labelStart, capacity);
+                labelEnd = Arrays.copyOf(labelEnd, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                childCount = Arrays.copyOf(childCount, capacity);
+                entryCount = Arrays.copyOf(entryCount, capacity);
+            }
+            return nodes++;
+        }
+
+        private static int commonPrefix(String a, String b) {
+            int length = Math.min(a.length(), b.length());
+            int i = 0;
+            while (i < length && a.charAt(i) == b.charAt(i)) {
+                i++;
+            }
+            return i;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package rs.ftn.ns.index;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * String to code, codes given out in order of first use and never taken
+ * back. One dictionary is shared by an index and every index updated from
+ * it, so a code means the same string in all of them and an update only
+ * codes the strings it has not seen. Indexes keep what they need per code
+ * themselves.
+ *
+ * Thread-safe: indexes of different model versions may be updated at the
+ * same time.
+ */
+final class Dictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    /**
+     * @return Code of the value, a new one if it has none yet
+     */
+    synchronized int code(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = codes.size();
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * @return Number of codes given out
+     */
+    synchronized int size() {
+        return codes.size();
+    }
+}
@@ -0,0 +1,135 @@
+package rs.ftn.ns.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Combination of filters for a film lookup. Every filter that is set must
+ * match. Criteria are immutable; each method returns a new instance, so
+ * they can be shared and used as cache keys.
+ *
+ * <pre>
+ * FilmCriteria.any().genre("Drama").years(1990, 1999).language("English")
+ * </pre>
+ */
+public final class FilmCriteria {
+
+    private final List<String> genres;
+    private final String director;
+    private final String country;
+    private final String language;
+    private final Integer startYear;
+    private final Integer endYear;
+
+    private FilmCriteria(List<String> genres, String director, String country, String language,
+                         Integer startYear, Integer endYear) {
+        this.genres = genres;
+        this.director = director;
+        this.country = country;
+        this.language = language;
+        this.startYear = startYear;
+        this.endYear = endYear;
+    }
+
+    /**
+     * @return Criteria that match every film
+     */
+    public static FilmCriteria any() {
+        return new FilmCriteria(Collections.emptyList(), null, null, null, null, null);
+    }
+
+    /**
+     * Adds a genre the film must have. Can be called more than once.
+     */
+    public FilmCriteria genre(String genreName) {
+        List<String> more = new ArrayList<>(genres);
+        more.add(Objects.requireNonNull(genreName));
+        return new FilmCriteria(Collections.unmodifiableList(more), director, country, language, startYear, endYear);
+    }
+
+    /**
+     * Director name must contain the given text (case-insensitive)
+     */
+    public FilmCriteria director(String directorName) {
+        return new FilmCriteria(genres, Objects.requireNonNull(directorName), country, language, startYear, endYear);
+    }
+
+    /**
+     * Country the film is set in (setIn)
+     */
+    public FilmCriteria country(String countryName) {
+        return new FilmCriteria(genres, director, Objects.requireNonNull(countryName), language, startYear, endYear);
+    }
+
+    /**
+     * Language spoken in the film (spokenIn)
+     */
+    public FilmCriteria language(String languageName) {
+        return new FilmCriteria(genres, director, country, Objects.requireNonNull(languageName), startYear, endYear);
+    }
+
+    /**
+     * Release year range, both ends inclusive
+     */
+    public FilmCriteria years(int startYear, int endYear) {
+        return new FilmCriteria(genres, director, country, language, startYear, endYear);
+    }
+
+    public List<String> getGenres() {
+        return genres;
+    }
+
+    public String getDirector() {
+        return director;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public boolean hasYearRange() {
+        return startYear != null;
+    }
+
+    public int getStartYear() {
+        return startYear;
+    }
+
+    public int getEndYear() {
+        return endYear;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FilmCriteria)) {
+            return false;
+        }
+        FilmCriteria other = (FilmCriteria) o;
+        return genres.equals(other.genres)
+            && Objects.equals(director, other.director)
+            && Objects.equals(country, other.country)
+            && Objects.equals(language, other.language)
+            && Objects.equals(startYear, other.startYear)
+            && Objects.equals(endYear, other.endYear);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(genres, director, country, language, startYear, endYear);
+    }
+
+    @Override
+    public String toString() {
+        return "FilmCriteria{genres=" + genres + ", director=" + director + ", country=" + country +
+               ", language=" + language + ", years=" + startYear + "-" + endYear + "}";
+    }
+}
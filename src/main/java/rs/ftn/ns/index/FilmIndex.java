@@ -0,0 +1,808 @@
+package rs.ftn.ns.index;
+
+import org.apache.jena.datatypes.DatatypeFormatException;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+import rs.ftn.ns.model.Director;
+import rs.ftn.ns.model.Film;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * In-memory secondary indexes over the films of one model version.
+ * Every film gets an ordinal (its slot, see FilmSlots); genres, directors,
+ * countries and languages map to bit sets of ordinals, and release years
+ * are kept in a sorted array for range lookups. Criteria are answered by
+ * intersecting bit sets, without touching the graph. The five fuzzy
+ * input scores are kept per film too, so films can be scored straight
+ * from the index.
+ *
+ * Ordinals say nothing about order: a removed film's ordinal goes to the
+ * next film added. Films are listed and paged by film id instead.
+ *
+ * An index is immutable. When the model changes a new one is built, or
+ * derived from this one when only a few films changed, see
+ * OntologyManager.getFilmIndex().
+ */
+public final class FilmIndex {
+
+    /** Columns of {@link #getScores(int, double[])} */
+    public static final int SCORE_DIRECTION = 0;
+    public static final int SCORE_ACTING = 1;
+    public static final int SCORE_SCREENPLAY = 2;
+    public static final int SCORE_VISUAL_EFFECTS = 3;
+    public static final int SCORE_CULTURAL_SIGNIFICANCE = 4;
+    public static final int SCORE_COUNT = 5;
+
+    private static final String[] SCORE_PROPERTIES = {
+        "directionScore", "actingScore", "screenplayScore", "visualEffectsScore", "culturalSignificanceScore"
+    };
+
+    private final long modelVersion;
+    private final FilmSlots slots;
+
+    // Per film, by ordinal
+    private final String[] titles;
+    private final int[] years;
+    private final BitSet withYear;
+    private final String[][] directorNames;
+
+    // Fuzzy input scores, scores[SCORE_*][ordinal]; 0 when missing, like Film
+    private final double[][] scores;
+
+    private final Map<String, BitSet> byGenre;
+    private final Map<String, BitSet> byDirector;
+    private final Map<String, BitSet> byCountry;
+    private final Map<String, BitSet> byLanguage;
+
+    // Films that have a year, by year then id; sortedYears[i] is the year of yearOrder[i]
+    private final int[] sortedYears;
+    private final int[] yearOrder;
+
+    private FilmIndex(long modelVersion, FilmSlots slots, Columns columns, int[] sortedYears, int[] yearOrder) {
+        this.modelVersion = modelVersion;
+        this.slots = slots;
+        this.titles = columns.titles;
+        this.years = columns.years;
+        this.withYear = columns.withYear;
+        this.directorNames = columns.directorNames;
+        this.scores = columns.scores;
+        this.byGenre = columns.byGenre.apply();
+        this.byDirector = columns.byDirector.apply();
+        this.byCountry = columns.byCountry.apply();
+        this.byLanguage = columns.byLanguage.apply();
+        this.sortedYears = sortedYears;
+        this.yearOrder = yearOrder;
+    }
+
+    /**
+     * Builds the index with one scan over the films in the graph.
+     * The caller must hold a read lock (or transaction) on the graph.
+     *
+     * @param graph Graph to index
+     * @param dataNs Namespace of the film individuals
+     * @param schemaNs Namespace of the ontology properties
+     * @param modelVersion Model version the graph is at
+     * @return The new index
+     */
+    public static FilmIndex build(Graph graph, String dataNs, String schemaNs, long modelVersion) {
+        Reader reader = new Reader(graph, schemaNs);
+
+        // Only films with a title are listed by the queries
+        TreeSet<String> filmIris = new TreeSet<>();
+        ExtendedIterator<Triple> films = graph.find(Node.ANY, RDF.type.asNode(), reader.filmType);
+        try {
+            while (films.hasNext()) {
+                Node film = films.next().getSubject();
+                if (film.isURI() && graph.contains(film, reader.hasTitle, Node.ANY)) {
+                    filmIris.add(film.getURI());
+                }
+            }
+        } finally {
+            films.close();
+        }
+
+        String[] ids = new String[filmIris.size()];
+        Columns columns = new Columns(filmIris.size());
+        int ordinal = 0;
+        for (String iri : filmIris) {
+            ids[ordinal] = localName(iri, dataNs);
+            reader.read(NodeFactory.createURI(iri), ordinal, columns);
+            ordinal++;
+        }
+        FilmSlots slots = FilmSlots.of(ids);
+
+        Integer[] order = columns.withYear.stream().boxed().toArray(Integer[]::new);
+        Arrays.sort(order, (a, b) -> columns.years[a] != columns.years[b]
+            ? Integer.compare(columns.years[a], columns.years[b])
+            : slots.id(a).compareTo(slots.id(b)));
+        int[] yearOrder = new int[order.length];
+        int[] sortedYears = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            yearOrder[i] = order[i];
+            sortedYears[i] = columns.years[order[i]];
+        }
+        return new FilmIndex(modelVersion, slots, columns, sortedYears, yearOrder);
+    }
+
+    /**
+     * Builds the index for the model after some films changed, reading
+     * only those films from the graph. The other films keep their
+     * ordinals, so their columns are copied as they are, and only the
+     * bit sets of keys whose films changed are copied and changed; years
+     * are taken out of and put into the year order one by one. Gives the
+     * same results as {@link #build}.
+     * The caller must hold a read lock (or transaction) on the graph.
+     *
+     * @param graph Graph after the change
+     * @param dataNs Namespace of the film individuals
+     * @param schemaNs Namespace of the ontology properties
+     * @param films IRIs of the films that were added, changed or removed
+     * @param modelVersion Model version the graph is at
+     * @return The new index
+     */
+    public FilmIndex update(Graph graph, String dataNs, String schemaNs, Collection<String> films, long modelVersion) {
+        FilmSlots.Change change = slots.change(films, graph, dataNs, schemaNs);
+        Columns columns = new Columns(this, change.slots.capacity());
+        int[] newYearOrder = Arrays.copyOf(yearOrder, yearOrder.length + change.added.length);
+        int[] newSortedYears = Arrays.copyOf(sortedYears, sortedYears.length + change.added.length);
+        int withYears = yearOrder.length;
+
+        for (int ordinal : change.removed) {
+            if (withYear.get(ordinal)) {
+                int position = yearPosition(newSortedYears, newYearOrder, withYears, slots, years[ordinal],
+                                            slots.id(ordinal));
+                System.arraycopy(newYearOrder, position + 1, newYearOrder, position, withYears - position - 1);
+                System.arraycopy(newSortedYears, position + 1, newSortedYears, position, withYears - position - 1);
+                withYears--;
+            }
+            columns.clear(ordinal);
+            for (String name : directorNames[ordinal]) {
+                columns.byDirector.remove(name, ordinal);
+            }
+            columns.byGenre.removeAll(ordinal);
+            columns.byCountry.removeAll(ordinal);
+            columns.byLanguage.removeAll(ordinal);
+        }
+
+        Reader reader = new Reader(graph, schemaNs);
+        for (int i = 0; i < change.added.length; i++) {
+            int ordinal = change.added[i];
+            reader.read(change.films[i], ordinal, columns);
+            if (columns.withYear.get(ordinal)) {
+                int position = -yearPosition(newSortedYears, newYearOrder, withYears, change.slots,
+                                             columns.years[ordinal], change.slots.id(ordinal)) - 1;
+                System.arraycopy(newYearOrder, position, newYearOrder, position + 1, withYears - position);
+                System.arraycopy(newSortedYears, position, newSortedYears, position + 1, withYears - position);
+                newYearOrder[position] = ordinal;
+                newSortedYears[position] = columns.years[ordinal];
+                withYears++;
+            }
+        }
+        return new FilmIndex(modelVersion, change.slots, columns,
+                             Arrays.copyOf(newSortedYears, withYears), Arrays.copyOf(newYearOrder, withYears));
+    }
+
+    /**
+     * Binary search of the year order for a film
+     *
+     * @return Position of the film, or (-(insertion point) - 1)
+     */
+    private static int yearPosition(int[] sortedYears, int[] yearOrder, int size, FilmSlots slots, int year,
+                                    String id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compare = sortedYears[mid] != year ? Integer.compare(sortedYears[mid], year)
+                                                   : slots.id(yearOrder[mid]).compareTo(id);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * @return The model version this index was built from
+     */
+    public long getModelVersion() {
+        return modelVersion;
+    }
+
+    /**
+     * @return Number of indexed films
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * @param ordinal Film ordinal, e.g. from {@link #match(FilmCriteria)}
+     * @return Film id (local name)
+     */
+    public String getId(int ordinal) {
+        return slots.id(ordinal);
+    }
+
+    /**
+     * A film keeps its ordinal when others are added or removed, so
+     * ordinals are not in id order and may have gaps
+     *
+     * @param filmId Film id (local name)
+     * @return Ordinal of the film, or -1 if it is not indexed
+     */
+    public int getOrdinal(String filmId) {
+        return slots.slot(filmId);
+    }
+
+    /**
+     * Copies the fuzzy input scores of one film
+     *
+     * @param ordinal Film ordinal
+     * @param into Receives the scores, indexed by the SCORE_* constants
+     */
+    public void getScores(int ordinal, double[] into) {
+        for (int i = 0; i < SCORE_COUNT; i++) {
+            into[i] = scores[i][ordinal];
+        }
+    }
+
+    /**
+     * Finds the films matching every criterion. Results are ordered by
+     * year, then film id, when the criteria have a year range, otherwise
+     * by film id (compared as strings, see {@link String#compareTo}).
+     *
+     * @param criteria The criteria
+     * @return Films with id, title, year and (for director lookups) director name
+     */
+    public List<Film> find(FilmCriteria criteria) {
+        BitSet matches = match(criteria);
+        List<Film> films = new ArrayList<>(matches.cardinality());
+
+        if (criteria.hasYearRange()) {
+            int from = lowerBound(criteria.getStartYear());
+            int to = lowerBound(criteria.getEndYear() + 1L);
+            for (int i = from; i < to; i++) {
+                if (matches.get(yearOrder[i])) {
+                    films.add(toFilm(yearOrder[i], criteria));
+                }
+            }
+        } else {
+            for (int i = 0; i < slots.size(); i++) {
+                if (matches.get(slots.at(i))) {
+                    films.add(toFilm(slots.at(i), criteria));
+                }
+            }
+        }
+        return films;
+    }
+
+    /**
+     * One page of all films, by film id (compared as strings). The page
+     * starts after the given film, found by binary search, so no earlier
+     * film is read. The order does not depend on when films were added.
+     *
+     * @param afterId Id of the last film of the previous page, or null for the first page
+     * @param limit Most films to return
+     * @return Films with id, title and year, one entry per film
+     */
+    public List<Film> page(String afterId, int limit) {
+        int from = afterId == null ? 0 : slots.upperBound(afterId);
+        int to = (int) Math.min(slots.size(), (long) from + limit);
+        List<Film> films = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            films.add(toFilm(slots.at(i), FilmCriteria.any()));
+        }
+        return films;
+    }
+
+    /**
+     * One page of the films released in a year range, by year, then
+     * film id. See {@link #page(String, int)}.
+     *
+     * @param startYear Start year (inclusive)
+     * @param endYear End year (inclusive)
+     * @param afterYear Year of the last film of the previous page
+     * @param afterId Id of the last film of the previous page, or null for the first page
+     * @param limit Most films to return
+     * @return Films with id, title and year, one entry per film
+     */
+    public List<Film> yearPage(int startYear, int endYear, int afterYear, String afterId, int limit) {
+        int from = lowerBound(startYear);
+        if (afterId != null && afterYear >= startYear) {
+            from = Math.max(from, upperBound(afterYear, afterId));
+        }
+        int to = lowerBound(endYear + 1L);
+        List<Film> films = new ArrayList<>(Math.max(0, Math.min(limit, to - from)));
+        for (int i = from; i < to && films.size() < limit; i++) {
+            films.add(toFilm(yearOrder[i], FilmCriteria.any()));
+        }
+        return films;
+    }
+
+    /**
+     * Intersects the bit sets of every criterion
+     *
+     * @param criteria The criteria
+     * @return Ordinals of the matching films (a new set, free to modify)
+     */
+    public BitSet match(FilmCriteria criteria) {
+        BitSet result = slots.live();
+
+        for (String genre : criteria.getGenres()) {
+            result.and(lookup(byGenre, genre));
+        }
+        if (criteria.getCountry() != null) {
+            result.and(lookup(byCountry, criteria.getCountry()));
+        }
+        if (criteria.getLanguage() != null) {
+            result.and(lookup(byLanguage, criteria.getLanguage()));
+        }
+        if (criteria.getDirector() != null && !result.isEmpty()) {
+            result.and(directorsContaining(criteria.getDirector()));
+        }
+        if (criteria.hasYearRange() && !result.isEmpty()) {
+            result.and(yearRange(criteria.getStartYear(), criteria.getEndYear()));
+        }
+        return result;
+    }
+
+    /**
+     * Tells whether one film matches every criterion, like
+     * {@link #match(FilmCriteria)} does for all films
+     *
+     * @param filmId Film id (local name)
+     * @param criteria The criteria
+     * @return false if the film does not match or is not indexed
+     */
+    public boolean matches(String filmId, FilmCriteria criteria) {
+        int ordinal = slots.slot(filmId);
+        if (ordinal < 0) {
+            return false;
+        }
+        for (String genre : criteria.getGenres()) {
+            if (!lookup(byGenre, genre).get(ordinal)) {
+                return false;
+            }
+        }
+        if (criteria.getCountry() != null && !lookup(byCountry, criteria.getCountry()).get(ordinal)) {
+            return false;
+        }
+        if (criteria.getLanguage() != null && !lookup(byLanguage, criteria.getLanguage()).get(ordinal)) {
+            return false;
+        }
+        if (criteria.getDirector() != null && directorMatching(ordinal, criteria.getDirector()) == null) {
+            return false;
+        }
+        return !criteria.hasYearRange() || (withYear.get(ordinal) && years[ordinal] >= criteria.getStartYear() &&
+                                            years[ordinal] <= criteria.getEndYear());
+    }
+
+    /**
+     * @return Indexed genre names
+     */
+    public List<String> getGenres() {
+        return sortedKeys(byGenre);
+    }
+
+    /**
+     * @return Indexed director names
+     */
+    public List<String> getDirectors() {
+        return sortedKeys(byDirector);
+    }
+
+    /**
+     * @return Indexed country names
+     */
+    public List<String> getCountries() {
+        return sortedKeys(byCountry);
+    }
+
+    /**
+     * @return Indexed language names
+     */
+    public List<String> getLanguages() {
+        return sortedKeys(byLanguage);
+    }
+
+    /**
+     * Director names are matched like the SPARQL lookup did
+     * (case-insensitive substring), but against the distinct names
+     * rather than once per film
+     */
+    private BitSet directorsContaining(String needle) {
+        String lowerNeedle = needle.toLowerCase(Locale.ROOT);
+        BitSet result = new BitSet(slots.capacity());
+        for (Map.Entry<String, BitSet> director : byDirector.entrySet()) {
+            if (director.getKey().toLowerCase(Locale.ROOT).contains(lowerNeedle)) {
+                result.or(director.getValue());
+            }
+        }
+        return result;
+    }
+
+    private BitSet yearRange(int startYear, int endYear) {
+        BitSet result = new BitSet(slots.capacity());
+        int to = lowerBound(endYear + 1L);
+        for (int i = lowerBound(startYear); i < to; i++) {
+            result.set(yearOrder[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return Position of the first year that is >= the given year
+     */
+    private int lowerBound(long year) {
+        int low = 0;
+        int high = sortedYears.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedYears[mid] < year) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return Position in yearOrder of the first film after (year, id);
+     *         films of one year are in id order
+     */
+    private int upperBound(int year, String id) {
+        int low = lowerBound(year);
+        int high = lowerBound(year + 1L);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (slots.id(yearOrder[mid]).compareTo(id) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private Film toFilm(int ordinal, FilmCriteria criteria) {
+        Film film = new Film();
+        film.setId(slots.id(ordinal));
+        film.setTitle(titles[ordinal]);
+        if (withYear.get(ordinal)) {
+            film.setReleaseYear(years[ordinal]);
+        }
+
+        if (criteria.getDirector() != null) {
+            String name = directorMatching(ordinal, criteria.getDirector());
+            if (name != null) {
+                Director director = new Director();
+                director.setName(name);
+                film.setDirector(director);
+            }
+        }
+        return film;
+    }
+
+    /**
+     * @return The first director of the film whose name contains the needle, or null
+     */
+    private String directorMatching(int ordinal, String needle) {
+        String lowerNeedle = needle.toLowerCase(Locale.ROOT);
+        for (String name : directorNames[ordinal]) {
+            if (name.toLowerCase(Locale.ROOT).contains(lowerNeedle)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private static BitSet lookup(Map<String, BitSet> index, String key) {
+        BitSet films = index.get(key);
+        return films != null ? films : new BitSet();
+    }
+
+    private static List<String> sortedKeys(Map<String, BitSet> index) {
+        List<String> keys = new ArrayList<>(index.keySet());
+        Collections.sort(keys);
+        return Collections.unmodifiableList(keys);
+    }
+
+    private static List<Node> objects(Graph graph, Node subject, Node predicate) {
+        ExtendedIterator<Triple> triples = graph.find(subject, predicate, Node.ANY);
+        try {
+            List<Node> objects = new ArrayList<>();
+            while (triples.hasNext()) {
+                Node object = triples.next().getObject();
+                if (!objects.contains(object)) {
+                    objects.add(object);
+                }
+            }
+            return objects;
+        } finally {
+            triples.close();
+        }
+    }
+
+    private static Node first(Graph graph, Node subject, Node predicate) {
+        ExtendedIterator<Triple> triples = graph.find(subject, predicate, Node.ANY);
+        try {
+            return triples.hasNext() ? triples.next().getObject() : null;
+        } finally {
+            triples.close();
+        }
+    }
+
+    private static String literal(Graph graph, Node subject, Node predicate) {
+        Node value = first(graph, subject, predicate);
+        return value != null && value.isLiteral() ? value.getLiteralLexicalForm() : null;
+    }
+
+    /**
+     * Name of a linked resource (cached per build); falls back to its local name
+     */
+    private static String name(Graph graph, Map<Node, String> names, Node resource, Node nameProperty) {
+        String name = names.get(resource);
+        if (name == null) {
+            name = literal(graph, resource, nameProperty);
+            if (name == null) {
+                name = resource.isURI() ? resource.getLocalName() : resource.toString();
+            }
+            names.put(resource, name);
+        }
+        return name;
+    }
+
+    private static int toInt(Node literal) {
+        Object value = literal.getLiteralValue();
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return (int) Double.parseDouble(literal.getLiteralLexicalForm());
+    }
+
+    private static double toDouble(Node literal) {
+        Object value = literal.getLiteralValue();
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.parseDouble(literal.getLiteralLexicalForm());
+    }
+
+    private static String localName(String iri, String dataNs) {
+        if (iri.startsWith(dataNs)) {
+            return iri.substring(dataNs.length());
+        }
+        if (iri.contains("#")) {
+            return iri.substring(iri.indexOf("#") + 1);
+        }
+        return iri.substring(iri.lastIndexOf("/") + 1);
+    }
+
+    /**
+     * Per-film columns and key lookups of an index being built
+     */
+    private static final class Columns {
+
+        final String[] titles;
+        final int[] years;
+        final BitSet withYear;
+        final String[][] directorNames;
+        final double[][] scores;
+        final Keys byGenre;
+        final Keys byDirector;
+        final Keys byCountry;
+        final Keys byLanguage;
+
+        Columns(int capacity) {
+            this.titles = new String[capacity];
+            this.years = new int[capacity];
+            this.withYear = new BitSet(capacity);
+            this.directorNames = new String[capacity][];
+            this.scores = new double[SCORE_COUNT][capacity];
+            this.byGenre = new Keys(Collections.emptyMap());
+            this.byDirector = new Keys(Collections.emptyMap());
+            this.byCountry = new Keys(Collections.emptyMap());
+            this.byLanguage = new Keys(Collections.emptyMap());
+        }
+
+        /**
+         * The columns of an index, to be changed for an update
+         */
+        Columns(FilmIndex index, int capacity) {
+            this.titles = Arrays.copyOf(index.titles, capacity);
+            this.years = Arrays.copyOf(index.years, capacity);
+            this.withYear = (BitSet) index.withYear.clone();
+            this.directorNames = Arrays.copyOf(index.directorNames, capacity);
+            this.scores = new double[SCORE_COUNT][];
+            for (int i = 0; i < SCORE_COUNT; i++) {
+                scores[i] = Arrays.copyOf(index.scores[i], capacity);
+            }
+            this.byGenre = new Keys(index.byGenre);
+            this.byDirector = new Keys(index.byDirector);
+            this.byCountry = new Keys(index.byCountry);
+            this.byLanguage = new Keys(index.byLanguage);
+        }
+
+        void clear(int ordinal) {
+            titles[ordinal] = null;
+            years[ordinal] = 0;
+            withYear.clear(ordinal);
+            directorNames[ordinal] = null;
+            for (int i = 0; i < SCORE_COUNT; i++) {
+                scores[i][ordinal] = 0;
+            }
+        }
+    }
+
+    /**
+     * Films taken out of and put into the keys of one lookup. Applied to
+     * the lookup they give a copy of it in which only the bit sets of
+     * keys whose films differ are new; the others are shared.
+     */
+    private static final class Keys {
+
+        final Map<String, BitSet> lookup;
+        final Map<String, BitSet> added = new HashMap<>();
+        final Map<String, BitSet> removed = new HashMap<>();
+
+        Keys(Map<String, BitSet> lookup) {
+            this.lookup = lookup;
+        }
+
+        void add(String key, int ordinal) {
+            added.computeIfAbsent(key, k -> new BitSet()).set(ordinal);
+        }
+
+        void remove(String key, int ordinal) {
+            removed.computeIfAbsent(key, k -> new BitSet()).set(ordinal);
+        }
+
+        /**
+         * Takes the film out of every key it is in
+         */
+        void removeAll(int ordinal) {
+            for (Map.Entry<String, BitSet> key : lookup.entrySet()) {
+                if (key.getValue().get(ordinal)) {
+                    remove(key.getKey(), ordinal);
+                }
+            }
+        }
+
+        Map<String, BitSet> apply() {
+            if (lookup.isEmpty() && removed.isEmpty()) {
+                return added;
+            }
+            Map<String, BitSet> result = lookup;
+            Set<String> keys = new HashSet<>(added.keySet());
+            keys.addAll(removed.keySet());
+            for (String key : keys) {
+                BitSet old = lookup.get(key);
+                BitSet films = old != null ? (BitSet) old.clone() : new BitSet();
+                if (removed.containsKey(key)) {
+                    films.andNot(removed.get(key));
+                }
+                if (added.containsKey(key)) {
+                    films.or(added.get(key));
+                }
+                if (films.equals(old) || (old == null && films.isEmpty())) {
+                    continue;
+                }
+                if (result == lookup) {
+                    result = new HashMap<>(lookup);
+                }
+                if (films.isEmpty()) {
+                    result.remove(key);
+                } else {
+                    result.put(key, films);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Reads what the index keeps of one film from the graph
+     */
+    private static final class Reader {
+
+        final Graph graph;
+        final Node filmType;
+        final Node hasTitle;
+        final Node releaseYear;
+        final Node hasGenre;
+        final Node directedBy;
+        final Node setIn;
+        final Node spokenIn;
+        final Node hasName;
+        final Node genreName;
+        final Node countryName;
+        final Node languageName;
+        final Node[] scoreProperties = new Node[SCORE_COUNT];
+
+        // Names of linked resources, read once per build
+        final Map<Node, String> names = new HashMap<>();
+
+        Reader(Graph graph, String schemaNs) {
+            this.graph = graph;
+            this.filmType = NodeFactory.createURI(schemaNs + "Film");
+            this.hasTitle = NodeFactory.createURI(schemaNs + "hasTitle");
+            this.releaseYear = NodeFactory.createURI(schemaNs + "releaseYear");
+            this.hasGenre = NodeFactory.createURI(schemaNs + "hasGenre");
+            this.directedBy = NodeFactory.createURI(schemaNs + "directedBy");
+            this.setIn = NodeFactory.createURI(schemaNs + "setIn");
+            this.spokenIn = NodeFactory.createURI(schemaNs + "spokenIn");
+            this.hasName = NodeFactory.createURI(schemaNs + "hasName");
+            this.genreName = NodeFactory.createURI(schemaNs + "genreName");
+            this.countryName = NodeFactory.createURI(schemaNs + "countryName");
+            this.languageName = NodeFactory.createURI(schemaNs + "languageName");
+            for (int i = 0; i < SCORE_COUNT; i++) {
+                scoreProperties[i] = NodeFactory.createURI(schemaNs + SCORE_PROPERTIES[i]);
+            }
+        }
+
+        void read(Node film, int ordinal, Columns into) {
+            into.titles[ordinal] = literal(graph, film, hasTitle);
+
+            Node year = first(graph, film, releaseYear);
+            if (year != null && year.isLiteral()) {
+                try {
+                    into.years[ordinal] = toInt(year);
+                    into.withYear.set(ordinal);
+                } catch (DatatypeFormatException | NumberFormatException e) {
+                    // not a year, the film is left out of year lookups
+                }
+            }
+
+            for (int i = 0; i < SCORE_COUNT; i++) {
+                Node score = first(graph, film, scoreProperties[i]);
+                if (score != null && score.isLiteral()) {
+                    try {
+                        into.scores[i][ordinal] = toDouble(score);
+                    } catch (DatatypeFormatException | NumberFormatException e) {
+                        // not a number, left at 0
+                    }
+                }
+            }
+
+            List<String> directors = new ArrayList<>(1);
+            for (Node director : objects(graph, film, directedBy)) {
+                String name = name(graph, names, director, hasName);
+                directors.add(name);
+                into.byDirector.add(name, ordinal);
+            }
+            into.directorNames[ordinal] = directors.toArray(new String[0]);
+
+            for (Node genre : objects(graph, film, hasGenre)) {
+                into.byGenre.add(name(graph, names, genre, genreName), ordinal);
+            }
+            for (Node country : objects(graph, film, setIn)) {
+                into.byCountry.add(name(graph, names, country, countryName), ordinal);
+            }
+            for (Node language : objects(graph, film, spokenIn)) {
+                into.byLanguage.add(name(graph, names, language, languageName), ordinal);
+            }
+        }
+    }
+}
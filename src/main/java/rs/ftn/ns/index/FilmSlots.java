@@ -0,0 +1,253 @@
+package rs.ftn.ns.index;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.vocabulary.RDF;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Where an index keeps its films. Every film has a slot, a number from 0
+ * that stays the same while the film is in the index, so an updated index
+ * only rewrites the slots of the films that changed and shares or copies
+ * the rest. The slot of a removed film goes to the next film added. The
+ * films are also kept in id order, for lookups by id and for listing them.
+ *
+ * Immutable; {@link #change} gives the slots after some films changed.
+ */
+final class FilmSlots {
+
+    // By slot: id of the film, or null if the slot is free
+    private final String[] ids;
+    private final BitSet live;
+
+    // Slots of the films, by id
+    private final int[] order;
+
+    private FilmSlots(String[] ids, BitSet live, int[] order) {
+        this.ids = ids;
+        this.live = live;
+        this.order = order;
+    }
+
+    /**
+     * @param ids Ids of the films; film i gets slot i
+     */
+    static FilmSlots of(String[] ids) {
+        BitSet live = new BitSet(ids.length);
+        live.set(0, ids.length);
+
+        // Films are usually added in IRI order, which is id order
+        boolean sorted = true;
+        for (int i = 1; i < ids.length && sorted; i++) {
+            sorted = ids[i - 1].compareTo(ids[i]) < 0;
+        }
+        int[] order = new int[ids.length];
+        if (sorted) {
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+        } else {
+            Integer[] byId = new Integer[ids.length];
+            for (int i = 0; i < byId.length; i++) {
+                byId[i] = i;
+            }
+            Arrays.sort(byId, (a, b) -> ids[a].compareTo(ids[b]));
+            for (int i = 0; i < order.length; i++) {
+                order[i] = byId[i];
+            }
+        }
+        return new FilmSlots(ids, live, order);
+    }
+
+    /**
+     * @return Number of films
+     */
+    int size() {
+        return order.length;
+    }
+
+    /**
+     * @return Number of slots, used or free; every slot is below this
+     */
+    int capacity() {
+        return ids.length;
+    }
+
+    /**
+     * @return Id of the film in the slot, or null if the slot is free
+     */
+    String id(int slot) {
+        return ids[slot];
+    }
+
+    /**
+     * @return Slot of the film, or -1 if there is no such film
+     */
+    int slot(String id) {
+        int position = search(ids, order, order.length, id);
+        return position >= 0 ? order[position] : -1;
+    }
+
+    /**
+     * @return A new set of the used slots
+     */
+    BitSet live() {
+        return (BitSet) live.clone();
+    }
+
+    /**
+     * @param position 0 to size() - 1
+     * @return Slot of the film at that position in id order
+     */
+    int at(int position) {
+        return order[position];
+    }
+
+    /**
+     * @return Position in id order of the first film whose id sorts after the given one
+     */
+    int upperBound(String id) {
+        int position = search(ids, order, order.length, id);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    /**
+     * The slots after some films changed: films that are still films
+     * with a title keep their slot, films that are gone free theirs, and
+     * new films get the lowest free slots.
+     * The caller must hold a read lock (or transaction) on the graph.
+     *
+     * @param films IRIs of the films that were added, changed or removed
+     * @param graph Graph after the change
+     * @param dataNs Namespace of the film individuals
+     * @param schemaNs Namespace of the ontology properties
+     */
+    Change change(Collection<String> films, Graph graph, String dataNs, String schemaNs) {
+        Node filmType = NodeFactory.createURI(schemaNs + "Film");
+        Node hasTitle = NodeFactory.createURI(schemaNs + "hasTitle");
+
+        Map<String, Node> byId = new TreeMap<>();
+        for (String iri : films) {
+            byId.put(localName(iri, dataNs), NodeFactory.createURI(iri));
+        }
+
+        String[] newIds = ids.clone();
+        BitSet newLive = (BitSet) live.clone();
+        int[] newOrder = Arrays.copyOf(order, order.length + byId.size());
+        int size = order.length;
+        int[] removed = new int[byId.size()];
+        int removedCount = 0;
+        Map<Integer, Node> added = new TreeMap<>();
+        Map<String, Node> created = new TreeMap<>();
+
+        for (Map.Entry<String, Node> film : byId.entrySet()) {
+            Node node = film.getValue();
+            boolean present = graph.contains(node, RDF.type.asNode(), filmType) &&
+                              graph.contains(node, hasTitle, Node.ANY);
+            int slot = slot(film.getKey());
+            if (slot >= 0) {
+                removed[removedCount++] = slot;
+                if (present) {
+                    added.put(slot, node);
+                } else {
+                    int position = search(newIds, newOrder, size, film.getKey());
+                    System.arraycopy(newOrder, position + 1, newOrder, position, size - position - 1);
+                    size--;
+                    newLive.clear(slot);
+                    newIds[slot] = null;
+                }
+            } else if (present) {
+                created.put(film.getKey(), node);
+            }
+        }
+
+        for (Map.Entry<String, Node> film : created.entrySet()) {
+            int slot = newLive.nextClearBit(0);
+            if (slot == newIds.length) {
+                newIds = Arrays.copyOf(newIds, Math.max(16, slot + slot / 2));
+            }
+            newIds[slot] = film.getKey();
+            newLive.set(slot);
+            int position = -search(newIds, newOrder, size, film.getKey()) - 1;
+            System.arraycopy(newOrder, position, newOrder, position + 1, size - position);
+            newOrder[position] = slot;
+            size++;
+            added.put(slot, film.getValue());
+        }
+
+        int[] addedSlots = new int[added.size()];
+        Node[] addedFilms = new Node[added.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Node> film : added.entrySet()) {
+            addedSlots[i] = film.getKey();
+            addedFilms[i++] = film.getValue();
+        }
+        FilmSlots slots = new FilmSlots(newIds, newLive, Arrays.copyOf(newOrder, size));
+        return new Change(slots, Arrays.copyOf(removed, removedCount), addedSlots, addedFilms);
+    }
+
+    /**
+     * Binary search of the films in id order
+     *
+     * @return Position of the film, or (-(insertion point) - 1)
+     */
+    private static int search(String[] ids, int[] order, int size, String id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compare = ids[order[mid]].compareTo(id);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static String localName(String iri, String dataNs) {
+        if (iri.startsWith(dataNs)) {
+            return iri.substring(dataNs.length());
+        }
+        if (iri.contains("#")) {
+            return iri.substring(iri.indexOf("#") + 1);
+        }
+        return iri.substring(iri.lastIndexOf("/") + 1);
+    }
+
+    /**
+     * What an index has to do to follow a change of some films: drop
+     * what it has for the removed slots, then read the added ones. A
+     * film that changed is in both, with the same slot.
+     */
+    static final class Change {
+
+        /** Slots after the change */
+        final FilmSlots slots;
+
+        /** Slots (before the change) of the films that changed or are gone */
+        final int[] removed;
+
+        /** Slots of the films to read from the graph, ascending */
+        final int[] added;
+
+        /** The film nodes of the added slots */
+        final Node[] films;
+
+        private Change(FilmSlots slots, int[] removed, int[] added, Node[] films) {
+            this.slots = slots;
+            this.removed = removed;
+            this.added = added;
+            this.films = films;
+        }
+    }
+}
@@ -0,0 +1,633 @@
+package rs.ftn.ns.index;
+
+import rs.ftn.ns.model.Actor;
+import rs.ftn.ns.model.Director;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.model.Person;
+import rs.ftn.ns.model.Writer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Read-optimized catalog of complete films, without a Film object graph
+ * per film.
+ *
+ * Strings that repeat across films (genres, countries, languages, awards,
+ * quality categories, people) are dictionary-encoded and stored once;
+ * numbers are kept in primitive columns indexed by film ordinal, and
+ * multi-valued relations (actors, writers, genres, awards) as one int
+ * array of codes per film. A Film is only created when one is asked for,
+ * and is a detached copy that the caller may change.
+ *
+ * A store is immutable. When the model changes a new one is built, or
+ * copied from this one with only the changed films read again, see
+ * OntologyManager.getFilmStore().
+ */
+public final class FilmStore {
+
+    private static final int NONE = -1;
+
+    // Counts at the start of a film's links: actors, writers, genres; then the codes, awards last
+    private static final int LINK_HEADER = 3;
+
+    private final long modelVersion;
+    private final int size;
+
+    // Ids in sorted order, and the ordinal of each, for lookups by id
+    private final String[] sortedIds;
+    private final int[] sortedOrdinals;
+
+    // Strings unique to a film
+    private final String[] ids;
+    private final String[] titles;
+    private final String[] originalTitles;
+    private final String[] synopses;
+
+    // Dictionaries by code, and codes into them (NONE if the film has no value)
+    private final Coding coding;
+    private final String[] values;
+    private final String[] personIds;
+    private final String[] personNames;
+    private final int[] country;
+    private final int[] language;
+    private final int[] director;
+    private final int[] qualityCategory;
+
+    // Primitive columns
+    private final int[] releaseYear;
+    private final int[] duration;
+    private final int[] imdbVotes;
+    private final double[] budget;
+    private final double[] boxOffice;
+    private final double[] imdbRating;
+    private final double[] qualityScore;
+    private final double[][] scores;
+
+    // Multi-valued relations of each film, see LINK_HEADER
+    private final int[][] links;
+
+    private FilmStore(long modelVersion, int size, Columns columns, Coding coding, Codes values, Codes people) {
+        this.modelVersion = modelVersion;
+        this.size = size;
+        this.ids = columns.ids;
+        this.titles = columns.titles;
+        this.originalTitles = columns.originalTitles;
+        this.synopses = columns.synopses;
+
+        this.coding = coding;
+        this.values = values.values;
+        this.personIds = people.values;
+        this.personNames = people.names;
+        this.country = columns.country;
+        this.language = columns.language;
+        this.director = columns.director;
+        this.qualityCategory = columns.qualityCategory;
+
+        this.releaseYear = columns.releaseYear;
+        this.duration = columns.duration;
+        this.imdbVotes = columns.imdbVotes;
+        this.budget = columns.budget;
+        this.boxOffice = columns.boxOffice;
+        this.imdbRating = columns.imdbRating;
+        this.qualityScore = columns.qualityScore;
+        this.scores = columns.scores;
+        this.links = columns.links;
+
+        this.sortedIds = Arrays.copyOf(columns.sortedIds, size);
+        this.sortedOrdinals = Arrays.copyOf(columns.sortedOrdinals, size);
+    }
+
+    /**
+     * @return A builder for a new store
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A copy of this store after some films changed. The other films
+     * keep their ordinals and are copied column by column; a changed film
+     * is written over its own ordinal, a new one goes after the last
+     * film, and the last film moves into the ordinal of one that is gone.
+     *
+     * @param changed Ids of the films that were added, changed or removed
+     * @param films Those of them that are films after the change
+     * @param modelVersion Model version the films were read at
+     * @return The new store
+     */
+    public FilmStore update(Collection<String> changed, Collection<Film> films, long modelVersion) {
+        Map<String, Film> byId = new HashMap<>();
+        for (Film film : films) {
+            byId.put(film.getId(), film);
+        }
+        Set<String> added = new TreeSet<>(byId.keySet());
+        added.removeAll(changed);
+        Set<String> all = new TreeSet<>(changed);
+        all.addAll(added);
+
+        Columns columns = new Columns(this, size + all.size());
+        Codes values = new Codes(coding.values(this), this.values, null);
+        Codes people = new Codes(coding.people(this), personIds, personNames);
+        int newSize = size;
+        for (String id : all) {
+            int position = Arrays.binarySearch(columns.sortedIds, 0, newSize, id);
+            Film film = byId.get(id);
+            if (position >= 0 && film != null) {
+                columns.write(columns.sortedOrdinals[position], film, values, people);
+            } else if (position >= 0) {
+                int ordinal = columns.sortedOrdinals[position];
+                columns.unsort(position, newSize);
+                if (ordinal != --newSize) {
+                    columns.move(newSize, ordinal);
+                    columns.sortedOrdinals[Arrays.binarySearch(columns.sortedIds, 0, newSize, columns.ids[ordinal])] =
+                        ordinal;
+                }
+                columns.clear(newSize);
+            } else if (film != null) {
+                columns.sort(-position - 1, newSize, id, newSize);
+                columns.write(newSize++, film, values, people);
+            }
+        }
+        return new FilmStore(modelVersion, newSize, columns, coding, values, people);
+    }
+
+    /**
+     * @return The model version this store was built from
+     */
+    public long getModelVersion() {
+        return modelVersion;
+    }
+
+    /**
+     * @return Number of films in the store
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param id Film id (local name)
+     * @return Ordinal of the film, or -1 if the store does not have it
+     */
+    public int ordinalOf(String id) {
+        int position = Arrays.binarySearch(sortedIds, id);
+        return position >= 0 ? sortedOrdinals[position] : NONE;
+    }
+    /**
+     * @param ordinal Ordinal of a film, 0 to size() - 1
+     * @return Id of the film
+     */
+    public String getId(int ordinal) {
+        return ids[ordinal];
+    }
+
+    public String getTitle(int ordinal) {
+        return titles[ordinal];
+    }
+
+    public int getReleaseYear(int ordinal) {
+        return releaseYear[ordinal];
+    }
+
+    public double getImdbRating(int ordinal) {
+        return imdbRating[ordinal];
+    }
+
+    /**
+     * @param ordinal Ordinal of a film
+     * @param score FilmIndex.SCORE_DIRECTION to FilmIndex.SCORE_CULTURAL_SIGNIFICANCE
+     * @return The score
+     */
+    public double getScore(int ordinal, int score) {
+        return scores[score][ordinal];
+    }
+
+    /**
+     * @param id Film id (local name)
+     * @return A new Film with everything the store has on it, or null if the store does not have it
+     */
+    public Film getFilm(String id) {
+        int ordinal = ordinalOf(id);
+        return ordinal != NONE ? getFilm(ordinal) : null;
+    }
+
+    /**
+     * @param ordinal Ordinal of a film
+     * @return A new Film with everything the store has on it
+     */
+    public Film getFilm(int ordinal) {
+        Film film = new Film(ids[ordinal], titles[ordinal], releaseYear[ordinal]);
+        film.setOriginalTitle(originalTitles[ordinal]);
+        film.setDuration(duration[ordinal]);
+        film.setCountry(value(country[ordinal]));
+        film.setLanguage(value(language[ordinal]));
+        if (director[ordinal] != NONE) {
+            film.setDirector(new Director(personIds[director[ordinal]], personNames[director[ordinal]]));
+        }
+        int[] codes = links[ordinal];
+        int writers = LINK_HEADER + codes[0];
+        int genres = writers + codes[1];
+        int awards = genres + codes[2];
+        for (int i = LINK_HEADER; i < writers; i++) {
+            film.addActor(new Actor(personIds[codes[i]], personNames[codes[i]]));
+        }
+        for (int i = writers; i < genres; i++) {
+            film.addWriter(new Writer(personIds[codes[i]], personNames[codes[i]]));
+        }
+        for (int i = genres; i < awards; i++) {
+            film.addGenre(values[codes[i]]);
+        }
+        for (int i = awards; i < codes.length; i++) {
+            film.addAward(values[codes[i]]);
+        }
+        film.setBudget(budget[ordinal]);
+        film.setBoxOffice(boxOffice[ordinal]);
+        film.setImdbRating(imdbRating[ordinal]);
+        film.setImdbVotes(imdbVotes[ordinal]);
+        film.setDirectionScore(scores[FilmIndex.SCORE_DIRECTION][ordinal]);
+        film.setActingScore(scores[FilmIndex.SCORE_ACTING][ordinal]);
+        film.setScreenplayScore(scores[FilmIndex.SCORE_SCREENPLAY][ordinal]);
+        film.setVisualEffectsScore(scores[FilmIndex.SCORE_VISUAL_EFFECTS][ordinal]);
+        film.setCulturalSignificanceScore(scores[FilmIndex.SCORE_CULTURAL_SIGNIFICANCE][ordinal]);
+        film.setQualityScore(qualityScore[ordinal]);
+        film.setQualityCategory(value(qualityCategory[ordinal]));
+        film.setSynopsis(synopses[ordinal]);
+        return film;
+    }
+
+    /**
+     * @return All films in ordinal order; each get() creates a new Film
+     */
+    public List<Film> films() {
+        return new AbstractList<Film>() {
+            @Override
+            public Film get(int index) {
+                return getFilm(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * @return Number of distinct strings shared between films; after an
+     *         update, also those only films that changed or are gone had
+     */
+    public int getDictionarySize() {
+        return values.length + personIds.length;
+    }
+
+    private String value(int code) {
+        return code != NONE ? values[code] : null;
+    }
+
+    /**
+     * Collects films one by one; the films are copied, not kept
+     */
+    public static final class Builder {
+
+        private final Set<String> added = new HashSet<>();
+        private final Columns columns = new Columns(16);
+        private final Codes values = new Codes(new Dictionary(), new String[16], null);
+        private final Codes people = new Codes(new Dictionary(), new String[16], new String[16]);
+        private int size;
+
+        private Builder() {
+        }
+
+        /**
+         * @param film Film to add; films with an id already added are ignored
+         * @return This builder
+         */
+        public Builder add(Film film) {
+            if (!added.add(film.getId())) {
+                return this;
+            }
+            if (size == columns.ids.length) {
+                columns.grow(size * 2);
+            }
+            columns.write(size, film, values, people);
+            columns.sortedIds[size] = film.getId();
+            columns.sortedOrdinals[size] = size;
+            size++;
+            return this;
+        }
+
+        /**
+         * @param modelVersion Model version the films were read at
+         * @return The store
+         */
+        public FilmStore build(long modelVersion) {
+            Columns store = new Columns(columns, size);
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> store.ids[a].compareTo(store.ids[b]));
+            for (int i = 0; i < size; i++) {
+                store.sortedIds[i] = store.ids[order[i]];
+                store.sortedOrdinals[i] = order[i];
+            }
+            // The codes are given out again, in the same order, on the first update
+            return new FilmStore(modelVersion, size, store, new Coding(), values.trim(), people.trim());
+        }
+    }
+
+    /**
+     * The columns of a store being built or updated
+     */
+    private static final class Columns {
+
+        String[] sortedIds;
+        int[] sortedOrdinals;
+        String[] ids;
+        String[] titles;
+        String[] originalTitles;
+        String[] synopses;
+        int[] country;
+        int[] language;
+        int[] director;
+        int[] qualityCategory;
+        int[] releaseYear;
+        int[] duration;
+        int[] imdbVotes;
+        double[] budget;
+        double[] boxOffice;
+        double[] imdbRating;
+        double[] qualityScore;
+        double[][] scores = new double[FilmIndex.SCORE_COUNT][];
+        int[][] links;
+
+        Columns(int capacity) {
+            sortedIds = new String[capacity];
+            sortedOrdinals = new int[capacity];
+            ids = new String[capacity];
+            titles = new String[capacity];
+            originalTitles = new String[capacity];
+            synopses = new String[capacity];
+            country = new int[capacity];
+            language = new int[capacity];
+            director = new int[capacity];
+            qualityCategory = new int[capacity];
+            releaseYear = new int[capacity];
+            duration = new int[capacity];
+            imdbVotes = new int[capacity];
+            budget = new double[capacity];
+            boxOffice = new double[capacity];
+            imdbRating = new double[capacity];
+            qualityScore = new double[capacity];
+            for (int s = 0; s < FilmIndex.SCORE_COUNT; s++) {
+                scores[s] = new double[capacity];
+            }
+            links = new int[capacity][];
+        }
+
+        /**
+         * Copies of the columns of a store
+         */
+        Columns(FilmStore store, int capacity) {
+            sortedIds = Arrays.copyOf(store.sortedIds, capacity);
+            sortedOrdinals = Arrays.copyOf(store.sortedOrdinals, capacity);
+            copy(store.ids, store.titles, store.originalTitles, store.synopses, store.country, store.language,
+                 store.director, store.qualityCategory, store.releaseYear, store.duration, store.imdbVotes,
+                 store.budget, store.boxOffice, store.imdbRating, store.qualityScore, store.scores, store.links,
+                 capacity);
+        }
+
+        /**
+         * Copies of other columns, cut or grown to the capacity
+         */
+        Columns(Columns from, int capacity) {
+            sortedIds = Arrays.copyOf(from.sortedIds, capacity);
+            sortedOrdinals = Arrays.copyOf(from.sortedOrdinals, capacity);
+            copy(from.ids, from.titles, from.originalTitles, from.synopses, from.country, from.language,
+                 from.director, from.qualityCategory, from.releaseYear, from.duration, from.imdbVotes,
+                 from.budget, from.boxOffice, from.imdbRating, from.qualityScore, from.scores, from.links, capacity);
+        }
+
+        private void copy(String[] ids, String[] titles, String[] originalTitles, String[] synopses, int[] country,
+                          int[] language, int[] director, int[] qualityCategory, int[] releaseYear, int[] duration,
+                          int[] imdbVotes, double[] budget, double[] boxOffice, double[] imdbRating,
+                          double[] qualityScore, double[][] scores, int[][] links, int capacity) {
+            this.ids = Arrays.copyOf(ids, capacity);
+            this.titles = Arrays.copyOf(titles, capacity);
+            this.originalTitles = Arrays.copyOf(originalTitles, capacity);
+            this.synopses = Arrays.copyOf(synopses, capacity);
+            this.country = Arrays.copyOf(country, capacity);
+            this.language = Arrays.copyOf(language, capacity);
+            this.director = Arrays.copyOf(director, capacity);
+            this.qualityCategory = Arrays.copyOf(qualityCategory, capacity);
+            this.releaseYear = Arrays.copyOf(releaseYear, capacity);
+            this.duration = Arrays.copyOf(duration, capacity);
+            this.imdbVotes = Arrays.copyOf(imdbVotes, capacity);
+            this.budget = Arrays.copyOf(budget, capacity);
+            this.boxOffice = Arrays.copyOf(boxOffice, capacity);
+            this.imdbRating = Arrays.copyOf(imdbRating, capacity);
+            this.qualityScore = Arrays.copyOf(qualityScore, capacity);
+            for (int s = 0; s < FilmIndex.SCORE_COUNT; s++) {
+                this.scores[s] = Arrays.copyOf(scores[s], capacity);
+            }
+            this.links = Arrays.copyOf(links, capacity);
+        }
+
+        void grow(int capacity) {
+            Columns grown = new Columns(this, capacity);
+            sortedIds = grown.sortedIds;
+            sortedOrdinals = grown.sortedOrdinals;
+            copy(grown.ids, grown.titles, grown.originalTitles, grown.synopses, grown.country, grown.language,
+                 grown.director, grown.qualityCategory, grown.releaseYear, grown.duration, grown.imdbVotes,
+                 grown.budget, grown.boxOffice, grown.imdbRating, grown.qualityScore, grown.scores, grown.links,
+                 capacity);
+        }
+
+        void write(int i, Film film, Codes values, Codes people) {
+            ids[i] = film.getId();
+            titles[i] = film.getTitle();
+            originalTitles[i] = film.getOriginalTitle();
+            synopses[i] = film.getSynopsis();
+
+            country[i] = values.code(film.getCountry());
+            language[i] = values.code(film.getLanguage());
+            director[i] = film.getDirector() != null ? people.code(film.getDirector()) : NONE;
+            qualityCategory[i] = values.code(film.getQualityCategory());
+
+            releaseYear[i] = film.getReleaseYear();
+            duration[i] = film.getDuration();
+            imdbVotes[i] = film.getImdbVotes();
+            budget[i] = film.getBudget();
+            boxOffice[i] = film.getBoxOffice();
+            imdbRating[i] = film.getImdbRating();
+            qualityScore[i] = film.getQualityScore();
+            scores[FilmIndex.SCORE_DIRECTION][i] = film.getDirectionScore();
+            scores[FilmIndex.SCORE_ACTING][i] = film.getActingScore();
+            scores[FilmIndex.SCORE_SCREENPLAY][i] = film.getScreenplayScore();
+            scores[FilmIndex.SCORE_VISUAL_EFFECTS][i] = film.getVisualEffectsScore();
+            scores[FilmIndex.SCORE_CULTURAL_SIGNIFICANCE][i] = film.getCulturalSignificanceScore();
+
+            int[] codes = new int[LINK_HEADER + film.getActors().size() + film.getWriters().size() +
+                                  film.getGenres().size() + film.getAwards().size()];
+            codes[0] = film.getActors().size();
+            codes[1] = film.getWriters().size();
+            codes[2] = film.getGenres().size();
+            int at = LINK_HEADER;
+            for (Actor actor : film.getActors()) {
+                codes[at++] = people.code(actor);
+            }
+            for (Writer writer : film.getWriters()) {
+                codes[at++] = people.code(writer);
+            }
+            for (String genre : film.getGenres()) {
+                codes[at++] = values.code(genre);
+            }
+            for (String award : film.getAwards()) {
+                codes[at++] = values.code(award);
+            }
+            links[i] = codes;
+        }
+
+        void move(int from, int to) {
+            ids[to] = ids[from];
+            titles[to] = titles[from];
+            originalTitles[to] = originalTitles[from];
+            synopses[to] = synopses[from];
+            country[to] = country[from];
+            language[to] = language[from];
+            director[to] = director[from];
+            qualityCategory[to] = qualityCategory[from];
+            releaseYear[to] = releaseYear[from];
+            duration[to] = duration[from];
+            imdbVotes[to] = imdbVotes[from];
+            budget[to] = budget[from];
+            boxOffice[to] = boxOffice[from];
+            imdbRating[to] = imdbRating[from];
+            qualityScore[to] = qualityScore[from];
+            for (int s = 0; s < FilmIndex.SCORE_COUNT; s++) {
+                scores[s][to] = scores[s][from];
+            }
+            links[to] = links[from];
+        }
+
+        void clear(int i) {
+            ids[i] = null;
+            titles[i] = null;
+            originalTitles[i] = null;
+            synopses[i] = null;
+            links[i] = null;
+        }
+
+        /**
+         * Puts an id into the sorted ids at the position
+         */
+        void sort(int position, int size, String id, int ordinal) {
+            System.arraycopy(sortedIds, position, sortedIds, position + 1, size - position);
+            System.arraycopy(sortedOrdinals, position, sortedOrdinals, position + 1, size - position);
+            sortedIds[position] = id;
+            sortedOrdinals[position] = ordinal;
+        }
+
+        /**
+         * Takes the id at the position out of the sorted ids
+         */
+        void unsort(int position, int size) {
+            System.arraycopy(sortedIds, position + 1, sortedIds, position, size - position - 1);
+            System.arraycopy(sortedOrdinals, position + 1, sortedOrdinals, position, size - position - 1);
+        }
+    }
+
+    /**
+     * Codes strings of films being written, and keeps the string of each
+     * code. The arrays of a store are copied before the first new code is
+     * written to them, as the store may still be read.
+     */
+    private static final class Codes {
+
+        final Dictionary dictionary;
+        String[] values;
+        String[] names;
+        private boolean copied;
+
+        Codes(Dictionary dictionary, String[] values, String[] names) {
+            this.dictionary = dictionary;
+            this.values = values;
+            this.names = names;
+        }
+
+        int code(String value) {
+            return value != null ? code(value, value, null) : NONE;
+        }
+
+        int code(Person person) {
+            return code(person.getId() + "\n" + person.getName(), person.getId(), person.getName());
+        }
+
+        private int code(String key, String value, String name) {
+            int code = dictionary.code(key);
+            if (code < values.length && values[code] != null) {
+                return code;
+            }
+            if (!copied || code >= values.length) {
+                int capacity = Math.max(values.length, code + 1);
+                capacity = copied ? Math.max(capacity, values.length * 2) : capacity;
+                values = Arrays.copyOf(values, capacity);
+                names = names != null ? Arrays.copyOf(names, capacity) : null;
+                copied = true;
+            }
+            values[code] = value;
+            if (names != null) {
+                names[code] = name;
+            }
+            return code;
+        }
+
+        /**
+         * @return These codes, with the arrays cut to the codes given out
+         */
+        Codes trim() {
+            int size = dictionary.size();
+            return new Codes(dictionary, Arrays.copyOf(values, size), names != null ? Arrays.copyOf(names, size) : null);
+        }
+    }
+
+    /**
+     * The dictionaries of a store's strings, for coding the films of an
+     * update. They are made on the first update, from the strings of the
+     * store, and then shared by every store updated from it, so a store
+     * that was only built does not keep them.
+     */
+    private static final class Coding {
+
+        private Dictionary values;
+        private Dictionary people;
+
+        synchronized Dictionary values(FilmStore store) {
+            if (values == null) {
+                values = new Dictionary();
+                for (String value : store.values) {
+                    values.code(value);
+                }
+            }
+            return values;
+        }
+
+        synchronized Dictionary people(FilmStore store) {
+            if (people == null) {
+                people = new Dictionary();
+                for (int i = 0; i < store.personIds.length; i++) {
+                    people.code(store.personIds[i] + "\n" + store.personNames[i]);
+                }
+            }
+            return people;
+        }
+    }
+}
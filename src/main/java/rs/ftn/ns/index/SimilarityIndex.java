@@ -0,0 +1,533 @@
+package rs.ftn.ns.index;
+
+import org.apache.jena.datatypes.DatatypeFormatException;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * "More like this" over the films of one model version.
+ *
+ * Every film is a sparse binary vector over what it links to: genres,
+ * director, writers, actors, country, language, production company, era,
+ * and the decade of its release. Features are weighted by inverse
+ * document frequency, so sharing a director counts for much more than
+ * sharing a language, and films are compared by cosine similarity.
+ *
+ * Candidates come from inverted lists, but only from the lists of
+ * features that at most {@link #candidateListLimit} films have. Rare
+ * features (people, companies) carry nearly all of the similarity, and
+ * their lists are short, so a query touches a few hundred films rather
+ * than the catalog. The candidates are then scored exactly, common
+ * features included. A film with no rare feature falls back to the list
+ * of its rarest one.
+ *
+ * An index is immutable. When the model changes a new one is built, or
+ * derived from this one when only a few films changed, see
+ * OntologyManager.getSimilarityIndex().
+ */
+public final class SimilarityIndex {
+
+    /** Relations a film's features are taken from */
+    private static final String[] FEATURE_PROPERTIES = {
+        "hasGenre", "directedBy", "writtenBy", "hasActor", "setIn", "spokenIn", "producedByCompany", "belongsToEra"
+    };
+
+    private static final int MIN_CANDIDATE_LIST_LIMIT = 64;
+
+    private static final int[] NONE = new int[0];
+
+    private final long modelVersion;
+    private final FilmSlots slots;
+
+    // Features by code, shared with the indexes updated from this one
+    private final Dictionary dictionary;
+
+    // Features of each film, by ordinal, sorted
+    private final int[][] filmFeatures;
+
+    // Films of each feature, by feature, sorted
+    private final int[][] postings;
+
+    // ln of the number of films of each feature, and of all films, for the
+    // IDF weights; computed per query, so a change of one film's features
+    // does not change the weights of every other film
+    private final double[] logFrequencies;
+    private final double logSize;
+
+    private final int featureCount;
+    private final int candidateListLimit;
+
+    private SimilarityIndex(long modelVersion, FilmSlots slots, Dictionary dictionary, int[][] filmFeatures,
+                            int[][] postings, double[] logFrequencies, int featureCount) {
+        this.modelVersion = modelVersion;
+        this.slots = slots;
+        this.dictionary = dictionary;
+        this.filmFeatures = filmFeatures;
+        this.postings = postings;
+        this.logFrequencies = logFrequencies;
+        this.logSize = Math.log(slots.size());
+        this.featureCount = featureCount;
+        this.candidateListLimit = Math.max(MIN_CANDIDATE_LIST_LIMIT, slots.size() / 200);
+    }
+
+    /**
+     * Builds the index with one scan over the films in the graph.
+     * The caller must hold a read lock (or transaction) on the graph.
+     *
+     * @param graph Graph to index
+     * @param dataNs Namespace of the film individuals
+     * @param schemaNs Namespace of the ontology properties
+     * @param modelVersion Model version the graph is at
+     * @return The new index
+     */
+    public static SimilarityIndex build(Graph graph, String dataNs, String schemaNs, long modelVersion) {
+        Node filmType = NodeFactory.createURI(schemaNs + "Film");
+        Node hasTitle = NodeFactory.createURI(schemaNs + "hasTitle");
+        Node releaseYear = NodeFactory.createURI(schemaNs + "releaseYear");
+        Node[] properties = featureProperties(schemaNs);
+
+        // Same films, in the same order, as FilmIndex
+        TreeSet<String> filmIris = new TreeSet<>();
+        ExtendedIterator<Triple> films = graph.find(Node.ANY, RDF.type.asNode(), filmType);
+        try {
+            while (films.hasNext()) {
+                Node film = films.next().getSubject();
+                if (film.isURI() && graph.contains(film, hasTitle, Node.ANY)) {
+                    filmIris.add(film.getURI());
+                }
+            }
+        } finally {
+            films.close();
+        }
+
+        Builder builder = new Builder();
+        List<String> filmFeatures = new ArrayList<>();
+        for (String iri : filmIris) {
+            features(graph, NodeFactory.createURI(iri), properties, releaseYear, filmFeatures);
+            builder.add(localName(iri, dataNs), filmFeatures);
+        }
+        return builder.build(modelVersion);
+    }
+
+    /**
+     * Builds the index for the model after some films changed, reading
+     * only those films from the graph. The other films keep their
+     * ordinals and features, and only the lists of features whose films
+     * changed are copied and changed. Gives the same results as
+     * {@link #build}.
+     * The caller must hold a read lock (or transaction) on the graph.
+     *
+     * @param graph Graph after the change
+     * @param dataNs Namespace of the film individuals
+     * @param schemaNs Namespace of the ontology properties
+     * @param films IRIs of the films that were added, changed or removed
+     * @param modelVersion Model version the graph is at
+     * @return The new index
+     */
+    public SimilarityIndex update(Graph graph, String dataNs, String schemaNs, Collection<String> films,
+                                  long modelVersion) {
+        Node releaseYear = NodeFactory.createURI(schemaNs + "releaseYear");
+        Node[] properties = featureProperties(schemaNs);
+        FilmSlots.Change change = slots.change(films, graph, dataNs, schemaNs);
+        int[][] newFilmFeatures = Arrays.copyOf(filmFeatures, change.slots.capacity());
+
+        // Films taken out of and put into the list of each feature
+        Map<Integer, BitSet> removed = new HashMap<>();
+        Map<Integer, BitSet> added = new HashMap<>();
+        for (int film : change.removed) {
+            for (int feature : filmFeatures[film]) {
+                removed.computeIfAbsent(feature, f -> new BitSet()).set(film);
+            }
+            newFilmFeatures[film] = null;
+        }
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < change.added.length; i++) {
+            int film = change.added[i];
+            features(graph, change.films[i], properties, releaseYear, names);
+            newFilmFeatures[film] = encode(dictionary, names);
+            for (int feature : newFilmFeatures[film]) {
+                added.computeIfAbsent(feature, f -> new BitSet()).set(film);
+            }
+        }
+
+        int[][] newPostings = postings;
+        double[] newLogFrequencies = logFrequencies;
+        int newFeatureCount = featureCount;
+        Set<Integer> features = new HashSet<>(removed.keySet());
+        features.addAll(added.keySet());
+        for (int feature : features) {
+            BitSet out = removed.getOrDefault(feature, new BitSet());
+            BitSet in = added.getOrDefault(feature, new BitSet());
+            if (out.equals(in)) {
+                continue;
+            }
+            // Features coded by updates of other versions have no list here
+            int[] old = feature < postings.length && postings[feature] != null ? postings[feature] : NONE;
+            BitSet list = new BitSet();
+            for (int film : old) {
+                list.set(film);
+            }
+            list.andNot(out);
+            list.or(in);
+            if (newPostings == postings) {
+                int size = Math.max(postings.length, dictionary.size());
+                newPostings = Arrays.copyOf(postings, size);
+                newLogFrequencies = Arrays.copyOf(logFrequencies, size);
+            }
+            newPostings[feature] = list.stream().toArray();
+            newLogFrequencies[feature] = Math.log(newPostings[feature].length);
+            newFeatureCount += (newPostings[feature].length > 0 ? 1 : 0) - (old.length > 0 ? 1 : 0);
+        }
+        return new SimilarityIndex(modelVersion, change.slots, dictionary, newFilmFeatures,
+                                   newPostings, newLogFrequencies, newFeatureCount);
+    }
+
+    /**
+     * Everything a film links to, and its decade
+     */
+    private static void features(Graph graph, Node film, Node[] properties, Node releaseYear, List<String> into) {
+        into.clear();
+        for (int i = 0; i < properties.length; i++) {
+            ExtendedIterator<Triple> links = graph.find(film, properties[i], Node.ANY);
+            try {
+                while (links.hasNext()) {
+                    Node target = links.next().getObject();
+                    if (target.isURI()) {
+                        into.add(FEATURE_PROPERTIES[i] + " " + target.getURI());
+                    }
+                }
+            } finally {
+                links.close();
+            }
+        }
+        Integer decade = decade(graph, film, releaseYear);
+        if (decade != null) {
+            into.add("decade " + decade);
+        }
+    }
+
+    private static Node[] featureProperties(String schemaNs) {
+        Node[] properties = new Node[FEATURE_PROPERTIES.length];
+        for (int i = 0; i < properties.length; i++) {
+            properties[i] = NodeFactory.createURI(schemaNs + FEATURE_PROPERTIES[i]);
+        }
+        return properties;
+    }
+
+    /**
+     * @return Builder for an index over features of your own, e.g. for tests
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The model version this index was built from
+     */
+    public long getModelVersion() {
+        return modelVersion;
+    }
+
+    /**
+     * @return Number of indexed films
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * @return Number of distinct features
+     */
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    /**
+     * Finds the films most similar to the given one, from the inverted
+     * lists of its rare features
+     *
+     * @param filmId Film id (local name)
+     * @param n Number of films to return
+     * @return Most similar films first (ties by film id); empty for an unknown film
+     */
+    public List<Match> similar(String filmId, int n) {
+        int film = slots.slot(filmId);
+        if (film < 0) {
+            return Collections.emptyList();
+        }
+
+        BitSet candidates = new BitSet(slots.capacity());
+        int rarest = -1;
+        for (int feature : filmFeatures[film]) {
+            int length = postings[feature].length;
+            if (length <= candidateListLimit) {
+                addPostings(candidates, feature);
+            }
+            if (rarest < 0 || length < postings[rarest].length) {
+                rarest = feature;
+            }
+        }
+        if (candidates.isEmpty() && rarest >= 0) {
+            addPostings(candidates, rarest);
+        }
+        candidates.clear(film);
+
+        return top(film, candidates, n);
+    }
+
+    /**
+     * Same as {@link #similar(String, int)}, but compares the film with
+     * every other film. Used to measure the recall of the inverted lists.
+     */
+    public List<Match> similarExhaustive(String filmId, int n) {
+        int film = slots.slot(filmId);
+        if (film < 0) {
+            return Collections.emptyList();
+        }
+        BitSet everyone = slots.live();
+        everyone.clear(film);
+        return top(film, everyone, n);
+    }
+
+    /**
+     * Cosine similarity of two films
+     *
+     * @return Similarity between 0 and 1; 0 if either film is unknown
+     */
+    public double similarity(String filmId, String otherFilmId) {
+        int film = slots.slot(filmId);
+        int other = slots.slot(otherFilmId);
+        return film < 0 || other < 0 ? 0 : cosine(film, norm(film), other);
+    }
+
+    private void addPostings(BitSet candidates, int feature) {
+        for (int film : postings[feature]) {
+            candidates.set(film);
+        }
+    }
+
+    private List<Match> top(int film, BitSet candidates, int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be at least 1, was " + n);
+        }
+        // Worst first; the later film (by id) loses a tie
+        PriorityQueue<Match> heap = new PriorityQueue<>(n + 1, (a, b) -> a.similarity != b.similarity
+            ? Double.compare(a.similarity, b.similarity)
+            : b.filmId.compareTo(a.filmId));
+
+        double norm = norm(film);
+        for (int other = candidates.nextSetBit(0); other >= 0; other = candidates.nextSetBit(other + 1)) {
+            double similarity = cosine(film, norm, other);
+            if (similarity <= 0) {
+                continue;
+            }
+            if (heap.size() < n) {
+                heap.add(new Match(slots.id(other), similarity));
+            } else if (similarity > heap.peek().similarity ||
+                       (similarity == heap.peek().similarity &&
+                        slots.id(other).compareTo(heap.peek().filmId) < 0)) {
+                heap.poll();
+                heap.add(new Match(slots.id(other), similarity));
+            }
+        }
+
+        List<Match> result = new ArrayList<>(heap);
+        result.sort(Collections.reverseOrder(heap.comparator()));
+        return result;
+    }
+
+    /**
+     * Squared IDF weight of a feature
+     */
+    private double weight(int feature) {
+        double idf = logSize - logFrequencies[feature] + 1.0;
+        return idf * idf;
+    }
+
+    private double norm(int film) {
+        double sum = 0;
+        for (int feature : filmFeatures[film]) {
+            sum += weight(feature);
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Merges the sorted feature lists of two films
+     *
+     * @param norm Norm of film a
+     */
+    private double cosine(int a, double norm, int b) {
+        int[] featuresA = filmFeatures[a];
+        int[] featuresB = filmFeatures[b];
+        int i = 0;
+        int j = 0;
+        double dot = 0;
+        while (i < featuresA.length && j < featuresB.length) {
+            int fa = featuresA[i];
+            int fb = featuresB[j];
+            if (fa == fb) {
+                dot += weight(fa);
+                i++;
+                j++;
+            } else if (fa < fb) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        double normB = dot > 0 ? norm(b) : 0;
+        return norm == 0 || normB == 0 ? 0 : dot / (norm * normB);
+    }
+
+    /**
+     * Codes the features of a film, sorted, without repeats
+     */
+    private static int[] encode(Dictionary dictionary, Collection<String> features) {
+        int[] encoded = new int[features.size()];
+        int size = 0;
+        for (String feature : features) {
+            encoded[size++] = dictionary.code(feature);
+        }
+        Arrays.sort(encoded);
+
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || encoded[distinct - 1] != encoded[i]) {
+                encoded[distinct++] = encoded[i];
+            }
+        }
+        return Arrays.copyOf(encoded, distinct);
+    }
+
+    private static Integer decade(Graph graph, Node film, Node releaseYear) {
+        ExtendedIterator<Triple> years = graph.find(film, releaseYear, Node.ANY);
+        try {
+            if (years.hasNext()) {
+                Node year = years.next().getObject();
+                if (year.isLiteral()) {
+                    Object value = year.getLiteralValue();
+                    int y = value instanceof Number ? ((Number) value).intValue()
+                                                    : (int) Double.parseDouble(year.getLiteralLexicalForm());
+                    return y / 10 * 10;
+                }
+            }
+            return null;
+        } catch (DatatypeFormatException | NumberFormatException e) {
+            return null;
+        } finally {
+            years.close();
+        }
+    }
+
+    private static String localName(String iri, String dataNs) {
+        if (iri.startsWith(dataNs)) {
+            return iri.substring(dataNs.length());
+        }
+        if (iri.contains("#")) {
+            return iri.substring(iri.indexOf("#") + 1);
+        }
+        return iri.substring(iri.lastIndexOf("/") + 1);
+    }
+
+    /**
+     * One similar film
+     */
+    public static final class Match {
+
+        private final String filmId;
+        private final double similarity;
+
+        Match(String filmId, double similarity) {
+            this.filmId = filmId;
+            this.similarity = similarity;
+        }
+
+        public String getFilmId() {
+            return filmId;
+        }
+
+        /**
+         * @return Cosine similarity, between 0 and 1
+         */
+        public double getSimilarity() {
+            return similarity;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%.3f)", filmId, similarity);
+        }
+    }
+
+    /**
+     * Collects films and their features. Ties are broken by film id, the
+     * same way as everywhere else.
+     */
+    public static final class Builder {
+
+        private final List<String> ids = new ArrayList<>();
+        private final List<int[]> filmFeatures = new ArrayList<>();
+        private final Dictionary dictionary = new Dictionary();
+
+        private Builder() {
+        }
+
+        /**
+         * @param filmId Film id (local name)
+         * @param features Anything the film links to, e.g. "hasActor &lt;iri&gt;"
+         * @return This builder
+         */
+        public Builder add(String filmId, Collection<String> features) {
+            ids.add(filmId);
+            filmFeatures.add(encode(dictionary, features));
+            return this;
+        }
+
+        /**
+         * @param modelVersion Version to tag the index with
+         * @return The index
+         */
+        public SimilarityIndex build(long modelVersion) {
+            int featureCount = dictionary.size();
+            int[] frequency = new int[featureCount];
+            for (int[] film : filmFeatures) {
+                for (int feature : film) {
+                    frequency[feature]++;
+                }
+            }
+
+            int[][] postings = new int[featureCount][];
+            double[] logFrequencies = new double[featureCount];
+            for (int f = 0; f < featureCount; f++) {
+                postings[f] = new int[frequency[f]];
+                logFrequencies[f] = Math.log(frequency[f]);
+            }
+            int[] next = new int[featureCount];
+            for (int i = 0; i < filmFeatures.size(); i++) {
+                for (int feature : filmFeatures.get(i)) {
+                    postings[feature][next[feature]++] = i;
+                }
+            }
+            return new SimilarityIndex(modelVersion, FilmSlots.of(ids.toArray(new String[0])), dictionary,
+                                       filmFeatures.toArray(new int[0][]), postings, logFrequencies, featureCount);
+        }
+    }
+}
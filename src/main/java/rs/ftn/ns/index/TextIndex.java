@@ -0,0 +1,924 @@
+package rs.ftn.ns.index;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+import rs.ftn.ns.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Full-text search over the films of one model version: titles,
+ * original titles, synopses, and the names of each film's director,
+ * writers and actors.
+ *
+ * Text is folded (case and accents removed, see TextNormalizer) and split
+ * into words. Every word of the catalog gets a posting list of the films
+ * and fields it occurs in, weighted by BM25, with titles counting for more
+ * than synopses. The words themselves are indexed by their trigrams, so a
+ * misspelled query word finds the words within one or two edits of it
+ * without comparing it to the whole dictionary.
+ *
+ * A query word matches a word of the catalog exactly, as a prefix
+ * ("godf" finds "godfather"), or with typos; prefix and fuzzy matches
+ * score lower than exact ones. Every query word must match for a film
+ * to be found.
+ *
+ * An index is immutable. When the model changes a new one is built, or
+ * derived from this one when only a few films changed, see
+ * OntologyManager.getTextIndex().
+ */
+public final class TextIndex {
+
+    /**
+     * Searchable text of a film, with its weight in the score
+     */
+    public enum Field {
+        TITLE("hasTitle", 3.0f),
+        ORIGINAL_TITLE("hasOriginalTitle", 2.5f),
+        PERSON(null, 2.0f),
+        SYNOPSIS("synopsis", 1.0f);
+
+        private final String property;
+        private final float boost;
+
+        Field(String property, float boost) {
+            this.property = property;
+            this.boost = boost;
+        }
+    }
+
+    /** Relations whose people's names are indexed as Field.PERSON */
+    private static final String[] PERSON_PROPERTIES = { "directedBy", "writtenBy", "hasActor" };
+
+    private static final Field[] FIELDS = Field.values();
+
+    // BM25 parameters
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    /** Shortest query word that is also matched as a prefix */
+    private static final int MIN_PREFIX_LENGTH = 2;
+    /** Shortest query words allowed one and two typos */
+    private static final int MIN_ONE_EDIT_LENGTH = 4;
+    private static final int MIN_TWO_EDITS_LENGTH = 8;
+    /** Most dictionary words one query word expands to, the most frequent kept */
+    private static final int MAX_EXPANSIONS = 64;
+
+    private static final double PREFIX_FACTOR = 0.7;
+    private static final double[] EDIT_FACTOR = { 1.0, 0.5, 0.3 };
+
+    private final long modelVersion;
+    private final FilmSlots slots;
+
+    // Sorted dictionary of folded words, and where each occurs
+    private final String[] terms;
+    private final Postings[] postings;
+
+    // By ordinal: the words of the film, and (field, length) of each of its
+    // fields, so an update can take the film out again
+    private final String[][] filmTerms;
+    private final int[][] filmFields;
+
+    // Length of every field of every film, summed per field, and the number
+    // of such fields; the weights are computed from their averages per query,
+    // so a change of one film does not change the weights of every other
+    private final long[] totalLength;
+    private final int[] fieldCount;
+    private final float[] averageLength;
+
+    // Terms containing grams[g] are gramTerms[g], sorted
+    private final String[] grams;
+    private final String[][] gramTerms;
+
+    private TextIndex(long modelVersion, FilmSlots slots, String[] terms, Postings[] postings,
+                      String[][] filmTerms, int[][] filmFields, long[] totalLength, int[] fieldCount,
+                      String[] grams, String[][] gramTerms) {
+        this.modelVersion = modelVersion;
+        this.slots = slots;
+        this.terms = terms;
+        this.postings = postings;
+        this.filmTerms = filmTerms;
+        this.filmFields = filmFields;
+        this.totalLength = totalLength;
+        this.fieldCount = fieldCount;
+        this.averageLength = averageLengths(totalLength, fieldCount);
+        this.grams = grams;
+        this.gramTerms = gramTerms;
+    }
+
+    /**
+     * Builds the index with one scan over the films in the graph.
+     * The caller must hold a read lock (or transaction) on the graph.
+     *
+     * @param graph Graph to index
+     * @param dataNs Namespace of the film individuals
+     * @param schemaNs Namespace of the ontology properties
+     * @param modelVersion Model version the graph is at
+     * @return The new index
+     */
+    public static TextIndex build(Graph graph, String dataNs, String schemaNs, long modelVersion) {
+        Node filmType = NodeFactory.createURI(schemaNs + "Film");
+        Node hasTitle = NodeFactory.createURI(schemaNs + "hasTitle");
+
+        // Same films, in the same order, as FilmIndex
+        TreeSet<String> filmIris = new TreeSet<>();
+        ExtendedIterator<Triple> films = graph.find(Node.ANY, RDF.type.asNode(), filmType);
+        try {
+            while (films.hasNext()) {
+                Node film = films.next().getSubject();
+                if (film.isURI() && graph.contains(film, hasTitle, Node.ANY)) {
+                    filmIris.add(film.getURI());
+                }
+            }
+        } finally {
+            films.close();
+        }
+
+        Reader reader = new Reader(graph, schemaNs);
+        Builder builder = new Builder();
+        for (String iri : filmIris) {
+            builder.film(localName(iri, dataNs));
+            reader.read(NodeFactory.createURI(iri), builder);
+        }
+        return builder.build(modelVersion);
+    }
+
+    /**
+     * Builds the index for the model after some films changed, reading
+     * only those films from the graph. The changed films are indexed on
+     * their own; the other films keep their ordinals, and only the posting
+     * lists of words the changed films have (or had) are copied and
+     * merged with them. Runs of words and trigrams that did not change are
+     * copied as they are. Gives the same results as {@link #build}.
+     * The caller must hold a read lock (or transaction) on the graph.
+     *
+     * @param graph Graph after the change
+     * @param dataNs Namespace of the film individuals
+     * @param schemaNs Namespace of the ontology properties
+     * @param films IRIs of the films that were added, changed or removed
+     * @param modelVersion Model version the graph is at
+     * @return The new index
+     */
+    public TextIndex update(Graph graph, String dataNs, String schemaNs, Collection<String> films, long modelVersion) {
+        FilmSlots.Change change = slots.change(films, graph, dataNs, schemaNs);
+        String[][] newFilmTerms = Arrays.copyOf(filmTerms, change.slots.capacity());
+        int[][] newFilmFields = Arrays.copyOf(filmFields, change.slots.capacity());
+        long[] newTotalLength = totalLength.clone();
+        int[] newFieldCount = fieldCount.clone();
+
+        // Words of the films taken out
+        Map<String, BitSet> removed = new TreeMap<>();
+        for (int film : change.removed) {
+            for (String term : filmTerms[film]) {
+                removed.computeIfAbsent(term, t -> new BitSet()).set(film);
+            }
+            for (int i = 0; i < filmFields[film].length; i += 2) {
+                newTotalLength[filmFields[film][i]] -= filmFields[film][i + 1];
+                newFieldCount[filmFields[film][i]]--;
+            }
+            newFilmTerms[film] = null;
+            newFilmFields[film] = null;
+        }
+
+        // The films put in, indexed on their own; film i of it is change.added[i]
+        Reader reader = new Reader(graph, schemaNs);
+        Builder builder = new Builder();
+        for (int i = 0; i < change.added.length; i++) {
+            builder.film(change.slots.id(change.added[i]));
+            reader.read(change.films[i], builder);
+        }
+        TextIndex added = builder.build(modelVersion);
+        for (int i = 0; i < change.added.length; i++) {
+            newFilmTerms[change.added[i]] = added.filmTerms[i];
+            newFilmFields[change.added[i]] = added.filmFields[i];
+        }
+        for (int f = 0; f < FIELDS.length; f++) {
+            newTotalLength[f] += added.totalLength[f];
+            newFieldCount[f] += added.fieldCount[f];
+        }
+
+        // New posting lists of the words either has, null for words no film has any more
+        TreeMap<String, Postings> changed = new TreeMap<>();
+        TreeMap<String, List<String>> gramsAdded = new TreeMap<>();
+        TreeMap<String, List<String>> gramsRemoved = new TreeMap<>();
+        Set<String> touched = new TreeSet<>(removed.keySet());
+        touched.addAll(Arrays.asList(added.terms));
+        for (String term : touched) {
+            int t = Arrays.binarySearch(terms, term);
+            int a = Arrays.binarySearch(added.terms, term);
+            Postings old = t >= 0 ? postings[t] : null;
+            Postings merged = Postings.merge(old, removed.get(term), a >= 0 ? added.postings[a] : null,
+                                             change.added);
+            if (merged != null && merged.sameAs(old)) {
+                continue;
+            }
+            changed.put(term, merged);
+            if (old == null || merged == null) {
+                for (String gram : grams(term)) {
+                    (old == null ? gramsAdded : gramsRemoved).computeIfAbsent(gram, g -> new ArrayList<>()).add(term);
+                }
+            }
+        }
+
+        String[] newTerms = terms;
+        Postings[] newPostings = postings;
+        if (!changed.isEmpty()) {
+            newTerms = new String[terms.length + changed.size()];
+            newPostings = new Postings[terms.length + changed.size()];
+            int count = merge(terms, postings, changed, newTerms, newPostings);
+            newTerms = Arrays.copyOf(newTerms, count);
+            newPostings = Arrays.copyOf(newPostings, count);
+        }
+
+        String[] newGrams = grams;
+        String[][] newGramTerms = gramTerms;
+        if (!gramsAdded.isEmpty() || !gramsRemoved.isEmpty()) {
+            TreeMap<String, String[]> changedGrams = new TreeMap<>();
+            Set<String> touchedGrams = new TreeSet<>(gramsAdded.keySet());
+            touchedGrams.addAll(gramsRemoved.keySet());
+            for (String gram : touchedGrams) {
+                int g = Arrays.binarySearch(grams, gram);
+                TreeSet<String> words = new TreeSet<>();
+                if (g >= 0) {
+                    words.addAll(Arrays.asList(gramTerms[g]));
+                }
+                words.removeAll(gramsRemoved.getOrDefault(gram, Collections.emptyList()));
+                words.addAll(gramsAdded.getOrDefault(gram, Collections.emptyList()));
+                changedGrams.put(gram, words.isEmpty() ? null : words.toArray(new String[0]));
+            }
+            newGrams = new String[grams.length + changedGrams.size()];
+            newGramTerms = new String[grams.length + changedGrams.size()][];
+            int count = merge(grams, gramTerms, changedGrams, newGrams, newGramTerms);
+            newGrams = Arrays.copyOf(newGrams, count);
+            newGramTerms = Arrays.copyOf(newGramTerms, count);
+        }
+
+        return new TextIndex(modelVersion, change.slots, newTerms, newPostings, newFilmTerms, newFilmFields,
+                             newTotalLength, newFieldCount, newGrams, newGramTerms);
+    }
+
+    /**
+     * Copies sorted keys with their values, replacing the keys in changes
+     * (a null value leaves the key out). The runs of keys between two
+     * changes are copied with arraycopy.
+     *
+     * @return Number of keys written
+     */
+    private static <V> int merge(String[] keys, V[] values, NavigableMap<String, V> changes,
+                                 String[] intoKeys, V[] intoValues) {
+        int from = 0;
+        int at = 0;
+        for (Map.Entry<String, V> change : changes.entrySet()) {
+            int position = Arrays.binarySearch(keys, from, keys.length, change.getKey());
+            int end = position >= 0 ? position : -position - 1;
+            System.arraycopy(keys, from, intoKeys, at, end - from);
+            System.arraycopy(values, from, intoValues, at, end - from);
+            at += end - from;
+            from = position >= 0 ? position + 1 : end;
+            if (change.getValue() != null) {
+                intoKeys[at] = change.getKey();
+                intoValues[at++] = change.getValue();
+            }
+        }
+        System.arraycopy(keys, from, intoKeys, at, keys.length - from);
+        System.arraycopy(values, from, intoValues, at, keys.length - from);
+        return at + keys.length - from;
+    }
+
+    private static float[] averageLengths(long[] totalLength, int[] fieldCount) {
+        float[] averageLength = new float[FIELDS.length];
+        for (int f = 0; f < FIELDS.length; f++) {
+            averageLength[f] = fieldCount[f] == 0 ? 1 : (float) totalLength[f] / fieldCount[f];
+        }
+        return averageLength;
+    }
+
+    /**
+     * BM25F weight of a word that occurs frequency times in a field of the given length
+     */
+    private static float weight(int field, float frequency, int length, float[] averageLength) {
+        float norm = K1 * (1 - B + B * length / averageLength[field]);
+        return FIELDS[field].boost * frequency * (K1 + 1) / (frequency + norm);
+    }
+
+    /**
+     * @return Builder for an index over text of your own, e.g. for tests
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The model version this index was built from
+     */
+    public long getModelVersion() {
+        return modelVersion;
+    }
+
+    /**
+     * @return Number of indexed films
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * @return Number of distinct (folded) words
+     */
+    public int getTermCount() {
+        return terms.length;
+    }
+
+    /**
+     * Finds the films matching every word of the query, in any field
+     *
+     * @param query Words to search for, e.g. "godfater coppola"
+     * @param n Number of films to return
+     * @return Best matches first (ties by film id); empty if nothing matches
+     */
+    public List<Hit> search(String query, int n) {
+        return search(query, n, EnumSet.allOf(Field.class));
+    }
+
+    /**
+     * Finds the films matching every word of the query in the given fields
+     *
+     * @param query Words to search for
+     * @param n Number of films to return
+     * @param fields Fields to search, e.g. only Field.TITLE
+     * @return Best matches first (ties by film id); empty if nothing matches
+     */
+    public List<Hit> search(String query, int n, Set<Field> fields) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be at least 1, was " + n);
+        }
+        int fieldMask = 0;
+        for (Field field : fields) {
+            fieldMask |= 1 << field.ordinal();
+        }
+
+        List<String> words = TextNormalizer.tokens(query);
+        if (words.isEmpty() || fieldMask == 0) {
+            return Collections.emptyList();
+        }
+        List<Map<Integer, Double>> expansions = new ArrayList<>(words.size());
+        for (String word : new TreeSet<>(words)) {
+            Map<Integer, Double> expansion = expand(word);
+            if (expansion.isEmpty()) {
+                return Collections.emptyList();
+            }
+            expansions.add(expansion);
+        }
+        // The word with the fewest postings first, so later words only filter
+        expansions.sort((a, b) -> Long.compare(postingCount(a), postingCount(b)));
+
+        Map<Integer, Double> scores = null;
+        for (Map<Integer, Double> expansion : expansions) {
+            Map<Integer, Double> wordScores = score(expansion, fieldMask, scores);
+            if (scores != null) {
+                for (Map.Entry<Integer, Double> entry : wordScores.entrySet()) {
+                    entry.setValue(entry.getValue() + scores.get(entry.getKey()));
+                }
+            }
+            scores = wordScores;
+            if (scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        return top(scores, n);
+    }
+
+    /**
+     * Dictionary words a query word matches, each with the factor its
+     * postings are scored with
+     */
+    private Map<Integer, Double> expand(String word) {
+        Map<Integer, Double> expansion = new HashMap<>();
+
+        int exact = Arrays.binarySearch(terms, word);
+        if (exact >= 0) {
+            expansion.put(exact, 1.0);
+        }
+
+        if (word.length() >= MIN_PREFIX_LENGTH) {
+            int from = exact >= 0 ? exact + 1 : -exact - 1;
+            int to = from;
+            while (to < terms.length && terms[to].startsWith(word)) {
+                to++;
+            }
+            for (int term : mostFrequent(from, to)) {
+                expansion.put(term, PREFIX_FACTOR);
+            }
+        }
+
+        int maxEdits = word.length() >= MIN_TWO_EDITS_LENGTH ? 2 : word.length() >= MIN_ONE_EDIT_LENGTH ? 1 : 0;
+        if (maxEdits > 0) {
+            for (Map.Entry<Integer, Integer> fuzzy : similarTerms(word, maxEdits).entrySet()) {
+                double factor = EDIT_FACTOR[fuzzy.getValue()];
+                expansion.merge(fuzzy.getKey(), factor, Math::max);
+            }
+        }
+        return expansion;
+    }
+
+    /**
+     * The MAX_EXPANSIONS terms of [from, to) with the most postings
+     */
+    private int[] mostFrequent(int from, int to) {
+        if (to - from <= MAX_EXPANSIONS) {
+            int[] all = new int[to - from];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = from + i;
+            }
+            return all;
+        }
+        Integer[] range = new Integer[to - from];
+        for (int i = 0; i < range.length; i++) {
+            range[i] = from + i;
+        }
+        Arrays.sort(range, (a, b) -> Integer.compare(postings[b].size(), postings[a].size()));
+        int[] frequent = new int[MAX_EXPANSIONS];
+        for (int i = 0; i < MAX_EXPANSIONS; i++) {
+            frequent[i] = range[i];
+        }
+        return frequent;
+    }
+
+    /**
+     * Terms within maxEdits of the word, found through shared trigrams.
+     * An edit changes at most three of a word's trigrams, so a term within
+     * k edits shares at least (trigrams - 3k) of them.
+     *
+     * @return Term to its distance
+     */
+    private Map<Integer, Integer> similarTerms(String word, int maxEdits) {
+        List<String> wordGrams = grams(word);
+        int needed = wordGrams.size() - 3 * maxEdits;
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : wordGrams) {
+            int g = Arrays.binarySearch(grams, gram);
+            if (g >= 0) {
+                for (String term : gramTerms[g]) {
+                    shared.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+
+        Map<Integer, Integer> similar = new HashMap<>();
+        for (Map.Entry<String, Integer> candidate : shared.entrySet()) {
+            if (candidate.getValue() < needed) {
+                continue;
+            }
+            int distance = TextNormalizer.editDistance(word, candidate.getKey(), maxEdits);
+            if (distance <= maxEdits) {
+                similar.put(Arrays.binarySearch(terms, candidate.getKey()), distance);
+            }
+        }
+        return similar;
+    }
+
+    private long postingCount(Map<Integer, Double> expansion) {
+        long count = 0;
+        for (int term : expansion.keySet()) {
+            count += postings[term].size();
+        }
+        return count;
+    }
+
+    /**
+     * Scores the films one query word matches: the best of its expansions,
+     * each summed over the searched fields. The IDF is that of the query
+     * word, from every film any of its expansions is in, so a rare
+     * misspelling in the catalog does not outscore the common spelling.
+     *
+     * @param candidates Films to keep, or null for all
+     */
+    private Map<Integer, Double> score(Map<Integer, Double> expansion, int fieldMask, Map<Integer, Double> candidates) {
+        Map<Integer, Double> scores = new HashMap<>();
+        BitSet matched = new BitSet(slots.capacity());
+        for (Map.Entry<Integer, Double> entry : expansion.entrySet()) {
+            Postings list = postings[entry.getKey()];
+            double factor = entry.getValue();
+            int p = 0;
+            int end = list.size();
+            while (p < end) {
+                int film = list.films[p];
+                double score = 0;
+                for (; p < end && list.films[p] == film; p++) {
+                    if ((fieldMask & (1 << list.fields[p])) != 0) {
+                        score += weight(list.fields[p], list.frequencies[p], list.lengths[p], averageLength);
+                    }
+                }
+                if (score > 0) {
+                    matched.set(film);
+                    if (candidates == null || candidates.containsKey(film)) {
+                        scores.merge(film, score * factor, Math::max);
+                    }
+                }
+            }
+        }
+        int documents = matched.cardinality();
+        double idf = Math.log(1 + (slots.size() - documents + 0.5) / (documents + 0.5));
+        scores.replaceAll((film, score) -> score * idf);
+        return scores;
+    }
+
+    private List<Hit> top(Map<Integer, Double> scores, int n) {
+        // Worst first; the later film (by id) loses a tie
+        PriorityQueue<Hit> heap = new PriorityQueue<>(n + 1, (a, b) -> a.score != b.score
+            ? Double.compare(a.score, b.score)
+            : b.filmId.compareTo(a.filmId));
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            Hit hit = new Hit(slots.id(entry.getKey()), entry.getValue());
+            heap.add(hit);
+            if (heap.size() > n) {
+                heap.poll();
+            }
+        }
+        List<Hit> result = new ArrayList<>(heap);
+        result.sort(Collections.reverseOrder(heap.comparator()));
+        return result;
+    }
+
+    /**
+     * Distinct trigrams of a word, padded so the first and last letters
+     * get trigrams of their own
+     */
+    private static List<String> grams(String word) {
+        String padded = "$" + word + "$";
+        List<String> grams = new ArrayList<>(padded.length());
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            String gram = padded.substring(i, i + 3);
+            if (!grams.contains(gram)) {
+                grams.add(gram);
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * Every value of the property, joined by spaces
+     */
+    private static String literals(Graph graph, Node subject, Node predicate) {
+        StringBuilder text = new StringBuilder();
+        ExtendedIterator<Triple> triples = graph.find(subject, predicate, Node.ANY);
+        try {
+            while (triples.hasNext()) {
+                Node value = triples.next().getObject();
+                if (value.isLiteral()) {
+                    text.append(value.getLiteralLexicalForm()).append(' ');
+                }
+            }
+        } finally {
+            triples.close();
+        }
+        return text.toString();
+    }
+
+    private static String localName(String iri, String dataNs) {
+        if (iri.startsWith(dataNs)) {
+            return iri.substring(dataNs.length());
+        }
+        if (iri.contains("#")) {
+            return iri.substring(iri.indexOf("#") + 1);
+        }
+        return iri.substring(iri.lastIndexOf("/") + 1);
+    }
+
+    /**
+     * Reads the text of one film from the graph
+     */
+    private static final class Reader {
+
+        /** Fields in the order they are added to the builder */
+        static final Field[] FIELD_ORDER = { Field.TITLE, Field.ORIGINAL_TITLE, Field.SYNOPSIS, Field.PERSON };
+
+        final Graph graph;
+        final Node hasName;
+        final Node[] fieldProperties = new Node[FIELDS.length];
+        final Node[] personProperties = new Node[PERSON_PROPERTIES.length];
+
+        // Names of people, read once per build
+        final Map<Node, String> names = new HashMap<>();
+        final StringBuilder people = new StringBuilder();
+
+        Reader(Graph graph, String schemaNs) {
+            this.graph = graph;
+            this.hasName = NodeFactory.createURI(schemaNs + "hasName");
+            for (Field field : FIELDS) {
+                if (field.property != null) {
+                    fieldProperties[field.ordinal()] = NodeFactory.createURI(schemaNs + field.property);
+                }
+            }
+            for (int i = 0; i < personProperties.length; i++) {
+                personProperties[i] = NodeFactory.createURI(schemaNs + PERSON_PROPERTIES[i]);
+            }
+        }
+
+        void read(Node film, Builder builder) {
+            for (Field field : FIELD_ORDER) {
+                if (field.property != null) {
+                    builder.text(field, literals(graph, film, fieldProperties[field.ordinal()]));
+                }
+            }
+
+            people.setLength(0);
+            for (Node property : personProperties) {
+                ExtendedIterator<Triple> links = graph.find(film, property, Node.ANY);
+                try {
+                    while (links.hasNext()) {
+                        Node person = links.next().getObject();
+                        String name = names.computeIfAbsent(person, p -> literals(graph, p, hasName));
+                        people.append(name).append(' ');
+                    }
+                } finally {
+                    links.close();
+                }
+            }
+            builder.text(Field.PERSON, people.toString());
+        }
+    }
+
+    /**
+     * One film found by a search
+     */
+    public static final class Hit {
+
+        private final String filmId;
+        private final double score;
+
+        Hit(String filmId, double score) {
+            this.filmId = filmId;
+            this.score = score;
+        }
+
+        public String getFilmId() {
+            return filmId;
+        }
+
+        /**
+         * @return Relevance; only comparable within one search
+         */
+        public double getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%.3f)", filmId, score);
+        }
+    }
+
+    /**
+     * Collects the text of each film. Ties are broken by film id, the same
+     * way as everywhere else.
+     */
+    public static final class Builder {
+
+        private final List<String> ids = new ArrayList<>();
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        // One posting per (film, field, word), in the order they were added
+        private int[] terms = new int[1024];
+        private int[] films = new int[1024];
+        private byte[] fields = new byte[1024];
+        private int[] frequencies = new int[1024];
+        private int[] lengths = new int[1024];
+        private int postings;
+
+        private final long[] totalLength = new long[FIELDS.length];
+        private final int[] fieldCount = new int[FIELDS.length];
+
+        // (field, length) of each field of each film
+        private final List<int[]> filmFields = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Starts the next film; its text is added with {@link #text(Field, String)}
+         *
+         * @param filmId Film id (local name)
+         * @return This builder
+         */
+        public Builder film(String filmId) {
+            ids.add(filmId);
+            filmFields.add(new int[0]);
+            return this;
+        }
+
+        /**
+         * Adds text to a field of the current film. Each field should be
+         * added once per film; later text for the same field is indexed
+         * as a field of its own.
+         *
+         * @param field Field the text belongs to
+         * @param text The text, folded and split here
+         * @return This builder
+         */
+        public Builder text(Field field, String text) {
+            if (ids.isEmpty()) {
+                throw new IllegalStateException("No film to add text to");
+            }
+            List<String> words = TextNormalizer.tokens(text);
+            if (words.isEmpty()) {
+                return this;
+            }
+            Map<Integer, Integer> frequency = new HashMap<>();
+            for (String word : words) {
+                Integer term = dictionary.get(word);
+                if (term == null) {
+                    term = dictionary.size();
+                    dictionary.put(word, term);
+                }
+                frequency.merge(term, 1, Integer::sum);
+            }
+            totalLength[field.ordinal()] += words.size();
+            fieldCount[field.ordinal()]++;
+            int[] fieldLengths = filmFields.get(ids.size() - 1);
+            fieldLengths = Arrays.copyOf(fieldLengths, fieldLengths.length + 2);
+            fieldLengths[fieldLengths.length - 2] = field.ordinal();
+            fieldLengths[fieldLengths.length - 1] = words.size();
+            filmFields.set(ids.size() - 1, fieldLengths);
+
+            for (Map.Entry<Integer, Integer> entry : frequency.entrySet()) {
+                if (postings == terms.length) {
+                    int capacity = postings * 2;
+                    terms = Arrays.copyOf(terms, capacity);
+                    films = Arrays.copyOf(films, capacity);
+                    fields = Arrays.copyOf(fields, capacity);
+                    frequencies = Arrays.copyOf(frequencies, capacity);
+                    lengths = Arrays.copyOf(lengths, capacity);
+                }
+                terms[postings] = entry.getKey();
+                films[postings] = ids.size() - 1;
+                fields[postings] = (byte) field.ordinal();
+                frequencies[postings] = entry.getValue();
+                lengths[postings] = words.size();
+                postings++;
+            }
+            return this;
+        }
+
+        /**
+         * @param modelVersion Version to tag the index with
+         * @return The index
+         */
+        public TextIndex build(long modelVersion) {
+            // Dictionary in sorted order, for prefix ranges
+            String[] sortedTerms = dictionary.keySet().toArray(new String[0]);
+            Arrays.sort(sortedTerms);
+            int[] rank = new int[sortedTerms.length];
+            for (int t = 0; t < sortedTerms.length; t++) {
+                rank[dictionary.get(sortedTerms[t])] = t;
+            }
+
+            // Postings of each term; within a term they stay in the order
+            // added, which is by film, then field
+            int[] counts = new int[sortedTerms.length];
+            for (int p = 0; p < postings; p++) {
+                counts[rank[terms[p]]]++;
+            }
+            Postings[] termPostings = new Postings[sortedTerms.length];
+            for (int t = 0; t < sortedTerms.length; t++) {
+                termPostings[t] = new Postings(counts[t]);
+            }
+            int[] next = new int[sortedTerms.length];
+            for (int p = 0; p < postings; p++) {
+                int t = rank[terms[p]];
+                int at = next[t]++;
+                termPostings[t].films[at] = films[p];
+                termPostings[t].fields[at] = fields[p];
+                termPostings[t].frequencies[at] = frequencies[p];
+                termPostings[t].lengths[at] = lengths[p];
+            }
+
+            // Words of each film; its postings were added one after the other
+            String[][] filmTerms = new String[ids.size()][];
+            int[] lastFilm = new int[sortedTerms.length];
+            Arrays.fill(lastFilm, -1);
+            List<String> words = new ArrayList<>();
+            for (int film = 0, p = 0; film < ids.size(); film++) {
+                words.clear();
+                for (; p < postings && films[p] == film; p++) {
+                    int t = rank[terms[p]];
+                    if (lastFilm[t] != film) {
+                        lastFilm[t] = film;
+                        words.add(sortedTerms[t]);
+                    }
+                }
+                filmTerms[film] = words.toArray(new String[0]);
+            }
+
+            // Trigrams of the dictionary
+            Map<String, List<String>> gramIndex = new HashMap<>();
+            for (String term : sortedTerms) {
+                for (String gram : grams(term)) {
+                    gramIndex.computeIfAbsent(gram, g -> new ArrayList<>()).add(term);
+                }
+            }
+            String[] grams = gramIndex.keySet().toArray(new String[0]);
+            Arrays.sort(grams);
+            String[][] gramTerms = new String[grams.length][];
+            for (int g = 0; g < grams.length; g++) {
+                gramTerms[g] = gramIndex.get(grams[g]).toArray(new String[0]);
+            }
+
+            return new TextIndex(modelVersion, FilmSlots.of(ids.toArray(new String[0])), sortedTerms, termPostings,
+                                 filmTerms, filmFields.toArray(new int[0][]), totalLength.clone(),
+                                 fieldCount.clone(), grams, gramTerms);
+        }
+    }
+
+    /**
+     * Where one word occurs: films and fields, by film then field, with
+     * the word count and field length its weight is computed from
+     */
+    private static final class Postings {
+
+        final int[] films;
+        final byte[] fields;
+        final int[] frequencies;
+        final int[] lengths;
+
+        Postings(int size) {
+            this.films = new int[size];
+            this.fields = new byte[size];
+            this.frequencies = new int[size];
+            this.lengths = new int[size];
+        }
+
+        int size() {
+            return films.length;
+        }
+
+        /**
+         * The postings of a word after a change
+         *
+         * @param old Postings before the change, or null
+         * @param removed Films to take out of them, or null
+         * @param added Postings of the films put in, or null
+         * @param ordinals Ordinal of each film of added
+         * @return Postings of both, or null if none are left
+         */
+        static Postings merge(Postings old, BitSet removed, Postings added, int[] ordinals) {
+            int oldSize = old != null ? old.size() : 0;
+            int addedSize = added != null ? added.size() : 0;
+            Postings merged = new Postings(oldSize + addedSize);
+            int a = 0;
+            int b = 0;
+            int at = 0;
+            while (a < oldSize || b < addedSize) {
+                if (a < oldSize && removed != null && removed.get(old.films[a])) {
+                    a++;
+                    continue;
+                }
+                boolean kept = b == addedSize || (a < oldSize && old.films[a] < ordinals[added.films[b]]);
+                Postings from = kept ? old : added;
+                int p = kept ? a++ : b++;
+                merged.films[at] = kept ? old.films[p] : ordinals[added.films[p]];
+                merged.fields[at] = from.fields[p];
+                merged.frequencies[at] = from.frequencies[p];
+                merged.lengths[at] = from.lengths[p];
+                at++;
+            }
+            if (at == 0) {
+                return null;
+            }
+            if (at == merged.size()) {
+                return merged;
+            }
+            Postings trimmed = new Postings(at);
+            System.arraycopy(merged.films, 0, trimmed.films, 0, at);
+            System.arraycopy(merged.fields, 0, trimmed.fields, 0, at);
+            System.arraycopy(merged.frequencies, 0, trimmed.frequencies, 0, at);
+            System.arraycopy(merged.lengths, 0, trimmed.lengths, 0, at);
+            return trimmed;
+        }
+
+        /**
+         * @return Whether the other postings are the same as these
+         */
+        boolean sameAs(Postings other) {
+            return other != null && Arrays.equals(films, other.films) && Arrays.equals(fields, other.fields) &&
+                   Arrays.equals(frequencies, other.frequencies) && Arrays.equals(lengths, other.lengths);
+        }
+    }
+}
@@ -21,6 +21,15 @@ public class Actor extends Person {
         this.awards = new ArrayList<>();
     }
     
+    /**
+     * Copy constructor
+     */
+    public Actor(Actor other) {
+        super(other);
+        this.awards = new ArrayList<>(other.awards);
+        this.knownFor = other.knownFor;
+    }
+    
     public List<String> getAwards() {
         return awards;
     }
@@ -21,6 +21,15 @@ public class Director extends Person {
         this.awards = new ArrayList<>();
     }
     
+    /**
+     * Copy constructor
+     */
+    public Director(Director other) {
+        super(other);
+        this.awards = new ArrayList<>(other.awards);
+        this.filmography = other.filmography;
+    }
+    
     public List<String> getAwards() {
         return awards;
     }
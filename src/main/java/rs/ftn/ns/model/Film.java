@@ -42,6 +42,10 @@ public class Film {
     private double visualEffectsScore;
     private double culturalSignificanceScore;
     
+    // Fuzzy quality, when it has been materialized into the ontology
+    private double qualityScore;
+    private String qualityCategory;
+    
     // Additional information
     private String synopsis;
     private List<String> awards;
@@ -61,6 +65,43 @@ public class Film {
         this.releaseYear = releaseYear;
     }
     
+    /**
+     * Copy constructor - copies the lists and people as well,
+     * so changes to the copy never reach the original
+     */
+    public Film(Film other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.originalTitle = other.originalTitle;
+        this.releaseYear = other.releaseYear;
+        this.duration = other.duration;
+        this.country = other.country;
+        this.language = other.language;
+        this.director = other.director != null ? new Director(other.director) : null;
+        this.actors = new ArrayList<>(other.actors.size());
+        for (Actor actor : other.actors) {
+            this.actors.add(new Actor(actor));
+        }
+        this.writers = new ArrayList<>(other.writers.size());
+        for (Writer writer : other.writers) {
+            this.writers.add(new Writer(writer));
+        }
+        this.genres = new ArrayList<>(other.genres);
+        this.budget = other.budget;
+        this.boxOffice = other.boxOffice;
+        this.imdbRating = other.imdbRating;
+        this.imdbVotes = other.imdbVotes;
+        this.directionScore = other.directionScore;
+        this.actingScore = other.actingScore;
+        this.screenplayScore = other.screenplayScore;
+        this.visualEffectsScore = other.visualEffectsScore;
+        this.culturalSignificanceScore = other.culturalSignificanceScore;
+        this.qualityScore = other.qualityScore;
+        this.qualityCategory = other.qualityCategory;
+        this.synopsis = other.synopsis;
+        this.awards = new ArrayList<>(other.awards);
+    }
+    
     // Getters and Setters
     public String getId() {
         return id;
@@ -234,6 +275,25 @@ public class Film {
         this.culturalSignificanceScore = culturalSignificanceScore;
     }
     
+    public double getQualityScore() {
+        return qualityScore;
+    }
+    
+    public void setQualityScore(double qualityScore) {
+        this.qualityScore = qualityScore;
+    }
+    
+    /**
+     * @return Materialized quality category, or null if not materialized
+     */
+    public String getQualityCategory() {
+        return qualityCategory;
+    }
+    
+    public void setQualityCategory(String qualityCategory) {
+        this.qualityCategory = qualityCategory;
+    }
+    
     public String getSynopsis() {
         return synopsis;
     }
@@ -0,0 +1,34 @@
+package rs.ftn.ns.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a paged film listing.
+ * The continuation token is opaque; pass it back to get the next page.
+ */
+public class FilmPage {
+    
+    private final List<Film> films;
+    private final String nextToken;
+    
+    public FilmPage(List<Film> films, String nextToken) {
+        this.films = Collections.unmodifiableList(films);
+        this.nextToken = nextToken;
+    }
+    
+    public List<Film> getFilms() {
+        return films;
+    }
+    
+    /**
+     * @return Token for the next page, or null if this is the last page
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+    
+    public boolean hasMore() {
+        return nextToken != null;
+    }
+}
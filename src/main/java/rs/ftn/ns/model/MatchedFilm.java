@@ -0,0 +1,31 @@
+package rs.ftn.ns.model;
+
+/**
+ * A film found by a text search, with how well it matched.
+ */
+public class MatchedFilm {
+    
+    private final Film film;
+    private final double score;
+    
+    public MatchedFilm(Film film, double score) {
+        this.film = film;
+        this.score = score;
+    }
+    
+    public Film getFilm() {
+        return film;
+    }
+    
+    /**
+     * @return Relevance to the search; only comparable within one search
+     */
+    public double getScore() {
+        return score;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s (%.3f)", film.getTitle(), score);
+    }
+}
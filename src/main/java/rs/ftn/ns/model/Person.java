@@ -19,6 +19,17 @@ public abstract class Person {
         this.name = name;
     }
     
+    /**
+     * Copy constructor
+     */
+    protected Person(Person other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.birthDate = other.birthDate;
+        this.nationality = other.nationality;
+        this.biography = other.biography;
+    }
+    
     public String getId() {
         return id;
     }
@@ -0,0 +1,31 @@
+package rs.ftn.ns.model;
+
+/**
+ * A film together with the fuzzy quality score it was ranked by.
+ */
+public class RankedFilm {
+    
+    private final Film film;
+    private final double quality;
+    
+    public RankedFilm(Film film, double quality) {
+        this.film = film;
+        this.quality = quality;
+    }
+    
+    public Film getFilm() {
+        return film;
+    }
+    
+    /**
+     * @return Fuzzy quality score (0-10)
+     */
+    public double getQuality() {
+        return quality;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s (%.2f)", film.getTitle(), quality);
+    }
+}
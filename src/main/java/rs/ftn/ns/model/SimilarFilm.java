@@ -0,0 +1,31 @@
+package rs.ftn.ns.model;
+
+/**
+ * A film found by "more like this", with how similar it is.
+ */
+public class SimilarFilm {
+    
+    private final Film film;
+    private final double similarity;
+    
+    public SimilarFilm(Film film, double similarity) {
+        this.film = film;
+        this.similarity = similarity;
+    }
+    
+    public Film getFilm() {
+        return film;
+    }
+    
+    /**
+     * @return Similarity to the film searched for, between 0 and 1
+     */
+    public double getSimilarity() {
+        return similarity;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s (%.3f)", film.getTitle(), similarity);
+    }
+}
@@ -21,6 +21,15 @@ public class Writer extends Person {
         this.awards = new ArrayList<>();
     }
     
+    /**
+     * Copy constructor
+     */
+    public Writer(Writer other) {
+        super(other);
+        this.awards = new ArrayList<>(other.awards);
+        this.notableWorks = other.notableWorks;
+    }
+    
     public List<String> getAwards() {
         return awards;
     }
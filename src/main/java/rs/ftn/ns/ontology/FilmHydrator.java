@@ -0,0 +1,286 @@
+package rs.ftn.ns.ontology;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import rs.ftn.ns.index.FilmStore;
+import rs.ftn.ns.model.Actor;
+import rs.ftn.ns.model.Director;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.model.Writer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds complete films straight from the graph.
+ * Each film costs one scan of its own triples; the names of the people,
+ * genres, countries, languages and awards it points to are looked up once
+ * per hydrator and reused for every film that shares them. A hydrator is
+ * meant for a single call, under the caller's read lock.
+ */
+class FilmHydrator {
+
+    private final Graph graph;
+    private final String dataNs;
+
+    private final Node filmType;
+    private final Node rdfType = NodeFactory.createURI("http://www.w3.org/1999/02/22-rdf-syntax-ns#type");
+    private final Node hasTitle;
+    private final Node hasOriginalTitle;
+    private final Node releaseYear;
+    private final Node duration;
+    private final Node setIn;
+    private final Node spokenIn;
+    private final Node directedBy;
+    private final Node hasActor;
+    private final Node writtenBy;
+    private final Node hasGenre;
+    private final Node wonAward;
+    private final Node budget;
+    private final Node boxOffice;
+    private final Node imdbRating;
+    private final Node imdbVotes;
+    private final Node directionScore;
+    private final Node actingScore;
+    private final Node screenplayScore;
+    private final Node visualEffectsScore;
+    private final Node culturalSignificanceScore;
+    private final Node synopsis;
+    private final Node qualityScore;
+    private final Node qualityCategory;
+
+    // Name properties of the resources a film points to
+    private final Node hasName;
+    private final Node genreName;
+    private final Node countryName;
+    private final Node languageName;
+    private final Node awardName;
+
+    // Resource -> display name, filled as films are hydrated
+    private final Map<Node, String> names = new HashMap<>();
+
+    FilmHydrator(Graph graph, String dataNs, String schemaNs) {
+        this.graph = graph;
+        this.dataNs = dataNs;
+        this.filmType = schema(schemaNs, "Film");
+        this.hasTitle = schema(schemaNs, "hasTitle");
+        this.hasOriginalTitle = schema(schemaNs, "hasOriginalTitle");
+        this.releaseYear = schema(schemaNs, "releaseYear");
+        this.duration = schema(schemaNs, "duration");
+        this.setIn = schema(schemaNs, "setIn");
+        this.spokenIn = schema(schemaNs, "spokenIn");
+        this.directedBy = schema(schemaNs, "directedBy");
+        this.hasActor = schema(schemaNs, "hasActor");
+        this.writtenBy = schema(schemaNs, "writtenBy");
+        this.hasGenre = schema(schemaNs, "hasGenre");
+        this.wonAward = schema(schemaNs, "wonAward");
+        this.budget = schema(schemaNs, "budget");
+        this.boxOffice = schema(schemaNs, "boxOffice");
+        this.imdbRating = schema(schemaNs, "imdbRating");
+        this.imdbVotes = schema(schemaNs, "imdbVotes");
+        this.directionScore = schema(schemaNs, "directionScore");
+        this.actingScore = schema(schemaNs, "actingScore");
+        this.screenplayScore = schema(schemaNs, "screenplayScore");
+        this.visualEffectsScore = schema(schemaNs, "visualEffectsScore");
+        this.culturalSignificanceScore = schema(schemaNs, "culturalSignificanceScore");
+        this.synopsis = schema(schemaNs, "synopsis");
+        this.qualityScore = schema(schemaNs, "qualityScore");
+        this.qualityCategory = schema(schemaNs, "qualityCategory");
+        this.hasName = schema(schemaNs, "hasName");
+        this.genreName = schema(schemaNs, "genreName");
+        this.countryName = schema(schemaNs, "countryName");
+        this.languageName = schema(schemaNs, "languageName");
+        this.awardName = schema(schemaNs, "awardName");
+    }
+
+    /**
+     * @param filmId Local name of the film
+     * @return The complete film, or null if there is no such film
+     */
+    Film hydrate(String filmId) {
+        Node filmNode = NodeFactory.createURI(dataNs + filmId);
+        if (!graph.contains(filmNode, rdfType, filmType)) {
+            return null;
+        }
+
+        Film film = new Film();
+        film.setId(filmId);
+        // The same triple can come from more than one graph of a union
+        Set<Triple> seen = new HashSet<>();
+
+        ExtendedIterator<Triple> triples = graph.find(filmNode, Node.ANY, Node.ANY);
+        try {
+            while (triples.hasNext()) {
+                Triple triple = triples.next();
+                if (seen.add(triple)) {
+                    apply(film, triple.getPredicate(), triple.getObject());
+                }
+            }
+        } finally {
+            triples.close();
+        }
+
+        return film;
+    }
+
+    /**
+     * Hydrates every film in the graph into a compact store
+     *
+     * @param modelVersion Model version the graph is at
+     * @return Store with all films whose IRI is in the data namespace
+     */
+    static FilmStore buildStore(Graph graph, String dataNs, String schemaNs, long modelVersion) {
+        FilmHydrator hydrator = new FilmHydrator(graph, dataNs, schemaNs);
+        FilmStore.Builder store = FilmStore.builder();
+        ExtendedIterator<Triple> films = graph.find(Node.ANY, hydrator.rdfType, hydrator.filmType);
+        try {
+            while (films.hasNext()) {
+                Node film = films.next().getSubject();
+                if (film.isURI() && film.getURI().startsWith(dataNs)) {
+                    store.add(hydrator.hydrate(film.getURI().substring(dataNs.length())));
+                }
+            }
+        } finally {
+            films.close();
+        }
+        return store.build(modelVersion);
+    }
+
+    /**
+     * Updates the store for the model after some films changed, hydrating
+     * only those; the others are copied from the old store
+     *
+     * @param store Store of the model before the change
+     * @param films IRIs of the films that were added, changed or removed
+     * @param modelVersion Model version the graph is at
+     * @return Store with the same films as {@link #buildStore} would give
+     */
+    static FilmStore updateStore(FilmStore store, Graph graph, String dataNs, String schemaNs,
+                                 Collection<String> films, long modelVersion) {
+        Set<String> changed = new HashSet<>();
+        for (String iri : films) {
+            if (iri.startsWith(dataNs)) {
+                changed.add(iri.substring(dataNs.length()));
+            }
+        }
+
+        FilmHydrator hydrator = new FilmHydrator(graph, dataNs, schemaNs);
+        List<Film> hydrated = new ArrayList<>();
+        for (String filmId : changed) {
+            Film film = hydrator.hydrate(filmId);
+            if (film != null) {
+                hydrated.add(film);
+            }
+        }
+        return store.update(changed, hydrated, modelVersion);
+    }
+
+    private void apply(Film film, Node predicate, Node object) {
+        if (object.isLiteral()) {
+            applyLiteral(film, predicate, object);
+        } else if (!object.isURI()) {
+            return;
+        } else if (predicate.equals(directedBy)) {
+            film.setDirector(new Director(object.getLocalName(), name(object, hasName)));
+        } else if (predicate.equals(hasActor)) {
+            film.addActor(new Actor(object.getLocalName(), name(object, hasName)));
+        } else if (predicate.equals(writtenBy)) {
+            film.addWriter(new Writer(object.getLocalName(), name(object, hasName)));
+        } else if (predicate.equals(hasGenre)) {
+            film.addGenre(name(object, genreName));
+        } else if (predicate.equals(wonAward)) {
+            film.addAward(name(object, awardName));
+        } else if (predicate.equals(setIn)) {
+            film.setCountry(name(object, countryName));
+        } else if (predicate.equals(spokenIn)) {
+            film.setLanguage(name(object, languageName));
+        }
+    }
+
+    private void applyLiteral(Film film, Node predicate, Node literal) {
+        if (predicate.equals(hasTitle)) {
+            film.setTitle(literal.getLiteralLexicalForm());
+        } else if (predicate.equals(hasOriginalTitle)) {
+            film.setOriginalTitle(literal.getLiteralLexicalForm());
+        } else if (predicate.equals(synopsis)) {
+            film.setSynopsis(literal.getLiteralLexicalForm());
+        } else if (predicate.equals(qualityCategory)) {
+            film.setQualityCategory(literal.getLiteralLexicalForm());
+        } else if (predicate.equals(releaseYear)) {
+            film.setReleaseYear((int) number(literal));
+        } else if (predicate.equals(duration)) {
+            film.setDuration((int) number(literal));
+        } else if (predicate.equals(imdbVotes)) {
+            film.setImdbVotes((int) number(literal));
+        } else if (predicate.equals(imdbRating)) {
+            film.setImdbRating(number(literal));
+        } else if (predicate.equals(budget)) {
+            film.setBudget(number(literal));
+        } else if (predicate.equals(boxOffice)) {
+            film.setBoxOffice(number(literal));
+        } else if (predicate.equals(directionScore)) {
+            film.setDirectionScore(number(literal));
+        } else if (predicate.equals(actingScore)) {
+            film.setActingScore(number(literal));
+        } else if (predicate.equals(screenplayScore)) {
+            film.setScreenplayScore(number(literal));
+        } else if (predicate.equals(visualEffectsScore)) {
+            film.setVisualEffectsScore(number(literal));
+        } else if (predicate.equals(culturalSignificanceScore)) {
+            film.setCulturalSignificanceScore(number(literal));
+        } else if (predicate.equals(qualityScore)) {
+            film.setQualityScore(number(literal));
+        }
+    }
+
+    /**
+     * Name of a linked resource; falls back to its local name when the
+     * resource has no name of its own
+     */
+    private String name(Node resource, Node nameProperty) {
+        String cached = names.get(resource);
+        if (cached != null) {
+            return cached;
+        }
+
+        String name = resource.getLocalName();
+        ExtendedIterator<Triple> triples = graph.find(resource, nameProperty, Node.ANY);
+        try {
+            if (triples.hasNext()) {
+                Node value = triples.next().getObject();
+                if (value.isLiteral()) {
+                    name = value.getLiteralLexicalForm();
+                }
+            }
+        } finally {
+            triples.close();
+        }
+
+        names.put(resource, name);
+        return name;
+    }
+
+    private static double number(Node literal) {
+        Object value = literal.getLiteralValue();
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        try {
+            return Double.parseDouble(literal.getLiteralLexicalForm());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Node schema(String schemaNs, String localName) {
+        return NodeFactory.createURI(schemaNs + localName);
+    }
+}
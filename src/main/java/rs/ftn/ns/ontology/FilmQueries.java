@@ -0,0 +1,129 @@
+package rs.ftn.ns.ontology;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.rdf.model.ResourceFactory;
+
+/**
+ * Parsed SPARQL templates used by {@link FilmQueryService}.
+ * Each query shape is parsed once; per call only its parameter variables
+ * are bound, so user input is never spliced into the query text.
+ */
+final class FilmQueries {
+
+    private static final String PREFIXES =
+        "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
+        "PREFIX data: <" + OntologyManager.DATA_NAMESPACE + "> " +
+        "PREFIX schema: <" + OntologyManager.SCHEMA_NAMESPACE + "> ";
+
+    static final Query ALL_FILMS = QueryFactory.create(
+        PREFIXES +
+        "SELECT ?film ?title ?year " +
+        "WHERE { " +
+        "  ?film rdf:type schema:Film . " +
+        "  ?film schema:hasTitle ?title . " +
+        "  OPTIONAL { ?film schema:releaseYear ?year } " +
+        "}");
+
+    /** Parameter: ?genreName */
+    static final Query FILMS_BY_GENRE = QueryFactory.create(
+        PREFIXES +
+        "SELECT ?film ?title ?year " +
+        "WHERE { " +
+        "  ?film rdf:type schema:Film . " +
+        "  ?film schema:hasTitle ?title . " +
+        "  ?film schema:hasGenre ?genre . " +
+        "  ?genre schema:genreName ?genreName . " +
+        "  OPTIONAL { ?film schema:releaseYear ?year } " +
+        "}");
+
+    /** Parameter: ?needle (case-insensitive substring of the director's name) */
+    static final Query FILMS_BY_DIRECTOR = QueryFactory.create(
+        PREFIXES +
+        "SELECT ?film ?title ?year ?directorName " +
+        "WHERE { " +
+        "  ?film rdf:type schema:Film . " +
+        "  ?film schema:hasTitle ?title . " +
+        "  ?film schema:directedBy ?director . " +
+        "  ?director schema:hasName ?directorName . " +
+        "  FILTER(CONTAINS(LCASE(?directorName), LCASE(?needle))) . " +
+        "  OPTIONAL { ?film schema:releaseYear ?year } " +
+        "}");
+
+    /** Parameters: ?startYear, ?endYear (inclusive) */
+    static final Query FILMS_BY_YEAR_RANGE = QueryFactory.create(
+        PREFIXES +
+        "SELECT ?film ?title ?year " +
+        "WHERE { " +
+        "  ?film rdf:type schema:Film . " +
+        "  ?film schema:hasTitle ?title . " +
+        "  ?film schema:releaseYear ?year . " +
+        "  FILTER(?year >= ?startYear && ?year <= ?endYear) " +
+        "} ORDER BY ?year");
+
+    /**
+     * Films with a materialized quality of at least ?minQuality, best first.
+     * Parameter: ?minQuality
+     */
+    static final Query FILMS_BY_MIN_QUALITY = QueryFactory.create(
+        PREFIXES +
+        "SELECT ?film ?title ?year ?quality ?category " +
+        "WHERE { " +
+        "  ?film rdf:type schema:Film . " +
+        "  ?film schema:hasTitle ?title . " +
+        "  ?film schema:qualityScore ?quality . " +
+        "  FILTER(?quality >= ?minQuality) " +
+        "  OPTIONAL { ?film schema:qualityCategory ?category } " +
+        "  OPTIONAL { ?film schema:releaseYear ?year } " +
+        "} ORDER BY DESC(?quality) STR(?film)");
+
+    /**
+     * Films in one materialized quality category, best first.
+     * Parameter: ?category
+     */
+    static final Query FILMS_BY_QUALITY_CATEGORY = QueryFactory.create(
+        PREFIXES +
+        "SELECT ?film ?title ?year ?quality ?category " +
+        "WHERE { " +
+        "  ?film rdf:type schema:Film . " +
+        "  ?film schema:hasTitle ?title . " +
+        "  ?film schema:qualityCategory ?category . " +
+        "  ?film schema:qualityScore ?quality . " +
+        "  OPTIONAL { ?film schema:releaseYear ?year } " +
+        "} ORDER BY DESC(?quality) STR(?film)");
+
+    private FilmQueries() {
+    }
+
+    static QuerySolutionMap genre(String genreName) {
+        QuerySolutionMap bindings = new QuerySolutionMap();
+        bindings.add("genreName", ResourceFactory.createStringLiteral(genreName));
+        return bindings;
+    }
+
+    static QuerySolutionMap director(String directorName) {
+        QuerySolutionMap bindings = new QuerySolutionMap();
+        bindings.add("needle", ResourceFactory.createStringLiteral(directorName));
+        return bindings;
+    }
+
+    static QuerySolutionMap yearRange(int startYear, int endYear) {
+        QuerySolutionMap bindings = new QuerySolutionMap();
+        bindings.add("startYear", ResourceFactory.createTypedLiteral(startYear));
+        bindings.add("endYear", ResourceFactory.createTypedLiteral(endYear));
+        return bindings;
+    }
+
+    static QuerySolutionMap minQuality(double minQuality) {
+        QuerySolutionMap bindings = new QuerySolutionMap();
+        bindings.add("minQuality", ResourceFactory.createTypedLiteral(minQuality));
+        return bindings;
+    }
+
+    static QuerySolutionMap qualityCategory(String category) {
+        QuerySolutionMap bindings = new QuerySolutionMap();
+        bindings.add("category", ResourceFactory.createStringLiteral(category));
+        return bindings;
+    }
+}
@@ -1,23 +1,68 @@
 package rs.ftn.ns.ontology;
 
+import org.apache.jena.query.Query;
 import org.apache.jena.query.QuerySolution;
-import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.QuerySolutionMap;
+import rs.ftn.ns.cache.FilmResultCache;
+import rs.ftn.ns.fuzzy.FilmQualityEvaluator;
+import rs.ftn.ns.index.CompletionIndex;
+import rs.ftn.ns.index.FilmCriteria;
+import rs.ftn.ns.index.FilmIndex;
+import rs.ftn.ns.index.SimilarityIndex;
+import rs.ftn.ns.index.TextIndex;
 import rs.ftn.ns.model.*;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Service class for querying films from the ontology using SPARQL.
  */
 public class FilmQueryService {
     
+    // For results no index can check a changed film against: any change to a film drops them
+    private static final Predicate<String> ANY_FILM = filmId -> true;
+    
     private OntologyManager ontologyManager;
     private String dataNs;   // namespace for instances
     private String schemaNs; // namespace for properties
+    private boolean shared;  // manager comes from OntologyRegistry
+    private final AtomicBoolean closed = new AtomicBoolean();
 
+    /**
+     * Creates a service on top of the shared in-memory ontology
+     */
     public FilmQueryService() {
-        this.ontologyManager = new OntologyManager();
+        this(OntologyRegistry.acquire());
+        this.shared = true;
+    }
+
+    /**
+     * Creates a service on top of an already loaded ontology
+     * (e.g. one opened in TDB2 mode). The service takes ownership
+     * of the manager and closes it in {@link #close()}.
+     *
+     * @param ontologyManager The ontology to query
+     */
+    public FilmQueryService(OntologyManager ontologyManager) {
+        this.ontologyManager = ontologyManager;
         this.dataNs = ontologyManager.getDataNamespace();
         this.schemaNs = ontologyManager.getSchemaNamespace();
     }
@@ -25,161 +70,508 @@ public class FilmQueryService {
     /**
      * Get all films from the ontology
      * 
-     * @return List of Film objects
+     * @return Unmodifiable list of Film objects
      */
     public List<Film> getAllFilms() {
-        String queryString = 
-            "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
-            "PREFIX data: <" + dataNs + "> " +
-            "PREFIX schema: <" + schemaNs + "> " +
-            "SELECT ?film ?title ?year " +
-            "WHERE { " +
-            "  ?film rdf:type schema:Film . " +
-            "  ?film schema:hasTitle ?title . " +
-            "  OPTIONAL { ?film schema:releaseYear ?year } " +
-            "}";
-        
-        List<Film> films = new ArrayList<>();
-        ResultSet results = ontologyManager.executeQuery(queryString);
-        
-        while (results.hasNext()) {
-            QuerySolution solution = results.nextSolution();
-            
-            Film film = new Film();
-            film.setId(extractLocalName(solution.get("film").toString()));
-            film.setTitle(solution.getLiteral("title").getString());
-            
-            if (solution.contains("year")) {
-                film.setReleaseYear(solution.getLiteral("year").getInt());
-            }
-            
-            films.add(film);
-        }
-        
-        return films;
+        return findFilms(FilmCriteria.any());
     }
     
     /**
      * Find films by genre
      * 
      * @param genreName The genre to search for (e.g., "Action", "Drama")
-     * @return List of Film objects
+     * @return Unmodifiable list of Film objects
      */
     public List<Film> findFilmsByGenre(String genreName) {
-        String queryString = 
-            "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
-            "PREFIX data: <" + dataNs + "> " +
-            "PREFIX schema: <" + schemaNs + "> " +
-            "SELECT ?film ?title ?year " +
-            "WHERE { " +
-            "  ?film rdf:type schema:Film . " +
-            "  ?film schema:hasTitle ?title . " +
-            "  ?film schema:hasGenre ?genre . " +
-            "  ?genre schema:genreName \"" + genreName + "\" . " +
-            "  OPTIONAL { ?film schema:releaseYear ?year } " +
-            "}";
+        return findFilms(FilmCriteria.any().genre(genreName));
+    }
+    
+    /**
+     * Find films by director
+     * 
+     * @param directorName The director's name
+     * @return Unmodifiable list of Film objects
+     */
+    public List<Film> findFilmsByDirector(String directorName) {
+        return findFilms(FilmCriteria.any().director(directorName));
+    }
+    
+    /**
+     * Find films by year range
+     * 
+     * @param startYear Start year (inclusive)
+     * @param endYear End year (inclusive)
+     * @return Unmodifiable list of Film objects
+     */
+    public List<Film> findFilmsByYearRange(int startYear, int endYear) {
+        return findFilms(FilmCriteria.any().years(startYear, endYear));
+    }
+    
+    /**
+     * Find films matching several criteria at once, e.g.
+     * {@code FilmCriteria.any().genre("Drama").years(1990, 1999)}.
+     * Answered from the secondary indexes, not from SPARQL.
+     * 
+     * @param criteria Genres, director, year range, country and language to match
+     * @return Unmodifiable list of Film objects, ordered by year if a year range is given
+     */
+    public List<Film> findFilms(FilmCriteria criteria) {
+        // The check holds on to the manager, not to this service
+        OntologyManager manager = ontologyManager;
+        return cached("criteria", Collections.singletonList(criteria),
+                      () -> manager.getFilmIndex().find(criteria),
+                      filmId -> manager.getFilmIndex().matches(filmId, criteria));
+    }
+    
+    /**
+     * Get films whose materialized quality is at least the given score,
+     * best first. Only films scored by a {@link QualityMaterializer}
+     * are considered; no fuzzy inference runs here.
+     * 
+     * @param minQuality Lowest quality score to include (0-10)
+     * @return Unmodifiable list of Film objects with their quality score and category
+     */
+    public List<Film> findFilmsByMinQuality(double minQuality) {
+        return cached("minQuality", Collections.singletonList(minQuality),
+                      () -> collect(streamFilms(FilmQueries.FILMS_BY_MIN_QUALITY, FilmQueries.minQuality(minQuality))),
+                      ANY_FILM);
+    }
+    
+    /**
+     * Get films in a materialized quality category, best first
+     * 
+     * @param category "Bad", "Mediocre", "Good" or "Excellent"
+     * @return Unmodifiable list of Film objects with their quality score and category
+     */
+    public List<Film> findFilmsByQualityCategory(String category) {
+        return cached("qualityCategory", Collections.singletonList(category),
+                      () -> collect(streamFilms(FilmQueries.FILMS_BY_QUALITY_CATEGORY,
+                                                FilmQueries.qualityCategory(category))),
+                      ANY_FILM);
+    }
+    
+    /**
+     * Get the K films with the best fuzzy quality among those matching
+     * the criteria, e.g. the best dramas from the 2000s. Candidates are
+     * scored straight from the index and only the K winners are loaded,
+     * so memory grows with K, not with the number of matches.
+     * 
+     * @param criteria Films to consider
+     * @param k Number of films to return
+     * @param evaluator Evaluator to score with
+     * @return Complete films with their scores, best first (ties by film id)
+     */
+    public List<RankedFilm> findTopFilms(FilmCriteria criteria, int k, FilmQualityEvaluator evaluator) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1, was " + k);
+        }
+        FilmIndex index = ontologyManager.getFilmIndex();
+        List<TopFilmRanker.Candidate> best = new TopFilmRanker(index, evaluator).top(index.match(criteria), k);
         
-        List<Film> films = new ArrayList<>();
-        ResultSet results = ontologyManager.executeQuery(queryString);
+        List<String> ids = new ArrayList<>(best.size());
+        for (TopFilmRanker.Candidate candidate : best) {
+            ids.add(index.getId(candidate.ordinal));
+        }
+        List<Film> films = loadFilms(ids);
         
-        while (results.hasNext()) {
-            QuerySolution solution = results.nextSolution();
-            
-            Film film = new Film();
-            film.setId(extractLocalName(solution.get("film").toString()));
-            film.setTitle(solution.getLiteral("title").getString());
-            
-            if (solution.contains("year")) {
-                film.setReleaseYear(solution.getLiteral("year").getInt());
+        // Skip any film removed since the index was built
+        List<RankedFilm> ranked = new ArrayList<>(best.size());
+        for (int i = 0, f = 0; i < best.size() && f < films.size(); i++) {
+            if (films.get(f).getId().equals(ids.get(i))) {
+                ranked.add(new RankedFilm(films.get(f++), best.get(i).quality));
             }
-            
-            films.add(film);
         }
+        return ranked;
+    }
+    
+    /**
+     * Get the films most like the given one: shared people, genres,
+     * country, language and era, with rare links (the same director)
+     * counting for more than common ones (the same language).
+     * 
+     * @param filmId Film id (e.g. "Inception")
+     * @param n Number of films to return
+     * @return Complete films with their similarity, most similar first;
+     *         empty if there is no such film
+     */
+    public List<SimilarFilm> findSimilarFilms(String filmId, int n) {
+        List<SimilarityIndex.Match> matches = ontologyManager.getSimilarityIndex().similar(filmId, n);
+        
+        List<String> ids = new ArrayList<>(matches.size());
+        for (SimilarityIndex.Match match : matches) {
+            ids.add(match.getFilmId());
+        }
+        List<Film> films = loadFilms(ids);
         
-        return films;
+        // Skip any film removed since the index was built
+        List<SimilarFilm> similar = new ArrayList<>(matches.size());
+        for (int i = 0, f = 0; i < matches.size() && f < films.size(); i++) {
+            if (films.get(f).getId().equals(ids.get(i))) {
+                similar.add(new SimilarFilm(films.get(f++), matches.get(i).getSimilarity()));
+            }
+        }
+        return similar;
     }
     
     /**
-     * Find films by director
+     * Search titles, original titles, synopses and the names of each
+     * film's director, writers and actors. Case, accents and small typos
+     * are ignored ("amelie", "godfater"), and a word may be the start of
+     * a longer one ("godf"). Every word has to match.
      * 
-     * @param directorName The director's name
-     * @return List of Film objects
+     * @param text Words to search for
+     * @param n Number of films to return
+     * @return Complete films with their relevance, best match first
      */
-    public List<Film> findFilmsByDirector(String directorName) {
-        String queryString = 
-            "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
-            "PREFIX data: <" + dataNs + "> " +
-            "PREFIX schema: <" + schemaNs + "> " +
-            "SELECT ?film ?title ?year ?directorName " +
-            "WHERE { " +
-            "  ?film rdf:type schema:Film . " +
-            "  ?film schema:hasTitle ?title . " +
-            "  ?film schema:directedBy ?director . " +
-            "  ?director schema:hasName ?directorName . " +
-            "  FILTER(CONTAINS(LCASE(?directorName), LCASE(\"" + directorName + "\"))) . " +
-            "  OPTIONAL { ?film schema:releaseYear ?year } " +
-            "}";
+    public List<MatchedFilm> searchFilms(String text, int n) {
+        return searchFilms(text, n, EnumSet.allOf(TextIndex.Field.class));
+    }
+    
+    /**
+     * Search some of the text of each film, e.g. only titles.
+     * See {@link #searchFilms(String, int)}.
+     * 
+     * @param text Words to search for
+     * @param n Number of films to return
+     * @param fields Fields to search
+     * @return Complete films with their relevance, best match first
+     */
+    public List<MatchedFilm> searchFilms(String text, int n, Set<TextIndex.Field> fields) {
+        List<TextIndex.Hit> hits = ontologyManager.getTextIndex().search(text, n, fields);
         
-        List<Film> films = new ArrayList<>();
-        ResultSet results = ontologyManager.executeQuery(queryString);
+        List<String> ids = new ArrayList<>(hits.size());
+        for (TextIndex.Hit hit : hits) {
+            ids.add(hit.getFilmId());
+        }
+        List<Film> films = loadFilms(ids);
         
-        while (results.hasNext()) {
-            QuerySolution solution = results.nextSolution();
-            
-            Film film = new Film();
-            film.setId(extractLocalName(solution.get("film").toString()));
-            film.setTitle(solution.getLiteral("title").getString());
-            
-            if (solution.contains("year")) {
-                film.setReleaseYear(solution.getLiteral("year").getInt());
+        // Skip any film removed since the index was built
+        List<MatchedFilm> matched = new ArrayList<>(hits.size());
+        for (int i = 0, f = 0; i < hits.size() && f < films.size(); i++) {
+            if (films.get(f).getId().equals(ids.get(i))) {
+                matched.add(new MatchedFilm(films.get(f++), hits.get(i).getScore()));
             }
-            
-            // Create director
-            Director director = new Director();
-            director.setName(solution.getLiteral("directorName").getString());
-            film.setDirector(director);
-            
-            films.add(film);
         }
+        return matched;
+    }
+    
+    /**
+     * Complete what has been typed into a search box: film titles,
+     * people's names and genres starting with it (or with a word starting
+     * with it), most popular first. Answered from the autocomplete index,
+     * so it is cheap enough to call on every keystroke. From 4 letters one
+     * typo is allowed, from 8 two.
+     * 
+     * @param prefix What has been typed so far
+     * @param n Number of completions to return
+     * @return Completions with fewest typos first, then by IMDb votes
+     */
+    public List<CompletionIndex.Completion> autocomplete(String prefix, int n) {
+        return ontologyManager.getCompletionIndex().complete(prefix, n);
+    }
+    
+    /**
+     * Complete a prefix with up to the given number of typos,
+     * see {@link #autocomplete(String, int)}
+     * 
+     * @param prefix What has been typed so far
+     * @param n Number of completions to return
+     * @param maxEdits Typos to allow (inserted, missing, wrong or swapped letters)
+     * @return Completions with fewest typos first, then by IMDb votes
+     */
+    public List<CompletionIndex.Completion> autocomplete(String prefix, int n, int maxEdits) {
+        return ontologyManager.getCompletionIndex().complete(prefix, n, maxEdits);
+    }
+    
+    /**
+     * Load complete films - director, actors, writers, genres, awards,
+     * ratings and scores - in one pass over the graph, instead of one
+     * query per film and relation
+     * 
+     * @param filmIds Film ids (e.g. "Inception")
+     * @return Films in the order of the ids; unknown ids are skipped
+     */
+    public List<Film> loadFilms(Collection<String> filmIds) {
+        Set<String> ids = new LinkedHashSet<>(filmIds);
+        return ontologyManager.calculateRead(() -> {
+            FilmHydrator hydrator = new FilmHydrator(ontologyManager.getOntologyModel().getGraph(), dataNs, schemaNs);
+            List<Film> films = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                Film film = hydrator.hydrate(id);
+                if (film != null) {
+                    films.add(film);
+                }
+            }
+            return films;
+        });
+    }
+    
+    /**
+     * Load one complete film
+     * 
+     * @param filmId Film id (e.g. "Inception")
+     * @return The film, or null if there is no such film
+     */
+    public Film loadFilm(String filmId) {
+        List<Film> films = loadFilms(Collections.singletonList(filmId));
+        return films.isEmpty() ? null : films.get(0);
+    }
+    
+    /**
+     * Get one page of all films, ordered by film id (the local name of
+     * the film's IRI, compared as strings).
+     * Pages are read from the film index: each starts after the last
+     * film of the previous page instead of skipping over it, and lists
+     * each film once.
+     * 
+     * @param pageSize Maximum number of films on the page
+     * @param continuationToken Token from the previous page, or null for the first page
+     * @return The page and the token for the next one
+     */
+    public FilmPage getAllFilmsPage(int pageSize, String continuationToken) {
+        String[] position = decodeToken(continuationToken, 1);
+        String afterFilm = position == null ? null : position[0];
         
-        return films;
+        List<Film> films = ontologyManager.getFilmIndex().page(afterFilm, checkPageSize(pageSize) + 1);
+        return toPage(films, pageSize, false);
     }
     
     /**
-     * Find films by year range
+     * Get one page of films in a year range, ordered by year and film id.
+     * See {@link #getAllFilmsPage(int, String)}.
      * 
      * @param startYear Start year (inclusive)
      * @param endYear End year (inclusive)
-     * @return List of Film objects
+     * @param pageSize Maximum number of films on the page
+     * @param continuationToken Token from the previous page, or null for the first page
+     * @return The page and the token for the next one
      */
-    public List<Film> findFilmsByYearRange(int startYear, int endYear) {
-        String queryString = 
-            "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
-            "PREFIX data: <" + dataNs + "> " +
-            "PREFIX schema: <" + schemaNs + "> " +
-            "SELECT ?film ?title ?year " +
-            "WHERE { " +
-            "  ?film rdf:type schema:Film . " +
-            "  ?film schema:hasTitle ?title . " +
-            "  ?film schema:releaseYear ?year . " +
-            "  FILTER(?year >= " + startYear + " && ?year <= " + endYear + ") " +
-            "} ORDER BY ?year";
+    public FilmPage findFilmsByYearRangePage(int startYear, int endYear, int pageSize, String continuationToken) {
+        String[] position = decodeToken(continuationToken, 2);
+        int afterYear = startYear - 1;
+        String afterFilm = null;
+        if (position != null) {
+            try {
+                afterYear = Integer.parseInt(position[0]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid continuation token", e);
+            }
+            afterFilm = position[1];
+        }
         
-        List<Film> films = new ArrayList<>();
-        ResultSet results = ontologyManager.executeQuery(queryString);
+        List<Film> films = ontologyManager.getFilmIndex()
+            .yearPage(startYear, endYear, afterYear, afterFilm, checkPageSize(pageSize) + 1);
+        return toPage(films, pageSize, true);
+    }
+    
+    /**
+     * Stream all films from the ontology. Rows are read from the query
+     * only as the stream is consumed; the stream must be closed
+     * (try-with-resources) unless it is consumed completely.
+     * 
+     * @return Lazily evaluated stream of Film objects
+     */
+    public Stream<Film> streamAllFilms() {
+        return streamFilms(FilmQueries.ALL_FILMS, new QuerySolutionMap());
+    }
+    
+    /**
+     * Stream films by genre, see {@link #streamAllFilms()}
+     * 
+     * @param genreName The genre to search for
+     * @return Lazily evaluated stream of Film objects
+     */
+    public Stream<Film> streamFilmsByGenre(String genreName) {
+        return streamFilms(FilmQueries.FILMS_BY_GENRE, FilmQueries.genre(genreName));
+    }
+    
+    /**
+     * Stream films by director, see {@link #streamAllFilms()}
+     * 
+     * @param directorName The director's name
+     * @return Lazily evaluated stream of Film objects
+     */
+    public Stream<Film> streamFilmsByDirector(String directorName) {
+        return streamFilms(FilmQueries.FILMS_BY_DIRECTOR, FilmQueries.director(directorName));
+    }
+    
+    /**
+     * Stream films by year range, see {@link #streamAllFilms()}
+     * 
+     * @param startYear Start year (inclusive)
+     * @param endYear End year (inclusive)
+     * @return Lazily evaluated stream of Film objects
+     */
+    public Stream<Film> streamFilmsByYearRange(int startYear, int endYear) {
+        return streamFilms(FilmQueries.FILMS_BY_YEAR_RANGE, FilmQueries.yearRange(startYear, endYear));
+    }
+    
+    /**
+     * Push each film to the consumer as it is read from the query
+     * 
+     * @param consumer Receives the films
+     */
+    public void forEachFilm(Consumer<Film> consumer) {
+        try (Stream<Film> films = streamAllFilms()) {
+            films.forEach(consumer);
+        }
+    }
+    
+    /**
+     * Push each film of a genre to the consumer as it is read
+     * 
+     * @param genreName The genre to search for
+     * @param consumer Receives the films
+     */
+    public void forEachFilmByGenre(String genreName, Consumer<Film> consumer) {
+        try (Stream<Film> films = streamFilmsByGenre(genreName)) {
+            films.forEach(consumer);
+        }
+    }
+    
+    /**
+     * Push each film of a director to the consumer as it is read
+     * 
+     * @param directorName The director's name
+     * @param consumer Receives the films
+     */
+    public void forEachFilmByDirector(String directorName, Consumer<Film> consumer) {
+        try (Stream<Film> films = streamFilmsByDirector(directorName)) {
+            films.forEach(consumer);
+        }
+    }
+    
+    /**
+     * Push each film of a year range to the consumer as it is read
+     * 
+     * @param startYear Start year (inclusive)
+     * @param endYear End year (inclusive)
+     * @param consumer Receives the films
+     */
+    public void forEachFilmByYearRange(int startYear, int endYear, Consumer<Film> consumer) {
+        try (Stream<Film> films = streamFilmsByYearRange(startYear, endYear)) {
+            films.forEach(consumer);
+        }
+    }
+    
+    /**
+     * Turns a page read with pageSize + 1 films into the page; the extra
+     * film only tells whether there is a next page
+     */
+    private static FilmPage toPage(List<Film> films, int pageSize, boolean keyedByYear) {
+        if (films.size() <= pageSize) {
+            return new FilmPage(films, null);
+        }
+        List<Film> page = new ArrayList<>(films.subList(0, pageSize));
+        Film last = page.get(pageSize - 1);
+        String nextToken = keyedByYear ? encodeToken(String.valueOf(last.getReleaseYear()), last.getId())
+                                       : encodeToken(last.getId());
+        return new FilmPage(page, nextToken);
+    }
+    
+    private static int checkPageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        return pageSize;
+    }
+    
+    /**
+     * Continuation tokens are the keyset position (year and/or film id),
+     * joined by a newline and Base64 encoded
+     */
+    private static String encodeToken(String... position) {
+        byte[] bytes = String.join("\n", position).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+    
+    private static String[] decodeToken(String token, int parts) {
+        if (token == null) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] position = decoded.split("\n", -1);
+            if (position.length != parts) {
+                throw new IllegalArgumentException("Invalid continuation token");
+            }
+            return position;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token", e);
+        }
+    }
+    
+    /**
+     * Runs a query whose rows are turned into films as they are consumed
+     */
+    private Stream<Film> streamFilms(Query query, QuerySolution bindings) {
+        QueryCursor cursor = ontologyManager.openQuery(query, bindings);
         
-        while (results.hasNext()) {
-            QuerySolution solution = results.nextSolution();
+        Iterator<Film> films = new Iterator<Film>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
             
-            Film film = new Film();
-            film.setId(extractLocalName(solution.get("film").toString()));
-            film.setTitle(solution.getLiteral("title").getString());
+            @Override
+            public Film next() {
+                return toFilm(cursor.next());
+            }
+        };
+        
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(films, Spliterator.ORDERED), false)
+                            .onClose(cursor::close);
+    }
+    
+    /**
+     * Builds a film from a result row (?film ?title and optionally
+     * ?year and ?directorName)
+     */
+    private Film toFilm(QuerySolution solution) {
+        Film film = new Film();
+        film.setId(extractLocalName(solution.get("film").toString()));
+        film.setTitle(solution.getLiteral("title").getString());
+        
+        if (solution.contains("year")) {
             film.setReleaseYear(solution.getLiteral("year").getInt());
-            
-            films.add(film);
         }
         
-        return films;
+        if (solution.contains("quality")) {
+            film.setQualityScore(solution.getLiteral("quality").getDouble());
+        }
+        if (solution.contains("category")) {
+            film.setQualityCategory(solution.getLiteral("category").getString());
+        }
+        
+        if (solution.contains("directorName")) {
+            Director director = new Director();
+            director.setName(solution.getLiteral("directorName").getString());
+            film.setDirector(director);
+        }
+        
+        return film;
+    }
+    
+    private static List<Film> collect(Stream<Film> films) {
+        try (Stream<Film> stream = films) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+    
+    /**
+     * Runs a lookup through the ontology's result cache, if it has one
+     * 
+     * @param mayMatch Tells whether a film changed by OntologyManager.update()
+     *                 may now be in the result, so only the results it can
+     *                 affect are dropped
+     */
+    private List<Film> cached(String shape, List<?> parameters, Supplier<List<Film>> query,
+                              Predicate<String> mayMatch) {
+        FilmResultCache cache = ontologyManager.getResultCache();
+        if (cache == null) {
+            return query.get();
+        }
+        return cache.getOrLoad(shape, parameters, query, mayMatch);
     }
     
     /**
@@ -196,9 +588,18 @@ public class FilmQueryService {
     }
     
     /**
-     * Close the ontology manager
+     * Close the ontology manager. A shared ontology is only released,
+     * it stays loaded while other services still use it. Closing again
+     * does nothing.
      */
     public void close() {
-        ontologyManager.close();
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (shared) {
+            OntologyRegistry.release(ontologyManager);
+        } else {
+            ontologyManager.close();
+        }
     }
 }
\ No newline at end of file
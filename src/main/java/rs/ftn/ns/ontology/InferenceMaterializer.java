@@ -0,0 +1,391 @@
+package rs.ftn.ns.ontology;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.compose.Union;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.XSD;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes, once, what a reasoner would infer about the individuals of
+ * the ontology, so queries can run on the stored triples with no reasoner
+ * attached.
+ *
+ * The schema is compiled into lookup tables first: the closure of
+ * rdfs:subClassOf and rdfs:subPropertyOf (owl:equivalentClass and
+ * owl:equivalentProperty count both ways), the domains, ranges and
+ * inverses of every property (owl:inverseOf, owl:SymmetricProperty), and
+ * the transitive properties. Then every triple of the data is looked up
+ * in the tables, and every new triple is looked up in turn until nothing
+ * new follows:
+ *
+ *   x rdf:type C, C subClassOf D    gives  x rdf:type D
+ *   x p y, p subPropertyOf q        gives  x q y
+ *   x p y, p rdfs:domain C          gives  x rdf:type C
+ *   x p y, p rdfs:range C           gives  y rdf:type C
+ *   x p y, p inverseOf q            gives  y q x
+ *   x p y, y p z, p transitive      gives  x p z
+ *
+ * This is the part of RDFS and OWL Micro that concerns individuals. What
+ * the schema entails about itself (e.g. the closed subclass hierarchy)
+ * is not added, nor are rdfs:Resource types.
+ *
+ * Only triples that are not already in the data or the schema are
+ * written, so the result can be served as a union with both.
+ */
+public final class InferenceMaterializer {
+
+    private final Map<Node, Set<Node>> superClasses = new HashMap<>();
+    private final Map<Node, Set<Node>> superProperties = new HashMap<>();
+    private final Map<Node, Set<Node>> domains = new HashMap<>();
+    private final Map<Node, Set<Node>> ranges = new HashMap<>();
+    private final Map<Node, Set<Node>> inverses = new HashMap<>();
+    private final Set<Node> transitive = new HashSet<>();
+
+    /**
+     * Compiles the schema. Schema statements in the data (e.g. a range
+     * declared in the data file) are used as well.
+     *
+     * @param schema Graph of the schema (film-schema.owl)
+     * @param data Graph of the individuals
+     */
+    public InferenceMaterializer(Graph schema, Graph data) {
+        Graph both = new Union(schema, data);
+
+        Map<Node, Set<Node>> subClassOf = edges(both, RDFS.subClassOf.asNode(), false);
+        merge(subClassOf, edges(both, OWL.equivalentClass.asNode(), true));
+        Map<Node, Set<Node>> subPropertyOf = edges(both, RDFS.subPropertyOf.asNode(), false);
+        merge(subPropertyOf, edges(both, OWL.equivalentProperty.asNode(), true));
+        for (Node type : subClassOf.keySet()) {
+            superClasses.put(type, closure(type, subClassOf));
+        }
+        for (Node property : subPropertyOf.keySet()) {
+            superProperties.put(property, closure(property, subPropertyOf));
+        }
+
+        // Domains and ranges are inherited from super-properties and include their super-classes
+        Map<Node, Set<Node>> declaredDomains = edges(both, RDFS.domain.asNode(), false);
+        Map<Node, Set<Node>> declaredRanges = edges(both, RDFS.range.asNode(), false);
+        Map<Node, Set<Node>> declaredInverses = edges(both, OWL.inverseOf.asNode(), true);
+        for (Node symmetric : subjects(both, OWL.SymmetricProperty.asNode())) {
+            declaredInverses.computeIfAbsent(symmetric, p -> new LinkedHashSet<>()).add(symmetric);
+        }
+        Set<Node> properties = new HashSet<>(subPropertyOf.keySet());
+        properties.addAll(declaredDomains.keySet());
+        properties.addAll(declaredRanges.keySet());
+        properties.addAll(declaredInverses.keySet());
+        for (Node property : properties) {
+            Set<Node> propertyDomains = new LinkedHashSet<>();
+            Set<Node> propertyRanges = new LinkedHashSet<>();
+            for (Node superProperty : withSuperProperties(property)) {
+                for (Node type : declaredDomains.getOrDefault(superProperty, Collections.emptySet())) {
+                    propertyDomains.add(type);
+                    propertyDomains.addAll(superClassesOf(type));
+                }
+                for (Node type : declaredRanges.getOrDefault(superProperty, Collections.emptySet())) {
+                    // Datatype ranges say nothing about individuals
+                    if (type.isURI() && !type.getURI().startsWith(XSD.getURI()) && !type.equals(RDFS.Literal.asNode())) {
+                        propertyRanges.add(type);
+                        propertyRanges.addAll(superClassesOf(type));
+                    }
+                }
+            }
+            if (!propertyDomains.isEmpty()) {
+                domains.put(property, propertyDomains);
+            }
+            if (!propertyRanges.isEmpty()) {
+                ranges.put(property, propertyRanges);
+            }
+        }
+        inverses.putAll(declaredInverses);
+        transitive.addAll(subjects(both, OWL.TransitiveProperty.asNode()));
+    }
+
+    /**
+     * Writes everything that follows from the data into another graph
+     *
+     * @param data Graph of the individuals; it is only read
+     * @param schema Graph of the schema; only used to skip what it states already
+     * @param into Receives the inferred triples
+     * @return Number of triples written
+     */
+    public long materialize(Graph data, Graph schema, Graph into) {
+        ExtendedIterator<Triple> triples = data.find();
+        try {
+            return infer(triples, data, schema, into, null);
+        } finally {
+            triples.close();
+        }
+    }
+
+    /**
+     * Brings the triples written by {@link #materialize} up to date after
+     * a change to the data, looking only at the triples around the change.
+     * Added triples are looked up in the tables like at load time. For the
+     * retracted individuals, every inferred triple that mentions them is
+     * dropped and what still follows from their remaining data is added
+     * back. Triples a transitive property chained through a retracted
+     * individual are kept until the next full materialization.
+     *
+     * @param data Graph of the individuals after the change; it is only read
+     * @param schema Graph of the schema; only used to skip what it states already
+     * @param into The inferred triples, updated in place
+     * @param added Triples added to the data
+     * @param retracted Individuals that lost triples of the data
+     * @return The inferred triples added to and removed from {@code into}
+     */
+    public Delta update(Graph data, Graph schema, Graph into, Collection<Triple> added, Collection<Node> retracted) {
+        Set<Triple> dropped = new LinkedHashSet<>();
+        List<Triple> seeds = new ArrayList<>(added);
+        for (Node node : retracted) {
+            collect(into.find(node, Node.ANY, Node.ANY), dropped);
+            collect(into.find(Node.ANY, Node.ANY, node), dropped);
+            collect(data.find(node, Node.ANY, Node.ANY), seeds);
+            collect(data.find(Node.ANY, Node.ANY, node), seeds);
+        }
+        for (Triple triple : dropped) {
+            into.delete(triple);
+        }
+
+        List<Triple> inferred = new ArrayList<>();
+        infer(seeds.iterator(), data, schema, into, inferred);
+
+        // What was dropped and follows again did not change
+        Delta delta = new Delta();
+        for (Triple triple : inferred) {
+            if (!dropped.remove(triple)) {
+                delta.added.add(triple);
+            }
+        }
+        delta.removed.addAll(dropped);
+        return delta;
+    }
+
+    /**
+     * Looks up the given triples, and every new triple in turn
+     *
+     * @param written Receives the triples written, or null
+     */
+    private long infer(Iterator<Triple> triples, Graph data, Graph schema, Graph into, List<Triple> written) {
+        Graph known = new Union(data, schema);
+        Deque<Triple> pending = new ArrayDeque<>();
+        long[] added = { 0 };
+        Adder adder = triple -> {
+            if (!known.contains(triple) && !into.contains(triple)) {
+                into.add(triple);
+                added[0]++;
+                pending.add(triple);
+                if (written != null) {
+                    written.add(triple);
+                }
+            }
+        };
+
+        // Only a transitive property that was seen needs closing
+        Set<Node> seenTransitive = new HashSet<>();
+        while (triples.hasNext()) {
+            Triple triple = triples.next();
+            infer(triple, adder);
+            noteTransitive(triple, seenTransitive);
+            while (!pending.isEmpty()) {
+                Triple next = pending.poll();
+                infer(next, adder);
+                noteTransitive(next, seenTransitive);
+            }
+        }
+
+        // Transitive closure last, then whatever follows from its triples
+        boolean changed = !seenTransitive.isEmpty();
+        while (changed) {
+            long before = added[0];
+            for (Node property : seenTransitive) {
+                closeTransitive(new Union(known, into), property, adder);
+            }
+            while (!pending.isEmpty()) {
+                infer(pending.poll(), adder);
+            }
+            changed = added[0] != before;
+        }
+        return added[0];
+    }
+
+    private void noteTransitive(Triple triple, Set<Node> seen) {
+        if (transitive.contains(triple.getPredicate())) {
+            seen.add(triple.getPredicate());
+        }
+    }
+
+    private static void collect(ExtendedIterator<Triple> triples, Collection<Triple> into) {
+        try {
+            while (triples.hasNext()) {
+                into.add(triples.next());
+            }
+        } finally {
+            triples.close();
+        }
+    }
+
+    /**
+     * Everything that follows from one triple by the tables alone
+     */
+    private void infer(Triple triple, Adder adder) {
+        Node subject = triple.getSubject();
+        Node predicate = triple.getPredicate();
+        Node object = triple.getObject();
+
+        if (predicate.equals(RDF.type.asNode())) {
+            for (Node type : superClassesOf(object)) {
+                adder.add(Triple.create(subject, predicate, type));
+            }
+            return;
+        }
+        for (Node property : withSuperProperties(predicate)) {
+            if (!property.equals(predicate)) {
+                adder.add(Triple.create(subject, property, object));
+            }
+        }
+        for (Node type : domains.getOrDefault(predicate, Collections.emptySet())) {
+            adder.add(Triple.create(subject, RDF.type.asNode(), type));
+        }
+        if (!object.isLiteral()) {
+            for (Node type : ranges.getOrDefault(predicate, Collections.emptySet())) {
+                adder.add(Triple.create(object, RDF.type.asNode(), type));
+            }
+            for (Node inverse : inverses.getOrDefault(predicate, Collections.emptySet())) {
+                adder.add(Triple.create(object, inverse, subject));
+            }
+        }
+    }
+
+    private static void closeTransitive(Graph graph, Node property, Adder adder) {
+        Map<Node, Set<Node>> next = new HashMap<>();
+        ExtendedIterator<Triple> links = graph.find(Node.ANY, property, Node.ANY);
+        try {
+            while (links.hasNext()) {
+                Triple link = links.next();
+                next.computeIfAbsent(link.getSubject(), s -> new LinkedHashSet<>()).add(link.getObject());
+            }
+        } finally {
+            links.close();
+        }
+        for (Node start : next.keySet()) {
+            for (Node reachable : closure(start, next)) {
+                adder.add(Triple.create(start, property, reachable));
+            }
+        }
+    }
+
+    private Set<Node> superClassesOf(Node type) {
+        return superClasses.getOrDefault(type, Collections.emptySet());
+    }
+
+    /**
+     * The property and its super-properties
+     */
+    private Set<Node> withSuperProperties(Node property) {
+        Set<Node> supers = superProperties.get(property);
+        if (supers == null) {
+            return Collections.singleton(property);
+        }
+        Set<Node> all = new LinkedHashSet<>();
+        all.add(property);
+        all.addAll(supers);
+        return all;
+    }
+
+    /**
+     * Nodes reachable from the start, without the start itself
+     */
+    private static Set<Node> closure(Node start, Map<Node, Set<Node>> edges) {
+        Set<Node> reached = new LinkedHashSet<>();
+        Deque<Node> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            for (Node next : edges.getOrDefault(queue.poll(), Collections.emptySet())) {
+                if (!next.equals(start) && reached.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Subject to objects of a schema property, with URI objects only
+     */
+    private static Map<Node, Set<Node>> edges(Graph graph, Node predicate, boolean bothWays) {
+        Map<Node, Set<Node>> edges = new HashMap<>();
+        ExtendedIterator<Triple> triples = graph.find(Node.ANY, predicate, Node.ANY);
+        try {
+            while (triples.hasNext()) {
+                Triple triple = triples.next();
+                if (triple.getSubject().isURI() && triple.getObject().isURI()) {
+                    edges.computeIfAbsent(triple.getSubject(), s -> new LinkedHashSet<>()).add(triple.getObject());
+                    if (bothWays) {
+                        edges.computeIfAbsent(triple.getObject(), o -> new LinkedHashSet<>()).add(triple.getSubject());
+                    }
+                }
+            }
+        } finally {
+            triples.close();
+        }
+        return edges;
+    }
+
+    private static List<Node> subjects(Graph graph, Node type) {
+        List<Node> subjects = new ArrayList<>();
+        ExtendedIterator<Triple> triples = graph.find(Node.ANY, RDF.type.asNode(), type);
+        try {
+            while (triples.hasNext()) {
+                subjects.add(triples.next().getSubject());
+            }
+        } finally {
+            triples.close();
+        }
+        return subjects;
+    }
+
+    private static void merge(Map<Node, Set<Node>> into, Map<Node, Set<Node>> from) {
+        for (Map.Entry<Node, Set<Node>> entry : from.entrySet()) {
+            into.computeIfAbsent(entry.getKey(), k -> new LinkedHashSet<>()).addAll(entry.getValue());
+        }
+    }
+
+    private interface Adder {
+        void add(Triple triple);
+    }
+
+    /**
+     * Inferred triples that an update added and removed
+     */
+    public static final class Delta {
+
+        private final List<Triple> added = new ArrayList<>();
+        private final List<Triple> removed = new ArrayList<>();
+
+        public List<Triple> getAdded() {
+            return added;
+        }
+
+        public List<Triple> getRemoved() {
+            return removed;
+        }
+    }
+}
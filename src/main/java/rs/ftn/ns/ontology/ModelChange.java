@@ -0,0 +1,108 @@
+package rs.ftn.ns.ontology;
+
+import org.apache.jena.graph.Triple;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What one {@link OntologyManager#update} changed: the triples added and
+ * removed, asserted and inferred, the individuals they are about, and
+ * the films affected. Anything derived from the model is brought up to
+ * date from this instead of being rebuilt.
+ */
+public final class ModelChange {
+
+    private final long previousVersion;
+    private final long version;
+    private final List<Triple> added;
+    private final List<Triple> removed;
+    private final Set<String> subjects;
+    private final Set<String> films;
+    private final List<String> filmIds;
+
+    ModelChange(long previousVersion, long version, List<Triple> added, List<Triple> removed,
+                Set<String> subjects, Set<String> films, String dataNs) {
+        this.previousVersion = previousVersion;
+        this.version = version;
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.subjects = Collections.unmodifiableSet(subjects);
+        this.films = Collections.unmodifiableSet(films);
+        List<String> ids = new ArrayList<>(films.size());
+        for (String iri : films) {
+            if (iri.startsWith(dataNs)) {
+                ids.add(iri.substring(dataNs.length()));
+            }
+        }
+        this.filmIds = Collections.unmodifiableList(ids);
+    }
+
+    /**
+     * @return Model version before the change
+     */
+    public long getPreviousVersion() {
+        return previousVersion;
+    }
+
+    /**
+     * @return Model version after the change
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Triples added, including those inferred from them
+     */
+    public List<Triple> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return Triples removed, including those no longer inferred
+     */
+    public List<Triple> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return IRIs of the individuals that gained or lost triples
+     */
+    public Set<String> getSubjects() {
+        return subjects;
+    }
+
+    /**
+     * Films added, changed or removed, and the films that link to a
+     * changed individual whose values they show, e.g. the films of a
+     * renamed director
+     *
+     * @return IRIs of the films
+     */
+    public Set<String> getFilms() {
+        return films;
+    }
+
+    /**
+     * @return Local names of the films of the data namespace
+     */
+    public List<String> getFilmIds() {
+        return filmIds;
+    }
+
+    /**
+     * @return true if no triple was added or removed
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ModelChange{version " + previousVersion + " -> " + version + ", +" + added.size() +
+               " -" + removed.size() + " triples, " + films.size() + " films}";
+    }
+}
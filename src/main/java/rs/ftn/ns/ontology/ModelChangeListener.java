@@ -0,0 +1,16 @@
+package rs.ftn.ns.ontology;
+
+/**
+ * Told about every change made through {@link OntologyManager#update},
+ * after the indexes and the result cache have been brought up to date.
+ */
+public interface ModelChangeListener {
+
+    /**
+     * Called on the thread that made the change. The listener may make
+     * changes of its own through OntologyManager.update().
+     *
+     * @param change What changed
+     */
+    void modelChanged(ModelChange change);
+}
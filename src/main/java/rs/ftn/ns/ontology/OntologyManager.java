@@ -1,69 +1,725 @@
 package rs.ftn.ns.ontology;
 
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.ontology.OntDocumentManager;
 import org.apache.jena.ontology.OntModel;
 import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.shared.Lock;
 import org.apache.jena.query.*;
-import org.apache.jena.util.FileManager;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.RiotNotFoundException;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.RDF;
+import rs.ftn.ns.cache.FilmResultCache;
+import rs.ftn.ns.cache.LruFilmResultCache;
+import rs.ftn.ns.index.CollaborationGraph;
+import rs.ftn.ns.index.CompletionIndex;
+import rs.ftn.ns.index.FilmIndex;
+import rs.ftn.ns.index.FilmStore;
+import rs.ftn.ns.index.SimilarityIndex;
+import rs.ftn.ns.index.TextIndex;
+import rs.ftn.ns.util.Checksums;
 
-import java.io.InputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 /**
  * Manages loading and querying the film ontology.
  */
 public class OntologyManager {
     
-    private OntModel ontologyModel;
+    private volatile OntModel ontologyModel;
     private static final String ONTOLOGY_PATH = "src/main/resources/ontology/film-data.owl";
+    private static final String TDB2_DIRECTORY = "target/tdb2/film-data";
+    private static final String SNAPSHOT_DIRECTORY = "target/ontology-snapshots";
+    private static final String SCHEMA_PATH = "src/main/resources/ontology/film-schema.owl";
+    
+    // Named graph of the inferred triples in TDB2 mode
+    private static final String INFERRED_GRAPH = "urn:movie-app:inferred";
  // Namespace for instances (films, actors, directors, etc.)
-    private static final String DATA_NAMESPACE = "http://www.semanticweb.org/dusan/ontologies/2025/11/film-ontology/data#";
+    static final String DATA_NAMESPACE = "http://www.semanticweb.org/dusan/ontologies/2025/11/film-ontology/data#";
 
     // Namespace for properties (hasTitle, directedBy, etc.) 
-    private static final String SCHEMA_NAMESPACE = "http://www.semanticweb.org/dusan/ontologies/2025/11/movie-app#";
+    static final String SCHEMA_NAMESPACE = "http://www.semanticweb.org/dusan/ontologies/2025/11/movie-app#";
+    
+    private final StorageMode storageMode;
+    private final String sourcePath;
+    private final String storeDirectory;
+    private final boolean materializeInferences;
+    
+    // Only set in TDB2 mode
+    private Tdb2OntologyStore tdb2Store;
+    private volatile Dataset dataset;
+    
+    // Set when the model was read from a binary snapshot (SNAPSHOT mode)
+    private boolean loadedFromSnapshot;
+    
+    // Sub-models of the ontology model, empty when inference is off
+    private volatile Model schemaModel = ModelFactory.createDefaultModel();
+    private volatile Model inferredModel = ModelFactory.createDefaultModel();
+    // Compiled schema, to keep the inferred triples up to date on update(); null when inference
+    // is off, and in TDB2 mode until the first update() if the stored triples were current
+    private volatile InferenceMaterializer inferenceMaterializer;
+    private volatile boolean inferencesServed;
+    
+    // Incremented whenever the model is reloaded or modified
+    private final AtomicLong modelVersion = new AtomicLong();
+    
+    // Set while the thread runs executeWrite(): whether the model changed in it
+    private final ThreadLocal<boolean[]> writeChanged = new ThreadLocal<>();
+    private volatile FilmResultCache resultCache = new LruFilmResultCache();
+    
+    // One update() at a time, so its changes reach the indexes in order
+    private final Object updateLock = new Object();
+    private final List<ModelChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    
+    // Changes made by listeners while another change is propagated; guarded by updateLock
+    private final Deque<ModelChange> pendingChanges = new ArrayDeque<>();
+    private boolean propagating;
+    
+    // Secondary indexes, updated by update() and rebuilt on the first lookup after any other change
+    private final DerivedIndex<FilmIndex> filmIndex =
+        new DerivedIndex<>(FilmIndex::build, FilmIndex::update, FilmIndex::getModelVersion);
+    private final DerivedIndex<SimilarityIndex> similarityIndex =
+        new DerivedIndex<>(SimilarityIndex::build, SimilarityIndex::update, SimilarityIndex::getModelVersion);
+    private final DerivedIndex<CollaborationGraph> collaborationGraph =
+        new DerivedIndex<>(CollaborationGraph::build, CollaborationGraph::update, CollaborationGraph::getModelVersion);
+    private final DerivedIndex<TextIndex> textIndex =
+        new DerivedIndex<>(TextIndex::build, TextIndex::update, TextIndex::getModelVersion);
+    // Rebuilt in the background; lookups meanwhile get the previous one
+    private final BackgroundIndex<CompletionIndex> completionIndex =
+        new BackgroundIndex<>(
+            (graph, dataNs, schemaNs, version) -> assemble(CompletionIndex.read(graph, dataNs, schemaNs), version),
+            (index, graph, dataNs, schemaNs, changed, version) ->
+                assemble(index.update(graph, dataNs, schemaNs, changed), version),
+            CompletionIndex::getModelVersion, "completion-index");
+    // Hydrates every film, so only built when first asked for
+    private final DerivedIndex<FilmStore> filmStore =
+        new DerivedIndex<>(FilmHydrator::buildStore, FilmHydrator::updateStore, FilmStore::getModelVersion);
     
     /**
-     * Constructor - loads the ontology
+     * Constructor - loads the ontology into memory
      */
     public OntologyManager() {
-        loadOntology();
+        this(StorageMode.MEMORY);
     }
     
     /**
-     * Loads the ontology from the OWL file
+     * Constructor - loads the ontology using the given storage mode
+     * 
+     * @param storageMode Where the ontology is kept
+     */
+    public OntologyManager(StorageMode storageMode) {
+        this(storageMode, ONTOLOGY_PATH,
+             storageMode == StorageMode.SNAPSHOT ? SNAPSHOT_DIRECTORY : TDB2_DIRECTORY);
+    }
+    
+    /**
+     * Constructor - loads the ontology from a custom location
+     * 
+     * @param storageMode Where the ontology is kept
+     * @param sourcePath Path to the OWL file
+     * @param storeDirectory Directory of the TDB2 dataset or of the snapshots
+     *                       (ignored in MEMORY mode)
+     */
+    public OntologyManager(StorageMode storageMode, String sourcePath, String storeDirectory) {
+        this(storageMode, sourcePath, storeDirectory, true);
+    }
+    
+    /**
+     * Constructor - loads the ontology from a custom location, with or
+     * without the inferred triples
+     * 
+     * @param storageMode Where the ontology is kept
+     * @param sourcePath Path to the OWL file
+     * @param storeDirectory Directory of the TDB2 dataset or of the snapshots
+     *                       (ignored in MEMORY mode)
+     * @param materializeInferences Whether to load film-schema.owl and add
+     *                              what follows from it, see {@link InferenceMaterializer}
+     */
+    public OntologyManager(StorageMode storageMode, String sourcePath, String storeDirectory,
+                           boolean materializeInferences) {
+        this.storageMode = storageMode;
+        this.sourcePath = sourcePath;
+        this.storeDirectory = storeDirectory;
+        this.materializeInferences = materializeInferences;
+        try {
+            loadOntology();
+        } catch (RuntimeException e) {
+            System.err.println("Error loading ontology: " + e.getMessage());
+            e.printStackTrace();
+        }
+        rebuildIndexes();
+    }
+    
+    /**
+     * Loads the ontology according to the storage mode. The model, its
+     * store and its inferred triples are set up aside and only replace the
+     * current ones once all of them loaded, so readers never see a
+     * half-loaded model; the previous TDB2 store is closed then.
+     * 
+     * @throws IllegalArgumentException If the source file does not exist
+     * @throws IllegalStateException If the source or the store cannot be read
      */
     private void loadOntology() {
+        LoadedOntology loaded = new LoadedOntology();
         try {
-            // Create an ontology model
-            ontologyModel = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
-            
-            // Load the ontology file
-            InputStream in = FileManager.get().open(ONTOLOGY_PATH);
-            if (in == null) {
-                throw new IllegalArgumentException("File not found: " + ONTOLOGY_PATH);
+            if (storageMode == StorageMode.TDB2) {
+                loadFromTdb2(loaded);
+            } else if (storageMode == StorageMode.SNAPSHOT) {
+                loadFromSnapshot(loaded);
+            } else {
+                loadIntoMemory(loaded);
             }
+        } catch (IOException e) {
+            loaded.close();
+            throw new IllegalStateException("Error loading ontology: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            loaded.close();
+            throw e;
+        }
+        
+        if (materializeInferences) {
+            addInferences(loaded);
+        }
+        loaded.model.register(new ChangeTracker());
+        
+        Tdb2OntologyStore previousStore = tdb2Store;
+        tdb2Store = loaded.store;
+        dataset = loaded.dataset;
+        loadedFromSnapshot = loaded.fromSnapshot;
+        schemaModel = loaded.schema;
+        inferredModel = loaded.inferred;
+        inferenceMaterializer = loaded.materializer;
+        inferencesServed = loaded.inferencesServed;
+        ontologyModel = loaded.model;
+        if (previousStore != null) {
+            previousStore.close();
+        }
+    }
+    
+    /**
+     * Loads the schema and the triples that follow from it and the data,
+     * and serves both as sub-models of the ontology model: queries see the
+     * union, with no reasoner attached, and writes still go to the data.
+     * In TDB2 mode the inferred triples are stored in a named graph and
+     * only computed again after an import or a change to the schema, so
+     * opening a store neither reads nor compiles the data.
+     */
+    private void addInferences(LoadedOntology loaded) {
+        try {
+            long start = System.nanoTime();
+            Model schema = RDFDataMgr.loadModel(SCHEMA_PATH);
+            Graph data = loaded.model.getBaseModel().getGraph();
+            InferenceMaterializer materializer = null;
+            Model inferred;
             
-            // Read the ontology
-            ontologyModel.read(in, null);
+            if (loaded.dataset != null) {
+                inferred = loaded.dataset.getNamedModel(INFERRED_GRAPH);
+                String schemaChecksum = Checksums.sha256(Paths.get(SCHEMA_PATH));
+                if (loaded.store.isMaterialized(schemaChecksum)) {
+                    System.out.println("Inferred statements are current (" +
+                                       (System.nanoTime() - start) / 1_000_000 + " ms)");
+                } else {
+                    InferenceMaterializer compiled = loaded.read(() -> new InferenceMaterializer(schema.getGraph(), data));
+                    // Computed in memory first, so the store is not written while it is read
+                    Model computed = loaded.read(() -> materialize(compiled, schema, data));
+                    materializer = compiled;
+                    loaded.write(() -> {
+                        inferred.removeAll();
+                        inferred.add(computed);
+                    });
+                    loaded.store.setMaterialized(schemaChecksum);
+                    System.out.println("Schema statements: " + schema.size() + ", inferred statements: " +
+                                       computed.size() + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+                }
+            } else {
+                materializer = new InferenceMaterializer(schema.getGraph(), data);
+                inferred = materialize(materializer, schema, data);
+                System.out.println("Schema statements: " + schema.size() + ", inferred statements: " +
+                                   inferred.size() + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+            }
             
-            System.out.println("Ontology loaded successfully!");
-            System.out.println("Number of statements: " + ontologyModel.size());
+            loaded.model.addSubModel(schema);
+            loaded.model.addSubModel(inferred);
+            loaded.schema = schema;
+            loaded.inferred = inferred;
+            loaded.materializer = materializer;
+            loaded.inferencesServed = true;
             
         } catch (Exception e) {
-            System.err.println("Error loading ontology: " + e.getMessage());
+            System.err.println("Error materializing inferences: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
+    private static Model materialize(InferenceMaterializer materializer, Model schema, Graph data) {
+        Model inferred = ModelFactory.createDefaultModel();
+        materializer.materialize(data, schema.getGraph(), inferred.getGraph());
+        return inferred;
+    }
+    
+    /**
+     * Loads the ontology again from its source (or store).
+     * Readers that are still working on the old model finish on it,
+     * everything derived from the model is invalidated. If the source
+     * cannot be loaded, the current model stays in place.
+     * 
+     * @throws IllegalArgumentException If the source file does not exist
+     * @throws IllegalStateException If the source or the store cannot be read
+     */
+    public synchronized void reload() {
+        loadOntology();
+        onModelChanged();
+        rebuildIndexes();
+    }
+    
+    /**
+     * Loads the ontology from the OWL file
+     */
+    private void loadIntoMemory(LoadedOntology loaded) {
+        loaded.model = parseSource();
+        
+        System.out.println("Ontology loaded successfully!");
+        System.out.println("Number of statements: " + loaded.model.size());
+    }
+    
+    /**
+     * Parses the source file into a new in-memory model. The syntax comes
+     * from the file name (.owl/.rdf, .nt, .ttl, ... and .gz), so generated
+     * catalogs load like the OWL file.
+     * 
+     * @return The parsed model
+     */
+    private OntModel parseSource() {
+        // Create an ontology model
+        OntModel model = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+        
+        // Read the ontology, as RDF/XML unless the file name says otherwise
+        try {
+            RDFDataMgr.read(model, sourcePath, Lang.RDFXML);
+        } catch (RiotNotFoundException e) {
+            throw new IllegalArgumentException("File not found: " + sourcePath, e);
+        } catch (RiotException e) {
+            throw new IllegalStateException("Cannot parse " + sourcePath + ": " + e.getMessage(), e);
+        }
+        return model;
+    }
+    
+    /**
+     * Reads the binary snapshot of the OWL file if one exists for its
+     * current checksum, otherwise parses the OWL file and writes the snapshot
+     */
+    private void loadFromSnapshot(LoadedOntology loaded) throws IOException {
+        OntologySnapshotCache cache = new OntologySnapshotCache(storeDirectory);
+        Path snapshot = cache.snapshotFor(sourcePath);
+        
+        if (Files.exists(snapshot)) {
+            loaded.model = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+            cache.read(snapshot, loaded.model);
+            loaded.fromSnapshot = true;
+            System.out.println("Ontology loaded from snapshot: " + snapshot);
+        } else {
+            loaded.model = parseSource();
+            cache.write(snapshot, loaded.model);
+            System.out.println("Ontology loaded successfully, snapshot written: " + snapshot);
+        }
+        System.out.println("Number of statements: " + loaded.model.size());
+    }
+    
+    /**
+     * Opens the TDB2 dataset, importing the OWL file only if it changed
+     * since the last import
+     */
+    private void loadFromTdb2(LoadedOntology loaded) throws IOException {
+        loaded.store = new Tdb2OntologyStore(storeDirectory);
+        loaded.dataset = loaded.store.open(sourcePath);
+        
+        // Imports are not resolvable from the store, and resolving them
+        // would touch the graph outside of a transaction
+        OntModelSpec spec = new OntModelSpec(OntModelSpec.OWL_MEM);
+        spec.setDocumentManager(new OntDocumentManager());
+        spec.getDocumentManager().setProcessImports(false);
+        loaded.model = ModelFactory.createOntologyModel(spec, loaded.dataset.getDefaultModel());
+        
+        if (loaded.store.isImported()) {
+            System.out.println("Ontology imported into TDB2 store: " + storeDirectory);
+        } else {
+            System.out.println("Ontology opened from TDB2 store: " + storeDirectory);
+        }
+    }
+    
+    /**
+     * Runs an action that reads the model.
+     * In TDB2 mode the action runs inside a read transaction, otherwise
+     * it holds the model's read lock, so any number of threads can read
+     * concurrently while writers are kept out.
+     * 
+     * @param action The action to run
+     * @return The value computed by the action
+     */
+    public <T> T calculateRead(Supplier<T> action) {
+        Runnable releaseRead = beginRead();
+        try {
+            return action.get();
+        } finally {
+            releaseRead.run();
+        }
+    }
+    
     /**
-     * Executes a SPARQL query and returns results
+     * Runs an action that reads the model.
+     * In TDB2 mode the action runs inside a read transaction, otherwise
+     * it holds the model's read lock.
+     * 
+     * @param action The action to run
+     */
+    public void executeRead(Runnable action) {
+        calculateRead(() -> {
+            action.run();
+            return null;
+        });
+    }
+    
+    /**
+     * Runs an action that changes the model.
+     * In TDB2 mode the action runs inside a write transaction that is
+     * committed when it returns and aborted if it throws; otherwise it
+     * holds the model's write lock. If the action changes statements
+     * through the model, everything derived from the model is dropped
+     * once, when the action is done, not once per statement.
+     *
+     * @param action The action to run
+     */
+    public void executeWrite(Runnable action) {
+        if (writeChanged.get() != null) {
+            write(action);
+            return;
+        }
+        boolean[] changed = new boolean[1];
+        writeChanged.set(changed);
+        try {
+            write(action);
+        } finally {
+            writeChanged.remove();
+            if (changed[0]) {
+                onModelChanged();
+            }
+        }
+    }
+    
+    private void write(Runnable action) {
+        Dataset txnDataset = dataset;
+        if (txnDataset != null) {
+            txnDataset.begin(TxnType.WRITE);
+            try {
+                action.run();
+                txnDataset.commit();
+            } catch (RuntimeException e) {
+                txnDataset.abort();
+                throw e;
+            } finally {
+                txnDataset.end();
+            }
+            return;
+        }
+        
+        OntModel model = ontologyModel;
+        model.enterCriticalSection(Lock.WRITE);
+        try {
+            action.run();
+        } finally {
+            model.leaveCriticalSection();
+        }
+    }
+    
+    /**
+     * Adds, changes or removes films, people and scores, all at once.
+     * The update runs in one write transaction (TDB2) or under the write
+     * lock; if a change in it is invalid, none of them is kept. The
+     * inferred triples are extended from the changed triples alone, and
+     * the secondary indexes, the film store and the result cache are
+     * brought up to date from the change instead of being rebuilt or
+     * cleared (the completion index in the background, as always).
+     * Then every {@link ModelChangeListener} is told.
+     * 
+     * An update made by a listener is written right away, but propagated
+     * only after the change the listener was told about, so every
+     * listener sees the changes in version order and updates never nest.
+     * 
+     * @param update The changes to make
+     * @return What changed
+     * @throws IllegalArgumentException If a change refers to an individual
+     *         that does not exist, or adds one that does
+     */
+    public ModelChange update(OntologyUpdate update) {
+        synchronized (updateLock) {
+            ModelChange[] change = new ModelChange[1];
+            executeWrite(() -> change[0] = apply(update));
+            if (!change[0].isEmpty()) {
+                pendingChanges.add(change[0]);
+                if (!propagating) {
+                    propagating = true;
+                    try {
+                        ModelChange next;
+                        while ((next = pendingChanges.poll()) != null) {
+                            propagate(next);
+                        }
+                    } finally {
+                        propagating = false;
+                    }
+                }
+            }
+            return change[0];
+        }
+    }
+    
+    /**
+     * Registers a listener for the changes made through {@link #update}
+     * 
+     * @param listener The listener
+     */
+    public void addChangeListener(ModelChangeListener listener) {
+        changeListeners.add(listener);
+    }
+    
+    /**
+     * @param listener A listener registered before
+     */
+    public void removeChangeListener(ModelChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+    
+    /**
+     * Writes an update to the data graph and the inferred triples.
+     * The graphs are written directly rather than through the model, so
+     * the ChangeTracker does not drop everything derived from the model.
+     */
+    private ModelChange apply(OntologyUpdate update) {
+        OntModel model = ontologyModel;
+        Graph data = model.getBaseModel().getGraph();
+        OntologyUpdate.Edit edit = new OntologyUpdate.Edit(data, model.getGraph(), DATA_NAMESPACE, SCHEMA_NAMESPACE);
+        List<Triple> added = new ArrayList<>();
+        List<Triple> removed = new ArrayList<>();
+        try {
+            update.applyTo(edit);
+            added.addAll(edit.added);
+            removed.addAll(edit.removed);
+            
+            InferenceMaterializer materializer = inferenceMaterializer;
+            if (materializer == null && inferencesServed) {
+                // Not compiled when the TDB2 store was opened with its inferred triples current
+                materializer = new InferenceMaterializer(schemaModel.getGraph(), data);
+                inferenceMaterializer = materializer;
+            }
+            if (materializer != null && !(added.isEmpty() && removed.isEmpty())) {
+                Set<Node> retracted = new HashSet<>();
+                for (Triple triple : removed) {
+                    retracted.add(triple.getSubject());
+                    if (triple.getObject().isURI()) {
+                        retracted.add(triple.getObject());
+                    }
+                }
+                InferenceMaterializer.Delta inferred = materializer.update(
+                    data, schemaModel.getGraph(), inferredModel.getGraph(), edit.added, retracted);
+                added.addAll(inferred.getAdded());
+                removed.addAll(inferred.getRemoved());
+            }
+        } catch (RuntimeException e) {
+            // A TDB2 transaction is aborted instead
+            if (dataset == null) {
+                edit.undo();
+            }
+            throw e;
+        }
+        
+        long previousVersion = modelVersion.get();
+        if (added.isEmpty() && removed.isEmpty()) {
+            return new ModelChange(previousVersion, previousVersion, added, removed,
+                                   new HashSet<>(), new HashSet<>(), DATA_NAMESPACE);
+        }
+        long version = modelVersion.incrementAndGet();
+        
+        // Individuals whose triples changed, and those whose names or other values changed
+        Graph view = model.getGraph();
+        Set<String> subjects = new LinkedHashSet<>();
+        Set<Node> valuesChanged = new LinkedHashSet<>();
+        Set<Triple> removedSet = new HashSet<>(removed);
+        for (List<Triple> triples : Arrays.asList(added, removed)) {
+            for (Triple triple : triples) {
+                if (triple.getSubject().isURI()) {
+                    subjects.add(triple.getSubject().getURI());
+                    if (triple.getObject().isLiteral()) {
+                        valuesChanged.add(triple.getSubject());
+                    }
+                }
+            }
+        }
+        
+        Node filmType = NodeFactory.createURI(SCHEMA_NAMESPACE + "Film");
+        Set<String> films = new LinkedHashSet<>();
+        for (String iri : subjects) {
+            Node subject = NodeFactory.createURI(iri);
+            if (view.contains(subject, RDF.type.asNode(), filmType) ||
+                removedSet.contains(Triple.create(subject, RDF.type.asNode(), filmType))) {
+                films.add(iri);
+                valuesChanged.remove(subject);
+            }
+        }
+        // Films show the names of the people, genres etc. they link to
+        for (Node changed : valuesChanged) {
+            for (Triple link : view.find(Node.ANY, Node.ANY, changed).toList()) {
+                Node film = link.getSubject();
+                if (film.isURI() && view.contains(film, RDF.type.asNode(), filmType)) {
+                    films.add(film.getURI());
+                }
+            }
+        }
+        return new ModelChange(previousVersion, version, added, removed, subjects, films, DATA_NAMESPACE);
+    }
+    
+    /**
+     * Brings everything derived from the model up to date after an update
+     */
+    private void propagate(ModelChange change) {
+        filmIndex.update(change, change.getFilms());
+        similarityIndex.update(change, change.getFilms());
+        collaborationGraph.update(change, change.getSubjects());
+        textIndex.update(change, change.getFilms());
+        filmStore.update(change, change.getFilms());
+        // Completions also name what the changed individuals linked to before
+        Set<String> linked = new HashSet<>(change.getSubjects());
+        for (List<Triple> triples : Arrays.asList(change.getAdded(), change.getRemoved())) {
+            for (Triple triple : triples) {
+                if (triple.getObject().isURI()) {
+                    linked.add(triple.getObject().getURI());
+                }
+            }
+        }
+        completionIndex.update(change, linked);
+        
+        FilmResultCache cache = resultCache;
+        if (cache != null) {
+            cache.invalidate(change.getFilmIds());
+        }
+        
+        for (ModelChangeListener listener : changeListeners) {
+            try {
+                listener.modelChanged(change);
+            } catch (RuntimeException e) {
+                System.err.println("Error in model change listener: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * Enters the model's read lock (or a TDB2 read transaction) on the
+     * current thread
+     * 
+     * @return Action that releases it again, on the same thread
+     */
+    private Runnable beginRead() {
+        Dataset txnDataset = dataset;
+        if (txnDataset != null) {
+            if (txnDataset.isInTransaction()) {
+                return () -> { };
+            }
+            txnDataset.begin(TxnType.READ);
+            return txnDataset::end;
+        }
+        
+        // Leave the same model we entered, even if a reload swaps it meanwhile
+        OntModel model = ontologyModel;
+        model.enterCriticalSection(Lock.READ);
+        return model::leaveCriticalSection;
+    }
+    
+    /**
+     * Executes a SPARQL query and returns results.
+     * The results are fully read and the query execution is closed
+     * before returning; use {@link #openQuery} to read rows lazily.
      * 
      * @param queryString The SPARQL query to execute
      * @return ResultSet containing query results
      */
     public ResultSet executeQuery(String queryString) {
         Query query = QueryFactory.create(queryString);
-        QueryExecution qexec = QueryExecutionFactory.create(query, ontologyModel);
-        return qexec.execSelect();
+        return calculateRead(() -> {
+            try (QueryExecution qexec = QueryExecutionFactory.create(query, ontologyModel)) {
+                return ResultSetFactory.copyResults(qexec.execSelect());
+            }
+        });
+    }
+    
+    /**
+     * Executes an already parsed SPARQL query with its parameter
+     * variables bound to the given values.
+     * The results are fully read and the query execution is closed
+     * before returning.
+     * 
+     * @param query The parsed query template
+     * @param bindings Values for the template's parameter variables
+     * @return ResultSet containing query results
+     */
+    public ResultSet executeQuery(Query query, QuerySolution bindings) {
+        return calculateRead(() -> {
+            try (QueryExecution qexec = buildExecution(query, bindings)) {
+                return ResultSetFactory.copyResults(qexec.execSelect());
+            }
+        });
+    }
+    
+    /**
+     * Opens a query whose rows are read lazily. The cursor holds the
+     * query execution and the read lock until it is exhausted or closed,
+     * so it must be closed (try-with-resources) on the opening thread.
+     * 
+     * @param query The parsed query template
+     * @param bindings Values for the template's parameter variables
+     * @return Cursor over the result rows
+     */
+    public QueryCursor openQuery(Query query, QuerySolution bindings) {
+        Runnable releaseRead = beginRead();
+        try {
+            QueryExecution qexec = buildExecution(query, bindings);
+            return new QueryCursor(qexec, qexec.execSelect(), releaseRead);
+        } catch (RuntimeException e) {
+            releaseRead.run();
+            throw e;
+        }
+    }
+    
+    private QueryExecution buildExecution(Query query, QuerySolution bindings) {
+        return QueryExecution.model(ontologyModel)
+                             .query(query)
+                             .substitution(bindings)
+                             .build();
     }
     
     /**
@@ -98,16 +754,193 @@ public class OntologyManager {
         return SCHEMA_NAMESPACE;
     }
     
+    /**
+     * Gets the schema (film-schema.owl) served with the data
+     * 
+     * @return The schema, empty if inference is off
+     */
+    public Model getSchemaModel() {
+        return schemaModel;
+    }
+    
+    /**
+     * Gets the triples inferred from the schema and the data when the
+     * ontology was loaded. They are served together with the data by
+     * {@link #getOntologyModel()}, whose base model holds the data alone.
+     * 
+     * @return The inferred triples, empty if inference is off
+     */
+    public Model getInferredModel() {
+        return inferredModel;
+    }
+    
+    /**
+     * Gets the cache for film query results
+     * 
+     * @return The result cache, or null if caching is disabled
+     */
+    public FilmResultCache getResultCache() {
+        return resultCache;
+    }
+    
+    /**
+     * Replaces the cache for film query results
+     * 
+     * @param resultCache The new cache, or null to disable caching
+     */
+    public void setResultCache(FilmResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+    
+    /**
+     * Gets the version of the model. It changes whenever the model is
+     * reloaded or a statement is added or removed, so anything derived
+     * from the model can tell when it is stale.
+     * 
+     * @return The current model version
+     */
+    public long getModelVersion() {
+        return modelVersion.get();
+    }
+    
+    /**
+     * Gets the secondary indexes (genre, director, year, country, language)
+     * for the current model. They are built when the ontology loads (in
+     * TDB2 mode on the first lookup instead), updated from the change by {@link #update}, and rebuilt here, once,
+     * after the model has changed any other way.
+     * 
+     * @return Index matching the current model version
+     */
+    public FilmIndex getFilmIndex() {
+        return filmIndex.get();
+    }
+    
+    /**
+     * Gets the "more like this" index for the current model. Like the
+     * film index, it is built when the ontology loads and rebuilt on the
+     * first lookup after the model has changed.
+     * 
+     * @return Index matching the current model version
+     */
+    public SimilarityIndex getSimilarityIndex() {
+        return similarityIndex.get();
+    }
+    
+    /**
+     * Gets the graph of people and films (directedBy, hasActor, writtenBy,
+     * workedWith, ...) for the current model, built and rebuilt like the
+     * film index
+     * 
+     * @return Graph matching the current model version
+     */
+    public CollaborationGraph getCollaborationGraph() {
+        return collaborationGraph.get();
+    }
+    
+    /**
+     * Gets the full-text index of titles, original titles, synopses and
+     * people's names for the current model, built and rebuilt like the
+     * film index
+     * 
+     * @return Index matching the current model version
+     */
+    public TextIndex getTextIndex() {
+        return textIndex.get();
+    }
+    
+    /**
+     * Gets the autocomplete index of film titles, people's names and
+     * genres. Unlike the other indexes it is rebuilt in the background
+     * after a change or reload, reading only the changed names after an
+     * {@link #update}: until the new one is ready, lookups get the
+     * previous index rather than waiting. Only the very first lookup
+     * waits, for the build started when the ontology loaded (in TDB2
+     * mode, for the whole build).
+     * 
+     * @return The newest index built; it may lag behind the model briefly
+     */
+    public CompletionIndex getCompletionIndex() {
+        return completionIndex.get();
+    }
+    
+    /**
+     * Gets every complete film of the current model in compact form.
+     * Unlike the indexes it is not built when the ontology loads, only
+     * on the first call, and again on the first call after a change.
+     * Once built, it is updated by {@link #update} like the indexes.
+     * 
+     * @return Store matching the current model version
+     */
+    public FilmStore getFilmStore() {
+        return filmStore.get();
+    }
+    
+    private void rebuildIndexes() {
+        // A TDB2 store is not scanned when it opens: its indexes are built on the first lookup
+        if (ontologyModel != null && dataset == null) {
+            filmIndex.rebuild();
+            similarityIndex.rebuild();
+            collaborationGraph.rebuild();
+            textIndex.rebuild();
+            completionIndex.refresh();
+        }
+    }
+    
+    private void onModelChanged() {
+        modelVersion.incrementAndGet();
+        FilmResultCache cache = resultCache;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+    
+    /**
+     * Gets the storage mode used by this manager
+     * 
+     * @return The storage mode
+     */
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+    
+    /**
+     * Tells whether the OWL file was (re)imported into the TDB2 store
+     * when this manager was created. Always false in MEMORY mode.
+     * 
+     * @return true if the source was imported
+     */
+    public boolean isSourceImported() {
+        return tdb2Store != null && tdb2Store.isImported();
+    }
+    
+    /**
+     * Tells whether the model was read from a binary snapshot instead of
+     * parsing the OWL file. Always false outside SNAPSHOT mode.
+     * 
+     * @return true if a snapshot was used
+     */
+    public boolean isLoadedFromSnapshot() {
+        return loadedFromSnapshot;
+    }
+    
     /**
      * Closes the ontology model
      */
     public void close() {
-        if (ontologyModel != null) {
+        if (tdb2Store != null) {
+            // The TDB2 graph is shared by every connection to the same
+            // directory, so close the dataset rather than the graph itself
+            tdb2Store.close();
+        } else if (ontologyModel != null) {
             ontologyModel.close();
         }
     }
     
     public void printOntologyInfo() {
+        executeRead(this::printInfo);
+    }
+    
+    private void printInfo() {
         System.out.println("\n=== Ontology Debug Info ===");
         System.out.println("Total statements: " + ontologyModel.size());
         System.out.println("Ontology URI: " + ontologyModel.getNsPrefixURI(""));
@@ -124,4 +957,301 @@ public class OntologyManager {
             .limit(10)
             .forEach(stmt -> System.out.println("  " + stmt));
     }
-}
\ No newline at end of file
+    
+    /**
+     * Builds one of the indexes from the graph at a model version
+     */
+    private interface IndexBuilder<T> {
+        T build(Graph graph, String dataNs, String schemaNs, long modelVersion);
+    }
+    
+    /**
+     * Reads what an index needs from the graph at a model version; the
+     * index is then put together without holding the lock
+     */
+    private interface IndexReader<T> {
+        Supplier<T> read(Graph graph, String dataNs, String schemaNs, long modelVersion);
+    }
+    
+    /**
+     * Reads what changed since an index was read, for an index that is
+     * then put together without holding the lock
+     */
+    private interface ChangeReader<T> {
+        Supplier<T> read(T index, Graph graph, String dataNs, String schemaNs, Collection<String> changed,
+                         long modelVersion);
+    }
+    
+    private static Supplier<CompletionIndex> assemble(CompletionIndex.Builder names, long modelVersion) {
+        return () -> names.build(modelVersion);
+    }
+    
+    /**
+     * Derives an index for the model after a change from the index before it
+     */
+    private interface IndexUpdater<T> {
+        T update(T index, Graph graph, String dataNs, String schemaNs, Collection<String> changed, long modelVersion);
+    }
+    
+    /**
+     * Holds an index derived from the model and builds it again, once,
+     * when the model version has moved on
+     */
+    private final class DerivedIndex<T> {
+        
+        private final IndexBuilder<T> builder;
+        private final IndexUpdater<T> updater;
+        private final ToLongFunction<T> versionOf;
+        private volatile T index;
+        
+        DerivedIndex(IndexBuilder<T> builder, IndexUpdater<T> updater, ToLongFunction<T> versionOf) {
+            this.builder = builder;
+            this.updater = updater;
+            this.versionOf = versionOf;
+        }
+        
+        T get() {
+            T current = index;
+            if (current != null && versionOf.applyAsLong(current) == modelVersion.get()) {
+                return current;
+            }
+            synchronized (this) {
+                current = index;
+                if (current == null || versionOf.applyAsLong(current) != modelVersion.get()) {
+                    current = build();
+                    index = current;
+                }
+                return current;
+            }
+        }
+        
+        synchronized void rebuild() {
+            index = build();
+        }
+        
+        /**
+         * Derives the index for the model after the change, if the index
+         * is the one for the model before it. Otherwise it is not built
+         * yet, or is stale anyway and built again on the next lookup.
+         * 
+         * @param changed IRIs of what changed, as the updater expects them
+         */
+        synchronized void update(ModelChange change, Collection<String> changed) {
+            T current = index;
+            if (current == null || versionOf.applyAsLong(current) != change.getPreviousVersion()) {
+                return;
+            }
+            try {
+                index = calculateRead(() -> updater.update(current, ontologyModel.getGraph(), DATA_NAMESPACE,
+                                                           SCHEMA_NAMESPACE, changed, change.getVersion()));
+            } catch (RuntimeException e) {
+                // Left stale, so the next lookup builds it from scratch
+                System.err.println("Error updating index: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        
+        private T build() {
+            return calculateRead(() -> {
+                // Taken before the scan: a change made during the scan leaves
+                // the index stale, so it is simply built again next time
+                long version = modelVersion.get();
+                return builder.build(ontologyModel.getGraph(), DATA_NAMESPACE, SCHEMA_NAMESPACE, version);
+            });
+        }
+    }
+    
+    /**
+     * Holds an index derived from the model that is built again on a
+     * background thread when the model version has moved on, so lookups
+     * never wait for a rebuild once a first index exists. If every change
+     * since the index was built came through update(), only what they
+     * changed is read again.
+     */
+    private final class BackgroundIndex<T> {
+        
+        private final IndexReader<T> reader;
+        private final ChangeReader<T> changeReader;
+        private final ToLongFunction<T> versionOf;
+        private final String name;
+        private final AtomicBoolean rebuilding = new AtomicBoolean();
+        private volatile T index;
+        
+        // IRIs changed between the versions changedFrom and changedTo, where changedFrom
+        // is the version the newest index was read at; null if something else changed
+        private final Object changesLock = new Object();
+        private Set<String> changed;
+        private long changedFrom = -1;
+        private long changedTo = -1;
+        
+        BackgroundIndex(IndexReader<T> reader, ChangeReader<T> changeReader, ToLongFunction<T> versionOf,
+                        String name) {
+            this.reader = reader;
+            this.changeReader = changeReader;
+            this.versionOf = versionOf;
+            this.name = name;
+        }
+        
+        T get() {
+            T current = index;
+            if (current == null) {
+                // Waits for a build in progress instead of starting a second one
+                synchronized (this) {
+                    if (index == null) {
+                        index = build();
+                    }
+                    return index;
+                }
+            }
+            if (versionOf.applyAsLong(current) != modelVersion.get()) {
+                refresh();
+            }
+            return current;
+        }
+        
+        /**
+         * Notes what an update() changed, and starts a rebuild
+         * 
+         * @param iris IRIs of what changed, as the change reader expects them
+         */
+        void update(ModelChange change, Collection<String> iris) {
+            synchronized (changesLock) {
+                // Already read if the newest index was read after the change
+                if (changed != null && change.getVersion() > changedTo) {
+                    if (changedTo == change.getPreviousVersion()) {
+                        changed.addAll(iris);
+                        changedTo = change.getVersion();
+                    } else {
+                        changed = null;
+                    }
+                }
+            }
+            refresh();
+        }
+        
+        /**
+         * Starts a rebuild unless one is already running
+         */
+        void refresh() {
+            if (!rebuilding.compareAndSet(false, true)) {
+                return;
+            }
+            Thread thread = new Thread(() -> {
+                try {
+                    synchronized (this) {
+                        T current = index;
+                        if (current == null || versionOf.applyAsLong(current) != modelVersion.get()) {
+                            index = build();
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // Expected if the manager was closed meanwhile
+                    if (!ontologyModel.isClosed()) {
+                        System.err.println("Error rebuilding " + name + ": " + e.getMessage());
+                    }
+                } finally {
+                    rebuilding.set(false);
+                }
+            }, name + "-rebuild");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        
+        private T build() {
+            T current = index;
+            // Writers only wait for the reading
+            Supplier<T> assemble = calculateRead(() -> {
+                long version = modelVersion.get();
+                Graph graph = ontologyModel.getGraph();
+                Set<String> since = changesSince(current, version);
+                return since != null
+                    ? changeReader.read(current, graph, DATA_NAMESPACE, SCHEMA_NAMESPACE, since, version)
+                    : reader.read(graph, DATA_NAMESPACE, SCHEMA_NAMESPACE, version);
+            });
+            return assemble.get();
+        }
+        
+        /**
+         * Collects changes anew from the version the next index is read at
+         * 
+         * @return IRIs changed between the current index and that version,
+         *         or null if the index has to be read in full
+         */
+        private Set<String> changesSince(T current, long version) {
+            synchronized (changesLock) {
+                Set<String> since = current != null && changed != null &&
+                                    changedFrom == versionOf.applyAsLong(current) && changedTo == version
+                                    ? changed : null;
+                changed = new HashSet<>();
+                changedFrom = version;
+                changedTo = version;
+                return since;
+            }
+        }
+    }
+    
+    /**
+     * What loadOntology() sets up, kept aside until all of it loaded.
+     * Nobody else sees the model yet, so it is read and written without
+     * the manager's locks, but inside transactions in TDB2 mode.
+     */
+    private static final class LoadedOntology {
+        
+        OntModel model;
+        Tdb2OntologyStore store;
+        Dataset dataset;
+        boolean fromSnapshot;
+        Model schema = ModelFactory.createDefaultModel();
+        Model inferred = ModelFactory.createDefaultModel();
+        InferenceMaterializer materializer;
+        boolean inferencesServed;
+        
+        <T> T read(Supplier<T> action) {
+            return dataset != null ? Txn.calculateRead(dataset, action) : action.get();
+        }
+        
+        void write(Runnable action) {
+            if (dataset != null) {
+                Txn.executeWrite(dataset, action);
+            } else {
+                action.run();
+            }
+        }
+        
+        /**
+         * Closes the store of a load that failed
+         */
+        void close() {
+            if (store != null) {
+                store.close();
+            }
+        }
+    }
+    
+    /**
+     * Forwards statement changes on the model to onModelChanged(): at
+     * the end of executeWrite() for the changes made in it, right away
+     * for changes made outside of it
+     */
+    private class ChangeTracker extends StatementListener {
+        
+        @Override
+        public void addedStatement(Statement statement) {
+            changed();
+        }
+        
+        @Override
+        public void removedStatement(Statement statement) {
+            changed();
+        }
+        
+        private void changed() {
+            boolean[] changed = writeChanged.get();
+            if (changed != null) {
+                changed[0] = true;
+            } else {
+                onModelChanged();
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package rs.ftn.ns.ontology;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Process-wide registry of loaded ontologies.
+ * Every caller of {@link #acquire(StorageMode)} gets the same
+ * {@link OntologyManager} for a storage mode, so the model is loaded and
+ * kept in memory only once. The manager is closed when the last caller
+ * releases it.
+ */
+public final class OntologyRegistry {
+
+    private static final Map<StorageMode, Entry> entries = new EnumMap<>(StorageMode.class);
+
+    private OntologyRegistry() {
+    }
+
+    /**
+     * Gets the shared in-memory ontology, loading it on first use
+     *
+     * @return The shared OntologyManager
+     */
+    public static OntologyManager acquire() {
+        return acquire(StorageMode.MEMORY);
+    }
+
+    /**
+     * Gets the shared ontology for a storage mode, loading it on first use.
+     * Every call must be paired with a call to {@link #release(OntologyManager)}.
+     *
+     * @param storageMode Where the ontology is kept
+     * @return The shared OntologyManager
+     */
+    public static synchronized OntologyManager acquire(StorageMode storageMode) {
+        Entry entry = entries.get(storageMode);
+        if (entry == null) {
+            entry = new Entry(new OntologyManager(storageMode));
+            entries.put(storageMode, entry);
+        }
+        entry.references++;
+        return entry.manager;
+    }
+
+    /**
+     * Releases a manager obtained from {@link #acquire(StorageMode)}.
+     * The manager is closed once nobody else is using it.
+     *
+     * @param manager The manager to release
+     */
+    public static synchronized void release(OntologyManager manager) {
+        Entry entry = entries.get(manager.getStorageMode());
+        if (entry == null || entry.manager != manager) {
+            throw new IllegalArgumentException("Ontology manager was not acquired from the registry");
+        }
+
+        entry.references--;
+        if (entry.references == 0) {
+            entries.remove(manager.getStorageMode());
+            manager.close();
+        }
+    }
+
+    /**
+     * Gets the number of callers currently holding the shared ontology
+     *
+     * @param storageMode The storage mode
+     * @return Number of unreleased acquisitions
+     */
+    public static synchronized int getReferenceCount(StorageMode storageMode) {
+        Entry entry = entries.get(storageMode);
+        return entry == null ? 0 : entry.references;
+    }
+
+    private static class Entry {
+        final OntologyManager manager;
+        int references;
+
+        Entry(OntologyManager manager) {
+            this.manager = manager;
+        }
+    }
+}
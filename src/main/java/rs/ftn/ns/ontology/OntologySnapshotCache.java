@@ -0,0 +1,136 @@
+package rs.ftn.ns.ontology;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import rs.ftn.ns.util.Checksums;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+/**
+ * Binary (RDF Thrift) snapshots of a parsed ontology.
+ * Snapshot files are keyed by the checksum of the source file, so an
+ * edited source never matches an old snapshot.
+ */
+class OntologySnapshotCache {
+
+    private static final String SNAPSHOT_EXTENSION = ".trdf";
+    // Hex encoded SHA-256 of the source file
+    private static final String CHECKSUM_PATTERN = "[0-9a-f]{64}";
+
+    private final Path cacheDirectory;
+
+    OntologySnapshotCache(String cacheDirectory) {
+        this.cacheDirectory = Paths.get(cacheDirectory);
+    }
+
+    /**
+     * Gets the snapshot file for the current content of a source file
+     *
+     * @param sourcePath Path to the source OWL file
+     * @return Path of the snapshot (it may not exist yet)
+     * @throws IOException If the source cannot be hashed
+     */
+    Path snapshotFor(String sourcePath) throws IOException {
+        String checksum = Checksums.sha256(Paths.get(sourcePath));
+        return cacheDirectory.resolve(baseName(sourcePath) + "-" + checksum + SNAPSHOT_EXTENSION);
+    }
+
+    /**
+     * Streams a snapshot into the model through a memory-mapped channel
+     *
+     * @param snapshot The snapshot file
+     * @param model The model to fill
+     * @throws IOException If the snapshot cannot be read
+     */
+    void read(Path snapshot, Model model) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            RDFDataMgr.read(model, new ByteBufferInputStream(buffer), Lang.RDFTHRIFT);
+        }
+    }
+
+    /**
+     * Writes the model as a snapshot and removes snapshots of older
+     * versions of the same source file
+     *
+     * @param snapshot The snapshot file to write
+     * @param model The model to store
+     * @throws IOException If the snapshot cannot be written
+     */
+    void write(Path snapshot, Model model) throws IOException {
+        Files.createDirectories(cacheDirectory);
+
+        // Write next to the target and move it into place, so a crash
+        // never leaves a truncated snapshot behind
+        Path temp = Files.createTempFile(cacheDirectory, "snapshot", ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            RDFDataMgr.write(out, model, RDFFormat.RDF_THRIFT);
+        }
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // Only <base name>-<checksum>.trdf: "movies-extra" shares the prefix of "movies"
+        String prefix = snapshot.getFileName().toString();
+        prefix = prefix.substring(0, prefix.lastIndexOf('-') + 1);
+        Pattern sameSource = Pattern.compile(Pattern.quote(prefix) + CHECKSUM_PATTERN + Pattern.quote(SNAPSHOT_EXTENSION));
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(cacheDirectory, prefix + "*" + SNAPSHOT_EXTENSION)) {
+            for (Path old : stale) {
+                if (!old.equals(snapshot) && sameSource.matcher(old.getFileName().toString()).matches()) {
+                    Files.deleteIfExists(old);
+                }
+            }
+        }
+    }
+
+    private static String baseName(String sourcePath) {
+        String name = Paths.get(sourcePath).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Minimal InputStream over a ByteBuffer, so the parser reads
+     * straight from the mapped file
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package rs.ftn.ns.ontology;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.vocabulary.RDF;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Changes to films, people and their scores, applied together by
+ * {@link OntologyManager#update}: either all of them or none.
+ *
+ * <pre>
+ * manager.update(new OntologyUpdate()
+ *     .addFilm("Dune_Part_Two", "Dune: Part Two")
+ *     .set("Dune_Part_Two", "releaseYear", 2024)
+ *     .link("Dune_Part_Two", "directedBy", "Denis_Villeneuve")
+ *     .setScore("Dune_Part_Two", "visualEffectsScore", 9.5));
+ * </pre>
+ *
+ * Ids are local names in the data namespace, properties local names in
+ * the schema namespace. Numbers are stored as xsd:decimal, like the rest
+ * of the data, and text as plain literals. Changes are applied in the
+ * order they were added, and are checked as they are applied: a change
+ * to an individual that does not exist fails the whole update.
+ */
+public final class OntologyUpdate {
+
+    private static final Set<String> PERSON_TYPES = new LinkedHashSet<>(Arrays.asList(
+        "Person", "Director", "Actor", "Writer", "Producer", "Cinematographer"));
+    private static final Set<String> SCORES = new LinkedHashSet<>(Arrays.asList(
+        "directionScore", "actingScore", "screenplayScore", "visualEffectsScore", "culturalSignificanceScore"));
+    private static final double MAX_SCORE = 10.0;
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    /**
+     * Adds a film with its title
+     *
+     * @param filmId Id of the new film
+     * @param title Title of the film
+     * @return This update
+     */
+    public OntologyUpdate addFilm(String filmId, String title) {
+        checkId(filmId);
+        checkText(title, "title");
+        operations.add(edit -> {
+            Node film = edit.data(filmId);
+            if (edit.view.contains(film, RDF.type.asNode(), edit.schema("Film"))) {
+                throw new IllegalArgumentException("Film already exists: " + filmId);
+            }
+            edit.add(Triple.create(film, RDF.type.asNode(), edit.schema("Film")));
+            edit.replace(film, edit.schema("hasTitle"), NodeFactory.createLiteral(title));
+        });
+        return this;
+    }
+
+    /**
+     * Adds a person with a name
+     *
+     * @param personId Id of the new person
+     * @param type Person, Director, Actor, Writer, Producer or Cinematographer
+     * @param name Name of the person
+     * @return This update
+     */
+    public OntologyUpdate addPerson(String personId, String type, String name) {
+        checkId(personId);
+        checkText(name, "name");
+        if (!PERSON_TYPES.contains(type)) {
+            throw new IllegalArgumentException("Person type must be one of " + PERSON_TYPES + ", was " + type);
+        }
+        operations.add(edit -> {
+            Node person = edit.data(personId);
+            if (edit.view.contains(person, Node.ANY, Node.ANY)) {
+                throw new IllegalArgumentException("Already exists: " + personId);
+            }
+            edit.add(Triple.create(person, RDF.type.asNode(), edit.schema(type)));
+            edit.replace(person, edit.schema("hasName"), NodeFactory.createLiteral(name));
+        });
+        return this;
+    }
+
+    /**
+     * Replaces every value of a property with the given one
+     *
+     * @param id Film, person or other individual
+     * @param property Property, e.g. "hasTitle" or "releaseYear"
+     * @param value A String or a Number
+     * @return This update
+     */
+    public OntologyUpdate set(String id, String property, Object value) {
+        checkId(id);
+        checkId(property);
+        Node literal = literal(value);
+        operations.add(edit -> edit.replace(edit.existing(id), edit.schema(property), literal));
+        return this;
+    }
+
+    /**
+     * Like {@link #set}, but creates the individual if it has no triples
+     * yet; for bookkeeping individuals without a type, such as
+     * data:QualityMaterialization
+     */
+    OntologyUpdate setOrCreate(String id, String property, Object value) {
+        checkId(id);
+        checkId(property);
+        Node literal = literal(value);
+        operations.add(edit -> edit.replace(edit.data(id), edit.schema(property), literal));
+        return this;
+    }
+
+    /**
+     * Replaces one of the five scores of a film
+     *
+     * @param filmId The film
+     * @param score directionScore, actingScore, screenplayScore, visualEffectsScore or culturalSignificanceScore
+     * @param value The score, 0-10
+     * @return This update
+     */
+    public OntologyUpdate setScore(String filmId, String score, double value) {
+        if (!SCORES.contains(score)) {
+            throw new IllegalArgumentException("Score must be one of " + SCORES + ", was " + score);
+        }
+        if (!(value >= 0 && value <= MAX_SCORE)) {
+            throw new IllegalArgumentException("Score must be between 0 and " + MAX_SCORE + ", was " + value);
+        }
+        return set(filmId, score, value);
+    }
+
+    /**
+     * Links an individual to another, e.g. a film to its director
+     *
+     * @param id Film, person or other individual
+     * @param property Property, e.g. "directedBy" or "hasGenre"
+     * @param targetId Individual linked to
+     * @return This update
+     */
+    public OntologyUpdate link(String id, String property, String targetId) {
+        checkId(id);
+        checkId(property);
+        checkId(targetId);
+        operations.add(edit -> edit.add(Triple.create(edit.existing(id), edit.schema(property), edit.existing(targetId))));
+        return this;
+    }
+
+    /**
+     * Removes a link, if there is one
+     *
+     * @param id Film, person or other individual
+     * @param property Property, e.g. "hasActor"
+     * @param targetId Individual linked to
+     * @return This update
+     */
+    public OntologyUpdate unlink(String id, String property, String targetId) {
+        checkId(id);
+        checkId(property);
+        checkId(targetId);
+        operations.add(edit -> edit.delete(Triple.create(edit.data(id), edit.schema(property), edit.data(targetId))));
+        return this;
+    }
+
+    /**
+     * Removes every value of a property
+     *
+     * @param id Film, person or other individual
+     * @param property Property, e.g. "synopsis"
+     * @return This update
+     */
+    public OntologyUpdate clear(String id, String property) {
+        checkId(id);
+        checkId(property);
+        operations.add(edit -> edit.replace(edit.existing(id), edit.schema(property), null));
+        return this;
+    }
+
+    /**
+     * Removes an individual: every triple about it, and every link to it
+     *
+     * @param id Film, person or other individual
+     * @return This update
+     */
+    public OntologyUpdate remove(String id) {
+        checkId(id);
+        operations.add(edit -> {
+            Node node = edit.existing(id);
+            for (Triple triple : edit.data.find(node, Node.ANY, Node.ANY).toList()) {
+                edit.delete(triple);
+            }
+            for (Triple triple : edit.data.find(Node.ANY, Node.ANY, node).toList()) {
+                edit.delete(triple);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * @return Number of changes in the update
+     */
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * Applies every change to the data graph, recording what was added
+     * and removed. Runs inside the manager's write lock (or transaction).
+     */
+    void applyTo(Edit edit) {
+        for (Operation operation : operations) {
+            operation.apply(edit);
+        }
+    }
+
+    private static void checkId(String id) {
+        if (id == null || id.trim().isEmpty()) {
+            throw new IllegalArgumentException("Id must not be empty");
+        }
+    }
+
+    private static void checkText(String text, String what) {
+        if (text == null) {
+            throw new IllegalArgumentException("The " + what + " must not be null");
+        }
+    }
+
+    private static Node literal(Object value) {
+        if (value instanceof String) {
+            return NodeFactory.createLiteral((String) value);
+        }
+        if (value instanceof Number) {
+            BigDecimal number;
+            try {
+                number = value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a finite number: " + value);
+            }
+            return NodeFactory.createLiteral(number.toPlainString(), XSDDatatype.XSDdecimal);
+        }
+        throw new IllegalArgumentException("Value must be a String or a Number, was " + value);
+    }
+
+    private interface Operation {
+        void apply(Edit edit);
+    }
+
+    /**
+     * Writes to the data graph and keeps the net effect: a triple added
+     * and removed again within one update is in neither list
+     */
+    static final class Edit {
+
+        final Graph data;
+        final Graph view;
+        private final String dataNs;
+        private final String schemaNs;
+        final Set<Triple> added = new LinkedHashSet<>();
+        final Set<Triple> removed = new LinkedHashSet<>();
+
+        /**
+         * @param data Graph of the asserted triples, written to
+         * @param view Everything queries see (data, schema and inferred), to check against
+         */
+        Edit(Graph data, Graph view, String dataNs, String schemaNs) {
+            this.data = data;
+            this.view = view;
+            this.dataNs = dataNs;
+            this.schemaNs = schemaNs;
+        }
+
+        Node data(String id) {
+            return NodeFactory.createURI(dataNs + id);
+        }
+
+        Node schema(String localName) {
+            return NodeFactory.createURI(schemaNs + localName);
+        }
+
+        /**
+         * @return Node of an individual that has triples of its own
+         */
+        Node existing(String id) {
+            Node node = data(id);
+            if (!view.contains(node, Node.ANY, Node.ANY)) {
+                throw new IllegalArgumentException("Unknown individual: " + id);
+            }
+            return node;
+        }
+
+        void add(Triple triple) {
+            if (!data.contains(triple)) {
+                data.add(triple);
+                if (!removed.remove(triple)) {
+                    added.add(triple);
+                }
+            }
+        }
+
+        void delete(Triple triple) {
+            if (data.contains(triple)) {
+                data.delete(triple);
+                if (!added.remove(triple)) {
+                    removed.add(triple);
+                }
+            }
+        }
+
+        /**
+         * Replaces every value of the property with the given one, or with none if it is null
+         */
+        void replace(Node subject, Node predicate, Node value) {
+            for (Triple triple : data.find(subject, predicate, Node.ANY).toList()) {
+                if (value == null || !triple.getObject().equals(value)) {
+                    delete(triple);
+                }
+            }
+            if (value != null) {
+                add(Triple.create(subject, predicate, value));
+            }
+        }
+
+        /**
+         * Takes back every change, for graphs without transactions
+         */
+        void undo() {
+            for (Triple triple : added) {
+                data.delete(triple);
+            }
+            for (Triple triple : removed) {
+                data.add(triple);
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package rs.ftn.ns.ontology;
+
+import org.apache.jena.datatypes.DatatypeFormatException;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+import rs.ftn.ns.fuzzy.FilmQualityEvaluator;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stores the fuzzy quality of every film in the ontology, so lists can
+ * filter and sort by quality with SPARQL instead of running the
+ * evaluator on every request.
+ *
+ * Each film gets schema:qualityScore, schema:qualityCategory and
+ * schema:qualityInputs, the five input scores the quality was computed
+ * from. The hash of the rules is kept once, on data:QualityMaterialization.
+ * A run only recomputes films whose input scores no longer match their
+ * qualityInputs, or every film when the rules have changed.
+ *
+ * Registered as a listener (OntologyManager.addChangeListener), it also
+ * rescores the films whose scores an update changed, right after it.
+ */
+public class QualityMaterializer implements ModelChangeListener {
+
+    private static final String MARKER = "QualityMaterialization";
+    private static final String[] SCORES = {
+        "directionScore", "actingScore", "screenplayScore", "visualEffectsScore", "culturalSignificanceScore"
+    };
+
+    private final OntologyManager ontologyManager;
+    private final FilmQualityEvaluator evaluator;
+
+    private final Node filmType;
+    private final Node hasTitle;
+    private final Node[] scores;
+    private final Set<Node> scoreProperties;
+    private final Node qualityInputs;
+    private final Node qualityRules;
+    private final Node marker;
+
+    /**
+     * @param ontologyManager The ontology to write into
+     * @param evaluator Evaluator whose rules the scores come from
+     */
+    public QualityMaterializer(OntologyManager ontologyManager, FilmQualityEvaluator evaluator) {
+        this.ontologyManager = ontologyManager;
+        this.evaluator = evaluator;
+
+        String schemaNs = ontologyManager.getSchemaNamespace();
+        this.filmType = NodeFactory.createURI(schemaNs + "Film");
+        this.hasTitle = NodeFactory.createURI(schemaNs + "hasTitle");
+        this.scores = new Node[SCORES.length];
+        for (int i = 0; i < SCORES.length; i++) {
+            scores[i] = NodeFactory.createURI(schemaNs + SCORES[i]);
+        }
+        this.scoreProperties = new HashSet<>(Arrays.asList(scores));
+        this.qualityInputs = NodeFactory.createURI(schemaNs + "qualityInputs");
+        this.qualityRules = NodeFactory.createURI(schemaNs + "qualityRules");
+        this.marker = NodeFactory.createURI(ontologyManager.getDataNamespace() + MARKER);
+    }
+
+    /**
+     * Brings the stored quality of every film up to date
+     *
+     * @return Number of films whose quality was (re)computed
+     */
+    public int materialize() {
+        String rulesHash = evaluator.getRuleBase().getHash();
+
+        // Read what is stale, score it without holding any lock, then write
+        Stale stale = ontologyManager.calculateRead(() -> findStale(graph(), rulesHash));
+        if (stale.ids.isEmpty() && !stale.rulesChanged) {
+            return 0;
+        }
+
+        // One update for every film, so the model version moves once and
+        // the indexes and caches are refreshed for the scored films only
+        OntologyUpdate update = scores(stale.ids, stale.inputs, evaluate(stale.inputs));
+        ontologyManager.update(update.setOrCreate(MARKER, "qualityRules", rulesHash));
+        return stale.ids.size();
+    }
+
+    /**
+     * Rescores the films whose input scores changed, through another
+     * update, so only what depends on those films is refreshed
+     *
+     * @param change A change made through OntologyManager.update()
+     */
+    @Override
+    public void modelChanged(ModelChange change) {
+        Set<Node> changed = new LinkedHashSet<>();
+        for (List<Triple> triples : Arrays.asList(change.getAdded(), change.getRemoved())) {
+            for (Triple triple : triples) {
+                if (scoreProperties.contains(triple.getPredicate()) && triple.getSubject().isURI()) {
+                    changed.add(triple.getSubject());
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            materialize(changed);
+        }
+    }
+
+    /**
+     * Recomputes the stored quality of the given films
+     *
+     * @param films Film nodes; those that are no longer films are skipped
+     * @return Number of films whose quality was recomputed
+     */
+    private int materialize(Collection<Node> films) {
+        String dataNs = ontologyManager.getDataNamespace();
+        List<String> ids = new ArrayList<>();
+        List<double[]> inputs = ontologyManager.calculateRead(() -> {
+            Graph graph = graph();
+            List<double[]> read = new ArrayList<>();
+            for (Node film : films) {
+                if (film.getURI().startsWith(dataNs) && graph.contains(film, RDF.type.asNode(), filmType) &&
+                    graph.contains(film, hasTitle, Node.ANY)) {
+                    ids.add(film.getURI().substring(dataNs.length()));
+                    read.add(inputs(graph, film));
+                }
+            }
+            return read;
+        });
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        ontologyManager.update(scores(ids, inputs, evaluate(inputs)));
+        return ids.size();
+    }
+
+    /**
+     * @return Update storing the quality of each film, by id
+     */
+    private OntologyUpdate scores(List<String> ids, List<double[]> inputs, double[] quality) {
+        OntologyUpdate update = new OntologyUpdate();
+        for (int i = 0; i < ids.size(); i++) {
+            update.set(ids.get(i), "qualityScore", BigDecimal.valueOf(quality[i]).setScale(4, RoundingMode.HALF_UP))
+                  .set(ids.get(i), "qualityCategory", evaluator.getQualityCategory(quality[i]))
+                  .set(ids.get(i), "qualityInputs", signature(inputs.get(i)));
+        }
+        return update;
+    }
+
+    /**
+     * @return Hash of the rules the stored scores were computed with, or null if none are stored
+     */
+    public String getMaterializedRulesHash() {
+        return ontologyManager.calculateRead(() -> literal(graph(), marker, qualityRules));
+    }
+
+    private Graph graph() {
+        return ontologyManager.getOntologyModel().getGraph();
+    }
+
+    private Stale findStale(Graph graph, String rulesHash) {
+        String dataNs = ontologyManager.getDataNamespace();
+        Stale stale = new Stale();
+        stale.rulesChanged = !rulesHash.equals(literal(graph, marker, qualityRules));
+
+        ExtendedIterator<Triple> films = graph.find(Node.ANY, RDF.type.asNode(), filmType);
+        try {
+            while (films.hasNext()) {
+                Node film = films.next().getSubject();
+                if (!film.isURI() || !film.getURI().startsWith(dataNs) || !graph.contains(film, hasTitle, Node.ANY)) {
+                    continue;
+                }
+
+                double[] inputs = inputs(graph, film);
+                if (stale.rulesChanged || !signature(inputs).equals(literal(graph, film, qualityInputs))) {
+                    stale.ids.add(film.getURI().substring(dataNs.length()));
+                    stale.inputs.add(inputs);
+                }
+            }
+        } finally {
+            films.close();
+        }
+        return stale;
+    }
+
+    /**
+     * Scores films in one batch, without holding any lock
+     */
+    private double[] evaluate(List<double[]> inputs) {
+        int size = inputs.size();
+        double[][] columns = new double[SCORES.length][size];
+        for (int i = 0; i < size; i++) {
+            for (int s = 0; s < SCORES.length; s++) {
+                columns[s][i] = inputs.get(i)[s];
+            }
+        }
+        double[] quality = new double[size];
+        evaluator.evaluateBatch(columns[0], columns[1], columns[2], columns[3], columns[4], quality);
+        return quality;
+    }
+
+    private double[] inputs(Graph graph, Node film) {
+        double[] inputs = new double[SCORES.length];
+        for (int s = 0; s < SCORES.length; s++) {
+            inputs[s] = number(graph, film, scores[s]);
+        }
+        return inputs;
+    }
+
+    private static String signature(double[] inputs) {
+        StringBuilder sb = new StringBuilder();
+        for (double input : inputs) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(input);
+        }
+        return sb.toString();
+    }
+
+    private static String literal(Graph graph, Node subject, Node predicate) {
+        ExtendedIterator<Triple> triples = graph.find(subject, predicate, Node.ANY);
+        try {
+            if (triples.hasNext()) {
+                Node value = triples.next().getObject();
+                return value.isLiteral() ? value.getLiteralLexicalForm() : null;
+            }
+            return null;
+        } finally {
+            triples.close();
+        }
+    }
+
+    /**
+     * Missing or malformed scores count as 0, like in Film
+     */
+    private static double number(Graph graph, Node subject, Node predicate) {
+        ExtendedIterator<Triple> triples = graph.find(subject, predicate, Node.ANY);
+        try {
+            if (triples.hasNext()) {
+                Node value = triples.next().getObject();
+                if (value.isLiteral()) {
+                    Object number = value.getLiteralValue();
+                    if (number instanceof Number) {
+                        return ((Number) number).doubleValue();
+                    }
+                }
+            }
+            return 0;
+        } catch (DatatypeFormatException e) {
+            return 0;
+        } finally {
+            triples.close();
+        }
+    }
+
+    /**
+     * Films to recompute, with the input scores read for them
+     */
+    private static final class Stale {
+
+        final List<String> ids = new ArrayList<>();
+        final List<double[]> inputs = new ArrayList<>();
+        boolean rulesChanged;
+    }
+}
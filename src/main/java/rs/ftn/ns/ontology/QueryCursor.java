@@ -0,0 +1,72 @@
+package rs.ftn.ns.ontology;
+
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Open SPARQL result that is read row by row.
+ * While the cursor is open it holds the query execution and the model's
+ * read lock (or TDB2 read transaction). It closes itself once the last row
+ * has been read; otherwise it must be closed by the caller, on the thread
+ * that opened it.
+ */
+public class QueryCursor implements AutoCloseable {
+
+    private final QueryExecution qexec;
+    private final ResultSet results;
+    private final Runnable releaseRead;
+    private boolean closed;
+
+    QueryCursor(QueryExecution qexec, ResultSet results, Runnable releaseRead) {
+        this.qexec = qexec;
+        this.results = results;
+        this.releaseRead = releaseRead;
+    }
+
+    /**
+     * @return true if there is another row
+     */
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!results.hasNext()) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The next row
+     */
+    public QuerySolution next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return results.nextSolution();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes the query execution and releases the read lock
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            qexec.close();
+        } finally {
+            releaseRead.run();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package rs.ftn.ns.ontology;
+
+/**
+ * Storage backends supported by {@link OntologyManager}.
+ */
+public enum StorageMode {
+    
+    /**
+     * Parses the OWL file into an in-memory model on every start.
+     */
+    MEMORY,
+    
+    /**
+     * Parses the OWL file once and caches the graph as a binary RDF Thrift
+     * snapshot. Later starts read the snapshot instead of the RDF/XML.
+     */
+    SNAPSHOT,
+    
+    /**
+     * Keeps the ontology in an on-disk TDB2 dataset.
+     * The OWL file is only imported again when its checksum changes.
+     */
+    TDB2
+}
@@ -0,0 +1,410 @@
+package rs.ftn.ns.ontology;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.vocabulary.RDF;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates a film catalog of any size in the shape of film-data.owl,
+ * for testing and benchmarking at production volume.
+ *
+ * Films, directors, actors, writers and awards are new individuals
+ * (Synthetic_Film_0, Synthetic_Actor_0, ...); genres, countries, languages
+ * and eras are the ones of the hand-made ontology, so queries for "Drama"
+ * or "USA" work on both. People, genres, countries and languages are drawn
+ * with Zipfian popularity: a few appear in many films, most in few.
+ *
+ * The output is written triple by triple and the graph is never held in
+ * memory, so a 10M film catalog takes no more heap than a small one. The
+ * same film count and seed always give the same triples.
+ */
+public class SyntheticCatalogGenerator {
+
+    public static final long DEFAULT_SEED = 42;
+
+    private static final String[] GENRES = {
+        "Drama", "Crime", "Thriller", "Action", "Comedy", "SciFi", "Romance", "Mystery", "Horror", "Documentary"
+    };
+    private static final String[] COUNTRIES = {
+        "USA", "UK", "France", "Germany", "Japan", "Italy", "South_Korea", "Canada", "Spain", "Australia"
+    };
+    private static final String[] LANGUAGES = {
+        "English", "French", "Spanish", "German", "Japanese", "Italian", "Korean"
+    };
+    // Id, name, first year, last year - as in film-data.owl
+    private static final Object[][] ERAS = {
+        {"SilentEra", "Silent Era", 1895, 1927},
+        {"GoldenAge", "Golden Age", 1930, 1960},
+        {"NewHollywood", "New Hollywood", 1960, 1980},
+        {"ModernCinema", "Modern Cinema", 1980, 2024}
+    };
+    private static final String[] SCORES = {
+        "directionScore", "actingScore", "screenplayScore", "visualEffectsScore", "culturalSignificanceScore"
+    };
+
+    private static final String[] FIRST_NAMES = {
+        "James", "Maria", "Akira", "Sofia", "Jean", "Ingrid", "Pedro", "Mei", "Lars", "Amélie", "Olu",
+        "Hana", "Marco", "Zoë", "Ivan", "Chloé", "Rahul", "Elena", "Tomás", "Yuki", "Nadia", "Björn"
+    };
+    private static final String[] LAST_NAMES = {
+        "Anderson", "García", "Kurosawa", "Müller", "Rossi", "Dupont", "Kim", "Novak", "Okafor", "Lindqvist",
+        "Moreau", "Tanaka", "Ferreira", "Kowalski", "Nguyen", "Hansen", "Petrović", "Singh", "Costa", "Walsh"
+    };
+    private static final String[] TITLE_WORDS = {
+        "Silent", "Last", "Crimson", "Broken", "Hidden", "Eternal", "Lost", "Midnight", "Golden", "Frozen",
+        "Wild", "Distant", "Burning", "Secret", "Electric", "Quiet", "Fallen", "Savage", "Hollow", "Bright"
+    };
+    private static final String[] TITLE_NOUNS = {
+        "River", "City", "Garden", "Promise", "Harbor", "Kingdom", "Witness", "Summer", "Machine", "Café",
+        "Frontier", "Mirror", "Orchestra", "Empire", "Station", "Island", "Déjà Vu", "Signal", "Horizon", "Storm"
+    };
+
+    private final int films;
+    private final long seed;
+    private final int directors;
+    private final int actors;
+    private final int writers;
+    private final int awards;
+
+    private final String dataNs = OntologyManager.DATA_NAMESPACE;
+    private final String schemaNs = OntologyManager.SCHEMA_NAMESPACE;
+
+    /**
+     * @param films Number of films to generate
+     * @param seed Seed of the random choices
+     */
+    public SyntheticCatalogGenerator(int films, long seed) {
+        if (films < 1) {
+            throw new IllegalArgumentException("At least one film is needed, was " + films);
+        }
+        this.films = films;
+        this.seed = seed;
+        // About 8 films per director, 2.5 roles per actor and 4 films per writer
+        this.directors = Math.max(10, films / 8);
+        this.actors = Math.max(50, films * 2 / 5);
+        this.writers = Math.max(10, films / 4);
+        this.awards = Math.max(10, Math.min(1000, films / 100));
+    }
+
+    public int getFilmCount() {
+        return films;
+    }
+
+    public int getDirectorCount() {
+        return directors;
+    }
+
+    public int getActorCount() {
+        return actors;
+    }
+
+    public int getWriterCount() {
+        return writers;
+    }
+
+    public static String filmId(int n) {
+        return "Synthetic_Film_" + n;
+    }
+
+    public static String directorId(int n) {
+        return "Synthetic_Director_" + n;
+    }
+
+    public static String actorId(int n) {
+        return "Synthetic_Actor_" + n;
+    }
+
+    public static String writerId(int n) {
+        return "Synthetic_Writer_" + n;
+    }
+
+    /**
+     * @return Last names the people are given, e.g. to search directors by
+     */
+    public static String[] lastNames() {
+        return LAST_NAMES.clone();
+    }
+
+    /**
+     * Writes the catalog to a file; the format comes from the file name
+     * (.nt, .ttl, .trig, ... optionally followed by .gz)
+     *
+     * @param file File to write
+     * @throws IOException If the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        Lang lang = RDFLanguages.filenameToLang(file.toString(), Lang.NTRIPLES);
+        boolean gzip = file.toString().endsWith(".gz");
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (OutputStream out = gzip ? new GZIPOutputStream(Files.newOutputStream(file), 1 << 16)
+                                     : new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            write(out, lang);
+        }
+    }
+
+    /**
+     * Writes the catalog as N-Triples or streamed Turtle
+     *
+     * @param out Stream to write to; it is not closed
+     * @param lang Lang.NTRIPLES, Lang.TURTLE, ...
+     */
+    public void write(OutputStream out, Lang lang) {
+        StreamRDF stream = lang.equals(Lang.TURTLE)
+                ? StreamRDFWriter.getWriterStream(out, RDFFormat.TURTLE_BLOCKS)
+                : StreamRDFWriter.getWriterStream(out, lang);
+        if (stream == null) {
+            throw new IllegalArgumentException("Not a streaming RDF syntax: " + lang.getName());
+        }
+        stream.start();
+        stream.prefix("rdf", RDF.getURI());
+        stream.prefix("data", dataNs);
+        stream.prefix("schema", schemaNs);
+        generate(stream);
+        stream.finish();
+    }
+
+    /**
+     * Sends every triple of the catalog to the stream; start() and
+     * finish() are left to the caller
+     *
+     * @param out Stream to receive the triples
+     */
+    public void generate(StreamRDF out) {
+        Random random = new Random(seed);
+        Emitter emit = new Emitter(out);
+
+        for (String genre : GENRES) {
+            emit.individual(genre, "Genre", "genreName", genre);
+        }
+        for (String country : COUNTRIES) {
+            emit.individual(country, "Country", "countryName", country);
+        }
+        for (String language : LANGUAGES) {
+            emit.individual(language, "Language", "languageName", language);
+        }
+        for (Object[] era : ERAS) {
+            emit.individual((String) era[0], "Era", "eraName", (String) era[1]);
+            emit.literal((String) era[0], "eraStartYear", era[2].toString(), XSDDatatype.XSDinteger);
+            emit.literal((String) era[0], "eraEndYear", era[3].toString(), XSDDatatype.XSDinteger);
+        }
+        for (int n = 0; n < awards; n++) {
+            String award = "Synthetic_Award_" + n;
+            emit.individual(award, "Award", "awardName", "Synthetic Award " + n);
+            emit.literal(award, "awardYear", String.valueOf(1930 + n % 95), XSDDatatype.XSDinteger);
+        }
+        for (int n = 0; n < directors; n++) {
+            emit.individual(directorId(n), "Director", "hasName", personName(n));
+        }
+        for (int n = 0; n < actors; n++) {
+            emit.individual(actorId(n), "Actor", "hasName", personName(n + 7));
+        }
+        for (int n = 0; n < writers; n++) {
+            emit.individual(writerId(n), "Writer", "hasName", personName(n + 13));
+        }
+
+        Zipf directorPopularity = new Zipf(directors, 0.8);
+        Zipf actorPopularity = new Zipf(actors, 1.0);
+        Zipf writerPopularity = new Zipf(writers, 0.8);
+        Zipf awardPopularity = new Zipf(awards, 1.0);
+        Zipf genrePopularity = new Zipf(GENRES.length, 0.9);
+        Zipf countryPopularity = new Zipf(COUNTRIES.length, 1.3);
+        Zipf languagePopularity = new Zipf(LANGUAGES.length, 1.5);
+        int[] picked = new int[8];
+
+        for (int n = 0; n < films; n++) {
+            String film = filmId(n);
+            emit.type(film, "Film");
+            emit.literal(film, "hasTitle", title(random, n), null);
+
+            // Most films are recent, a long tail goes back to the silent era
+            int year = Math.max(1895, 2024 - (int) Math.abs(random.nextGaussian() * 30));
+            emit.literal(film, "releaseYear", String.valueOf(year), XSDDatatype.XSDdecimal);
+            emit.literal(film, "duration", String.valueOf(80 + random.nextInt(100)), XSDDatatype.XSDdecimal);
+            for (Object[] era : ERAS) {
+                if (year >= (Integer) era[2] && year <= (Integer) era[3]) {
+                    emit.link(film, "belongsToEra", (String) era[0]);
+                    break;
+                }
+            }
+
+            // One underlying quality, so the scores of a film agree with each other
+            double quality = clamp(6.5 + random.nextGaussian() * 1.5);
+            emit.literal(film, "imdbRating", oneDecimal(clamp(quality + random.nextGaussian() * 0.7)),
+                         XSDDatatype.XSDdecimal);
+            emit.literal(film, "imdbVotes", String.valueOf((long) (1000 * Math.exp(random.nextDouble() * 7))),
+                         XSDDatatype.XSDinteger);
+            for (String score : SCORES) {
+                double value = Math.round(clamp(quality + random.nextGaussian()) * 2) / 2.0;
+                emit.literal(film, score, String.valueOf(value), XSDDatatype.XSDdecimal);
+            }
+            long budget = 100_000L * (1 + (long) (random.nextDouble() * random.nextDouble() * 3000));
+            emit.literal(film, "budget", String.valueOf(budget), XSDDatatype.XSDdecimal);
+            emit.literal(film, "boxOffice", String.valueOf((long) (budget * random.nextDouble() * quality / 2)),
+                         XSDDatatype.XSDdecimal);
+            emit.literal(film, "synopsis", "A story of " + TITLE_NOUNS[random.nextInt(TITLE_NOUNS.length)]
+                         .toLowerCase() + " and " + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)]
+                         .toLowerCase() + " things.", null);
+
+            int director = directorPopularity.next(random);
+            emit.link(film, "directedBy", directorId(director));
+            int count = distinct(writerPopularity, random, 1 + random.nextInt(2), picked);
+            for (int i = 0; i < count; i++) {
+                emit.link(film, "writtenBy", writerId(picked[i]));
+            }
+            count = distinct(actorPopularity, random, 3 + random.nextInt(6), picked);
+            for (int i = 0; i < count; i++) {
+                emit.link(film, "hasActor", actorId(picked[i]));
+            }
+            if (random.nextInt(10) == 0) {
+                emit.link(directorId(director), "workedWith", actorId(picked[0]));
+            }
+            count = distinct(genrePopularity, random, 1 + random.nextInt(3), picked);
+            for (int i = 0; i < count; i++) {
+                emit.link(film, "hasGenre", GENRES[picked[i]]);
+            }
+            emit.link(film, "setIn", COUNTRIES[countryPopularity.next(random)]);
+            emit.link(film, "spokenIn", LANGUAGES[languagePopularity.next(random)]);
+            if (random.nextInt(20) == 0) {
+                emit.link(film, "wonAward", "Synthetic_Award_" + awardPopularity.next(random));
+            }
+        }
+    }
+
+    private static String personName(int n) {
+        return FIRST_NAMES[n % FIRST_NAMES.length] + " " + LAST_NAMES[(n / FIRST_NAMES.length) % LAST_NAMES.length];
+    }
+
+    private static String title(Random random, int n) {
+        String title = TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " " +
+                       TITLE_NOUNS[random.nextInt(TITLE_NOUNS.length)];
+        // Only 400 word pairs, so most titles get a number, like sequels do
+        return random.nextInt(4) == 0 ? "The " + title : title + " " + (n % 97 + 1);
+    }
+
+    /**
+     * Draws up to count distinct values; gives up on a value after a few
+     * repeats, so a small pool cannot loop forever
+     */
+    private static int distinct(Zipf zipf, Random random, int count, int[] into) {
+        int size = 0;
+        for (int attempt = 0; size < count && attempt < count * 4; attempt++) {
+            int value = zipf.next(random);
+            boolean seen = false;
+            for (int i = 0; i < size && !seen; i++) {
+                seen = into[i] == value;
+            }
+            if (!seen) {
+                into[size++] = value;
+            }
+        }
+        return size;
+    }
+
+    private static double clamp(double score) {
+        return Math.max(1.0, Math.min(10.0, score));
+    }
+
+    private static String oneDecimal(double value) {
+        return String.valueOf(Math.round(value * 10) / 10.0);
+    }
+
+    /**
+     * Turns local names into triples on the stream
+     */
+    private final class Emitter {
+
+        private final StreamRDF out;
+
+        Emitter(StreamRDF out) {
+            this.out = out;
+        }
+
+        void individual(String id, String type, String nameProperty, String name) {
+            type(id, type);
+            literal(id, nameProperty, name, null);
+        }
+
+        void type(String id, String type) {
+            out.triple(Triple.create(data(id), RDF.type.asNode(), schema(type)));
+        }
+
+        void link(String id, String property, String target) {
+            out.triple(Triple.create(data(id), schema(property), data(target)));
+        }
+
+        void literal(String id, String property, String value, XSDDatatype datatype) {
+            Node literal = datatype != null ? NodeFactory.createLiteral(value, datatype)
+                                            : NodeFactory.createLiteral(value);
+            out.triple(Triple.create(data(id), schema(property), literal));
+        }
+
+        private Node data(String id) {
+            return NodeFactory.createURI(dataNs + id);
+        }
+
+        private Node schema(String localName) {
+            return NodeFactory.createURI(schemaNs + localName);
+        }
+    }
+
+    /**
+     * Draws 0..size-1 with probability proportional to 1 / (rank + 1)^exponent
+     */
+    private static final class Zipf {
+
+        private final double[] cumulative;
+
+        Zipf(int size, double exponent) {
+            cumulative = new double[size];
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += 1.0 / Math.pow(i + 1, exponent);
+                cumulative[i] = sum;
+            }
+        }
+
+        int next(Random random) {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int index = Arrays.binarySearch(cumulative, target);
+            return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+        }
+    }
+
+    /**
+     * Writes a catalog from the command line:
+     * SyntheticCatalogGenerator &lt;films&gt; &lt;file (.nt, .ttl, .nt.gz, ...)&gt; [seed]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SyntheticCatalogGenerator <films> <file> [seed]");
+            System.exit(1);
+        }
+        int films = Integer.parseInt(args[0]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        Path file = Paths.get(args[1]);
+
+        long start = System.nanoTime();
+        new SyntheticCatalogGenerator(films, seed).write(file);
+        System.out.println("Wrote " + films + " films to " + file + " in " +
+                           (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
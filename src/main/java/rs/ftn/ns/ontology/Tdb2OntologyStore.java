@@ -0,0 +1,127 @@
+package rs.ftn.ns.ontology;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.system.Txn;
+import org.apache.jena.system.progress.MonitorOutput;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.tdb2.loader.DataLoader;
+import org.apache.jena.tdb2.loader.LoaderFactory;
+import rs.ftn.ns.util.Checksums;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Persistent TDB2 copy of the ontology source file.
+ * The source is bulk-loaded only when its checksum differs from the one
+ * recorded at the last import, otherwise the existing indexes are reused.
+ */
+class Tdb2OntologyStore {
+
+    private static final String CHECKSUM_FILE = "source.sha256";
+    private static final String INFERRED_CHECKSUM_FILE = "inferred.sha256";
+
+    // The loader reports progress per 100k triples, which is just noise here
+    private static final MonitorOutput QUIET = (format, args) -> { };
+
+    private final Path storeDirectory;
+    private Dataset dataset;
+    private boolean imported;
+
+    Tdb2OntologyStore(String storeDirectory) {
+        this.storeDirectory = Paths.get(storeDirectory);
+    }
+
+    /**
+     * Opens the dataset and imports the source file if it changed
+     * since the last import (or was never imported).
+     *
+     * @param sourcePath Path to the OWL file
+     * @return The opened dataset
+     * @throws IOException If the source or checksum file cannot be accessed
+     */
+    Dataset open(String sourcePath) throws IOException {
+        Path source = Paths.get(sourcePath);
+        if (!Files.exists(source)) {
+            throw new IllegalArgumentException("File not found: " + sourcePath);
+        }
+
+        Files.createDirectories(storeDirectory);
+        dataset = TDB2Factory.connectDataset(storeDirectory.toString());
+
+        String checksum = Checksums.sha256(source);
+        Path checksumFile = storeDirectory.resolve(CHECKSUM_FILE);
+
+        if (checksum.equals(readChecksum(checksumFile))) {
+            imported = false;
+            return dataset;
+        }
+
+        // Source changed - drop the old triples and bulk load the new ones
+        Files.deleteIfExists(checksumFile);
+        Files.deleteIfExists(storeDirectory.resolve(INFERRED_CHECKSUM_FILE));
+        Txn.executeWrite(dataset, () -> dataset.asDatasetGraph().clear());
+
+        DataLoader loader = LoaderFactory.createLoader(dataset.asDatasetGraph(), QUIET);
+        loader.startBulk();
+        try {
+            loader.load(sourcePath);
+            loader.finishBulk();
+        } catch (RuntimeException e) {
+            loader.finishException(e);
+            throw e;
+        }
+
+        // Only record the checksum once the data is safely committed
+        Files.write(checksumFile, checksum.getBytes(StandardCharsets.UTF_8));
+        imported = true;
+
+        return dataset;
+    }
+
+    /**
+     * @return true if the last {@link #open(String)} re-imported the source file
+     */
+    boolean isImported() {
+        return imported;
+    }
+
+    /**
+     * Tells whether the inferred triples in the store were computed from
+     * the current import and the given schema
+     *
+     * @param schemaChecksum Checksum of the schema file
+     * @return true if they do not have to be computed again
+     * @throws IOException If the checksum file cannot be read
+     */
+    boolean isMaterialized(String schemaChecksum) throws IOException {
+        return !imported && schemaChecksum.equals(readChecksum(storeDirectory.resolve(INFERRED_CHECKSUM_FILE)));
+    }
+
+    /**
+     * Records that the inferred triples were computed from the given
+     * schema; only called once they are committed
+     *
+     * @param schemaChecksum Checksum of the schema file
+     * @throws IOException If the checksum file cannot be written
+     */
+    void setMaterialized(String schemaChecksum) throws IOException {
+        Files.write(storeDirectory.resolve(INFERRED_CHECKSUM_FILE), schemaChecksum.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void close() {
+        if (dataset != null) {
+            dataset.close();
+        }
+    }
+
+    private static String readChecksum(Path checksumFile) throws IOException {
+        if (!Files.exists(checksumFile)) {
+            return null;
+        }
+        return new String(Files.readAllBytes(checksumFile), StandardCharsets.UTF_8).trim();
+    }
+}
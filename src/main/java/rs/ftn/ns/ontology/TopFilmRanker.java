@@ -0,0 +1,117 @@
+package rs.ftn.ns.ontology;
+
+import rs.ftn.ns.fuzzy.FilmQualityEvaluator;
+import rs.ftn.ns.index.FilmIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the K best scored films among the candidates of a film index.
+ *
+ * Candidates are read from the index in fixed-size chunks. Each chunk is
+ * scored with one batch call and offered to a min-heap of at most K
+ * entries, whose head is the current K-th best. Memory stays O(K + chunk)
+ * whatever the size of the catalog, and no film is hydrated here.
+ */
+final class TopFilmRanker {
+
+    static final int CHUNK_SIZE = 1024;
+
+    private final FilmIndex index;
+
+    // Lowest score first; on equal scores the later film (by id) goes first
+    private final Comparator<Candidate> worstFirst;
+    private final FilmQualityEvaluator evaluator;
+
+    // Score columns of one chunk, reused
+    private final double[] direction = new double[CHUNK_SIZE];
+    private final double[] acting = new double[CHUNK_SIZE];
+    private final double[] screenplay = new double[CHUNK_SIZE];
+    private final double[] visualEffects = new double[CHUNK_SIZE];
+    private final double[] culturalSignificance = new double[CHUNK_SIZE];
+    private final int[] ordinals = new int[CHUNK_SIZE];
+
+    TopFilmRanker(FilmIndex index, FilmQualityEvaluator evaluator) {
+        this.index = index;
+        this.evaluator = evaluator;
+        this.worstFirst = Comparator.comparingDouble((Candidate c) -> c.quality)
+                                    .thenComparing(c -> index.getId(c.ordinal), Comparator.reverseOrder());
+    }
+
+    /**
+     * @param candidates Ordinals of the films to rank
+     * @param k Number of films to keep
+     * @return The best films, highest score first (ties by film id)
+     */
+    List<Candidate> top(BitSet candidates, int k) {
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(Math.min(k, candidates.cardinality()) + 1, worstFirst);
+        double[] scores = new double[FilmIndex.SCORE_COUNT];
+
+        int ordinal = candidates.nextSetBit(0);
+        while (ordinal >= 0) {
+            int size = 0;
+            while (ordinal >= 0 && size < CHUNK_SIZE) {
+                index.getScores(ordinal, scores);
+                direction[size] = scores[FilmIndex.SCORE_DIRECTION];
+                acting[size] = scores[FilmIndex.SCORE_ACTING];
+                screenplay[size] = scores[FilmIndex.SCORE_SCREENPLAY];
+                visualEffects[size] = scores[FilmIndex.SCORE_VISUAL_EFFECTS];
+                culturalSignificance[size] = scores[FilmIndex.SCORE_CULTURAL_SIGNIFICANCE];
+                ordinals[size++] = ordinal;
+                ordinal = candidates.nextSetBit(ordinal + 1);
+            }
+            offer(heap, k, size);
+        }
+
+        List<Candidate> best = new ArrayList<>(heap);
+        best.sort(Collections.reverseOrder(worstFirst));
+        return best;
+    }
+
+    private void offer(PriorityQueue<Candidate> heap, int k, int size) {
+        double[] quality = new double[size];
+        evaluator.evaluateBatch(slice(direction, size), slice(acting, size), slice(screenplay, size),
+                                slice(visualEffects, size), slice(culturalSignificance, size), quality);
+
+        for (int i = 0; i < size; i++) {
+            if (heap.size() < k) {
+                heap.add(new Candidate(ordinals[i], quality[i]));
+            } else if (beatsHead(heap.peek(), ordinals[i], quality[i])) {
+                heap.poll();
+                heap.add(new Candidate(ordinals[i], quality[i]));
+            }
+        }
+    }
+
+    /**
+     * Ordinals do not follow the IRIs, so an equal score is decided by id
+     */
+    private boolean beatsHead(Candidate head, int ordinal, double quality) {
+        return quality > head.quality ||
+               (quality == head.quality && index.getId(ordinal).compareTo(index.getId(head.ordinal)) < 0);
+    }
+
+    private static double[] slice(double[] column, int size) {
+        return size == column.length ? column : Arrays.copyOf(column, size);
+    }
+
+    /**
+     * A scored film, by index ordinal
+     */
+    static final class Candidate {
+
+        final int ordinal;
+        final double quality;
+
+        Candidate(int ordinal, double quality) {
+            this.ordinal = ordinal;
+            this.quality = quality;
+        }
+    }
+}
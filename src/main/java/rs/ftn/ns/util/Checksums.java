@@ -0,0 +1,68 @@
+package rs.ftn.ns.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helper methods for computing file checksums.
+ * Used to detect when a source file (ontology, FCL) has changed
+ * and anything derived from it has to be rebuilt.
+ */
+public final class Checksums {
+    
+    private Checksums() {
+    }
+    
+    /**
+     * Computes the SHA-256 checksum of a file
+     * 
+     * @param file The file to hash
+     * @return Lowercase hex encoded checksum
+     * @throws IOException If the file cannot be read
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        
+        return toHex(digest.digest());
+    }
+    
+    /**
+     * Computes the SHA-256 checksum of a text, encoded as UTF-8
+     * 
+     * @param text The text to hash
+     * @return Lowercase hex encoded checksum
+     */
+    public static String sha256(String text) {
+        return toHex(newDigest().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
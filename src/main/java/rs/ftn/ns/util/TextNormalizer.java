@@ -0,0 +1,130 @@
+package rs.ftn.ns.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper methods for matching text the way people type it: without
+ * accents, case or punctuation, and with the odd typo.
+ * Used by the text search and autocomplete indexes.
+ */
+public final class TextNormalizer {
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Folds text for matching: lower case, accents removed ("Amélie" and
+     * "amelie" fold the same), and letters that have no decomposition
+     * spelled out ("Đorđević" becomes "djordjevic", "ß" becomes "ss").
+     * Anything that is not a letter or digit becomes a space.
+     *
+     * @param text Text to fold
+     * @return Folded text, the same length or longer
+     */
+    public static String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            switch (c) {
+                case 'Đ': case 'đ': folded.append("dj"); break;
+                case 'Ł': case 'ł': folded.append('l'); break;
+                case 'Ø': case 'ø': folded.append('o'); break;
+                case 'Æ': case 'æ': folded.append("ae"); break;
+                case 'Œ': case 'œ': folded.append("oe"); break;
+                case 'ß': folded.append("ss"); break;
+                default:
+                    folded.append(Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : ' ');
+            }
+        }
+        return folded.toString();
+    }
+
+    /**
+     * Splits folded text into words
+     *
+     * @param text Text to split
+     * @return Folded words, in order, repeats included
+     */
+    public static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean space = i == folded.length() || folded.charAt(i) == ' ';
+            if (space && start >= 0) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            } else if (!space && start < 0) {
+                start = i;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Number of edits (insert, delete, replace, or swap of two neighbouring
+     * characters) between two words, up to a limit. Only the band of the
+     * table within the limit is filled in, so it is cheap for small limits.
+     *
+     * @param a First word
+     * @param b Second word
+     * @param maxEdits Largest distance of interest
+     * @return The distance, or maxEdits + 1 if it is larger than maxEdits
+     */
+    public static int editDistance(CharSequence a, CharSequence b, int maxEdits) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > maxEdits) {
+            return maxEdits + 1;
+        }
+        int tooFar = maxEdits + 1;
+
+        // Rows i - 2, i - 1 and i of the (optimal string alignment) table
+        int[] previous2 = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = Math.min(j, tooFar);
+        }
+
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - maxEdits);
+            int to = Math.min(m, i + maxEdits);
+            current[0] = Math.min(i, tooFar);
+            if (from > 1) {
+                current[from - 1] = tooFar;
+            }
+            int rowMin = current[0];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, previous2[j - 2] + 1);
+                }
+                current[j] = Math.min(d, tooFar);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < m) {
+                current[to + 1] = tooFar;
+            }
+            if (rowMin > maxEdits) {
+                return tooFar;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[m];
+    }
+}
@@ -0,0 +1,89 @@
+package rs.ftn.ns.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rs.ftn.ns.fuzzy.FilmQualityEvaluator;
+import rs.ftn.ns.fuzzy.ScoringMode;
+import rs.ftn.ns.model.Film;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rescoring a whole catalog in COMPILED mode: evaluateFilm once per Film
+ * object against evaluateBatch over the score columns.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=rs.ftn.ns.benchmark.BatchScoringBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchScoringBenchmark {
+
+    private static final int FILMS = 10000;
+
+    private FilmQualityEvaluator evaluator;
+    private List<Film> films;
+    private double[][] columns;
+    private double[] quality;
+
+    @Setup
+    public void setUp() {
+        evaluator = new FilmQualityEvaluator(ScoringMode.COMPILED);
+        Random random = new Random(42);
+        films = new ArrayList<>(FILMS);
+        columns = new double[5][FILMS];
+        quality = new double[FILMS];
+        for (int i = 0; i < FILMS; i++) {
+            for (int k = 0; k < 5; k++) {
+                columns[k][i] = Math.round(random.nextDouble() * 100) / 10.0;
+            }
+            Film film = new Film("film" + i, "Film " + i, 2000);
+            film.setDirectionScore(columns[0][i]);
+            film.setActingScore(columns[1][i]);
+            film.setScreenplayScore(columns[2][i]);
+            film.setVisualEffectsScore(columns[3][i]);
+            film.setCulturalSignificanceScore(columns[4][i]);
+            films.add(film);
+        }
+    }
+
+    @Benchmark
+    public double[] perFilm() {
+        for (int i = 0; i < FILMS; i++) {
+            quality[i] = evaluator.evaluateFilm(films.get(i));
+        }
+        return quality;
+    }
+
+    @Benchmark
+    public double[] batch() {
+        evaluator.evaluateBatch(columns[0], columns[1], columns[2], columns[3], columns[4], quality);
+        return quality;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(BatchScoringBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,164 @@
+package rs.ftn.ns.benchmark;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rs.ftn.ns.index.CollaborationGraph;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.SyntheticCatalogGenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collaboration lookups on a generated catalog: the CSR graph against
+ * the equivalent SPARQL 1.1 property paths and GROUP BY queries.
+ *
+ * The graph benchmarks cycle through more people than the traversal
+ * cache holds, so they measure the array walks; cachedTwoHopFilms shows
+ * a hot lookup.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=rs.ftn.ns.benchmark.CollaborationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollaborationBenchmark {
+
+    private static final String LINK =
+        "(schema:directedBy|^schema:directedBy|schema:hasActor|^schema:hasActor|" +
+        "schema:writtenBy|^schema:writtenBy|schema:workedWith|^schema:workedWith)";
+
+    /**
+     * Films in the generated catalog
+     */
+    @Param({"10000"})
+    public int films;
+
+    private OntologyManager manager;
+    private Model model;
+    private CollaborationGraph graph;
+    private String[] starts;
+    private Query[] twoHopQueries;
+    private Query[] actorQueries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        manager = SyntheticCatalogs.load(films);
+        model = manager.getOntologyModel();
+        graph = manager.getCollaborationGraph();
+        SyntheticCatalogGenerator generator = SyntheticCatalogs.generator(films);
+
+        // Every person once, in random order: more start nodes than the
+        // traversal cache holds, so the cycle never hits it
+        List<String> people = new ArrayList<>();
+        for (int n = 0; n < generator.getDirectorCount(); n++) {
+            people.add(SyntheticCatalogGenerator.directorId(n));
+        }
+        for (int n = 0; n < generator.getActorCount(); n++) {
+            people.add(SyntheticCatalogGenerator.actorId(n));
+        }
+        for (int n = 0; n < generator.getWriterCount(); n++) {
+            people.add(SyntheticCatalogGenerator.writerId(n));
+        }
+        people.removeIf(id -> graph.getName(id) == null);
+        Collections.shuffle(people, new Random(42));
+        starts = people.toArray(new String[0]);
+
+        String prefixes = "PREFIX data: <" + manager.getDataNamespace() + "> " +
+                          "PREFIX schema: <" + manager.getSchemaNamespace() + "> ";
+        twoHopQueries = new Query[starts.length];
+        actorQueries = new Query[starts.length];
+        for (int i = 0; i < starts.length; i++) {
+            twoHopQueries[i] = QueryFactory.create(prefixes +
+                "SELECT DISTINCT ?film WHERE { data:" + starts[i] + " " + LINK + "/" + LINK + "? ?film . " +
+                "?film a schema:Film }");
+            actorQueries[i] = QueryFactory.create(prefixes +
+                "SELECT ?actor (COUNT(DISTINCT ?film) AS ?shared) WHERE { " +
+                "?film (schema:directedBy|schema:hasActor|schema:writtenBy) data:" + starts[i] + " ; " +
+                "schema:hasActor ?actor . FILTER(?actor != data:" + starts[i] + ") } " +
+                "GROUP BY ?actor ORDER BY DESC(?shared) ?actor LIMIT 10");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+    }
+
+    private int nextStart() {
+        next = (next + 1) % starts.length;
+        return next;
+    }
+
+    @Benchmark
+    public List<String> graphTwoHopFilms() {
+        return graph.filmsWithinHops(starts[nextStart()], 2);
+    }
+
+    @Benchmark
+    public List<String> cachedTwoHopFilms() {
+        return graph.filmsWithinHops(starts[0], 2);
+    }
+
+    @Benchmark
+    public int sparqlTwoHopFilms() {
+        return count(twoHopQueries[nextStart()]);
+    }
+
+    @Benchmark
+    public List<CollaborationGraph.Collaborator> graphTopActors() {
+        return graph.topCollaborators(starts[nextStart()], CollaborationGraph.Relation.HAS_ACTOR, 10);
+    }
+
+    @Benchmark
+    public int sparqlTopActors() {
+        return count(actorQueries[nextStart()]);
+    }
+
+    private int count(Query query) {
+        try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
+            ResultSet results = qexec.execSelect();
+            int rows = 0;
+            while (results.hasNext()) {
+                results.next();
+                rows++;
+            }
+            return rows;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(CollaborationBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,84 @@
+package rs.ftn.ns.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rs.ftn.ns.fuzzy.FilmQualityEvaluator;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring throughput of one shared FilmQualityEvaluator as the number
+ * of threads grows. Without contention the total throughput should grow
+ * with the threads, up to the number of cores.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=rs.ftn.ns.benchmark.ConcurrentScoringBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentScoringBenchmark {
+
+    private static final int FILMS = 1024;
+
+    /**
+     * The evaluator and films, shared by all benchmark threads
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+        FilmQualityEvaluator evaluator;
+        double[][] scores;
+
+        @Setup
+        public void setUp() {
+            evaluator = new FilmQualityEvaluator();
+            Random random = new Random(42);
+            scores = new double[FILMS][5];
+            for (double[] film : scores) {
+                for (int i = 0; i < film.length; i++) {
+                    film[i] = Math.round(random.nextDouble() * 100) / 10.0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Position of each thread in the film list
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public double score(Shared shared, Cursor cursor) {
+        double[] film = shared.scores[cursor.next++ & (FILMS - 1)];
+        return shared.evaluator.evaluateFilm(film[0], film[1], film[2], film[3], film[4]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            Options options = new OptionsBuilder()
+                .include(ConcurrentScoringBenchmark.class.getSimpleName())
+                .threads(threads)
+                .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package rs.ftn.ns.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rs.ftn.ns.fuzzy.FilmQualityEvaluator;
+import rs.ftn.ns.index.CompletionIndex;
+import rs.ftn.ns.index.FilmCriteria;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.model.FilmPage;
+import rs.ftn.ns.model.MatchedFilm;
+import rs.ftn.ns.model.RankedFilm;
+import rs.ftn.ns.model.SimilarFilm;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.SyntheticCatalogGenerator;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Every FilmQueryService lookup at several catalog sizes, on catalogs from
+ * SyntheticCatalogGenerator. 1M and 10M films are left out of the default
+ * run, see SyntheticCatalogs.
+ *
+ * The result cache is switched off, so each call runs its index lookup
+ * (or query) instead of returning the list from the previous call. The
+ * stream benchmarks run the SPARQL queries behind the list methods.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=rs.ftn.ns.benchmark.FilmQueryBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmQueryBenchmark {
+
+    private static final FilmCriteria CRITERIA = FilmCriteria.any().genre("Drama").years(1990, 2009);
+
+    /**
+     * Films in the catalog
+     */
+    @Param({"10000", "100000"})
+    public int films;
+
+    private OntologyManager manager;
+    private FilmQueryService queryService;
+    private FilmQualityEvaluator evaluator;
+    private String director;
+    private String film;
+    private String misspelledDirector;
+
+    @Setup
+    public void setUp() {
+        manager = SyntheticCatalogs.load(films);
+        manager.setResultCache(null);
+        queryService = new FilmQueryService(manager);
+        evaluator = new FilmQualityEvaluator();
+
+        director = SyntheticCatalogGenerator.lastNames()[0].toLowerCase();
+        // One swapped pair of letters
+        misspelledDirector = director.charAt(1) + director.substring(0, 1) + director.substring(2);
+        film = SyntheticCatalogGenerator.filmId(films / 2);
+
+        // Build the indexes outside of the measurement
+        manager.getFilmIndex();
+        manager.getSimilarityIndex();
+        manager.getTextIndex();
+        manager.getCompletionIndex();
+    }
+
+    @TearDown
+    public void tearDown() {
+        evaluator.close();
+        queryService.close();
+    }
+
+    @Benchmark
+    public List<Film> allFilms() {
+        return queryService.getAllFilms();
+    }
+
+    @Benchmark
+    public List<Film> filmsByGenre() {
+        return queryService.findFilmsByGenre("Drama");
+    }
+
+    @Benchmark
+    public List<Film> filmsByDirector() {
+        return queryService.findFilmsByDirector(director);
+    }
+
+    @Benchmark
+    public List<Film> filmsByYearRange() {
+        return queryService.findFilmsByYearRange(1990, 1999);
+    }
+
+    @Benchmark
+    public List<Film> filmsByCriteria() {
+        return queryService.findFilms(CRITERIA);
+    }
+
+    @Benchmark
+    public List<MatchedFilm> searchFilms() {
+        return queryService.searchFilms(director, 10);
+    }
+
+    @Benchmark
+    public List<MatchedFilm> searchFilmsMisspelled() {
+        return queryService.searchFilms(misspelledDirector, 10);
+    }
+
+    @Benchmark
+    public List<CompletionIndex.Completion> autocomplete() {
+        return queryService.autocomplete(director.substring(0, 3), 10);
+    }
+
+    @Benchmark
+    public List<CompletionIndex.Completion> autocompleteMisspelled() {
+        return queryService.autocomplete(misspelledDirector, 10);
+    }
+
+    @Benchmark
+    public long streamAllFilms() {
+        try (Stream<Film> films = queryService.streamAllFilms()) {
+            return films.count();
+        }
+    }
+
+    @Benchmark
+    public long streamFilmsByGenre() {
+        try (Stream<Film> films = queryService.streamFilmsByGenre("Drama")) {
+            return films.count();
+        }
+    }
+
+    @Benchmark
+    public long streamFilmsByDirector() {
+        try (Stream<Film> films = queryService.streamFilmsByDirector(director)) {
+            return films.count();
+        }
+    }
+
+    @Benchmark
+    public FilmPage firstPage() {
+        return queryService.getAllFilmsPage(50, null);
+    }
+
+    @Benchmark
+    public Film loadFilm() {
+        return queryService.loadFilm(film);
+    }
+
+    @Benchmark
+    public List<RankedFilm> topFilms() {
+        return queryService.findTopFilms(CRITERIA, 10, evaluator);
+    }
+
+    @Benchmark
+    public List<SimilarFilm> similarFilms() {
+        return queryService.findSimilarFilms(film, 10);
+    }
+
+    /**
+     * Readers on one shared ontology, in queries per millisecond
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(4)
+    public List<Film> concurrentFilmsByGenre() {
+        return queryService.findFilmsByGenre("Drama");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(FilmQueryBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,78 @@
+package rs.ftn.ns.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rs.ftn.ns.fuzzy.CompiledFuzzyEngine;
+import rs.ftn.ns.fuzzy.FilmQualityEvaluator;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of scoring one film: jFuzzyLogic's FunctionBlock
+ * against the compiled engine.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=rs.ftn.ns.benchmark.FuzzyEngineBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FuzzyEngineBenchmark {
+
+    private static final String FCL_FILE_PATH = "src/main/resources/fuzzy/film_quality.fcl";
+    private static final int FILMS = 1024;
+
+    private FilmQualityEvaluator evaluator;
+    private CompiledFuzzyEngine engine;
+    private double[][] scores;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        evaluator = new FilmQualityEvaluator();
+        engine = CompiledFuzzyEngine.load(FCL_FILE_PATH);
+
+        Random random = new Random(42);
+        scores = new double[FILMS][5];
+        for (double[] film : scores) {
+            for (int i = 0; i < film.length; i++) {
+                film[i] = Math.round(random.nextDouble() * 100) / 10.0;
+            }
+        }
+    }
+
+    @Benchmark
+    public double jFuzzyLogic() {
+        double[] film = scores[next++ & (FILMS - 1)];
+        return evaluator.evaluateFilm(film[0], film[1], film[2], film[3], film[4]);
+    }
+
+    @Benchmark
+    public double compiled() {
+        return engine.evaluate(scores[next++ & (FILMS - 1)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(FuzzyEngineBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,130 @@
+package rs.ftn.ns.benchmark;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.InfModel;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.reasoner.ReasonerRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.StorageMode;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries that need the schema, on the data alone (NONE), on the data
+ * with the triples materialized at load time (MATERIALIZED), and on the
+ * data behind Jena's RDFS reasoner (LIVE_REASONER). NONE finds no people,
+ * since the data only types them as Director, Actor etc.
+ *
+ * The triple counts of each mode are printed at set-up.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=rs.ftn.ns.benchmark.InferenceBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InferenceBenchmark {
+
+    private static final String ONTOLOGY_PATH = "src/main/resources/ontology/film-data.owl";
+    private static final String SCHEMA_PATH = "src/main/resources/ontology/film-schema.owl";
+
+    private static final String PREFIX =
+        "PREFIX : <http://www.semanticweb.org/dusan/ontologies/2025/11/movie-app#>\n";
+
+    private static final Query PEOPLE = QueryFactory.create(PREFIX +
+        "SELECT (COUNT(DISTINCT ?person) AS ?count) WHERE { ?person a :Person }");
+
+    private static final Query FILMS_BY_DIRECTORS = QueryFactory.create(PREFIX +
+        "SELECT ?film ?title ?name WHERE {\n" +
+        "  ?film a :Film ; :hasTitle ?title ; :directedBy ?director .\n" +
+        "  ?director a :Person ; :hasName ?name .\n" +
+        "}");
+
+    public enum Inference { NONE, MATERIALIZED, LIVE_REASONER }
+
+    /**
+     * Films of the generated catalog, 0 for film-data.owl
+     */
+    @Param({"0", "10000"})
+    public int films;
+
+    @Param({"NONE", "MATERIALIZED", "LIVE_REASONER"})
+    public Inference inference;
+
+    private OntologyManager manager;
+    private Model model;
+
+    @Setup
+    public void setUp() {
+        String sourcePath = films == 0 ? ONTOLOGY_PATH : SyntheticCatalogs.file(films).toString();
+        manager = new OntologyManager(StorageMode.MEMORY, sourcePath, null, inference == Inference.MATERIALIZED);
+        manager.setResultCache(null);
+
+        if (inference == Inference.LIVE_REASONER) {
+            Model schema = ModelFactory.createDefaultModel().read(SCHEMA_PATH);
+            InfModel reasoned = ModelFactory.createInfModel(ReasonerRegistry.getRDFSReasoner(), schema,
+                                                            manager.getOntologyModel().getBaseModel());
+            reasoned.prepare();
+            model = reasoned;
+        } else {
+            model = manager.getOntologyModel();
+        }
+        System.out.println("\n" + inference + ": " + model.size() + " triples (data " +
+                           manager.getOntologyModel().getBaseModel().size() + ", inferred " +
+                           manager.getInferredModel().size() + ")");
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public long countPeople() {
+        try (QueryExecution execution = QueryExecutionFactory.create(PEOPLE, model)) {
+            return execution.execSelect().next().getLiteral("count").getLong();
+        }
+    }
+
+    @Benchmark
+    public int filmsByDirectors() {
+        try (QueryExecution execution = QueryExecutionFactory.create(FILMS_BY_DIRECTORS, model)) {
+            int rows = 0;
+            for (ResultSet results = execution.execSelect(); results.hasNext(); results.next()) {
+                rows++;
+            }
+            return rows;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(InferenceBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,119 @@
+package rs.ftn.ns.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.StorageMode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Loading the ontology, with its indexes, in each storage mode: the
+ * hand-made film-data.owl (films = 0) or a generated catalog.
+ *
+ * The cold benchmarks time the first load in a fresh JVM (one shot per
+ * fork, no warmup), which is what a user waits for at start-up. The warm
+ * ones time repeated loads once the JIT has compiled the parsers.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=rs.ftn.ns.benchmark.OntologyLoadBenchmark
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OntologyLoadBenchmark {
+
+    private static final String ONTOLOGY_PATH = "src/main/resources/ontology/film-data.owl";
+
+    /**
+     * Films of the generated catalog, 0 for film-data.owl
+     */
+    @Param({"0", "10000"})
+    public int films;
+
+    private String sourcePath;
+    private Path snapshotDirectory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        sourcePath = films == 0 ? ONTOLOGY_PATH : SyntheticCatalogs.file(films).toString();
+        // The snapshot is written here, so the snapshot benchmarks only read it
+        snapshotDirectory = Files.createTempDirectory("ontology-snapshots");
+        new OntologyManager(StorageMode.SNAPSHOT, sourcePath, snapshotDirectory.toString()).close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(snapshotDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(5)
+    public OntologyManager coldParse() {
+        return load(StorageMode.MEMORY);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(5)
+    public OntologyManager coldSnapshot() {
+        return load(StorageMode.SNAPSHOT);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    public OntologyManager warmParse() {
+        return load(StorageMode.MEMORY);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    public OntologyManager warmSnapshot() {
+        return load(StorageMode.SNAPSHOT);
+    }
+
+    private OntologyManager load(StorageMode mode) {
+        OntologyManager manager = new OntologyManager(mode, sourcePath, snapshotDirectory.toString());
+        manager.close();
+        return manager;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(OntologyLoadBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,104 @@
+package rs.ftn.ns.benchmark;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rs.ftn.ns.ontology.OntologyManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The films-by-genre query on film-data.owl, built as a string and parsed
+ * on every call (as FilmQueryService used to), against a template parsed
+ * once with the genre substituted per call. parse alone is the part of
+ * the first that the template saves.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=rs.ftn.ns.benchmark.PreparedQueryBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreparedQueryBenchmark {
+
+    private static final String GENRE = "Drama";
+
+    private OntologyManager manager;
+    private String template;
+    private Query prepared;
+    private Literal genre;
+
+    @Setup
+    public void setUp() {
+        manager = new OntologyManager();
+        template =
+            "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
+            "PREFIX schema: <" + manager.getSchemaNamespace() + "> " +
+            "SELECT ?film ?title ?year " +
+            "WHERE { " +
+            "  ?film rdf:type schema:Film . " +
+            "  ?film schema:hasTitle ?title . " +
+            "  ?film schema:hasGenre ?genre . " +
+            "  ?genre schema:genreName %s . " +
+            "  OPTIONAL { ?film schema:releaseYear ?year } " +
+            "}";
+        prepared = QueryFactory.create(String.format(template, "?genreName"));
+        genre = ResourceFactory.createStringLiteral(GENRE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public int concatenated() {
+        Query query = QueryFactory.create(String.format(template, "\"" + GENRE + "\""));
+        try (QueryExecution qexec = QueryExecution.model(manager.getOntologyModel()).query(query).build()) {
+            return ResultSetFormatter.consume(qexec.execSelect());
+        }
+    }
+
+    @Benchmark
+    public int prepared() {
+        try (QueryExecution qexec = QueryExecution.model(manager.getOntologyModel())
+                                                  .query(prepared)
+                                                  .substitution("genreName", genre)
+                                                  .build()) {
+            return ResultSetFormatter.consume(qexec.execSelect());
+        }
+    }
+
+    @Benchmark
+    public Query parse() {
+        return QueryFactory.create(String.format(template, "\"" + GENRE + "\""));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(PreparedQueryBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,69 @@
+package rs.ftn.ns.benchmark;
+
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.StorageMode;
+import rs.ftn.ns.ontology.SyntheticCatalogGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Generated catalogs for the benchmarks, written once per size to
+ * target/synthetic and reused by later runs.
+ *
+ * Up to 100k films the catalog is parsed into memory like film-data.owl.
+ * Larger ones (1M, 10M) go into a TDB2 store, which is only imported on
+ * the first run; run those with a large heap, e.g.
+ *   -p films=1000000,10000000 -jvmArgs -Xmx16g
+ */
+final class SyntheticCatalogs {
+
+    private static final Path DIRECTORY = Paths.get("target", "synthetic");
+    private static final int IN_MEMORY_LIMIT = 100_000;
+
+    private SyntheticCatalogs() {
+    }
+
+    /**
+     * @param films Number of films
+     * @return Generator of the catalog, for its ids and pool sizes
+     */
+    static SyntheticCatalogGenerator generator(int films) {
+        return new SyntheticCatalogGenerator(films, SyntheticCatalogGenerator.DEFAULT_SEED);
+    }
+
+    /**
+     * @param films Number of films
+     * @return The catalog file, generated if it does not exist yet
+     */
+    static Path file(int films) {
+        Path file = DIRECTORY.resolve("catalog-" + films + "-" + SyntheticCatalogGenerator.DEFAULT_SEED + ".nt.gz");
+        if (!Files.exists(file)) {
+            try {
+                // Written under a temporary name, so an interrupted run leaves no partial catalog
+                Path partial = file.resolveSibling(file.getFileName() + ".partial.nt.gz");
+                generator(films).write(partial);
+                Files.move(partial, file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * @param films Number of films
+     * @return The catalog, loaded into memory or opened from its TDB2 store
+     */
+    static OntologyManager load(int films) {
+        Path file = file(films);
+        if (films <= IN_MEMORY_LIMIT) {
+            return new OntologyManager(StorageMode.MEMORY, file.toString(), null);
+        }
+        return new OntologyManager(StorageMode.TDB2, file.toString(),
+                                   DIRECTORY.resolve("tdb2-" + films).toString());
+    }
+}
@@ -0,0 +1,111 @@
+package rs.ftn.ns.benchmark;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.OntologyUpdate;
+import rs.ftn.ns.ontology.SyntheticCatalogGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same small change to one film (its acting score and release year)
+ * made through OntologyManager.update(), which derives the indexes, the
+ * film store and the inferred triples from the change, and made through
+ * the model, after which every index and the store are rebuilt on their
+ * next lookup. Both are measured up to the point where every index
+ * matches the model again.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=rs.ftn.ns.benchmark.UpdateBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateBenchmark {
+
+    /**
+     * Films in the generated catalog
+     */
+    @Param({"10000"})
+    public int films;
+
+    private OntologyManager manager;
+    private Property actingScore;
+    private Property releaseYear;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        manager = SyntheticCatalogs.load(films);
+        String schemaNs = manager.getSchemaNamespace();
+        actingScore = manager.getOntologyModel().createProperty(schemaNs + "actingScore");
+        releaseYear = manager.getOntologyModel().createProperty(schemaNs + "releaseYear");
+        indexes();
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public int incrementalUpdate() {
+        int n = next++;
+        manager.update(new OntologyUpdate()
+            .setScore(filmId(n), "actingScore", n % 10)
+            .set(filmId(n), "releaseYear", 1950 + n % 70));
+        return indexes();
+    }
+
+    @Benchmark
+    public int writeAndRebuild() {
+        int n = next++;
+        manager.executeWrite(() -> {
+            Model model = manager.getOntologyModel();
+            Resource film = model.getResource(manager.getDataNamespace() + filmId(n));
+            film.removeAll(actingScore).removeAll(releaseYear);
+            film.addProperty(actingScore, Integer.toString(n % 10), XSDDatatype.XSDdecimal);
+            film.addProperty(releaseYear, Integer.toString(1950 + n % 70), XSDDatatype.XSDdecimal);
+        });
+        return indexes();
+    }
+
+    private String filmId(int n) {
+        return SyntheticCatalogGenerator.filmId(n % films);
+    }
+
+    private int indexes() {
+        return manager.getFilmIndex().size() + manager.getSimilarityIndex().size() +
+               manager.getTextIndex().size() + manager.getCollaborationGraph().size() +
+               manager.getFilmStore().size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(UpdateBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
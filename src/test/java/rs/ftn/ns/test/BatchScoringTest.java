@@ -0,0 +1,145 @@
+package rs.ftn.ns.test;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import rs.ftn.ns.fuzzy.CompiledFuzzyEngine;
+import rs.ftn.ns.fuzzy.FilmQualityEvaluator;
+import rs.ftn.ns.fuzzy.ScoringMode;
+import rs.ftn.ns.model.Film;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for batch scoring over primitive score arrays.
+ */
+public class BatchScoringTest {
+
+    private static final String FCL_FILE_PATH = "src/main/resources/fuzzy/film_quality.fcl";
+    private static final int FILMS = 100000;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private FilmQualityEvaluator evaluator;
+    private CompiledFuzzyEngine engine;
+    private double[][] columns;
+
+    @Before
+    public void setUp() {
+        evaluator = new FilmQualityEvaluator(ScoringMode.COMPILED);
+        engine = evaluator.getRuleBase().newCompiledEngine();
+
+        Random random = new Random(11);
+        columns = new double[5][FILMS];
+        for (double[] column : columns) {
+            for (int i = 0; i < FILMS; i++) {
+                column[i] = Math.round(random.nextDouble() * 100) / 10.0;
+            }
+        }
+    }
+
+    @Test
+    public void testBatchMatchesSingleScores() {
+        System.out.println("\n--- Test: Batch Matches Single Scores ---");
+
+        double[] quality = new double[FILMS];
+        long start = System.nanoTime();
+        evaluator.evaluateBatch(columns[0], columns[1], columns[2], columns[3], columns[4], quality);
+        long batchMs = (System.nanoTime() - start) / 1_000_000;
+
+        double[] inputs = new double[5];
+        for (int i = 0; i < FILMS; i++) {
+            for (int k = 0; k < 5; k++) {
+                inputs[k] = columns[k][i];
+            }
+            assertEquals("Film " + i, engine.evaluate(inputs), quality[i], 0.0);
+        }
+        System.out.println("Scored " + FILMS + " films in " + batchMs + " ms");
+    }
+
+    @Test
+    public void testSmallBatchAndFilms() {
+        System.out.println("\n--- Test: Small Batch From Films ---");
+
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Film film = new Film("batch" + i, "Batch Film " + i, 2020);
+            film.setDirectionScore(columns[0][i]);
+            film.setActingScore(columns[1][i]);
+            film.setScreenplayScore(columns[2][i]);
+            film.setVisualEffectsScore(columns[3][i]);
+            film.setCulturalSignificanceScore(columns[4][i]);
+            films.add(film);
+        }
+
+        double[] quality = evaluator.evaluateBatch(films);
+        assertEquals(films.size(), quality.length);
+        for (int i = 0; i < films.size(); i++) {
+            assertEquals(engine.evaluate(new double[] {columns[0][i], columns[1][i], columns[2][i],
+                                                       columns[3][i], columns[4][i]}),
+                         quality[i], 0.0);
+            assertEquals("Single films and batches use one engine", evaluator.evaluateFilm(films.get(i)),
+                         quality[i], 0.0);
+        }
+        assertEquals(0, evaluator.evaluateBatch(new ArrayList<>()).length);
+    }
+
+    @Test
+    public void testInferenceBatchMatchesJFuzzyLogic() {
+        System.out.println("\n--- Test: Inference Batch Matches jFuzzyLogic ---");
+
+        // The default mode scores batches with jFuzzyLogic too
+        FilmQualityEvaluator inference = new FilmQualityEvaluator();
+        double[] quality = new double[2000];
+        inference.evaluateBatch(slice(columns[0], 2000), slice(columns[1], 2000), slice(columns[2], 2000),
+                                slice(columns[3], 2000), slice(columns[4], 2000), quality);
+        for (int i = 0; i < quality.length; i++) {
+            assertEquals("Film " + i, inference.evaluateFilm(columns[0][i], columns[1][i], columns[2][i],
+                                                             columns[3][i], columns[4][i]),
+                         quality[i], 0.0);
+        }
+    }
+
+    @Test
+    public void testUncompilableRulesFallBack() throws Exception {
+        System.out.println("\n--- Test: Uncompilable Rules Fall Back To jFuzzyLogic ---");
+
+        // Center of area is jFuzzyLogic only
+        String fcl = new String(Files.readAllBytes(Paths.get(FCL_FILE_PATH)), StandardCharsets.UTF_8);
+        Path fclFile = tempFolder.newFile("film_quality.fcl").toPath();
+        Files.write(fclFile, fcl.replace("METHOD : COG;", "METHOD : COA;").getBytes(StandardCharsets.UTF_8));
+
+        FilmQualityEvaluator fallback = new FilmQualityEvaluator(fclFile, ScoringMode.COMPILED, 0);
+        assertFalse(fallback.getRuleBase().isCompilable());
+
+        double[] quality = new double[100];
+        fallback.evaluateBatch(slice(columns[0], 100), slice(columns[1], 100), slice(columns[2], 100),
+                               slice(columns[3], 100), slice(columns[4], 100), quality);
+        for (int i = 0; i < quality.length; i++) {
+            assertEquals("Film " + i, fallback.evaluateFilm(columns[0][i], columns[1][i], columns[2][i],
+                                                            columns[3][i], columns[4][i]),
+                         quality[i], 0.0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedLengths() {
+        System.out.println("\n--- Test: Mismatched Lengths ---");
+        evaluator.evaluateBatch(columns[0], columns[1], columns[2], columns[3], new double[1], new double[FILMS]);
+    }
+
+    private static double[] slice(double[] column, int size) {
+        return Arrays.copyOf(column, size);
+    }
+}
@@ -0,0 +1,180 @@
+package rs.ftn.ns.test;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.cache.CacheStats;
+import rs.ftn.ns.index.CollaborationGraph;
+import rs.ftn.ns.index.CollaborationGraph.Collaborator;
+import rs.ftn.ns.index.CollaborationGraph.Relation;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the people-and-films collaboration graph.
+ */
+public class CollaborationGraphTest {
+
+    private static final String LINK =
+        "(schema:directedBy|^schema:directedBy|schema:hasActor|^schema:hasActor|" +
+        "schema:writtenBy|^schema:writtenBy|schema:cinematographyBy|^schema:cinematographyBy|" +
+        "schema:producedBy|^schema:producedBy|schema:workedWith|^schema:workedWith)";
+
+    private OntologyManager manager;
+    private FilmQueryService queryService;
+
+    @Before
+    public void setUp() {
+        manager = new OntologyManager();
+        queryService = new FilmQueryService(manager);
+    }
+
+    @After
+    public void tearDown() {
+        queryService.close();
+    }
+
+    @Test
+    public void testFilmsOfDirector() {
+        System.out.println("\n--- Test: Films Of Director ---");
+
+        CollaborationGraph graph = manager.getCollaborationGraph();
+        System.out.println("Nodes: " + graph.size() + ", edges: " + graph.getEdgeCount());
+
+        List<String> films = graph.filmsWithinHops("Christopher_Nolan", 1);
+        films.forEach(id -> System.out.println("  " + graph.getName(id)));
+
+        assertEquals(queryService.findFilmsByDirector("nolan").size(), films.size());
+        assertEquals("Christopher Nolan", graph.getName("Christopher_Nolan"));
+        assertTrue(graph.withinHops("No_Such_Person", 2).isEmpty());
+        assertTrue(graph.withinHops("Christopher_Nolan", 0).isEmpty());
+    }
+
+    @Test
+    public void testHopsMatchPropertyPaths() {
+        System.out.println("\n--- Test: Hops Match Property Paths ---");
+
+        CollaborationGraph graph = manager.getCollaborationGraph();
+        for (String start : new String[] {"Christopher_Nolan", "Tom_Hanks", "Inception"}) {
+            for (int hops = 1; hops <= 3; hops++) {
+                List<String> found = graph.withinHops(start, hops);
+                System.out.println(start + ", " + hops + " hops: " + found.size());
+
+                assertEquals(sparqlWithinHops(start, hops), new TreeSet<>(found));
+                assertEquals("No node twice", found.size(), new TreeSet<>(found).size());
+            }
+        }
+    }
+
+    @Test
+    public void testTopCollaborators() {
+        System.out.println("\n--- Test: Top Collaborators ---");
+
+        CollaborationGraph graph = manager.getCollaborationGraph();
+        List<Collaborator> actors = graph.topCollaborators("Christopher_Nolan", Relation.HAS_ACTOR, 5);
+        actors.forEach(actor -> System.out.println("  " + actor));
+
+        assertFalse(actors.isEmpty());
+        assertEquals("Christian Bale", actors.get(0).getName());
+        assertEquals(2, actors.get(0).getSharedFilms());
+        for (int i = 1; i < actors.size(); i++) {
+            assertTrue(actors.get(i - 1).getSharedFilms() >= actors.get(i).getSharedFilms());
+        }
+
+        List<Collaborator> directors = graph.topCollaborators("Christian_Bale", Relation.DIRECTED_BY, 3);
+        assertEquals("Christopher_Nolan", directors.get(0).getPersonId());
+
+        try {
+            graph.topCollaborators("Christopher_Nolan", Relation.WORKED_WITH, 5);
+            fail("workedWith does not link people to films");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTraversalCache() {
+        System.out.println("\n--- Test: Traversal Cache ---");
+
+        CollaborationGraph graph = manager.getCollaborationGraph();
+        List<String> first = graph.withinHops("Tom_Hanks", 2);
+        List<String> second = graph.withinHops("Tom_Hanks", 2);
+        graph.topCollaborators("Tom_Hanks", Relation.DIRECTED_BY, 3);
+        graph.topCollaborators("Tom_Hanks", Relation.DIRECTED_BY, 3);
+
+        CacheStats stats = graph.getCacheStats();
+        System.out.println(stats);
+        assertSame(first, second);
+        assertEquals(2, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        try {
+            first.clear();
+            fail("Cached results must not be modifiable");
+        } catch (UnsupportedOperationException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGraphFollowsModelChanges() {
+        System.out.println("\n--- Test: Graph Follows Model Changes ---");
+
+        CollaborationGraph before = manager.getCollaborationGraph();
+        assertSame("Unchanged model should reuse the graph", before, manager.getCollaborationGraph());
+
+        OntModel model = manager.getOntologyModel();
+        String schemaNs = manager.getSchemaNamespace();
+        String dataNs = manager.getDataNamespace();
+        Resource nolan = model.createResource(dataNs + "Christopher_Nolan");
+        Resource hanks = model.createResource(dataNs + "Tom_Hanks");
+        nolan.addProperty(model.createProperty(schemaNs + "workedWith"), hanks);
+
+        CollaborationGraph after = manager.getCollaborationGraph();
+        assertNotSame(before, after);
+        assertEquals(before.getEdgeCount() + 1, after.getEdgeCount());
+        assertFalse(before.withinHops("Christopher_Nolan", 1).contains("Tom_Hanks"));
+        assertTrue(after.withinHops("Christopher_Nolan", 1).contains("Tom_Hanks"));
+        assertTrue(after.filmsWithinHops("Christopher_Nolan", 2).contains("Forrest_Gump"));
+        assertEquals(sparqlWithinHops("Christopher_Nolan", 2), new TreeSet<>(after.withinHops("Christopher_Nolan", 2)));
+
+        Resource film = model.createResource(dataNs + "Graph_Test_Film");
+        film.addProperty(RDF.type, model.createResource(schemaNs + "Film"));
+        film.addProperty(model.createProperty(schemaNs + "directedBy"), nolan);
+        assertTrue(manager.getCollaborationGraph().filmsWithinHops("Christopher_Nolan", 1).contains("Graph_Test_Film"));
+    }
+
+    /**
+     * Nodes within the given number of hops, as a SPARQL property path
+     * (E/E?/E? ...), without the start node
+     */
+    private Set<String> sparqlWithinHops(String start, int hops) {
+        StringBuilder path = new StringBuilder(LINK);
+        for (int hop = 1; hop < hops; hop++) {
+            path.append("/").append(LINK).append("?");
+        }
+        String query =
+            "PREFIX data: <" + manager.getDataNamespace() + "> " +
+            "PREFIX schema: <" + manager.getSchemaNamespace() + "> " +
+            "SELECT DISTINCT ?node WHERE { data:" + start + " " + path + " ?node . " +
+            "FILTER(?node != data:" + start + ") }";
+
+        Set<String> nodes = new TreeSet<>();
+        ResultSet results = manager.executeQuery(query);
+        while (results.hasNext()) {
+            QuerySolution solution = results.next();
+            nodes.add(solution.getResource("node").getLocalName());
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,179 @@
+package rs.ftn.ns.test;
+
+import net.sourceforge.jFuzzyLogic.FIS;
+import net.sourceforge.jFuzzyLogic.FunctionBlock;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.fuzzy.CompiledFuzzyEngine;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Test class for the compiled fuzzy inference engine.
+ */
+public class CompiledFuzzyEngineTest {
+
+    private static final String FCL_FILE_PATH = "src/main/resources/fuzzy/film_quality.fcl";
+
+    /**
+     * Largest difference allowed against jFuzzyLogic; well below the 0.1
+     * steps the scores are reported in. Not yet measured against the real
+     * jar, see testMatchesJFuzzyLogic.
+     */
+    private static final double TOLERANCE = 0.01;
+
+    // A class of the real jFuzzyLogic 3.0 jar, not of stand-ins for its API
+    private static final String JFUZZYLOGIC_CLASS = "net.sourceforge.jFuzzyLogic.defuzzifier.DefuzzifierCenterOfGravity";
+
+    private CompiledFuzzyEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = CompiledFuzzyEngine.load(FCL_FILE_PATH);
+    }
+
+    /**
+     * Compares with jFuzzyLogic itself (lib/jFuzzyLogic.jar, see README.md),
+     * not with FilmQualityEvaluator, which may score with the compiled
+     * engine too. Skipped without the real jar, as a stand-in for its API
+     * says nothing about the library.
+     */
+    @Test
+    public void testMatchesJFuzzyLogic() throws Exception {
+        System.out.println("\n--- Test: Compiled Engine Matches jFuzzyLogic ---");
+        assumeTrue("Needs the jFuzzyLogic 3.0 jar", isOnClasspath(JFUZZYLOGIC_CLASS));
+
+        String fcl = new String(Files.readAllBytes(Paths.get(FCL_FILE_PATH)), StandardCharsets.UTF_8);
+        FunctionBlock reference = FIS.createFromString(fcl, true).getFunctionBlock(engine.getName());
+        assertNotNull(reference);
+        double maxError = 0;
+        int points = 0;
+
+        // Full grid in steps of 1.25, including every term's corner points
+        double[] grid = {0, 1.25, 2.5, 3, 3.75, 5, 6.25, 7, 7.5, 8.75, 9, 10};
+        for (double d : grid) {
+            for (double a : grid) {
+                for (double s : grid) {
+                    for (double v : new double[] {0, 3, 5, 7, 9, 10}) {
+                        for (double c : new double[] {0, 3, 5, 7, 9, 10}) {
+                            maxError = Math.max(maxError, compare(reference, d, a, s, v, c));
+                            points++;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Random points in between
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            maxError = Math.max(maxError, compare(reference, 10 * random.nextDouble(), 10 * random.nextDouble(),
+                                                  10 * random.nextDouble(), 10 * random.nextDouble(),
+                                                  10 * random.nextDouble()));
+            points++;
+        }
+
+        System.out.printf("Compared %d points, max difference %.6f (tolerance %.2f)%n", points, maxError, TOLERANCE);
+    }
+
+    private static boolean isOnClasspath(String className) {
+        try {
+            Class.forName(className, false, CompiledFuzzyEngineTest.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private double compare(FunctionBlock reference, double d, double a, double s, double v, double c) {
+        reference.setVariable("direction", d);
+        reference.setVariable("acting", a);
+        reference.setVariable("screenplay", s);
+        reference.setVariable("visualEffects", v);
+        reference.setVariable("culturalSignificance", c);
+        reference.evaluate();
+        double expected = reference.getVariable("quality").getValue();
+        double actual = engine.evaluate(new double[] {d, a, s, v, c});
+        double error = Math.abs(expected - actual);
+        assertTrue(String.format("(%.2f, %.2f, %.2f, %.2f, %.2f): jFuzzyLogic %.4f, compiled %.4f",
+                                 d, a, s, v, c, expected, actual),
+                   error <= TOLERANCE);
+        return error;
+    }
+
+    @Test
+    public void testInputOrderFollowsFcl() {
+        System.out.println("\n--- Test: Input Order Follows FCL ---");
+
+        assertEquals("film_quality_assessment", engine.getName());
+        assertEquals(0, engine.inputIndex("direction"));
+        assertEquals(4, engine.inputIndex("culturalSignificance"));
+        assertEquals(-1, engine.inputIndex("budget"));
+    }
+
+    @Test
+    public void testKnownScores() {
+        System.out.println("\n--- Test: Known Scores ---");
+
+        double excellent = engine.evaluate(new double[] {9.5, 9.0, 9.0, 8.5, 9.0});
+        double poor = engine.evaluate(new double[] {3.0, 3.0, 2.5, 3.0, 2.0});
+        System.out.println("Excellent film: " + excellent);
+        System.out.println("Poor film: " + poor);
+        assertTrue(excellent > 7.0);
+        assertTrue(poor < 5.0);
+
+        // No rule fires: DEFAULT := 5
+        assertEquals(5.0, engine.evaluate(new double[] {6.0, 10.0, 10.0, 0.0, 0.0}), 0.0);
+    }
+
+    @Test
+    public void testNoAllocationPerEvaluation() {
+        System.out.println("\n--- Test: No Allocation Per Evaluation ---");
+
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        double[] inputs = {7.5, 8.0, 6.5, 9.0, 7.0};
+
+        for (int i = 0; i < 20000; i++) {
+            inputs[0] = (i % 100) / 10.0;
+            engine.evaluate(inputs);
+        }
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        double sum = 0;
+        for (int i = 0; i < 100000; i++) {
+            inputs[0] = (i % 100) / 10.0;
+            sum += engine.evaluate(inputs);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        System.out.println("Allocated over 100000 evaluations: " + allocated + " bytes (checksum " + sum + ")");
+        assertTrue("Evaluation should not allocate", allocated < 100000);
+    }
+
+    @Test
+    public void testCopiesShareRules() {
+        System.out.println("\n--- Test: Copies Share Rules ---");
+
+        CompiledFuzzyEngine copy = engine.copy();
+        double[] inputs = {8.0, 7.0, 9.0, 5.0, 6.0};
+        assertEquals(engine.evaluate(inputs), copy.evaluate(inputs), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnsupportedFcl() {
+        System.out.println("\n--- Test: Rejects Unsupported FCL ---");
+        CompiledFuzzyEngine.fromFcl("FUNCTION_BLOCK x VAR_INPUT a : REAL; END_VAR " +
+                                    "VAR_OUTPUT q : REAL; END_VAR " +
+                                    "DEFUZZIFY q TERM t := (0, 0) (1, 1); METHOD : MM; END_DEFUZZIFY " +
+                                    "END_FUNCTION_BLOCK");
+    }
+}
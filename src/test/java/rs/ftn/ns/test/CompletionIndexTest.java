@@ -0,0 +1,231 @@
+package rs.ftn.ns.test;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.index.CompletionIndex;
+import rs.ftn.ns.index.CompletionIndex.Completion;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the autocomplete index.
+ */
+public class CompletionIndexTest {
+
+    private static final String[] WORDS = {
+        "star", "stark", "start", "wars", "war", "ward", "night", "knight", "dark", "dart",
+        "return", "returns", "king", "kings", "ring", "rings", "lord", "load", "godfather", "father"
+    };
+
+    private OntologyManager manager;
+    private FilmQueryService queryService;
+
+    @Before
+    public void setUp() {
+        manager = new OntologyManager();
+        queryService = new FilmQueryService(manager);
+    }
+
+    @After
+    public void tearDown() {
+        queryService.close();
+    }
+
+    @Test
+    public void testCompletesTitlesPeopleAndGenres() {
+        System.out.println("\n--- Test: Completes Titles, People And Genres ---");
+
+        CompletionIndex index = manager.getCompletionIndex();
+        System.out.println("Names: " + index.size() + ", trie nodes: " + index.getNodeCount());
+
+        List<Completion> godfather = queryService.autocomplete("godf", 5);
+        System.out.println("godf: " + godfather);
+        assertEquals("The Godfather", godfather.get(0).getText());
+        assertEquals(CompletionIndex.Kind.FILM, godfather.get(0).getKind());
+
+        List<Completion> nolan = queryService.autocomplete("nol", 5);
+        System.out.println("nol: " + nolan);
+        assertEquals("Christopher Nolan", nolan.get(0).getText());
+        assertEquals(CompletionIndex.Kind.PERSON, nolan.get(0).getKind());
+        assertEquals("Christopher Nolan", queryService.autocomplete("Christopher No", 5).get(0).getText());
+
+        List<Completion> drama = queryService.autocomplete("dra", 5);
+        System.out.println("dra: " + drama);
+        assertTrue(drama.stream().anyMatch(c -> c.getKind() == CompletionIndex.Kind.GENRE && c.getId().equals("Drama")));
+
+        // Typos
+        assertEquals("The Godfather", queryService.autocomplete("godfahter", 1).get(0).getText());
+        assertEquals(1, queryService.autocomplete("ncolan", 1).get(0).getDistance());
+        assertEquals("Christopher Nolan", queryService.autocomplete("ncolan", 1).get(0).getText());
+        assertTrue(queryService.autocomplete("ncolan", 1, 0).isEmpty());
+
+        assertTrue(queryService.autocomplete("", 5).isEmpty());
+        assertTrue(queryService.autocomplete("zzzz", 5).isEmpty());
+    }
+
+    @Test
+    public void testMostPopularFirst() {
+        System.out.println("\n--- Test: Most Popular First ---");
+
+        CompletionIndex index = CompletionIndex.builder()
+            .add(CompletionIndex.Kind.FILM, "Star_Wars", "Star Wars", 1_400_000)
+            .add(CompletionIndex.Kind.FILM, "A_Star_Is_Born", "A Star Is Born", 400_000)
+            .add(CompletionIndex.Kind.FILM, "Stardust", "Stardust", 280_000)
+            .add(CompletionIndex.Kind.FILM, "Starship_Troopers", "Starship Troopers", 320_000)
+            .add(CompletionIndex.Kind.PERSON, "Jason_Statham", "Jason Statham", 2_000_000)
+            .add(CompletionIndex.Kind.FILM, "Amelie", "Le Fabuleux Destin d'Amélie Poulain", 800_000)
+            .build(0);
+
+        List<Completion> star = index.complete("star", 10, 0);
+        System.out.println("star: " + star);
+        assertEquals(texts(star), List.of("Star Wars", "A Star Is Born", "Starship Troopers", "Stardust"));
+
+        List<Completion> sta = index.complete("sta", 2);
+        assertEquals(texts(sta), List.of("Jason Statham", "Star Wars"));
+
+        assertEquals("Le Fabuleux Destin d'Amélie Poulain", index.complete("AMEL", 1).get(0).getText());
+
+        // "satr" is one swap away from "star", but two edits from "stat(ham)"
+        List<Completion> typo = index.complete("satr", 10);
+        System.out.println("satr: " + typo);
+        assertEquals(texts(star), texts(typo));
+        assertEquals(1, typo.get(0).getDistance());
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        System.out.println("\n--- Test: Matches Brute Force ---");
+
+        Random random = new Random(23);
+        CompletionIndex.Builder builder = CompletionIndex.builder();
+        List<String> names = new ArrayList<>();
+        List<Long> weights = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+            long weight = random.nextInt(1000);
+            builder.add(CompletionIndex.Kind.FILM, "Film_" + i, name, weight);
+            names.add(name);
+            weights.add(weight);
+        }
+        CompletionIndex index = builder.build(0);
+        System.out.println("Names: " + index.size() + ", trie nodes: " + index.getNodeCount());
+
+        String[] prefixes = { "st", "star", "satr", "knigt", "ringz", "godfahter", "wra", "lord k", "dark nihgt" };
+        for (String prefix : prefixes) {
+            for (int maxEdits = 0; maxEdits <= 2; maxEdits++) {
+                List<Completion> completions = index.complete(prefix, 20, maxEdits);
+
+                // Distance and weight of the 20 best, by brute force
+                List<long[]> expected = new ArrayList<>();
+                for (int i = 0; i < names.size(); i++) {
+                    int distance = prefixDistance(prefix, names.get(i), Math.min(maxEdits, prefix.length() - 1));
+                    if (distance >= 0) {
+                        expected.add(new long[] { distance, weights.get(i) });
+                    }
+                }
+                expected.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[1], a[1]));
+                expected = expected.subList(0, Math.min(20, expected.size()));
+
+                assertEquals(prefix + "/" + maxEdits, expected.size(), completions.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(prefix + "/" + maxEdits, expected.get(i)[0], completions.get(i).getDistance());
+                    assertEquals(prefix + "/" + maxEdits, expected.get(i)[1], completions.get(i).getWeight());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLookupSpeed() {
+        System.out.println("\n--- Test: Lookup Speed ---");
+
+        Random random = new Random(5);
+        CompletionIndex.Builder builder = CompletionIndex.builder();
+        for (int i = 0; i < 200_000; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            builder.add(CompletionIndex.Kind.FILM, "Film_" + i, name, random.nextInt(1_000_000));
+        }
+        CompletionIndex index = builder.build(0);
+
+        String[] prefixes = { "s", "st", "sta", "star", "star w", "kni", "knigt", "godfahter" };
+        int rounds = 20_000;
+        for (int i = 0; i < rounds; i++) {
+            index.complete(prefixes[i % prefixes.length], 10);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            assertFalse(index.complete(prefixes[i % prefixes.length], 10).isEmpty());
+        }
+        double us = (System.nanoTime() - start) / 1000.0 / rounds;
+        System.out.printf("%d names, %d nodes: %.1f us per lookup%n", index.size(), index.getNodeCount(), us);
+    }
+
+    @Test
+    public void testRebuiltInBackground() throws InterruptedException {
+        System.out.println("\n--- Test: Rebuilt In Background ---");
+
+        CompletionIndex before = manager.getCompletionIndex();
+        OntModel model = manager.getOntologyModel();
+        String schemaNs = manager.getSchemaNamespace();
+        Resource film = model.createResource(manager.getDataNamespace() + "Completion_Test_Film");
+        film.addProperty(RDF.type, model.createResource(schemaNs + "Film"));
+        film.addProperty(model.createProperty(schemaNs + "hasTitle"), "Zyzzyva Returns");
+
+        // Lookups never wait: they get the old index until the new one is ready
+        CompletionIndex current = manager.getCompletionIndex();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (current.getModelVersion() != manager.getModelVersion() && System.currentTimeMillis() < deadline) {
+            assertTrue(current == before || current.getModelVersion() > before.getModelVersion());
+            Thread.sleep(10);
+            current = manager.getCompletionIndex();
+        }
+        assertNotSame(before, current);
+        assertEquals(manager.getModelVersion(), current.getModelVersion());
+        assertEquals("Zyzzyva Returns", queryService.autocomplete("zyzz", 1).get(0).getText());
+
+        manager.reload();
+        deadline = System.currentTimeMillis() + 10_000;
+        while (queryService.autocomplete("zyzz", 1).size() == 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("Reloaded model no longer has the film", queryService.autocomplete("zyzz", 1).isEmpty());
+    }
+
+    /**
+     * Fewest typos between the prefix and the start of any word-suffix of the name, or -1
+     */
+    private static int prefixDistance(String prefix, String name, int maxEdits) {
+        String key = String.join(" ", TextNormalizer.tokens(prefix));
+        List<String> words = TextNormalizer.tokens(name);
+        int best = -1;
+        for (int w = 0; w < words.size(); w++) {
+            String suffix = String.join(" ", words.subList(w, words.size()));
+            for (int end = 0; end <= suffix.length(); end++) {
+                int distance = TextNormalizer.editDistance(key, suffix.substring(0, end), maxEdits);
+                if (distance <= maxEdits && (best < 0 || distance < best)) {
+                    best = distance;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static List<String> texts(List<Completion> completions) {
+        List<String> texts = new ArrayList<>();
+        for (Completion completion : completions) {
+            texts.add(completion.getText());
+        }
+        return texts;
+    }
+}
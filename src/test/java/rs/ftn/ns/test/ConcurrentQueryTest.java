@@ -0,0 +1,143 @@
+package rs.ftn.ns.test;
+
+import org.junit.Test;
+import rs.ftn.ns.cache.CacheStats;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.OntologyRegistry;
+import rs.ftn.ns.ontology.StorageMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Multi-threaded stress test for FilmQueryService instances sharing
+ * one ontology through OntologyRegistry.
+ */
+public class ConcurrentQueryTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS_PER_THREAD = 25;
+    private static final int SERVICES = 50;
+
+    @Test
+    public void testConcurrentReadsAreConsistent() throws Exception {
+        System.out.println("\n--- Test: Concurrent Reads Are Consistent ---");
+
+        FilmQueryService reference = new FilmQueryService();
+        String expected = snapshot(reference);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit((Callable<Integer>) () -> {
+                int checked = 0;
+                for (int i = 0; i < ROUNDS_PER_THREAD; i++) {
+                    // A fresh service per round, like a request handler would do
+                    FilmQueryService service = new FilmQueryService();
+                    try {
+                        assertEquals("Results should not change under concurrency", expected, snapshot(service));
+                        checked++;
+                    } finally {
+                        service.close();
+                    }
+                }
+                return checked;
+            }));
+        }
+
+        int total = 0;
+        for (Future<Integer> future : futures) {
+            total += future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(THREADS * ROUNDS_PER_THREAD, total);
+        assertEquals("Only the reference service should still hold the ontology",
+                     1, OntologyRegistry.getReferenceCount(StorageMode.MEMORY));
+
+        reference.close();
+        assertEquals(0, OntologyRegistry.getReferenceCount(StorageMode.MEMORY));
+
+        System.out.println("Consistent results across " + total + " concurrent service instances");
+    }
+
+    @Test
+    public void testMemoryStaysFlat() {
+        System.out.println("\n--- Test: Memory Stays Flat As Services Are Added ---");
+
+        List<FilmQueryService> services = new ArrayList<>();
+        services.add(new FilmQueryService());
+        services.get(0).getAllFilms();
+
+        OntologyManager shared = OntologyRegistry.acquire();
+        CacheStats before = shared.getResultCache().getStats();
+        for (int i = 0; i < SERVICES; i++) {
+            FilmQueryService service = new FilmQueryService();
+            service.getAllFilms();
+            services.add(service);
+        }
+        CacheStats after = shared.getResultCache().getStats();
+
+        // Counted, not measured on the heap: the extra services load nothing of their own
+        System.out.println("Cache for " + SERVICES + " extra services: " + before + " -> " + after);
+        assertEquals("All services should share one ontology",
+                     SERVICES + 2, OntologyRegistry.getReferenceCount(StorageMode.MEMORY));
+        assertEquals("Extra services should not load the films again", before.getMisses(), after.getMisses());
+        assertEquals("Extra services should not keep results of their own", before.getSize(), after.getSize());
+        assertEquals(SERVICES, after.getHits() - before.getHits());
+        OntologyRegistry.release(shared);
+
+        for (FilmQueryService service : services) {
+            service.close();
+        }
+        assertEquals(0, OntologyRegistry.getReferenceCount(StorageMode.MEMORY));
+    }
+
+    @Test
+    public void testCloseTwiceKeepsSharedOntology() {
+        System.out.println("\n--- Test: Close Twice Keeps Shared Ontology ---");
+
+        FilmQueryService keep = new FilmQueryService();
+        FilmQueryService closing = new FilmQueryService();
+        closing.close();
+        closing.close();
+        assertEquals("A second close should not release again",
+                     1, OntologyRegistry.getReferenceCount(StorageMode.MEMORY));
+
+        try (Stream<Film> films = keep.streamAllFilms()) {
+            assertTrue(films.count() > 0);
+        }
+
+        keep.close();
+        keep.close();
+        assertEquals(0, OntologyRegistry.getReferenceCount(StorageMode.MEMORY));
+    }
+
+    private static String snapshot(FilmQueryService service) {
+        StringBuilder sb = new StringBuilder();
+        appendTitles(sb, service.getAllFilms());
+        appendTitles(sb, service.findFilmsByGenre("Drama"));
+        appendTitles(sb, service.findFilmsByDirector("Christopher Nolan"));
+        appendTitles(sb, service.findFilmsByYearRange(1990, 2010));
+        return sb.toString();
+    }
+
+    private static void appendTitles(StringBuilder sb, List<Film> films) {
+        List<String> titles = new ArrayList<>();
+        for (Film film : films) {
+            titles.add(film.getTitle() + "/" + film.getReleaseYear());
+        }
+        titles.sort(null);
+        sb.append(titles).append('\n');
+    }
+}
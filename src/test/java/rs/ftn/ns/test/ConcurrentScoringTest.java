@@ -0,0 +1,93 @@
+package rs.ftn.ns.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.fuzzy.FilmQualityEvaluator;
+import rs.ftn.ns.fuzzy.FuzzyRuleBase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for scoring films from several threads with one evaluator.
+ */
+public class ConcurrentScoringTest {
+
+    private static final String FCL_FILE_PATH = "src/main/resources/fuzzy/film_quality.fcl";
+    private static final int THREADS = 8;
+    private static final int FILMS = 2000;
+
+    private FilmQualityEvaluator evaluator;
+    private double[][] scores;
+
+    @Before
+    public void setUp() {
+        evaluator = new FilmQualityEvaluator();
+
+        Random random = new Random(7);
+        scores = new double[FILMS][5];
+        for (double[] film : scores) {
+            for (int i = 0; i < film.length; i++) {
+                film[i] = Math.round(random.nextDouble() * 100) / 10.0;
+            }
+        }
+    }
+
+    @Test
+    public void testRuleBaseIsShared() throws Exception {
+        System.out.println("\n--- Test: Rule Base Is Shared ---");
+
+        FuzzyRuleBase ruleBase = FuzzyRuleBase.load(FCL_FILE_PATH);
+        assertSame("Same FCL should not be parsed again", ruleBase, FuzzyRuleBase.load(FCL_FILE_PATH));
+        assertSame(ruleBase, evaluator.getRuleBase());
+        assertEquals(64, ruleBase.getHash().length());
+    }
+
+    @Test
+    public void testConcurrentScoresMatchSerial() throws Exception {
+        System.out.println("\n--- Test: Concurrent Scores Match Serial ---");
+
+        double[] expected = new double[FILMS];
+        for (int i = 0; i < FILMS; i++) {
+            expected[i] = score(i);
+        }
+
+        // Every thread scores every film, each starting at a different offset
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<double[]>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t * FILMS / THREADS;
+            Callable<double[]> task = () -> {
+                start.await();
+                double[] actual = new double[FILMS];
+                for (int n = 0; n < FILMS; n++) {
+                    int i = (offset + n) % FILMS;
+                    actual[i] = score(i);
+                }
+                return actual;
+            };
+            results.add(executor.submit(task));
+        }
+        start.countDown();
+
+        for (Future<double[]> result : results) {
+            assertArrayEquals(expected, result.get(), 0.0);
+        }
+        executor.shutdown();
+        System.out.println(THREADS + " threads scored " + FILMS + " films each, all matching the serial scores");
+    }
+
+    private double score(int i) {
+        double[] film = scores[i];
+        return evaluator.evaluateFilm(film[0], film[1], film[2], film[3], film[4]);
+    }
+}
@@ -0,0 +1,151 @@
+package rs.ftn.ns.test;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.index.FilmCriteria;
+import rs.ftn.ns.index.FilmIndex;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the in-memory secondary film indexes.
+ */
+public class FilmIndexTest {
+
+    private static final int ROUNDS = 2000;
+
+    private OntologyManager manager;
+    private FilmQueryService queryService;
+
+    @Before
+    public void setUp() {
+        manager = new OntologyManager();
+        queryService = new FilmQueryService(manager);
+    }
+
+    @After
+    public void tearDown() {
+        queryService.close();
+    }
+
+    @Test
+    public void testIndexMatchesSparql() {
+        System.out.println("\n--- Test: Index Matches SPARQL ---");
+
+        // The streaming methods still run the SPARQL queries
+        assertEquals(titles(queryService.streamAllFilms()), titles(queryService.getAllFilms()));
+        assertEquals(titles(queryService.streamFilmsByGenre("Drama")), titles(queryService.findFilmsByGenre("Drama")));
+        assertEquals(titles(queryService.streamFilmsByDirector("nolan")), titles(queryService.findFilmsByDirector("nolan")));
+        assertEquals(titles(queryService.streamFilmsByYearRange(1990, 1999)),
+                     titles(queryService.findFilmsByYearRange(1990, 1999)));
+
+        FilmIndex index = manager.getFilmIndex();
+        System.out.println("Indexed films: " + index.size());
+        System.out.println("Genres: " + index.getGenres());
+        System.out.println("Countries: " + index.getCountries());
+        System.out.println("Languages: " + index.getLanguages());
+    }
+
+    @Test
+    public void testYearRangeIsOrdered() {
+        System.out.println("\n--- Test: Year Range Is Ordered ---");
+
+        List<Film> films = queryService.findFilmsByYearRange(1990, 2010);
+        for (int i = 1; i < films.size(); i++) {
+            assertTrue(films.get(i - 1).getReleaseYear() <= films.get(i).getReleaseYear());
+        }
+        assertTrue(queryService.findFilmsByYearRange(2010, 1990).isEmpty());
+    }
+
+    @Test
+    public void testIntersectCriteria() {
+        System.out.println("\n--- Test: Intersect Criteria ---");
+
+        List<Film> dramas = queryService.findFilmsByGenre("Drama");
+        Set<String> ninetiesDramas = queryService.findFilmsByYearRange(1990, 1999).stream()
+            .map(Film::getTitle)
+            .filter(titles(dramas)::contains)
+            .collect(Collectors.toSet());
+
+        List<Film> films = queryService.findFilms(FilmCriteria.any().genre("Drama").years(1990, 1999));
+        System.out.println("Dramas from the 1990s: " + films.size());
+        assertEquals(ninetiesDramas, titles(films));
+
+        List<Film> english = queryService.findFilms(FilmCriteria.any().language("English").country("USA"));
+        assertFalse(english.isEmpty());
+        assertTrue(titles(queryService.getAllFilms()).containsAll(titles(english)));
+
+        assertTrue(queryService.findFilms(FilmCriteria.any().genre("Drama").genre("No Such Genre")).isEmpty());
+        assertEquals(queryService.getAllFilms().size(), queryService.findFilms(FilmCriteria.any()).size());
+    }
+
+    @Test
+    public void testIndexFollowsModelChanges() {
+        System.out.println("\n--- Test: Index Follows Model Changes ---");
+
+        FilmIndex before = manager.getFilmIndex();
+        assertSame("Unchanged model should reuse the index", before, manager.getFilmIndex());
+
+        OntModel model = manager.getOntologyModel();
+        String schemaNs = manager.getSchemaNamespace();
+        String dataNs = manager.getDataNamespace();
+        Resource film = model.createResource(dataNs + "Index_Test_Film");
+        film.addProperty(RDF.type, model.createResource(schemaNs + "Film"));
+        film.addProperty(model.createProperty(schemaNs + "hasTitle"), "Index Test Film");
+        film.addProperty(model.createProperty(schemaNs + "spokenIn"), model.createResource(dataNs + "Korean"));
+
+        FilmIndex after = manager.getFilmIndex();
+        assertNotSame(before, after);
+        assertEquals(before.size() + 1, after.size());
+        assertTrue(titles(queryService.findFilms(FilmCriteria.any().language("Korean"))).contains("Index Test Film"));
+    }
+
+    @Test
+    public void testDirectorLookupSpeed() {
+        System.out.println("\n--- Test: Director Lookup, Index vs SPARQL ---");
+
+        FilmIndex index = manager.getFilmIndex();
+        FilmCriteria criteria = FilmCriteria.any().director("nolan");
+        for (int i = 0; i < ROUNDS / 4; i++) {
+            index.find(criteria);
+            titles(queryService.streamFilmsByDirector("nolan"));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            index.find(criteria);
+        }
+        double indexUs = (System.nanoTime() - start) / 1000.0 / ROUNDS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            titles(queryService.streamFilmsByDirector("nolan"));
+        }
+        double sparqlUs = (System.nanoTime() - start) / 1000.0 / ROUNDS;
+
+        System.out.printf("Index:  %.1f us/call%n", indexUs);
+        System.out.printf("SPARQL: %.1f us/call%n", sparqlUs);
+    }
+
+    private static Set<String> titles(List<Film> films) {
+        return films.stream().map(Film::getTitle).collect(Collectors.toSet());
+    }
+
+    private static Set<String> titles(Stream<Film> films) {
+        try (Stream<Film> stream = films) {
+            return stream.map(Film::getTitle).collect(Collectors.toSet());
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package rs.ftn.ns.test;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+import rs.ftn.ns.index.FilmStore;
+import rs.ftn.ns.model.Actor;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.model.Writer;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the dictionary-encoded film store.
+ */
+public class FilmStoreTest {
+
+    private static final int SYNTHETIC_FILMS = 10000;
+
+    private OntologyManager manager;
+    private FilmQueryService queryService;
+
+    @Before
+    public void setUp() {
+        manager = new OntologyManager();
+        queryService = new FilmQueryService(manager);
+    }
+
+    @After
+    public void tearDown() {
+        queryService.close();
+    }
+
+    @Test
+    public void testStoreMatchesHydration() {
+        System.out.println("\n--- Test: Store Matches Hydration ---");
+
+        FilmStore store = manager.getFilmStore();
+        System.out.println("Films: " + store.size() + ", shared strings: " + store.getDictionarySize());
+
+        List<Film> films = queryService.getAllFilms();
+        assertEquals(films.size(), store.size());
+        for (Film film : films) {
+            assertEquals(describe(queryService.loadFilm(film.getId())), describe(store.getFilm(film.getId())));
+        }
+        assertNull(store.getFilm("No_Such_Film"));
+        assertEquals(-1, store.ordinalOf("No_Such_Film"));
+    }
+
+    @Test
+    public void testFilmsAreDetached() {
+        System.out.println("\n--- Test: Films Are Detached ---");
+
+        FilmStore store = manager.getFilmStore();
+        Film film = store.getFilm("Inception");
+        film.setTitle("Changed");
+        film.getGenres().clear();
+
+        assertEquals("Inception", store.getFilm("Inception").getTitle());
+        assertFalse(store.getFilm("Inception").getGenres().isEmpty());
+        assertSame("Unchanged model should reuse the store", store, manager.getFilmStore());
+    }
+
+    @Test
+    public void testStoreFollowsModelChanges() {
+        System.out.println("\n--- Test: Store Follows Model Changes ---");
+
+        FilmStore before = manager.getFilmStore();
+        addSyntheticFilms(3);
+
+        FilmStore after = manager.getFilmStore();
+        assertNotSame(before, after);
+        assertEquals(before.size() + 3, after.size());
+        assertEquals(describe(queryService.loadFilm("Store_Film_1")), describe(after.getFilm("Store_Film_1")));
+    }
+
+    @Test
+    public void testHeapPerFilm() {
+        System.out.println("\n--- Test: Heap Per Film (" + SYNTHETIC_FILMS + " films) ---");
+
+        List<String> ids = addSyntheticFilms(SYNTHETIC_FILMS);
+        List<Film> films = queryService.loadFilms(ids);
+        FilmStore store = manager.getFilmStore();
+
+        long objects = GraphLayout.parseInstance(films).totalSize();
+        long compact = GraphLayout.parseInstance(store).totalSize();
+        System.out.printf("Film objects: %d bytes/film%n", objects / store.size());
+        System.out.printf("Film store:   %d bytes/film%n", compact / store.size());
+
+        assertTrue(compact * 2 < objects);
+    }
+
+    /**
+     * Every field of a film, so two films can be compared as strings
+     */
+    private static String describe(Film film) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(film.getId()).append('|').append(film.getTitle()).append('|').append(film.getOriginalTitle())
+          .append('|').append(film.getReleaseYear()).append('|').append(film.getDuration())
+          .append('|').append(film.getCountry()).append('|').append(film.getLanguage())
+          .append('|').append(film.getDirector() != null ? film.getDirector().getId() + "/" +
+                                                           film.getDirector().getName() : null);
+        for (Actor actor : film.getActors()) {
+            sb.append("|actor ").append(actor.getId()).append('/').append(actor.getName());
+        }
+        for (Writer writer : film.getWriters()) {
+            sb.append("|writer ").append(writer.getId()).append('/').append(writer.getName());
+        }
+        sb.append('|').append(film.getGenres()).append('|').append(film.getAwards())
+          .append('|').append(film.getBudget()).append('|').append(film.getBoxOffice())
+          .append('|').append(film.getImdbRating()).append('|').append(film.getImdbVotes())
+          .append('|').append(film.getDirectionScore()).append('|').append(film.getActingScore())
+          .append('|').append(film.getScreenplayScore()).append('|').append(film.getVisualEffectsScore())
+          .append('|').append(film.getCulturalSignificanceScore())
+          .append('|').append(film.getQualityScore()).append('|').append(film.getQualityCategory())
+          .append('|').append(film.getSynopsis());
+        return sb.toString();
+    }
+
+    /**
+     * Adds films that share pools of people, genres, countries, languages
+     * and awards, like real films do
+     */
+    private List<String> addSyntheticFilms(int count) {
+        String schemaNs = manager.getSchemaNamespace();
+        String dataNs = manager.getDataNamespace();
+        Model films = ModelFactory.createDefaultModel();
+        Resource filmClass = films.createResource(schemaNs + "Film");
+        Property hasTitle = films.createProperty(schemaNs + "hasTitle");
+        Property synopsis = films.createProperty(schemaNs + "synopsis");
+        Property releaseYear = films.createProperty(schemaNs + "releaseYear");
+        Property duration = films.createProperty(schemaNs + "duration");
+        Property imdbRating = films.createProperty(schemaNs + "imdbRating");
+        Property budget = films.createProperty(schemaNs + "budget");
+        Property directedBy = films.createProperty(schemaNs + "directedBy");
+        Property hasActor = films.createProperty(schemaNs + "hasActor");
+        Property writtenBy = films.createProperty(schemaNs + "writtenBy");
+        Property hasGenre = films.createProperty(schemaNs + "hasGenre");
+        Property setIn = films.createProperty(schemaNs + "setIn");
+        Property spokenIn = films.createProperty(schemaNs + "spokenIn");
+        Property wonAward = films.createProperty(schemaNs + "wonAward");
+        Property hasName = films.createProperty(schemaNs + "hasName");
+        String[] scores = {"directionScore", "actingScore", "screenplayScore", "visualEffectsScore",
+                           "culturalSignificanceScore"};
+        String[] genres = {"Action", "Drama", "Comedy", "Thriller", "Science_Fiction", "Crime"};
+        String[] countries = {"USA", "UK", "France", "Japan", "South_Korea"};
+        String[] languages = {"English", "French", "Japanese", "Korean"};
+
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = "Store_Film_" + i;
+            Resource film = films.createResource(dataNs + id);
+            film.addProperty(RDF.type, filmClass);
+            film.addProperty(hasTitle, "Store Film " + i);
+            film.addProperty(synopsis, "Synopsis of store film " + i);
+            film.addLiteral(releaseYear, 1950 + i % 75);
+            film.addLiteral(duration, 90 + i % 60);
+            film.addLiteral(imdbRating, (i % 100) / 10.0);
+            film.addLiteral(budget, 1_000_000.0 * (i % 300));
+            for (int s = 0; s < scores.length; s++) {
+                film.addLiteral(films.createProperty(schemaNs + scores[s]), ((i + s) % 100) / 10.0);
+            }
+            film.addProperty(directedBy, person(films, dataNs, hasName, "Director", i % 500));
+            film.addProperty(writtenBy, person(films, dataNs, hasName, "Writer", i % 700));
+            for (int a = 0; a < 5; a++) {
+                film.addProperty(hasActor, person(films, dataNs, hasName, "Actor", (i * 7 + a) % 3000));
+            }
+            film.addProperty(hasGenre, films.createResource(dataNs + genres[i % genres.length]));
+            film.addProperty(hasGenre, films.createResource(dataNs + genres[(i + 1) % genres.length]));
+            film.addProperty(setIn, films.createResource(dataNs + countries[i % countries.length]));
+            film.addProperty(spokenIn, films.createResource(dataNs + languages[i % languages.length]));
+            if (i % 10 == 0) {
+                film.addProperty(wonAward, films.createResource(dataNs + "Oscar_Best_Picture"));
+            }
+            ids.add(id);
+        }
+
+        manager.getOntologyModel().add(films);
+        return ids;
+    }
+
+    private static Resource person(Model model, String dataNs, Property hasName, String kind, int n) {
+        Resource person = model.createResource(dataNs + "Store_" + kind + "_" + n);
+        person.addProperty(hasName, "Store " + kind + " " + n);
+        return person;
+    }
+}
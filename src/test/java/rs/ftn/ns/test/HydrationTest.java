@@ -0,0 +1,222 @@
+package rs.ftn.ns.test;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.model.Actor;
+import rs.ftn.ns.model.Director;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for bulk film hydration.
+ */
+public class HydrationTest {
+
+    private static final int SYNTHETIC_FILMS = 10000;
+
+    private OntologyManager manager;
+    private FilmQueryService queryService;
+
+    @Before
+    public void setUp() {
+        manager = new OntologyManager();
+        queryService = new FilmQueryService(manager);
+    }
+
+    @After
+    public void tearDown() {
+        queryService.close();
+    }
+
+    @Test
+    public void testLoadCompleteFilm() {
+        System.out.println("\n--- Test: Load Complete Film ---");
+
+        Film film = queryService.loadFilm("Inception");
+        assertNotNull(film);
+        System.out.println(film);
+
+        assertEquals("Inception", film.getTitle());
+        assertEquals(2010, film.getReleaseYear());
+        assertEquals(148, film.getDuration());
+        assertEquals("Christopher Nolan", film.getDirector().getName());
+        assertEquals("Leonardo DiCaprio", film.getActors().get(0).getName());
+        assertEquals(3, film.getGenres().size());
+        assertTrue(film.getGenres().containsAll(Arrays.asList("Action", "SciFi", "Thriller")));
+        assertEquals("USA", film.getCountry());
+        assertEquals("English", film.getLanguage());
+        assertEquals(8.8, film.getImdbRating(), 0.0001);
+        assertEquals(9.5, film.getDirectionScore(), 0.0001);
+        assertEquals(10.0, film.getVisualEffectsScore(), 0.0001);
+    }
+
+    @Test
+    public void testLoadFilmsKeepsOrderAndSkipsUnknown() {
+        System.out.println("\n--- Test: Load Films Keeps Order ---");
+
+        List<Film> films = queryService.loadFilms(Arrays.asList("Interstellar", "No_Such_Film", "Inception", "Interstellar"));
+        assertEquals(2, films.size());
+        assertEquals("Interstellar", films.get(0).getId());
+        assertEquals("Inception", films.get(1).getId());
+        assertNull(queryService.loadFilm("No_Such_Film"));
+
+        List<String> ids = new ArrayList<>();
+        for (Film film : queryService.getAllFilms()) {
+            ids.add(film.getId());
+        }
+        assertEquals(ids.size(), queryService.loadFilms(ids).size());
+    }
+
+    @Test
+    public void testHydrationVsPerFilmLookups() {
+        System.out.println("\n--- Test: Bulk Hydration vs Per-Film Lookups (" + SYNTHETIC_FILMS + " films) ---");
+
+        List<String> ids = addSyntheticFilms(SYNTHETIC_FILMS);
+        String schemaNs = manager.getSchemaNamespace();
+        String dataNs = manager.getDataNamespace();
+        List<Query> perFilmQueries = perFilmQueries(schemaNs);
+
+        // Warm up both paths
+        queryService.loadFilms(ids.subList(0, 500));
+        perFilmLookups(ids.subList(0, 500), perFilmQueries, dataNs);
+
+        long start = System.nanoTime();
+        List<Film> hydrated = queryService.loadFilms(ids);
+        long hydrationMs = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        List<Film> lookedUp = perFilmLookups(ids, perFilmQueries, dataNs);
+        long lookupMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(SYNTHETIC_FILMS, hydrated.size());
+        for (int i = 0; i < hydrated.size(); i += 997) {
+            Film expected = lookedUp.get(i);
+            Film actual = hydrated.get(i);
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getDirector().getName(), actual.getDirector().getName());
+            assertEquals(expected.getActors().size(), actual.getActors().size());
+            assertEquals(expected.getGenres().size(), actual.getGenres().size());
+            assertEquals(expected.getActingScore(), actual.getActingScore(), 0.0001);
+        }
+
+        System.out.println("Bulk hydration:   " + hydrationMs + " ms");
+        System.out.println("Per-film lookups: " + lookupMs + " ms (" + perFilmQueries.size() + " queries per film)");
+    }
+
+    /**
+     * Adds films that share a pool of directors, actors and genres,
+     * the way real films do
+     */
+    private List<String> addSyntheticFilms(int count) {
+        String schemaNs = manager.getSchemaNamespace();
+        String dataNs = manager.getDataNamespace();
+        Model films = ModelFactory.createDefaultModel();
+        Resource filmClass = films.createResource(schemaNs + "Film");
+        Property hasTitle = films.createProperty(schemaNs + "hasTitle");
+        Property releaseYear = films.createProperty(schemaNs + "releaseYear");
+        Property directedBy = films.createProperty(schemaNs + "directedBy");
+        Property hasActor = films.createProperty(schemaNs + "hasActor");
+        Property hasGenre = films.createProperty(schemaNs + "hasGenre");
+        Property hasName = films.createProperty(schemaNs + "hasName");
+        Property actingScore = films.createProperty(schemaNs + "actingScore");
+        String[] genres = {"Action", "Drama", "Comedy", "Thriller", "SciFi", "Crime"};
+
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = "Synthetic_Film_" + i;
+            Resource film = films.createResource(dataNs + id);
+            film.addProperty(RDF.type, filmClass);
+            film.addProperty(hasTitle, "Synthetic Film " + i);
+            film.addLiteral(releaseYear, 1950 + i % 75);
+            film.addLiteral(actingScore, (i % 100) / 10.0);
+            film.addProperty(directedBy, person(films, dataNs, hasName, "Director", i % 200));
+            for (int a = 0; a < 4; a++) {
+                film.addProperty(hasActor, person(films, dataNs, hasName, "Actor", (i * 7 + a) % 2000));
+            }
+            film.addProperty(hasGenre, films.createResource(dataNs + genres[i % genres.length]));
+            film.addProperty(hasGenre, films.createResource(dataNs + genres[(i + 1) % genres.length]));
+            ids.add(id);
+        }
+
+        OntModel model = manager.getOntologyModel();
+        model.add(films);
+        return ids;
+    }
+
+    private static Resource person(Model model, String dataNs, Property hasName, String kind, int n) {
+        Resource person = model.createResource(dataNs + "Synthetic_" + kind + "_" + n);
+        person.addProperty(hasName, "Synthetic " + kind + " " + n);
+        return person;
+    }
+
+    /**
+     * The N+1 way: one query for the film's own values, then one per relation
+     */
+    private static List<Query> perFilmQueries(String schemaNs) {
+        String prefixes = "PREFIX schema: <" + schemaNs + "> ";
+        return Arrays.asList(
+            QueryFactory.create(prefixes +
+                "SELECT ?title ?year ?acting WHERE { ?film schema:hasTitle ?title . " +
+                "OPTIONAL { ?film schema:releaseYear ?year } OPTIONAL { ?film schema:actingScore ?acting } }"),
+            QueryFactory.create(prefixes +
+                "SELECT ?name WHERE { ?film schema:directedBy ?d . ?d schema:hasName ?name }"),
+            QueryFactory.create(prefixes +
+                "SELECT ?name WHERE { ?film schema:hasActor ?a . ?a schema:hasName ?name }"),
+            QueryFactory.create(prefixes +
+                "SELECT ?name WHERE { ?film schema:hasGenre ?g . ?g schema:genreName ?name }"));
+    }
+
+    private List<Film> perFilmLookups(List<String> ids, List<Query> queries, String dataNs) {
+        OntModel model = manager.getOntologyModel();
+        List<Film> films = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Resource filmResource = model.createResource(dataNs + id);
+            Film film = new Film();
+            film.setId(id);
+            for (int q = 0; q < queries.size(); q++) {
+                try (QueryExecution qexec = QueryExecution.model(model).query(queries.get(q))
+                                                          .substitution("film", filmResource).build()) {
+                    ResultSet results = qexec.execSelect();
+                    while (results.hasNext()) {
+                        QuerySolution row = results.nextSolution();
+                        switch (q) {
+                            case 0:
+                                film.setTitle(row.getLiteral("title").getString());
+                                film.setActingScore(row.getLiteral("acting").getDouble());
+                                break;
+                            case 1:
+                                film.setDirector(new Director(null, row.getLiteral("name").getString()));
+                                break;
+                            case 2:
+                                film.addActor(new Actor(null, row.getLiteral("name").getString()));
+                                break;
+                            default:
+                                film.addGenre(row.getLiteral("name").getString());
+                        }
+                    }
+                }
+            }
+            films.add(film);
+        }
+        return films;
+    }
+}
@@ -0,0 +1,158 @@
+package rs.ftn.ns.test;
+
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.rdf.model.InfModel;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.reasoner.ReasonerRegistry;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.ontology.InferenceMaterializer;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.StorageMode;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the inferences materialized at load time.
+ */
+public class InferenceTest {
+
+    private static final String ONTOLOGY_PATH = "src/main/resources/ontology/film-data.owl";
+
+    private OntologyManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new OntologyManager();
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void testQueriesSeeInferredTypes() {
+        System.out.println("\n--- Test: Queries See Inferred Types ---");
+
+        Model base = manager.getOntologyModel().getBaseModel();
+        System.out.println("Data: " + base.size() + ", schema: " + manager.getSchemaModel().size() +
+                           ", inferred: " + manager.getInferredModel().size() +
+                           ", served: " + manager.getOntologyModel().size());
+        assertTrue(manager.getInferredModel().size() > 0);
+        assertFalse("The data should not be touched", base.containsAny(manager.getInferredModel()));
+
+        String people = "PREFIX : <" + manager.getSchemaNamespace() + ">\n" +
+                        "SELECT (COUNT(DISTINCT ?p) AS ?n) WHERE { ?p a :Person }";
+        long withInference = count(manager.getOntologyModel(), people);
+        System.out.println("People with inference: " + withInference);
+        assertTrue(withInference > 0);
+
+        OntologyManager plain = new OntologyManager(StorageMode.MEMORY, ONTOLOGY_PATH, null, false);
+        try {
+            assertEquals(0, plain.getInferredModel().size());
+            assertEquals(base.size(), plain.getOntologyModel().size());
+            assertEquals("The data only types people as Director, Actor etc.",
+                         0, count(plain.getOntologyModel(), people));
+        } finally {
+            plain.close();
+        }
+    }
+
+    @Test
+    public void testMatchesRdfsReasoner() {
+        System.out.println("\n--- Test: Matches RDFS Reasoner ---");
+
+        Model base = manager.getOntologyModel().getBaseModel();
+        InfModel reasoned = ModelFactory.createInfModel(ReasonerRegistry.getRDFSReasoner(),
+                                                        manager.getSchemaModel(), base);
+
+        // Every type the reasoner gives an individual of the data, from the schema
+        int types = 0;
+        for (Statement statement : reasoned.listStatements(null, RDF.type, (RDFNode) null).toList()) {
+            if (statement.getSubject().isURIResource() &&
+                statement.getSubject().getURI().startsWith(manager.getDataNamespace()) &&
+                statement.getObject().isURIResource() &&
+                statement.getResource().getURI().startsWith(manager.getSchemaNamespace())) {
+                assertTrue("Missing " + statement, manager.getOntologyModel().contains(statement));
+                types++;
+            }
+        }
+        System.out.println("Types of individuals: " + types);
+
+        // And nothing the reasoner does not give
+        for (Statement statement : manager.getInferredModel().listStatements().toList()) {
+            assertTrue("Not entailed " + statement, reasoned.contains(statement));
+        }
+    }
+
+    @Test
+    public void testPropertyRules() {
+        System.out.println("\n--- Test: Property Rules ---");
+
+        String ns = "http://example.org/test#";
+        Model schema = ModelFactory.createDefaultModel();
+        Property hasSequel = schema.createProperty(ns + "hasSequel");
+        Property hasPrequel = schema.createProperty(ns + "hasPrequel");
+        Property directedBy = schema.createProperty(ns + "directedBy");
+        Property madeBy = schema.createProperty(ns + "madeBy");
+        Property remakeOf = schema.createProperty(ns + "remakeOf");
+        Property workedWith = schema.createProperty(ns + "workedWith");
+        Resource film = schema.createResource(ns + "Film");
+        Resource person = schema.createResource(ns + "Person");
+        schema.add(hasSequel, OWL.inverseOf, hasPrequel);
+        schema.add(hasSequel, RDFS.domain, film);
+        schema.add(directedBy, RDFS.subPropertyOf, madeBy);
+        schema.add(madeBy, RDFS.range, person);
+        schema.add(remakeOf, RDF.type, OWL.TransitiveProperty);
+        schema.add(workedWith, RDF.type, OWL.SymmetricProperty);
+
+        Model data = ModelFactory.createDefaultModel();
+        Resource a = data.createResource(ns + "A");
+        Resource b = data.createResource(ns + "B");
+        Resource c = data.createResource(ns + "C");
+        Resource nolan = data.createResource(ns + "Nolan");
+        Resource pfister = data.createResource(ns + "Pfister");
+        data.add(a, hasSequel, b);
+        data.add(a, directedBy, nolan);
+        data.add(c, remakeOf, b);
+        data.add(b, remakeOf, a);
+        data.add(nolan, workedWith, pfister);
+
+        Model inferred = ModelFactory.createDefaultModel();
+        long added = new InferenceMaterializer(schema.getGraph(), data.getGraph())
+            .materialize(data.getGraph(), schema.getGraph(), inferred.getGraph());
+        inferred.write(System.out, "N-TRIPLES");
+
+        assertTrue(inferred.contains(b, hasPrequel, a));
+        assertTrue(inferred.contains(a, RDF.type, film));
+        assertTrue(inferred.contains(a, madeBy, nolan));
+        assertTrue(inferred.contains(nolan, RDF.type, person));
+        assertTrue(inferred.contains(c, remakeOf, a));
+        assertTrue(inferred.contains(pfister, workedWith, nolan));
+        assertEquals(6, added);
+        assertEquals(added, inferred.size());
+
+        // Nothing new the second time
+        Model again = ModelFactory.createDefaultModel();
+        Model union = ModelFactory.createUnion(data, inferred);
+        assertEquals(0, new InferenceMaterializer(schema.getGraph(), union.getGraph())
+            .materialize(union.getGraph(), schema.getGraph(), again.getGraph()));
+    }
+
+    private static long count(Model model, String query) {
+        try (QueryExecution execution = QueryExecutionFactory.create(query, model)) {
+            return execution.execSelect().next().getLiteral("n").getLong();
+        }
+    }
+}
@@ -122,4 +122,23 @@ public class ModelTest {
         
         System.out.println("✓ Complete film object test passed");
     }
+    
+    @Test
+    public void testFilmCopyIsIndependent() {
+        film.setDirector(director);
+        film.addActor(actor);
+        film.addGenre("Drama");
+        
+        Film copy = new Film(film);
+        copy.setTitle("Changed");
+        copy.getDirector().setName("Changed");
+        copy.getActors().get(0).setName("Changed");
+        copy.addGenre("Crime");
+        
+        assertEquals("The Shawshank Redemption", film.getTitle());
+        assertEquals("Frank Darabont", film.getDirector().getName());
+        assertEquals("Tim Robbins", film.getActors().get(0).getName());
+        assertEquals(1, film.getGenres().size());
+        System.out.println("✓ Film copy test passed");
+    }
 }
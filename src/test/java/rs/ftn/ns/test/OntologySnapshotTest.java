@@ -0,0 +1,123 @@
+package rs.ftn.ns.test;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.StorageMode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the binary ontology snapshot cache.
+ */
+public class OntologySnapshotTest {
+
+    private static final String ONTOLOGY_PATH = "src/main/resources/ontology/film-data.owl";
+    private static final int LOAD_ROUNDS = 20;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testSnapshotWrittenThenReused() throws Exception {
+        System.out.println("\n--- Test: Snapshot Written Then Reused ---");
+
+        String snapshotDir = tempFolder.newFolder("snapshots").getPath();
+
+        OntologyManager first = new OntologyManager(StorageMode.SNAPSHOT, ONTOLOGY_PATH, snapshotDir);
+        assertFalse("First load should parse the OWL file", first.isLoadedFromSnapshot());
+        long statements = first.getOntologyModel().size();
+        first.close();
+
+        OntologyManager second = new OntologyManager(StorageMode.SNAPSHOT, ONTOLOGY_PATH, snapshotDir);
+        assertTrue("Second load should use the snapshot", second.isLoadedFromSnapshot());
+        assertEquals("Snapshot should hold the same statements", statements, second.getOntologyModel().size());
+
+        FilmQueryService service = new FilmQueryService(second);
+        assertTrue("Should have at least 20 films", service.getAllFilms().size() >= 20);
+        assertTrue("Should have multiple Nolan films", service.findFilmsByDirector("Christopher Nolan").size() >= 3);
+        service.close();
+
+        assertEquals("Only one snapshot should be kept", 1, new File(snapshotDir).list().length);
+    }
+
+    @Test
+    public void testOtherSourcesKeepTheirSnapshots() throws Exception {
+        System.out.println("\n--- Test: Snapshots Of Other Sources Are Kept ---");
+
+        String snapshotDir = tempFolder.newFolder("snapshots").getPath();
+        File source = tempFolder.newFile("movies.owl");
+        File other = tempFolder.newFile("movies-extra.owl");
+        Files.copy(new File(ONTOLOGY_PATH).toPath(), source.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(new File(ONTOLOGY_PATH).toPath(), other.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.write(other.toPath(), "\n<!-- extra -->\n".getBytes(), StandardOpenOption.APPEND);
+
+        new OntologyManager(StorageMode.SNAPSHOT, other.getPath(), snapshotDir).close();
+        new OntologyManager(StorageMode.SNAPSHOT, source.getPath(), snapshotDir).close();
+        assertEquals("Each source should keep its snapshot", 2, new File(snapshotDir).list().length);
+
+        // A new version of the source replaces its own snapshot only
+        Files.write(source.toPath(), "\n<!-- edited -->\n".getBytes(), StandardOpenOption.APPEND);
+        new OntologyManager(StorageMode.SNAPSHOT, source.getPath(), snapshotDir).close();
+        assertEquals("Only the old snapshot of the edited source should go", 2, new File(snapshotDir).list().length);
+
+        OntologyManager reopened = new OntologyManager(StorageMode.SNAPSHOT, other.getPath(), snapshotDir);
+        assertTrue("The other source should still load from its snapshot", reopened.isLoadedFromSnapshot());
+        reopened.close();
+    }
+
+    @Test
+    public void testLoadPathTimings() throws Exception {
+        System.out.println("\n--- Test: Load Path Timings (RDF/XML vs Turtle vs Thrift) ---");
+
+        Model source = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(source, ONTOLOGY_PATH, Lang.RDFXML);
+
+        File turtle = tempFolder.newFile("film-data.ttl");
+        File thrift = tempFolder.newFile("film-data.trdf");
+        try (OutputStream out = new FileOutputStream(turtle)) {
+            RDFDataMgr.write(out, source, RDFFormat.TURTLE_BLOCKS);
+        }
+        try (OutputStream out = new FileOutputStream(thrift)) {
+            RDFDataMgr.write(out, source, RDFFormat.RDF_THRIFT);
+        }
+
+        double rdfXmlMs = timeLoad(ONTOLOGY_PATH, Lang.RDFXML, source.size());
+        double turtleMs = timeLoad(turtle.getPath(), Lang.TURTLE, source.size());
+        double thriftMs = timeLoad(thrift.getPath(), Lang.RDFTHRIFT, source.size());
+
+        System.out.println("Statements: " + source.size() + ", rounds: " + LOAD_ROUNDS);
+        System.out.printf("  RDF/XML: %.3f ms/load (%d bytes)%n", rdfXmlMs, new File(ONTOLOGY_PATH).length());
+        System.out.printf("  Turtle:  %.3f ms/load (%d bytes)%n", turtleMs, turtle.length());
+        System.out.printf("  Thrift:  %.3f ms/load (%d bytes)%n", thriftMs, thrift.length());
+    }
+
+    private double timeLoad(String path, Lang lang, long expectedSize) {
+        // Warm up the parser before timing
+        for (int i = 0; i < 5; i++) {
+            RDFDataMgr.read(ModelFactory.createDefaultModel(), path, lang);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < LOAD_ROUNDS; i++) {
+            Model model = ModelFactory.createDefaultModel();
+            RDFDataMgr.read(model, path, lang);
+            assertEquals(expectedSize, model.size());
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / LOAD_ROUNDS;
+    }
+}
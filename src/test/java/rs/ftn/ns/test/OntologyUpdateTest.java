@@ -0,0 +1,471 @@
+package rs.ftn.ns.test;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import rs.ftn.ns.cache.CacheStats;
+import rs.ftn.ns.fuzzy.FilmQualityEvaluator;
+import rs.ftn.ns.index.CollaborationGraph;
+import rs.ftn.ns.index.CompletionIndex;
+import rs.ftn.ns.index.FilmCriteria;
+import rs.ftn.ns.index.FilmIndex;
+import rs.ftn.ns.index.FilmStore;
+import rs.ftn.ns.index.SimilarityIndex;
+import rs.ftn.ns.index.TextIndex;
+import rs.ftn.ns.model.Actor;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.model.Writer;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.InferenceMaterializer;
+import rs.ftn.ns.ontology.ModelChange;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.OntologyUpdate;
+import rs.ftn.ns.ontology.QualityMaterializer;
+import rs.ftn.ns.ontology.StorageMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for updates and their propagation to the indexes and caches.
+ */
+public class OntologyUpdateTest {
+
+    private static final String ONTOLOGY_PATH = "src/main/resources/ontology/film-data.owl";
+
+    private static final String[] SEARCHES = {
+        "dream heist", "nolan", "zyzzyva", "christopher edward", "zelda", "fight", "dicaprio", "godfather"
+    };
+    private static final String[] PREFIXES = { "nol", "chris", "zyzz", "dra", "come", "zel", "leo", "fight", "inc" };
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private OntologyManager manager;
+    private FilmQueryService queryService;
+
+    @Before
+    public void setUp() {
+        manager = new OntologyManager();
+        queryService = new FilmQueryService(manager);
+    }
+
+    @After
+    public void tearDown() {
+        queryService.close();
+    }
+
+    @Test
+    public void testUpdatedIndexesMatchRebuild() throws InterruptedException {
+        System.out.println("\n--- Test: Updated Indexes Match Rebuild ---");
+
+        List<OntologyUpdate> updates = new ArrayList<>();
+        updates.add(new OntologyUpdate()
+            .addFilm("Update_Test_Film", "Zyzzyva Returns")
+            .set("Update_Test_Film", "releaseYear", 2024)
+            .set("Update_Test_Film", "synopsis", "A dream within a heist within a dream")
+            .link("Update_Test_Film", "directedBy", "Christopher_Nolan")
+            .link("Update_Test_Film", "hasGenre", "Drama")
+            .link("Update_Test_Film", "hasActor", "Leonardo_DiCaprio")
+            .link("Update_Test_Film", "setIn", "Canada")
+            .link("Update_Test_Film", "spokenIn", "English")
+            .setScore("Update_Test_Film", "directionScore", 8.5)
+            .setScore("Update_Test_Film", "actingScore", 7)
+            .setScore("Update_Test_Film", "screenplayScore", 9)
+            .setScore("Update_Test_Film", "visualEffectsScore", 9.5)
+            .setScore("Update_Test_Film", "culturalSignificanceScore", 6));
+        updates.add(new OntologyUpdate()
+            .set("Inception", "releaseYear", 2011)
+            .link("Inception", "hasGenre", "Comedy")
+            .unlink("Inception", "hasActor", "Leonardo_DiCaprio"));
+        updates.add(new OntologyUpdate().set("Christopher_Nolan", "hasName", "Christopher Edward Nolan"));
+        updates.add(new OntologyUpdate()
+            .addPerson("Zelda_Quux", "Actor", "Zelda Quux")
+            .link("Update_Test_Film", "hasActor", "Zelda_Quux"));
+        updates.add(new OntologyUpdate().remove("Fight_Club"));
+        updates.add(new OntologyUpdate().remove("Leonardo_DiCaprio"));
+
+        // Built first, so the update has a store to start from
+        manager.getFilmStore();
+        FilmIndex filmIndex = manager.getFilmIndex();
+        SimilarityIndex similarityIndex = manager.getSimilarityIndex();
+        TextIndex textIndex = manager.getTextIndex();
+        CollaborationGraph collaborationGraph = manager.getCollaborationGraph();
+        CompletionIndex completionIndex = manager.calculateRead(() -> CompletionIndex.build(
+            graph(), manager.getDataNamespace(), manager.getSchemaNamespace(), manager.getModelVersion()));
+
+        for (OntologyUpdate update : updates) {
+            ModelChange change = manager.update(update);
+            System.out.println(change + ": " + change.getFilmIds());
+            assertFalse(change.isEmpty());
+            assertEquals(manager.getModelVersion(), change.getVersion());
+
+            // Each index on its own, from the previous one
+            String dataNs = manager.getDataNamespace();
+            String schemaNs = manager.getSchemaNamespace();
+            long version = change.getVersion();
+            FilmIndex previousFilmIndex = filmIndex;
+            SimilarityIndex previousSimilarityIndex = similarityIndex;
+            TextIndex previousTextIndex = textIndex;
+            CollaborationGraph previousCollaborationGraph = collaborationGraph;
+            CompletionIndex previousCompletionIndex = completionIndex;
+            filmIndex = manager.calculateRead(() -> previousFilmIndex.update(
+                graph(), dataNs, schemaNs, change.getFilms(), version));
+            similarityIndex = manager.calculateRead(() -> previousSimilarityIndex.update(
+                graph(), dataNs, schemaNs, change.getFilms(), version));
+            textIndex = manager.calculateRead(() -> previousTextIndex.update(
+                graph(), dataNs, schemaNs, change.getFilms(), version));
+            collaborationGraph = manager.calculateRead(() -> previousCollaborationGraph.update(
+                graph(), dataNs, schemaNs, change.getSubjects(), version));
+            completionIndex = manager.calculateRead(() -> previousCompletionIndex.update(
+                graph(), dataNs, schemaNs, linked(change))).build(version);
+
+            FilmIndex builtFilmIndex = manager.calculateRead(() -> FilmIndex.build(graph(), dataNs, schemaNs, version));
+            SimilarityIndex builtSimilarityIndex =
+                manager.calculateRead(() -> SimilarityIndex.build(graph(), dataNs, schemaNs, version));
+            TextIndex builtTextIndex = manager.calculateRead(() -> TextIndex.build(graph(), dataNs, schemaNs, version));
+            CollaborationGraph builtCollaborationGraph =
+                manager.calculateRead(() -> CollaborationGraph.build(graph(), dataNs, schemaNs, version));
+            CompletionIndex builtCompletionIndex =
+                manager.calculateRead(() -> CompletionIndex.build(graph(), dataNs, schemaNs, version));
+
+            assertEquals(describe(builtFilmIndex), describe(filmIndex));
+            assertEquals(describe(builtFilmIndex), describe(manager.getFilmIndex()));
+            assertEquals(describe(builtFilmIndex, builtSimilarityIndex), describe(builtFilmIndex, similarityIndex));
+            assertEquals(describe(builtFilmIndex, builtSimilarityIndex),
+                         describe(builtFilmIndex, manager.getSimilarityIndex()));
+            assertEquals(describe(builtTextIndex), describe(textIndex));
+            assertEquals(describe(builtTextIndex), describe(manager.getTextIndex()));
+            assertEquals(describe(builtCollaborationGraph), describe(collaborationGraph));
+            assertEquals(describe(builtCollaborationGraph), describe(manager.getCollaborationGraph()));
+            assertEquals(describe(builtCompletionIndex), describe(completionIndex));
+            assertEquals(version, manager.getFilmStore().getModelVersion());
+            assertEquals(describeFilms(queryService.loadFilms(ids(builtFilmIndex))), describe(manager.getFilmStore()));
+
+            // Inferred triples as if materialized from scratch
+            Model data = manager.getOntologyModel().getBaseModel();
+            Model inferred = ModelFactory.createDefaultModel();
+            new InferenceMaterializer(manager.getSchemaModel().getGraph(), data.getGraph())
+                .materialize(data.getGraph(), manager.getSchemaModel().getGraph(), inferred.getGraph());
+            assertTrue("Inferred triples differ", inferred.isIsomorphicWith(manager.getInferredModel()));
+        }
+
+        assertEquals("Zyzzyva Returns", queryService.loadFilm("Update_Test_Film").getTitle());
+        assertEquals("Christopher Edward Nolan", queryService.loadFilm("Update_Test_Film").getDirector().getName());
+        assertEquals(2011, queryService.loadFilm("Inception").getReleaseYear());
+        assertNull(queryService.loadFilm("Fight_Club"));
+
+        // The manager's completion index catches up in the background
+        CompletionIndex current = manager.getCompletionIndex();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (current.getModelVersion() != manager.getModelVersion() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            current = manager.getCompletionIndex();
+        }
+        assertEquals(manager.getModelVersion(), current.getModelVersion());
+        assertEquals(describe(completionIndex), describe(current));
+        assertTrue(manager.getInferredModel().contains(
+            manager.getOntologyModel().getResource(manager.getDataNamespace() + "Zelda_Quux"),
+            RDF.type, manager.getOntologyModel().getResource(manager.getSchemaNamespace() + "Person")));
+    }
+
+    @Test
+    public void testCacheKeepsUnaffectedResults() {
+        System.out.println("\n--- Test: Cache Keeps Unaffected Results ---");
+
+        List<Film> horror = queryService.findFilmsByGenre("Horror");
+        List<Film> nolan = queryService.findFilmsByDirector("Nolan");
+        List<Film> comedies = queryService.findFilmsByGenre("Comedy");
+        assertTrue(nolan.stream().anyMatch(film -> film.getId().equals("Inception")));
+        assertTrue(comedies.stream().noneMatch(film -> film.getId().equals("Inception")));
+
+        manager.update(new OntologyUpdate().set("Inception", "releaseYear", 2011).link("Inception", "hasGenre", "Comedy"));
+
+        CacheStats before = manager.getResultCache().getStats();
+        assertEquals(ids(horror), ids(queryService.findFilmsByGenre("Horror")));
+        CacheStats after = manager.getResultCache().getStats();
+        System.out.println("Before: " + before + ", after: " + after);
+        assertEquals("Horror films did not change", before.getHits() + 1, after.getHits());
+
+        // Had Inception, and now may have it
+        List<Film> nolanAfter = queryService.findFilmsByDirector("Nolan");
+        assertEquals(2011, nolanAfter.stream().filter(film -> film.getId().equals("Inception"))
+                                     .findFirst().get().getReleaseYear());
+        assertTrue(queryService.findFilmsByGenre("Comedy").stream().anyMatch(film -> film.getId().equals("Inception")));
+        assertEquals(after.getHits(), manager.getResultCache().getStats().getHits());
+
+        // A write through the model still drops everything
+        Resource film = manager.getOntologyModel().createResource(manager.getDataNamespace() + "Cache_Test_Film");
+        film.addProperty(RDF.type, manager.getOntologyModel().createResource(manager.getSchemaNamespace() + "Film"));
+        assertEquals(0, manager.getResultCache().getStats().getSize());
+    }
+
+    @Test
+    public void testQualityFollowsScores() {
+        System.out.println("\n--- Test: Quality Follows Scores ---");
+
+        FilmQualityEvaluator evaluator = new FilmQualityEvaluator();
+        QualityMaterializer materializer = new QualityMaterializer(manager, evaluator);
+        materializer.materialize();
+        manager.addChangeListener(materializer);
+
+        assertTrue(ids(queryService.findFilmsByMinQuality(7)).contains("Inception"));
+
+        OntologyUpdate update = new OntologyUpdate();
+        for (String score : new String[] {
+                "directionScore", "actingScore", "screenplayScore", "visualEffectsScore", "culturalSignificanceScore" }) {
+            update.setScore("Inception", score, 1);
+        }
+        manager.update(update);
+
+        Film inception = queryService.loadFilm("Inception");
+        System.out.printf("Inception: %.4f (%s)%n", inception.getQualityScore(), inception.getQualityCategory());
+        assertEquals(evaluator.evaluateFilm(inception), inception.getQualityScore(), 0.01);
+        assertEquals(evaluator.getQualityCategory(inception.getQualityScore()), inception.getQualityCategory());
+        assertFalse(ids(queryService.findFilmsByMinQuality(7)).contains("Inception"));
+        assertTrue(ids(queryService.findFilmsByQualityCategory(inception.getQualityCategory())).contains("Inception"));
+        assertEquals("Only Inception was rescored", 0, materializer.materialize());
+    }
+
+    @Test
+    public void testListenerUpdatesDoNotNest() {
+        System.out.println("\n--- Test: Listener Updates Do Not Nest ---");
+
+        FilmQualityEvaluator evaluator = new FilmQualityEvaluator();
+        QualityMaterializer materializer = new QualityMaterializer(manager, evaluator);
+        materializer.materialize();
+
+        // The materializer updates the quality from inside the score change
+        List<Long> seen = new ArrayList<>();
+        int[] depth = new int[1];
+        manager.addChangeListener(change -> {
+            assertEquals("Told about one change at a time", 0, depth[0]++);
+            try {
+                materializer.modelChanged(change);
+            } finally {
+                depth[0]--;
+            }
+        });
+        manager.addChangeListener(change -> seen.add(change.getVersion()));
+
+        ModelChange scores = manager.update(new OntologyUpdate().setScore("Inception", "actingScore", 1));
+        System.out.println("Listener saw versions " + seen);
+        assertEquals(Arrays.asList(scores.getVersion(), scores.getVersion() + 1), seen);
+        assertEquals(scores.getVersion() + 1, manager.getModelVersion());
+        assertEquals(evaluator.evaluateFilm(queryService.loadFilm("Inception")),
+                     queryService.loadFilm("Inception").getQualityScore(), 0.01);
+    }
+
+    @Test
+    public void testInvalidUpdateChangesNothing() throws Exception {
+        System.out.println("\n--- Test: Invalid Update Changes Nothing ---");
+
+        try {
+            new OntologyUpdate().setScore("Inception", "actingScore", 11);
+            fail("Score above 10");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Rejected: " + e.getMessage());
+        }
+        try {
+            new OntologyUpdate().addPerson("Someone", "Alien", "Someone");
+            fail("Not a person type");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Rejected: " + e.getMessage());
+        }
+
+        OntologyManager tdb2 = new OntologyManager(StorageMode.TDB2, ONTOLOGY_PATH,
+                                                   tempFolder.newFolder("tdb2").getPath());
+        try {
+            for (OntologyManager target : new OntologyManager[] { manager, tdb2 }) {
+                FilmQueryService service = new FilmQueryService(target);
+                int films = service.getAllFilms().size();
+                long version = target.getModelVersion();
+                long size = target.calculateRead(() -> target.getOntologyModel().size());
+
+                try {
+                    target.update(new OntologyUpdate()
+                        .addFilm("Rollback_Film", "Rollback")
+                        .link("Rollback_Film", "directedBy", "No_Such_Person"));
+                    fail("Unknown link target");
+                } catch (IllegalArgumentException e) {
+                    System.out.println(target.getStorageMode() + " rejected: " + e.getMessage());
+                }
+                try {
+                    target.update(new OntologyUpdate().set("Inception", "releaseYear", 1999).addFilm("Inception", "Again"));
+                    fail("Film already exists");
+                } catch (IllegalArgumentException e) {
+                    System.out.println(target.getStorageMode() + " rejected: " + e.getMessage());
+                }
+
+                assertEquals(version, target.getModelVersion());
+                assertEquals(size, (long) target.calculateRead(() -> target.getOntologyModel().size()));
+                assertEquals(films, service.getAllFilms().size());
+                assertNull(service.loadFilm("Rollback_Film"));
+                assertEquals(2010, service.loadFilm("Inception").getReleaseYear());
+
+                ModelChange change = target.update(new OntologyUpdate().addFilm("Rollback_Film", "Rollback"));
+                assertEquals(version + 1, change.getVersion());
+                assertEquals(films + 1, service.getAllFilms().size());
+                assertTrue(target.update(new OntologyUpdate().set("Rollback_Film", "hasTitle", "Rollback")).isEmpty());
+            }
+        } finally {
+            tdb2.close();
+        }
+    }
+
+    private Graph graph() {
+        return manager.getOntologyModel().getGraph();
+    }
+
+    private static List<String> ids(List<Film> films) {
+        List<String> ids = new ArrayList<>();
+        for (Film film : films) {
+            ids.add(film.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * What the manager passes to the completion index: the individuals
+     * changed and those they were linked to
+     */
+    private static Set<String> linked(ModelChange change) {
+        Set<String> linked = new HashSet<>(change.getSubjects());
+        for (List<Triple> triples : Arrays.asList(change.getAdded(), change.getRemoved())) {
+            for (Triple triple : triples) {
+                if (triple.getObject().isURI()) {
+                    linked.add(triple.getObject().getURI());
+                }
+            }
+        }
+        return linked;
+    }
+
+    private static List<String> ids(FilmIndex index) {
+        return ids(index.find(FilmCriteria.any()));
+    }
+
+    private static String describe(FilmIndex index) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(index.getGenres()).append(index.getDirectors())
+          .append(index.getCountries()).append(index.getLanguages()).append('\n');
+        double[] scores = new double[FilmIndex.SCORE_COUNT];
+        for (Film film : index.find(FilmCriteria.any())) {
+            index.getScores(index.getOrdinal(film.getId()), scores);
+            sb.append(film.getId()).append('|').append(film.getTitle()).append('|').append(film.getReleaseYear())
+              .append('|').append(film.getDirector() != null ? film.getDirector().getName() : null)
+              .append('|').append(Arrays.toString(scores)).append('\n');
+        }
+        for (String genre : index.getGenres()) {
+            sb.append(genre).append(ids(index.find(FilmCriteria.any().genre(genre))));
+        }
+        sb.append(ids(index.find(FilmCriteria.any().director("nolan").years(2000, 2030))));
+        return sb.toString();
+    }
+
+    private static String describe(FilmIndex films, SimilarityIndex index) {
+        StringBuilder sb = new StringBuilder().append(index.size()).append('\n');
+        for (String id : ids(films)) {
+            sb.append(id);
+            for (SimilarityIndex.Match match : index.similar(id, 5)) {
+                sb.append(String.format(" %s %.6f", match.getFilmId(), match.getSimilarity()));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String describe(TextIndex index) {
+        StringBuilder sb = new StringBuilder().append(index.size()).append(' ').append(index.getTermCount()).append('\n');
+        for (String search : SEARCHES) {
+            sb.append(search);
+            for (TextIndex.Hit hit : index.search(search, 10)) {
+                sb.append(String.format(" %s %.5f", hit.getFilmId(), hit.getScore()));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String describe(CollaborationGraph graph) {
+        StringBuilder sb = new StringBuilder().append(graph.size()).append(' ').append(graph.getEdgeCount()).append('\n');
+        String[] starts = { "Christopher_Nolan", "Inception", "Update_Test_Film", "Zelda_Quux", "Brad_Pitt", "Drama" };
+        for (String start : starts) {
+            sb.append(start).append(' ').append(graph.getName(start))
+              .append(graph.withinHops(start, 2)).append(graph.filmsWithinHops(start, 3))
+              .append(graph.topCollaborators(start, CollaborationGraph.Relation.HAS_ACTOR, 5)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String describe(CompletionIndex index) {
+        StringBuilder sb = new StringBuilder().append(index.size()).append(' ').append(index.getNodeCount()).append('\n');
+        for (String prefix : PREFIXES) {
+            sb.append(prefix);
+            for (CompletionIndex.Completion completion : index.complete(prefix, 10)) {
+                sb.append(' ').append(completion.getId()).append(completion);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String describe(FilmStore store) {
+        List<Film> films = new ArrayList<>();
+        for (String id : new TreeSet<>(idsOf(store))) {
+            films.add(store.getFilm(id));
+        }
+        return describeFilms(films);
+    }
+
+    private static List<String> idsOf(FilmStore store) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < store.size(); i++) {
+            ids.add(store.getId(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Every field of every film, sorted by id, so lists can be compared as strings
+     */
+    private static String describeFilms(List<Film> films) {
+        List<String> lines = new ArrayList<>();
+        for (Film film : films) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(film.getId()).append('|').append(film.getTitle()).append('|').append(film.getOriginalTitle())
+              .append('|').append(film.getReleaseYear()).append('|').append(film.getDuration())
+              .append('|').append(film.getCountry()).append('|').append(film.getLanguage())
+              .append('|').append(film.getDirector() != null ? film.getDirector().getId() + "/" +
+                                                               film.getDirector().getName() : null);
+            for (Actor actor : film.getActors()) {
+                sb.append("|actor ").append(actor.getId()).append('/').append(actor.getName());
+            }
+            for (Writer writer : film.getWriters()) {
+                sb.append("|writer ").append(writer.getId()).append('/').append(writer.getName());
+            }
+            sb.append('|').append(film.getGenres()).append('|').append(film.getAwards())
+              .append('|').append(film.getDirectionScore()).append('|').append(film.getActingScore())
+              .append('|').append(film.getScreenplayScore()).append('|').append(film.getVisualEffectsScore())
+              .append('|').append(film.getCulturalSignificanceScore())
+              .append('|').append(film.getQualityScore()).append('|').append(film.getSynopsis());
+            lines.add(sb.toString());
+        }
+        lines.sort(null);
+        return String.join("\n", lines);
+    }
+}
@@ -0,0 +1,131 @@
+package rs.ftn.ns.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.model.FilmPage;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for keyset pagination of film queries.
+ */
+public class PaginationTest {
+
+    private static final int PAGE_SIZE = 3;
+
+    private FilmQueryService queryService;
+
+    @Before
+    public void setUp() {
+        queryService = new FilmQueryService(new OntologyManager());
+    }
+
+    @After
+    public void tearDown() {
+        queryService.close();
+    }
+
+    @Test
+    public void testAllFilmsPages() {
+        System.out.println("\n--- Test: Paging Through All Films ---");
+
+        List<Film> paged = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+        do {
+            FilmPage page = queryService.getAllFilmsPage(PAGE_SIZE, token);
+            assertTrue(page.getFilms().size() <= PAGE_SIZE);
+            paged.addAll(page.getFilms());
+            token = page.getNextToken();
+            pages++;
+        } while (token != null);
+
+        System.out.println("Read " + paged.size() + " films in " + pages + " pages");
+        assertEquals(queryService.getAllFilms().size(), paged.size());
+        assertEquals("Pages should not overlap", paged.size(), titles(paged).size());
+    }
+
+    @Test
+    public void testYearRangePages() {
+        System.out.println("\n--- Test: Paging Through A Year Range ---");
+
+        List<Film> paged = new ArrayList<>();
+        String token = null;
+        do {
+            FilmPage page = queryService.findFilmsByYearRangePage(1990, 2010, PAGE_SIZE, token);
+            paged.addAll(page.getFilms());
+            token = page.getNextToken();
+        } while (token != null);
+
+        for (int i = 1; i < paged.size(); i++) {
+            assertTrue("Pages should be ordered by year",
+                       paged.get(i - 1).getReleaseYear() <= paged.get(i).getReleaseYear());
+        }
+        assertEquals(titles(queryService.findFilmsByYearRange(1990, 2010)), titles(paged));
+        assertEquals(paged.size(), titles(paged).size());
+    }
+
+    @Test
+    public void testOneEntryPerFilm() {
+        System.out.println("\n--- Test: Pages Count Films, Not Rows ---");
+
+        List<Film> paged = new ArrayList<>();
+        String token = null;
+        do {
+            FilmPage page = queryService.getAllFilmsPage(PAGE_SIZE, token);
+            token = page.getNextToken();
+            assertTrue("Only the last page may be short", token == null || page.getFilms().size() == PAGE_SIZE);
+            paged.addAll(page.getFilms());
+        } while (token != null);
+
+        for (int i = 1; i < paged.size(); i++) {
+            assertTrue("Pages should be ordered by film, each film once",
+                       paged.get(i - 1).getId().compareTo(paged.get(i).getId()) < 0);
+        }
+        Set<String> ids = new HashSet<>();
+        for (Film film : queryService.getAllFilms()) {
+            ids.add(film.getId());
+        }
+        assertEquals(ids.size(), paged.size());
+    }
+
+    @Test
+    public void testLastPage() {
+        System.out.println("\n--- Test: Last Page Has No Token ---");
+
+        int total = queryService.getAllFilms().size();
+        FilmPage page = queryService.getAllFilmsPage(total, null);
+        assertEquals(total, page.getFilms().size());
+        assertFalse(page.hasMore());
+        assertNull(page.getNextToken());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidToken() {
+        System.out.println("\n--- Test: Invalid Continuation Token ---");
+        queryService.findFilmsByYearRangePage(1990, 2010, PAGE_SIZE, "not a token");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPageSize() {
+        System.out.println("\n--- Test: Invalid Page Size ---");
+        queryService.getAllFilmsPage(0, null);
+    }
+
+    private static Set<String> titles(List<Film> films) {
+        Set<String> titles = new HashSet<>();
+        for (Film film : films) {
+            titles.add(film.getTitle());
+        }
+        return titles;
+    }
+}
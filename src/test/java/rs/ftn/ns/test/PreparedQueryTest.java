@@ -0,0 +1,88 @@
+package rs.ftn.ns.test;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.ResultSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.OntologyRegistry;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the precompiled, parameterized film queries. Their cost
+ * against string-built queries is measured by PreparedQueryBenchmark.
+ */
+public class PreparedQueryTest {
+
+    private FilmQueryService queryService;
+
+    @Before
+    public void setUp() {
+        queryService = new FilmQueryService();
+    }
+
+    @After
+    public void tearDown() {
+        queryService.close();
+    }
+
+    @Test
+    public void testParametersAreNotSpliced() {
+        System.out.println("\n--- Test: Parameters Are Not Spliced Into Query ---");
+
+        // With string concatenation this closed the literal and broke the query
+        List<Film> films = queryService.findFilmsByGenre("Drama\" . } #");
+        assertTrue("Malicious genre should simply match nothing", films.isEmpty());
+
+        films = queryService.findFilmsByDirector("nolan\")) || true || CONTAINS(\"");
+        assertTrue("Malicious director should simply match nothing", films.isEmpty());
+    }
+
+    @Test
+    public void testSameResultsAsConcatenatedQuery() {
+        System.out.println("\n--- Test: Same Results As String-Built Query ---");
+
+        OntologyManager manager = OntologyRegistry.acquire();
+        try {
+            String template =
+                "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
+                "PREFIX schema: <" + manager.getSchemaNamespace() + "> " +
+                "SELECT DISTINCT ?film " +
+                "WHERE { " +
+                "  ?film rdf:type schema:Film . " +
+                "  ?film schema:hasGenre ?genre . " +
+                "  ?genre schema:genreName \"%s\" . " +
+                "}";
+
+            for (String genre : new String[] { "Drama", "Action", "SciFi", "Crime", "No Such Genre" }) {
+                Set<String> expected = new TreeSet<>();
+                Query query = QueryFactory.create(String.format(template, genre));
+                manager.executeRead(() -> {
+                    try (QueryExecution qexec = QueryExecution.model(manager.getOntologyModel()).query(query).build()) {
+                        ResultSet results = qexec.execSelect();
+                        results.forEachRemaining(row -> expected.add(row.getResource("film").getLocalName()));
+                    }
+                });
+
+                Set<String> actual = new TreeSet<>();
+                for (Film film : queryService.findFilmsByGenre(genre)) {
+                    actual.add(film.getId());
+                }
+                assertEquals("Prepared query should find the same films for " + genre, expected, actual);
+                System.out.println(genre + ": " + actual.size() + " films");
+            }
+        } finally {
+            OntologyRegistry.release(manager);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package rs.ftn.ns.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.fuzzy.CompiledFuzzyEngine;
+import rs.ftn.ns.fuzzy.FilmQualityEvaluator;
+import rs.ftn.ns.fuzzy.FuzzyRuleBase;
+import rs.ftn.ns.fuzzy.QualityLookupGrid;
+import rs.ftn.ns.fuzzy.ScoringMode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the precomputed quality lookup grid.
+ */
+public class QualityLookupGridTest {
+
+    private static final String FCL_FILE_PATH = "src/main/resources/fuzzy/film_quality.fcl";
+    private static final double STEP = 1.0;
+
+    // Largest interpolation error allowed, see QualityLookupGrid
+    private static final double MAX_ERROR = 0.5;
+
+    private FuzzyRuleBase ruleBase;
+    private Path gridDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        ruleBase = FuzzyRuleBase.load(FCL_FILE_PATH);
+        gridDirectory = Files.createTempDirectory("quality-grid-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(gridDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testGridPointsAreExact() {
+        System.out.println("\n--- Test: Grid Points Are Exact ---");
+
+        QualityLookupGrid grid = QualityLookupGrid.build(ruleBase, STEP);
+        CompiledFuzzyEngine engine = ruleBase.newCompiledEngine();
+        assertEquals(11, grid.getPointsPerInput());
+
+        double[][] inputs = {
+            {0, 0, 0, 0, 0}, {10, 10, 10, 10, 10}, {9, 9, 9, 8, 9}, {3, 3, 2, 3, 2}, {6, 10, 10, 0, 0}
+        };
+        for (double[] input : inputs) {
+            assertEquals(engine.evaluate(input), grid.lookup(input), 1e-5);
+        }
+
+        // Out of range values are clamped
+        assertEquals(grid.lookup(new double[] {10, 10, 10, 10, 10}),
+                     grid.lookup(new double[] {12, 11, 10.5, 99, 10}), 0.0);
+    }
+
+    @Test
+    public void testInterpolationError() {
+        System.out.println("\n--- Test: Interpolation Error ---");
+
+        for (double step : new double[] {2.5, 1.0}) {
+            long start = System.nanoTime();
+            QualityLookupGrid grid = QualityLookupGrid.build(ruleBase, step);
+            long buildMs = (System.nanoTime() - start) / 1_000_000;
+            double maxError = grid.measureMaxError(ruleBase, 5000, 42);
+            double meanError = grid.measureMeanError(ruleBase, 5000, 42);
+
+            System.out.printf("Step %.2f: %d points/input, %d KB, built in %d ms, %.1f%% inferred, " +
+                              "mean error %.4f, max error %.4f%n",
+                              step, grid.getPointsPerInput(), grid.getSizeInBytes() / 1024, buildMs,
+                              100 * grid.getInferredShare(), meanError, maxError);
+            assertTrue(meanError <= maxError);
+            assertTrue("Error should stay within a category", maxError < MAX_ERROR);
+        }
+    }
+
+    @Test
+    public void testGridIsPersistedByFclHash() throws IOException {
+        System.out.println("\n--- Test: Grid Is Persisted By FCL Hash ---");
+
+        QualityLookupGrid built = QualityLookupGrid.loadOrBuild(ruleBase, STEP, gridDirectory);
+        assertFalse(built.isLoadedFromDisk());
+
+        long start = System.nanoTime();
+        QualityLookupGrid loaded = QualityLookupGrid.loadOrBuild(ruleBase, STEP, gridDirectory);
+        long loadMs = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("Second start should read the grid from disk", loaded.isLoadedFromDisk());
+        System.out.println("Grid read from disk in " + loadMs + " ms");
+
+        double[] input = {7.3, 8.1, 6.6, 9.4, 5.2};
+        assertEquals(built.lookup(input), loaded.lookup(input), 0.0);
+
+        // Edited rules get a grid of their own, the stale one is removed
+        String fcl = new String(Files.readAllBytes(Paths.get(FCL_FILE_PATH)), StandardCharsets.UTF_8);
+        FuzzyRuleBase edited = FuzzyRuleBase.fromFcl(fcl.replace("DEFAULT := 5;", "DEFAULT := 4;"));
+        assertNotEquals(ruleBase.getHash(), edited.getHash());
+        QualityLookupGrid rebuilt = QualityLookupGrid.loadOrBuild(edited, STEP, gridDirectory);
+        assertFalse(rebuilt.isLoadedFromDisk());
+        try (Stream<Path> files = Files.list(gridDirectory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testEvaluatorLookupMode() throws InterruptedException {
+        System.out.println("\n--- Test: Evaluator Lookup Mode ---");
+
+        FilmQualityEvaluator evaluator = new FilmQualityEvaluator(ScoringMode.LOOKUP_GRID, STEP);
+        assertNotNull(evaluator.awaitLookupGrid());
+        assertSame(evaluator.awaitLookupGrid(), evaluator.getLookupGrid());
+
+        double quality = evaluator.evaluateFilm(9.0, 9.0, 9.0, 8.0, 9.0);
+        assertEquals(ruleBase.newCompiledEngine().evaluate(new double[] {9.0, 9.0, 9.0, 8.0, 9.0}), quality, 1e-5);
+
+        double[] batch = new double[1];
+        evaluator.evaluateBatch(new double[] {9.0}, new double[] {9.0}, new double[] {9.0},
+                                new double[] {8.0}, new double[] {9.0}, batch);
+        assertEquals(quality, batch[0], 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStep() {
+        System.out.println("\n--- Test: Invalid Step ---");
+        QualityLookupGrid.build(ruleBase, 0.3);
+    }
+}
@@ -0,0 +1,155 @@
+package rs.ftn.ns.test;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.fuzzy.FilmQualityEvaluator;
+import rs.ftn.ns.fuzzy.ScoringMode;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.ModelChange;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.QualityMaterializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for storing fuzzy quality scores in the ontology.
+ */
+public class QualityMaterializerTest {
+
+    private static final String FCL_FILE_PATH = "src/main/resources/fuzzy/film_quality.fcl";
+
+    private OntologyManager manager;
+    private FilmQueryService queryService;
+    private FilmQualityEvaluator evaluator;
+    private QualityMaterializer materializer;
+
+    @Before
+    public void setUp() {
+        manager = new OntologyManager();
+        queryService = new FilmQueryService(manager);
+        evaluator = new FilmQualityEvaluator();
+        materializer = new QualityMaterializer(manager, evaluator);
+    }
+
+    @After
+    public void tearDown() {
+        queryService.close();
+    }
+
+    @Test
+    public void testMaterializeOnce() {
+        System.out.println("\n--- Test: Materialize Once ---");
+
+        int films = queryService.getAllFilms().size();
+        assertEquals(films, materializer.materialize());
+        assertEquals("Nothing changed, nothing to do", 0, materializer.materialize());
+        assertEquals(evaluator.getRuleBase().getHash(), materializer.getMaterializedRulesHash());
+
+        Film inception = queryService.loadFilm("Inception");
+        System.out.printf("Inception: %.4f (%s)%n", inception.getQualityScore(), inception.getQualityCategory());
+        assertEquals(evaluator.evaluateFilm(inception), inception.getQualityScore(), 0.01);
+        assertEquals(evaluator.getQualityCategory(inception.getQualityScore()), inception.getQualityCategory());
+    }
+
+    @Test
+    public void testMaterializeIsOneChange() {
+        System.out.println("\n--- Test: Materialize Is One Change ---");
+
+        List<ModelChange> changes = new ArrayList<>();
+        manager.addChangeListener(changes::add);
+        queryService.getAllFilms();
+        long version = manager.getModelVersion();
+
+        int films = materializer.materialize();
+        System.out.println("Scored " + films + " films, model version " + version + " -> " + manager.getModelVersion());
+        assertEquals("The whole run should be one update", version + 1, manager.getModelVersion());
+        assertEquals(1, changes.size());
+        assertTrue(films > 0);
+        assertEquals(films, changes.get(0).getFilms().size());
+    }
+
+    @Test
+    public void testQueriesByQuality() {
+        System.out.println("\n--- Test: Queries By Quality ---");
+
+        assertTrue("Nothing is materialized yet", queryService.findFilmsByMinQuality(0).isEmpty());
+        materializer.materialize();
+
+        List<Film> all = queryService.findFilmsByMinQuality(0);
+        assertEquals(queryService.getAllFilms().size(), all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getQualityScore() >= all.get(i).getQualityScore());
+        }
+
+        List<Film> good = queryService.findFilmsByMinQuality(7);
+        System.out.println("Films with quality >= 7: " + good.size());
+        for (Film film : good) {
+            assertTrue(film.getQualityScore() >= 7);
+        }
+
+        int categorized = 0;
+        for (String category : new String[] {"Bad", "Mediocre", "Good", "Excellent"}) {
+            List<Film> films = queryService.findFilmsByQualityCategory(category);
+            System.out.println(category + ": " + films.size());
+            for (Film film : films) {
+                assertEquals(category, film.getQualityCategory());
+            }
+            categorized += films.size();
+        }
+        assertEquals(all.size(), categorized);
+    }
+
+    @Test
+    public void testOnlyChangedFilmsAreRecomputed() {
+        System.out.println("\n--- Test: Only Changed Films Are Recomputed ---");
+
+        materializer.materialize();
+        double before = queryService.loadFilm("Inception").getQualityScore();
+
+        OntModel model = manager.getOntologyModel();
+        Resource inception = model.getResource(manager.getDataNamespace() + "Inception");
+        Property acting = model.createProperty(manager.getSchemaNamespace() + "actingScore");
+        inception.removeAll(acting);
+        inception.addLiteral(acting, 1.0);
+
+        assertEquals(1, materializer.materialize());
+        double after = queryService.loadFilm("Inception").getQualityScore();
+        System.out.printf("Inception: %.4f before, %.4f after%n", before, after);
+        assertTrue(after < before);
+    }
+
+    @Test
+    public void testChangedRulesRecomputeEverything() throws IOException {
+        System.out.println("\n--- Test: Changed Rules Recompute Everything ---");
+
+        materializer.materialize();
+
+        String fcl = new String(Files.readAllBytes(Paths.get(FCL_FILE_PATH)), StandardCharsets.UTF_8);
+        Path fclFile = Files.createTempFile("film_quality", ".fcl");
+        try {
+            Files.write(fclFile, fcl.replace("THEN quality IS bad;", "THEN quality IS mediocre;")
+                                    .getBytes(StandardCharsets.UTF_8));
+            FilmQualityEvaluator changed = new FilmQualityEvaluator(fclFile, ScoringMode.INFERENCE, 0);
+            QualityMaterializer rematerializer = new QualityMaterializer(manager, changed);
+
+            assertEquals(queryService.getAllFilms().size(), rematerializer.materialize());
+            assertEquals(changed.getRuleBase().getHash(), rematerializer.getMaterializedRulesHash());
+            assertEquals(0, rematerializer.materialize());
+        } finally {
+            Files.deleteIfExists(fclFile);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package rs.ftn.ns.test;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import rs.ftn.ns.cache.CacheStats;
+import rs.ftn.ns.cache.LruCache;
+import rs.ftn.ns.cache.LruFilmResultCache;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.StorageMode;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the film query result cache.
+ */
+public class ResultCacheTest {
+
+    private static final String ONTOLOGY_PATH = "src/main/resources/ontology/film-data.owl";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private OntologyManager manager;
+    private FilmQueryService queryService;
+
+    @Before
+    public void setUp() {
+        manager = new OntologyManager();
+        queryService = new FilmQueryService(manager);
+    }
+
+    @After
+    public void tearDown() {
+        queryService.close();
+    }
+
+    @Test
+    public void testRepeatedLookupHitsCache() {
+        System.out.println("\n--- Test: Repeated Lookup Hits Cache ---");
+
+        List<Film> first = queryService.findFilmsByGenre("Drama");
+        List<Film> second = queryService.findFilmsByGenre("Drama");
+        queryService.findFilmsByYearRange(1990, 1999);
+
+        CacheStats stats = manager.getResultCache().getStats();
+        System.out.println(stats);
+
+        assertEquals(first.size(), second.size());
+        assertEquals(1, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(2, stats.getSize());
+    }
+
+    @Test
+    public void testResultsAreImmutableSnapshots() {
+        System.out.println("\n--- Test: Cached Results Are Immutable Snapshots ---");
+
+        List<Film> films = queryService.findFilmsByDirector("Christopher Nolan");
+        try {
+            films.clear();
+            fail("Cached results should be unmodifiable");
+        } catch (UnsupportedOperationException expected) {
+            // ok
+        }
+
+        String title = films.get(0).getTitle();
+        films.get(0).setTitle("Corrupted");
+        films.get(0).getDirector().setName("Corrupted");
+        assertEquals("A film read again should be the caller's own copy", "Corrupted", films.get(0).getTitle());
+
+        List<Film> again = queryService.findFilmsByDirector("Christopher Nolan");
+        assertEquals(title, again.get(0).getTitle());
+        assertEquals("Christopher Nolan", again.get(0).getDirector().getName());
+    }
+
+    @Test
+    public void testModelChangeInvalidatesCache() {
+        System.out.println("\n--- Test: Model Change Invalidates Cache ---");
+
+        int before = queryService.findFilmsByGenre("Drama").size();
+
+        OntModel model = manager.getOntologyModel();
+        String schemaNs = manager.getSchemaNamespace();
+        String dataNs = manager.getDataNamespace();
+        Resource film = model.createResource(dataNs + "Cache_Test_Film");
+        film.addProperty(RDF.type, model.createResource(schemaNs + "Film"));
+        film.addProperty(model.createProperty(schemaNs + "hasTitle"), "Cache Test Film");
+        film.addProperty(model.createProperty(schemaNs + "hasGenre"), model.createResource(dataNs + "Drama"));
+
+        assertEquals("New film should be visible after the change", before + 1,
+                     queryService.findFilmsByGenre("Drama").size());
+
+        manager.reload();
+        assertEquals("Reload should drop the added film again", before,
+                     queryService.findFilmsByGenre("Drama").size());
+    }
+
+    @Test
+    public void testBulkWriteInvalidatesOnce() {
+        System.out.println("\n--- Test: Bulk Write Invalidates Once ---");
+
+        int before = queryService.findFilmsByGenre("Drama").size();
+        long version = manager.getModelVersion();
+
+        OntModel model = manager.getOntologyModel();
+        String schemaNs = manager.getSchemaNamespace();
+        String dataNs = manager.getDataNamespace();
+        manager.executeWrite(() -> {
+            for (int i = 0; i < 100; i++) {
+                Resource film = model.createResource(dataNs + "Bulk_Test_Film_" + i);
+                film.addProperty(RDF.type, model.createResource(schemaNs + "Film"));
+                film.addProperty(model.createProperty(schemaNs + "hasTitle"), "Bulk Test Film " + i);
+                film.addProperty(model.createProperty(schemaNs + "hasGenre"), model.createResource(dataNs + "Drama"));
+            }
+        });
+
+        assertEquals("300 statements in one write should count as one change", version + 1,
+                     manager.getModelVersion());
+        assertEquals(before + 100, queryService.findFilmsByGenre("Drama").size());
+    }
+
+    @Test
+    public void testFailedReloadKeepsModel() throws Exception {
+        System.out.println("\n--- Test: Failed Reload Keeps The Model ---");
+
+        File source = tempFolder.newFile("film-data.owl");
+        Files.copy(new File(ONTOLOGY_PATH).toPath(), source.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        OntologyManager own = new OntologyManager(StorageMode.MEMORY, source.getPath(), null);
+        FilmQueryService service = new FilmQueryService(own);
+        OntModel model = own.getOntologyModel();
+        int films = service.getAllFilms().size();
+        long version = own.getModelVersion();
+
+        Files.write(source.toPath(), "<rdf:RDF> not RDF/XML".getBytes());
+        try {
+            own.reload();
+            fail("Reload of a broken file should fail");
+        } catch (IllegalStateException expected) {
+            System.out.println(expected.getMessage());
+        }
+
+        assertSame("The loaded model should stay in place", model, own.getOntologyModel());
+        assertEquals("Nothing derived from the model should be dropped", version, own.getModelVersion());
+        assertEquals(films, service.getAllFilms().size());
+        assertEquals(films, own.getFilmIndex().size());
+        service.close();
+        own.close();
+    }
+
+    @Test
+    public void testEvictionAndExpiry() throws Exception {
+        System.out.println("\n--- Test: Size And TTL Eviction ---");
+
+        LruCache<String, Integer> cache = new LruCache<>(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertNull("Least recently used entry should be evicted", cache.get("b"));
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertEquals(1, cache.getStats().getEvictions());
+
+        manager.setResultCache(new LruFilmResultCache(10, 50, TimeUnit.MILLISECONDS));
+        queryService.getAllFilms();
+        Thread.sleep(100);
+        queryService.getAllFilms();
+
+        CacheStats stats = manager.getResultCache().getStats();
+        System.out.println(stats);
+        assertEquals("Expired entry should be reloaded", 2, stats.getMisses());
+        assertEquals(1, stats.getEvictions());
+    }
+}
@@ -0,0 +1,194 @@
+package rs.ftn.ns.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.fuzzy.FilmQualityEvaluator;
+import rs.ftn.ns.fuzzy.FuzzyRuleBase;
+import rs.ftn.ns.fuzzy.ScoringMode;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for replacing the fuzzy rules of a running evaluator.
+ */
+public class RuleReloadTest {
+
+    private static final String FCL_FILE_PATH = "src/main/resources/fuzzy/film_quality.fcl";
+    private static final int THREADS = 4;
+
+    private String originalFcl;
+    private String changedFcl;
+    private Path fclFile;
+    private FilmQualityEvaluator evaluator;
+
+    @Before
+    public void setUp() throws IOException {
+        originalFcl = new String(Files.readAllBytes(Paths.get(FCL_FILE_PATH)), StandardCharsets.UTF_8);
+        // Poor direction or acting now only makes a film mediocre
+        changedFcl = originalFcl.replace("THEN quality IS bad;", "THEN quality IS mediocre;");
+        assertNotEquals(originalFcl, changedFcl);
+
+        fclFile = Files.createTempDirectory("fcl-reload").resolve("film_quality.fcl");
+        write(originalFcl);
+        evaluator = new FilmQualityEvaluator(fclFile, ScoringMode.INFERENCE, 0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        evaluator.close();
+        Files.deleteIfExists(fclFile);
+        Files.deleteIfExists(fclFile.getParent());
+    }
+
+    @Test
+    public void testReloadSwapsRules() throws IOException {
+        System.out.println("\n--- Test: Reload Swaps Rules ---");
+
+        double before = poorFilmScore();
+        FuzzyRuleBase oldRules = evaluator.getRuleBase();
+        assertSame("Unchanged file should keep the rules", oldRules, evaluator.reload());
+
+        write(changedFcl);
+        FuzzyRuleBase newRules = evaluator.reload();
+        double after = poorFilmScore();
+
+        System.out.printf("Poor film: %.4f before, %.4f after%n", before, after);
+        assertNotSame(oldRules, newRules);
+        assertSame(newRules, evaluator.getRuleBase());
+        assertTrue(after > before);
+        assertNull(evaluator.getLastReloadError());
+    }
+
+    @Test
+    public void testBadFileKeepsOldRules() throws IOException {
+        System.out.println("\n--- Test: Bad File Keeps Old Rules ---");
+
+        double before = poorFilmScore();
+        FuzzyRuleBase oldRules = evaluator.getRuleBase();
+
+        write(originalFcl.substring(0, originalFcl.indexOf("RULEBLOCK")));
+        try {
+            evaluator.reload();
+            fail("Broken FCL should not load");
+        } catch (IllegalStateException e) {
+            System.out.println("Rejected: " + e.getMessage());
+        }
+
+        assertSame(oldRules, evaluator.getRuleBase());
+        assertNotNull(evaluator.getLastReloadError());
+        assertEquals(before, poorFilmScore(), 0.0);
+
+        write(changedFcl);
+        evaluator.reload();
+        assertNull(evaluator.getLastReloadError());
+    }
+
+    @Test
+    public void testReplacedRulesAreReleased() throws Exception {
+        System.out.println("\n--- Test: Replaced Rules Are Released ---");
+
+        // Rules no other test loads, so only this evaluator holds them
+        write(originalFcl.replace("DEFAULT := 5;", "DEFAULT := 4.5;"));
+        WeakReference<FuzzyRuleBase> replaced = new WeakReference<>(evaluator.reload());
+        poorFilmScore();
+
+        write(originalFcl);
+        evaluator.reload();
+        assertTrue("Replaced rules should be garbage collected", waitFor(() -> {
+            System.gc();
+            return replaced.get() == null;
+        }));
+    }
+
+    @Test
+    public void testWatcherPicksUpChanges() throws Exception {
+        System.out.println("\n--- Test: Watcher Picks Up Changes ---");
+
+        FuzzyRuleBase oldRules = evaluator.getRuleBase();
+        evaluator.watchRuleFile();
+
+        write("this is not FCL");
+        assertTrue("Failed reload should be reported", waitFor(() -> evaluator.getLastReloadError() != null));
+        assertSame(oldRules, evaluator.getRuleBase());
+
+        write(changedFcl);
+        assertTrue("Watcher should load the new rules", waitFor(() -> evaluator.getRuleBase() != oldRules));
+        assertNull(evaluator.getLastReloadError());
+        System.out.println("Now scoring with " + evaluator.getRuleBase().getHash().substring(0, 12));
+    }
+
+    @Test
+    public void testScoringDuringReloads() throws Exception {
+        System.out.println("\n--- Test: Scoring During Reloads ---");
+
+        double original = poorFilmScore();
+        write(changedFcl);
+        evaluator.reload();
+        double changed = poorFilmScore();
+
+        // Every score must come from one version or the other, never a mix
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(executor.submit(() -> {
+                int scored = 0;
+                while (running.get()) {
+                    double score = poorFilmScore();
+                    if (score != original && score != changed) {
+                        throw new AssertionError("Unexpected score " + score);
+                    }
+                    scored++;
+                }
+                return scored;
+            }));
+        }
+
+        for (int i = 0; i < 20; i++) {
+            write(i % 2 == 0 ? originalFcl : changedFcl);
+            evaluator.reload();
+        }
+        running.set(false);
+
+        int scored = 0;
+        for (Future<Integer> result : results) {
+            scored += result.get();
+        }
+        executor.shutdown();
+        System.out.println("Scored " + scored + " films across 20 reloads");
+    }
+
+    private double poorFilmScore() {
+        return evaluator.evaluateFilm(1, 1, 5, 5, 5);
+    }
+
+    private void write(String fcl) throws IOException {
+        Files.write(fclFile, fcl.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+}
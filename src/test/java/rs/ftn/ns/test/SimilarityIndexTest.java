@@ -0,0 +1,200 @@
+package rs.ftn.ns.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.index.SimilarityIndex;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.model.SimilarFilm;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the "more like this" similarity index.
+ */
+public class SimilarityIndexTest {
+
+    private static final int SYNTHETIC_FILMS = 100_000;
+    private static final int QUERIES = 500;
+    private static final int N = 10;
+
+    private OntologyManager manager;
+    private FilmQueryService queryService;
+
+    @Before
+    public void setUp() {
+        manager = new OntologyManager();
+        queryService = new FilmQueryService(manager);
+    }
+
+    @After
+    public void tearDown() {
+        queryService.close();
+    }
+
+    @Test
+    public void testMoreLikeInception() {
+        System.out.println("\n--- Test: More Like Inception ---");
+
+        List<SimilarFilm> similar = queryService.findSimilarFilms("Inception", 5);
+        similar.forEach(System.out::println);
+
+        assertEquals(5, similar.size());
+        assertEquals("Same director should rank first",
+                     "Christopher Nolan", similar.get(0).getFilm().getDirector().getName());
+        for (int i = 0; i < similar.size(); i++) {
+            assertNotEquals("Inception", similar.get(i).getFilm().getId());
+            if (i > 0) {
+                assertTrue(similar.get(i - 1).getSimilarity() >= similar.get(i).getSimilarity());
+            }
+        }
+        assertTrue(queryService.findSimilarFilms("No_Such_Film", 5).isEmpty());
+    }
+
+    @Test
+    public void testMatchesExhaustiveSearch() {
+        System.out.println("\n--- Test: Matches Exhaustive Search ---");
+
+        SimilarityIndex index = manager.getSimilarityIndex();
+        System.out.println("Films: " + index.size() + ", features: " + index.getFeatureCount());
+        for (Film film : queryService.getAllFilms()) {
+            assertEquals(ids(index.similarExhaustive(film.getId(), N)), ids(index.similar(film.getId(), N)));
+        }
+        assertSame("Unchanged model should reuse the index", index, manager.getSimilarityIndex());
+    }
+
+    @Test
+    public void testRecallOnSyntheticCatalog() {
+        System.out.println("\n--- Test: Recall On Synthetic Catalog (" + SYNTHETIC_FILMS + " films) ---");
+
+        long start = System.nanoTime();
+        SimilarityIndex index = syntheticIndex(SYNTHETIC_FILMS, new Random(17));
+        System.out.println("Built in " + (System.nanoTime() - start) / 1_000_000 + " ms, " +
+                           index.getFeatureCount() + " features");
+
+        Random random = new Random(23);
+        String[] queries = new String[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = filmId(random.nextInt(SYNTHETIC_FILMS));
+        }
+
+        // Warm up both paths
+        for (String query : queries) {
+            index.similar(query, N);
+            index.similarExhaustive(query, N);
+        }
+
+        List<List<SimilarityIndex.Match>> found = new ArrayList<>(QUERIES);
+        start = System.nanoTime();
+        for (String query : queries) {
+            found.add(index.similar(query, N));
+        }
+        double indexUs = (System.nanoTime() - start) / 1000.0 / QUERIES;
+
+        List<List<SimilarityIndex.Match>> exact = new ArrayList<>(QUERIES);
+        start = System.nanoTime();
+        for (String query : queries) {
+            exact.add(index.similarExhaustive(query, N));
+        }
+        double bruteForceUs = (System.nanoTime() - start) / 1000.0 / QUERIES;
+
+        // A film counts as found if it is at least as similar as the exact
+        // N-th film, so ties at the cut-off are not held against the index
+        int hits = 0;
+        int expected = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            List<SimilarityIndex.Match> truth = exact.get(q);
+            expected += truth.size();
+            if (truth.isEmpty()) {
+                continue;
+            }
+            double cutOff = truth.get(truth.size() - 1).getSimilarity();
+            for (SimilarityIndex.Match match : found.get(q)) {
+                if (match.getSimilarity() >= cutOff) {
+                    hits++;
+                }
+            }
+        }
+        double recall = (double) hits / expected;
+
+        System.out.printf("Inverted lists: %.1f us/query%n", indexUs);
+        System.out.printf("Brute force:    %.1f us/query%n", bruteForceUs);
+        System.out.printf("Recall@%d:      %.4f%n", N, recall);
+        assertTrue(recall > 0.9);
+    }
+
+    /**
+     * Films drawn from Zipf-distributed pools of people, the way a few
+     * actors and directors appear in many films and most in few
+     */
+    private static SimilarityIndex syntheticIndex(int films, Random random) {
+        Zipf actors = new Zipf(films / 5, 1.0);
+        Zipf directors = new Zipf(films / 20, 0.9);
+        Zipf writers = new Zipf(films / 12, 0.9);
+        Zipf genres = new Zipf(20, 0.8);
+        Zipf countries = new Zipf(40, 1.2);
+        Zipf languages = new Zipf(25, 1.4);
+
+        SimilarityIndex.Builder builder = SimilarityIndex.builder();
+        List<String> features = new ArrayList<>();
+        for (int i = 0; i < films; i++) {
+            features.clear();
+            features.add("directedBy director" + directors.next(random));
+            features.add("writtenBy writer" + writers.next(random));
+            for (int a = 0; a < 5; a++) {
+                features.add("hasActor actor" + actors.next(random));
+            }
+            for (int g = 0; g < 1 + random.nextInt(3); g++) {
+                features.add("hasGenre genre" + genres.next(random));
+            }
+            features.add("setIn country" + countries.next(random));
+            features.add("spokenIn language" + languages.next(random));
+            features.add("decade " + (1920 + 10 * random.nextInt(11)));
+            builder.add(filmId(i), features);
+        }
+        return builder.build(0);
+    }
+
+    private static String filmId(int i) {
+        // Zero padded, so ids sort like the ordinals
+        return String.format("Film_%06d", i);
+    }
+
+    private static List<String> ids(List<SimilarityIndex.Match> matches) {
+        List<String> ids = new ArrayList<>();
+        for (SimilarityIndex.Match match : matches) {
+            ids.add(match.getFilmId());
+        }
+        return ids;
+    }
+
+    /**
+     * Draws 0..size-1 with probability proportional to 1 / (rank + 1)^exponent
+     */
+    private static final class Zipf {
+
+        private final double[] cumulative;
+
+        Zipf(int size, double exponent) {
+            cumulative = new double[size];
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += 1.0 / Math.pow(i + 1, exponent);
+                cumulative[i] = sum;
+            }
+        }
+
+        int next(Random random) {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int index = Arrays.binarySearch(cumulative, target);
+            return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package rs.ftn.ns.test;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.shared.Lock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the streaming and push-style query API.
+ */
+public class StreamingQueryTest {
+
+    private OntologyManager manager;
+    private FilmQueryService queryService;
+
+    @Before
+    public void setUp() {
+        manager = new OntologyManager();
+        queryService = new FilmQueryService(manager);
+    }
+
+    @After
+    public void tearDown() {
+        queryService.close();
+    }
+
+    @Test
+    public void testStreamsMatchLists() {
+        System.out.println("\n--- Test: Streams Match Lists ---");
+
+        assertEquals(titles(queryService.getAllFilms()), streamedTitles(queryService.streamAllFilms()));
+        assertEquals(titles(queryService.findFilmsByGenre("Drama")),
+                     streamedTitles(queryService.streamFilmsByGenre("Drama")));
+        assertEquals(titles(queryService.findFilmsByDirector("Christopher Nolan")),
+                     streamedTitles(queryService.streamFilmsByDirector("Christopher Nolan")));
+        assertEquals(titles(queryService.findFilmsByYearRange(1990, 1999)),
+                     streamedTitles(queryService.streamFilmsByYearRange(1990, 1999)));
+    }
+
+    @Test
+    public void testPushStyleCallback() {
+        System.out.println("\n--- Test: Push-Style Callback ---");
+
+        List<Film> pushed = new ArrayList<>();
+        queryService.forEachFilmByGenre("Drama", pushed::add);
+
+        assertEquals(queryService.findFilmsByGenre("Drama").size(), pushed.size());
+        System.out.println("Pushed " + pushed.size() + " drama films");
+    }
+
+    @Test
+    public void testEarlyCloseReleasesReadLock() throws Exception {
+        System.out.println("\n--- Test: Early Close Releases Read Lock ---");
+
+        try (Stream<Film> films = queryService.streamAllFilms()) {
+            Iterator<Film> iterator = films.iterator();
+            assertTrue(iterator.hasNext());
+            iterator.next();
+            assertFalse("A writer must wait while the stream is open", tryWriteLock());
+        }
+
+        assertTrue("A writer should get in once the stream is closed", tryWriteLock());
+    }
+
+    @Test
+    public void testExhaustedStreamReleasesReadLock() throws Exception {
+        System.out.println("\n--- Test: Exhausted Stream Releases Read Lock ---");
+
+        // Consumed to the end without an explicit close
+        long count = queryService.streamAllFilms().count();
+        assertTrue(count >= 20);
+        assertTrue("A writer should get in once the stream is exhausted", tryWriteLock());
+    }
+
+    /**
+     * Tries to take the write lock from another thread within a short timeout
+     */
+    private boolean tryWriteLock() throws Exception {
+        OntModel model = manager.getOntologyModel();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> writer = executor.submit(() -> {
+            model.enterCriticalSection(Lock.WRITE);
+            model.leaveCriticalSection();
+        });
+        try {
+            writer.get(500, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } finally {
+            // A blocked writer simply finishes once the lock is released
+            executor.shutdown();
+        }
+    }
+
+    private static List<String> titles(List<Film> films) {
+        return films.stream().map(Film::getTitle).sorted().collect(Collectors.toList());
+    }
+
+    private static List<String> streamedTitles(Stream<Film> films) {
+        try (Stream<Film> stream = films) {
+            return stream.map(Film::getTitle).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package rs.ftn.ns.test;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.index.CollaborationGraph;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.StorageMode;
+import rs.ftn.ns.ontology.SyntheticCatalogGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the synthetic catalog generator.
+ */
+public class SyntheticCatalogTest {
+
+    private static final String SCHEMA_PATH = "src/main/resources/ontology/film-schema.owl";
+    private static final String SCHEMA_NS = "http://www.semanticweb.org/dusan/ontologies/2025/11/movie-app#";
+    private static final int FILMS = 2000;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("synthetic-catalog");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testSameSeedSameCatalog() {
+        System.out.println("\n--- Test: Same Seed, Same Catalog ---");
+
+        byte[] first = generate(FILMS, 7);
+        byte[] second = generate(FILMS, 7);
+        byte[] other = generate(FILMS, 8);
+        System.out.println(FILMS + " films: " + first.length / 1024 + " KB of N-Triples");
+
+        assertArrayEquals(first, second);
+        assertFalse(Arrays.equals(first, other));
+    }
+
+    @Test
+    public void testCatalogConformsToSchema() {
+        System.out.println("\n--- Test: Catalog Conforms To Schema ---");
+
+        Model schema = RDFDataMgr.loadModel(SCHEMA_PATH);
+        Model catalog = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(catalog, new ByteArrayInputStream(generate(FILMS, 7)), Lang.NTRIPLES);
+        System.out.println("Triples: " + catalog.size());
+
+        Set<Property> used = new HashSet<>();
+        StmtIterator statements = catalog.listStatements();
+        while (statements.hasNext()) {
+            used.add(statements.next().getPredicate());
+        }
+        used.remove(RDF.type);
+        for (Property property : used) {
+            assertTrue("Not in the schema: " + property, schema.containsResource(property));
+        }
+        StmtIterator types = catalog.listStatements(null, RDF.type, (RDFNode) null);
+        while (types.hasNext()) {
+            Statement type = types.next();
+            assertTrue("Not in the schema: " + type.getObject(), schema.containsResource(type.getObject()));
+        }
+
+        Resource filmClass = catalog.createResource(SCHEMA_NS + "Film");
+        assertEquals(FILMS, catalog.listSubjectsWithProperty(RDF.type, filmClass).toList().size());
+    }
+
+    @Test
+    public void testLoadsAndQueries() throws IOException {
+        System.out.println("\n--- Test: Loads And Queries ---");
+
+        SyntheticCatalogGenerator generator = new SyntheticCatalogGenerator(FILMS, 7);
+        Path turtle = directory.resolve("catalog.ttl");
+        generator.write(turtle);
+
+        OntologyManager manager = new OntologyManager(StorageMode.MEMORY, turtle.toString(), null);
+        FilmQueryService queryService = new FilmQueryService(manager);
+        try {
+            assertEquals(FILMS, queryService.getAllFilms().size());
+            assertFalse(queryService.findFilmsByGenre("Drama").isEmpty());
+
+            Film film = queryService.loadFilm(SyntheticCatalogGenerator.filmId(0));
+            System.out.println(film);
+            assertNotNull(film.getDirector());
+            assertTrue(film.getActors().size() >= 3);
+            assertTrue(film.getImdbRating() >= 1 && film.getImdbRating() <= 10);
+
+            // Zipfian popularity: the most popular actor is in far more films than the average one
+            CollaborationGraph graph = manager.getCollaborationGraph();
+            int top = graph.filmsWithinHops(SyntheticCatalogGenerator.actorId(0), 1).size();
+            double average = (double) countRoles(manager) / generator.getActorCount();
+            System.out.printf("Most popular actor: %d films, average: %.1f%n", top, average);
+            assertTrue(top > 10 * average);
+        } finally {
+            queryService.close();
+        }
+    }
+
+    @Test
+    public void testLoadsCompressedNTriples() throws IOException {
+        System.out.println("\n--- Test: Loads Compressed N-Triples ---");
+
+        Path file = directory.resolve("catalog.nt.gz");
+        new SyntheticCatalogGenerator(100, 7).write(file);
+
+        OntologyManager manager = new OntologyManager(StorageMode.MEMORY, file.toString(), null);
+        try {
+            List<Film> films = new FilmQueryService(manager).getAllFilms();
+            assertEquals(100, films.size());
+        } finally {
+            manager.close();
+        }
+    }
+
+    private static long countRoles(OntologyManager manager) {
+        Property hasActor = manager.getOntologyModel().createProperty(SCHEMA_NS + "hasActor");
+        return manager.getOntologyModel().listStatements(null, hasActor, (RDFNode) null).toList().size();
+    }
+
+    private static byte[] generate(int films, long seed) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SyntheticCatalogGenerator(films, seed).write(out, Lang.NTRIPLES);
+        return out.toByteArray();
+    }
+}
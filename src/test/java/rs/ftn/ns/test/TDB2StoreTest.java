@@ -0,0 +1,119 @@
+package rs.ftn.ns.test;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.ontology.StorageMode;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the persistent TDB2 storage mode.
+ */
+public class TDB2StoreTest {
+
+    private static final String ONTOLOGY_PATH = "src/main/resources/ontology/film-data.owl";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testImportOnceThenReuse() throws Exception {
+        System.out.println("\n--- Test: TDB2 Import Once Then Reuse ---");
+
+        String storeDir = tempFolder.newFolder("tdb2").getPath();
+
+        long start = System.nanoTime();
+        OntologyManager first = new OntologyManager(StorageMode.TDB2, ONTOLOGY_PATH, storeDir);
+        long importMs = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("First open should import the source", first.isSourceImported());
+
+        FilmQueryService firstService = new FilmQueryService(first);
+        int filmCount = firstService.getAllFilms().size();
+        firstService.close();
+
+        start = System.nanoTime();
+        OntologyManager second = new OntologyManager(StorageMode.TDB2, ONTOLOGY_PATH, storeDir);
+        long reopenMs = (System.nanoTime() - start) / 1_000_000;
+        assertFalse("Unchanged source should not be imported again", second.isSourceImported());
+
+        FilmQueryService secondService = new FilmQueryService(second);
+        assertEquals("Reopened store should hold the same films", filmCount, secondService.getAllFilms().size());
+        secondService.close();
+
+        System.out.println("Import: " + importMs + " ms, reopen: " + reopenMs + " ms");
+    }
+
+    @Test
+    public void testReimportWhenSourceChanges() throws Exception {
+        System.out.println("\n--- Test: TDB2 Reimport On Checksum Change ---");
+
+        String storeDir = tempFolder.newFolder("tdb2").getPath();
+        File source = tempFolder.newFile("film-data.owl");
+        Path sourcePath = source.toPath();
+        Files.copy(new File(ONTOLOGY_PATH).toPath(), sourcePath, StandardCopyOption.REPLACE_EXISTING);
+
+        OntologyManager manager = new OntologyManager(StorageMode.TDB2, source.getPath(), storeDir);
+        assertTrue(manager.isSourceImported());
+        manager.close();
+
+        // Any change to the file content changes the checksum
+        Files.write(sourcePath, "\n<!-- edited -->\n".getBytes(), StandardOpenOption.APPEND);
+
+        manager = new OntologyManager(StorageMode.TDB2, source.getPath(), storeDir);
+        assertTrue("Changed source should be imported again", manager.isSourceImported());
+
+        FilmQueryService service = new FilmQueryService(manager);
+        List<Film> films = service.getAllFilms();
+        assertTrue("Should have at least 20 films", films.size() >= 20);
+        service.close();
+    }
+
+    @Test
+    public void testReopenServesStoredInferences() throws Exception {
+        System.out.println("\n--- Test: TDB2 Reopen Serves Stored Inferences ---");
+
+        String storeDir = tempFolder.newFolder("tdb2").getPath();
+        OntologyManager first = new OntologyManager(StorageMode.TDB2, ONTOLOGY_PATH, storeDir);
+        long inferred = first.calculateRead(() -> first.getInferredModel().size());
+        assertTrue("Import should materialize inferences", inferred > 0);
+        first.close();
+
+        OntologyManager second = new OntologyManager(StorageMode.TDB2, ONTOLOGY_PATH, storeDir);
+        assertEquals("Reopened store should serve the same inferred statements",
+                     inferred, (long) second.calculateRead(() -> second.getInferredModel().size()));
+        FilmQueryService memory = new FilmQueryService();
+        assertEquals("Indexes should be built on the first lookup",
+                     memory.getAllFilms().size(), second.getFilmIndex().size());
+        memory.close();
+        second.close();
+    }
+
+    @Test
+    public void testQueriesMatchMemoryMode() throws Exception {
+        System.out.println("\n--- Test: TDB2 Results Match Memory Mode ---");
+
+        FilmQueryService memory = new FilmQueryService();
+        FilmQueryService tdb2 = new FilmQueryService(
+            new OntologyManager(StorageMode.TDB2, ONTOLOGY_PATH, tempFolder.newFolder("tdb2").getPath()));
+
+        assertEquals(memory.findFilmsByGenre("Drama").size(), tdb2.findFilmsByGenre("Drama").size());
+        assertEquals(memory.findFilmsByDirector("Christopher Nolan").size(),
+                     tdb2.findFilmsByDirector("Christopher Nolan").size());
+        assertEquals(memory.findFilmsByYearRange(2000, 2010).size(),
+                     tdb2.findFilmsByYearRange(2000, 2010).size());
+
+        memory.close();
+        tdb2.close();
+    }
+}
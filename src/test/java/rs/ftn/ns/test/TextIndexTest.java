@@ -0,0 +1,140 @@
+package rs.ftn.ns.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.index.TextIndex;
+import rs.ftn.ns.model.MatchedFilm;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+import rs.ftn.ns.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the full-text search index.
+ */
+public class TextIndexTest {
+
+    private OntologyManager manager;
+    private FilmQueryService queryService;
+
+    @Before
+    public void setUp() {
+        manager = new OntologyManager();
+        queryService = new FilmQueryService(manager);
+    }
+
+    @After
+    public void tearDown() {
+        queryService.close();
+    }
+
+    @Test
+    public void testSearchTitlesAndPeople() {
+        System.out.println("\n--- Test: Search Titles And People ---");
+
+        TextIndex index = manager.getTextIndex();
+        System.out.println("Films: " + index.size() + ", words: " + index.getTermCount());
+
+        List<MatchedFilm> godfather = queryService.searchFilms("godfather", 5);
+        godfather.forEach(System.out::println);
+        assertEquals("The Godfather", godfather.get(0).getFilm().getTitle());
+        assertNotNull("Found films should be complete", godfather.get(0).getFilm().getDirector());
+
+        List<MatchedFilm> nolan = queryService.searchFilms("christopher nolan", 10);
+        nolan.forEach(System.out::println);
+        assertFalse(nolan.isEmpty());
+        for (MatchedFilm film : nolan) {
+            assertEquals("Christopher Nolan", film.getFilm().getDirector().getName());
+        }
+
+        // Only in a synopsis
+        assertEquals(Arrays.asList("Fight_Club"), ids(queryService.searchFilms("insomniac", 5)));
+
+        assertTrue(queryService.searchFilms("no such words", 5).isEmpty());
+        assertTrue(queryService.searchFilms("  ", 5).isEmpty());
+        assertSame("Unchanged model should reuse the index", index, manager.getTextIndex());
+    }
+
+    @Test
+    public void testPrefixFuzzyAndAccents() {
+        System.out.println("\n--- Test: Prefix, Fuzzy And Accents ---");
+
+        List<String> expected = ids(queryService.searchFilms("godfather", 1));
+        assertEquals(expected, ids(queryService.searchFilms("godf", 1)));
+        assertEquals(expected, ids(queryService.searchFilms("godfater", 1)));
+        assertEquals(expected, ids(queryService.searchFilms("GODFATHER!", 1)));
+        assertEquals(expected, ids(queryService.searchFilms("gödfäther", 1)));
+        assertEquals(ids(queryService.searchFilms("inception", 1)), ids(queryService.searchFilms("inceptoin", 1)));
+
+        TextIndex index = TextIndex.builder()
+            .film("Amelie").text(TextIndex.Field.TITLE, "Le Fabuleux Destin d'Amélie Poulain")
+            .film("Underground").text(TextIndex.Field.PERSON, "Emir Kusturica, Miki Manojlović")
+            .film("Zona_Zamfirova").text(TextIndex.Field.PERSON, "Zdravko Šotra, Dragan Bjelogrlić")
+            .build(0);
+        System.out.println(index.search("amelie", 5));
+        assertEquals("Amelie", index.search("amelie", 5).get(0).getFilmId());
+        assertEquals("Underground", index.search("manojlovic", 5).get(0).getFilmId());
+        assertEquals("Zona_Zamfirova", index.search("sotra", 5).get(0).getFilmId());
+        assertEquals("Zona_Zamfirova", index.search("Bjelogrlic", 5).get(0).getFilmId());
+    }
+
+    @Test
+    public void testRanking() {
+        System.out.println("\n--- Test: Ranking ---");
+
+        TextIndex index = TextIndex.builder()
+            .film("A").text(TextIndex.Field.SYNOPSIS, "A heist goes wrong in a small town")
+            .film("B").text(TextIndex.Field.TITLE, "Heist")
+            .film("C").text(TextIndex.Field.TITLE, "Heists")
+            .film("D").text(TextIndex.Field.TITLE, "The Town")
+            .build(0);
+        List<TextIndex.Hit> hits = index.search("heist", 10);
+        hits.forEach(System.out::println);
+
+        assertEquals("An exact title match should beat a prefix match", "B", hits.get(0).getFilmId());
+        assertEquals("A title match should beat a synopsis match", "C", hits.get(1).getFilmId());
+        assertEquals("A", hits.get(2).getFilmId());
+        assertEquals(3, hits.size());
+
+        assertEquals("Every word has to match", Arrays.asList("A"), hitIds(index.search("heist town", 10)));
+        assertEquals(Arrays.asList("D"),
+                     hitIds(index.search("town", 10, EnumSet.of(TextIndex.Field.TITLE))));
+    }
+
+    @Test
+    public void testEditDistance() {
+        System.out.println("\n--- Test: Edit Distance ---");
+
+        assertEquals(0, TextNormalizer.editDistance("matrix", "matrix", 2));
+        assertEquals(1, TextNormalizer.editDistance("matrix", "matrx", 2));
+        assertEquals(1, TextNormalizer.editDistance("matrix", "mtarix", 2));
+        assertEquals(2, TextNormalizer.editDistance("matrix", "mtrx", 2));
+        assertEquals("Beyond the limit", 2, TextNormalizer.editDistance("matrix", "heist", 1));
+        assertEquals(3, TextNormalizer.editDistance("", "abc", 5));
+        assertEquals("djordjevic amelie", TextNormalizer.fold("Đorđević Amélie").trim());
+        assertEquals(Arrays.asList("se7en", "j", "k", "simmons"), TextNormalizer.tokens("Se7en: J.K. Simmons"));
+    }
+
+    private static List<String> ids(List<MatchedFilm> films) {
+        List<String> ids = new ArrayList<>();
+        for (MatchedFilm film : films) {
+            ids.add(film.getFilm().getId());
+        }
+        return ids;
+    }
+
+    private static List<String> hitIds(List<TextIndex.Hit> hits) {
+        List<String> ids = new ArrayList<>();
+        for (TextIndex.Hit hit : hits) {
+            ids.add(hit.getFilmId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,167 @@
+package rs.ftn.ns.test;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rs.ftn.ns.fuzzy.FilmQualityEvaluator;
+import rs.ftn.ns.index.FilmCriteria;
+import rs.ftn.ns.model.Film;
+import rs.ftn.ns.model.RankedFilm;
+import rs.ftn.ns.ontology.FilmQueryService;
+import rs.ftn.ns.ontology.OntologyManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for top-K film ranking by fuzzy quality.
+ */
+public class TopFilmsTest {
+
+    private static final int SYNTHETIC_FILMS = 20000;
+    private static final String[] SCORES = {
+        "directionScore", "actingScore", "screenplayScore", "visualEffectsScore", "culturalSignificanceScore"
+    };
+
+    private OntologyManager manager;
+    private FilmQueryService queryService;
+    private FilmQualityEvaluator evaluator;
+
+    @Before
+    public void setUp() {
+        manager = new OntologyManager();
+        queryService = new FilmQueryService(manager);
+        evaluator = new FilmQualityEvaluator();
+    }
+
+    @After
+    public void tearDown() {
+        queryService.close();
+    }
+
+    @Test
+    public void testTopFilmsMatchFullSort() {
+        System.out.println("\n--- Test: Top Films Match Full Sort ---");
+
+        FilmCriteria criteria = FilmCriteria.any();
+        List<RankedFilm> top = queryService.findTopFilms(criteria, 5, evaluator);
+        for (RankedFilm film : top) {
+            System.out.println(film);
+        }
+
+        List<RankedFilm> expected = sortEverything(criteria);
+        assertEquals(5, top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(expected.get(i).getFilm().getId(), top.get(i).getFilm().getId());
+            assertEquals(expected.get(i).getQuality(), top.get(i).getQuality(), 0.0);
+        }
+
+        // Winners come back complete
+        assertNotNull(top.get(0).getFilm().getDirector());
+        assertFalse(top.get(0).getFilm().getGenres().isEmpty());
+    }
+
+    @Test
+    public void testFewerMatchesThanK() {
+        System.out.println("\n--- Test: Fewer Matches Than K ---");
+
+        FilmCriteria dramas = FilmCriteria.any().genre("Drama").years(2000, 2009);
+        List<RankedFilm> top = queryService.findTopFilms(dramas, 1000, evaluator);
+        System.out.println("Best dramas from the 2000s: " + top);
+
+        assertEquals(queryService.findFilms(dramas).size(), top.size());
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(top.get(i - 1).getQuality() >= top.get(i).getQuality());
+        }
+        assertTrue(queryService.findTopFilms(FilmCriteria.any().genre("No Such Genre"), 3, evaluator).isEmpty());
+
+        try {
+            queryService.findTopFilms(dramas, 0, evaluator);
+            fail("k must be positive");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTopFilmsVsFullSort() {
+        System.out.println("\n--- Test: Top 10 vs Full Sort (" + SYNTHETIC_FILMS + " films) ---");
+
+        addSyntheticFilms(SYNTHETIC_FILMS);
+        FilmCriteria criteria = FilmCriteria.any().genre("Drama");
+
+        // Warm up both paths
+        queryService.findTopFilms(criteria, 10, evaluator);
+        sortEverything(criteria);
+
+        long start = System.nanoTime();
+        List<RankedFilm> top = queryService.findTopFilms(criteria, 10, evaluator);
+        long topMs = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        List<RankedFilm> sorted = sortEverything(criteria);
+        long sortMs = (System.nanoTime() - start) / 1_000_000;
+
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(sorted.get(i).getFilm().getId(), top.get(i).getFilm().getId());
+        }
+        System.out.println("Candidates: " + sorted.size());
+        System.out.println("Top-K heap:              " + topMs + " ms");
+        System.out.println("Hydrate, score and sort: " + sortMs + " ms");
+    }
+
+    /**
+     * The old way: load every matching film, score it and sort the whole list
+     */
+    private List<RankedFilm> sortEverything(FilmCriteria criteria) {
+        List<String> ids = new ArrayList<>();
+        for (Film film : queryService.findFilms(criteria)) {
+            ids.add(film.getId());
+        }
+        ids.sort(Comparator.naturalOrder());
+        List<Film> films = queryService.loadFilms(ids);
+        double[] quality = evaluator.evaluateBatch(films);
+
+        List<RankedFilm> ranked = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            ranked.add(new RankedFilm(films.get(i), quality[i]));
+        }
+        // Stable sort keeps films with equal scores in id order
+        ranked.sort(Comparator.comparingDouble(RankedFilm::getQuality).reversed());
+        return ranked;
+    }
+
+    private void addSyntheticFilms(int count) {
+        String schemaNs = manager.getSchemaNamespace();
+        String dataNs = manager.getDataNamespace();
+        Model films = ModelFactory.createDefaultModel();
+        Resource filmClass = films.createResource(schemaNs + "Film");
+        Property hasTitle = films.createProperty(schemaNs + "hasTitle");
+        Property hasGenre = films.createProperty(schemaNs + "hasGenre");
+        String[] genres = {"Action", "Drama", "Comedy", "Thriller"};
+
+        Random random = new Random(11);
+        for (int i = 0; i < count; i++) {
+            Resource film = films.createResource(dataNs + "Ranked_Film_" + i);
+            film.addProperty(RDF.type, filmClass);
+            film.addProperty(hasTitle, "Ranked Film " + i);
+            film.addProperty(hasGenre, films.createResource(dataNs + genres[i % genres.length]));
+            for (String score : SCORES) {
+                film.addLiteral(films.createProperty(schemaNs + score), Math.round(random.nextDouble() * 100) / 10.0);
+            }
+        }
+
+        OntModel model = manager.getOntologyModel();
+        model.add(films);
+    }
+}